@@ -0,0 +1,114 @@
+package org.motechproject.scheduler.contract;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * JobExecutionRecord describes a single fire of a scheduled job - when it was supposed to fire, when it actually
+ * fired and how long it took to publish its event. Misfires are recorded as well, they have no publish latency.
+ */
+public class JobExecutionRecord implements Serializable {
+
+    private static final long serialVersionUID = -3907286839213458770L;
+
+    private String subject;
+    private String jobId;
+    private Date scheduledFireTime;
+    private Date fireTime;
+    private long publishLatency;
+    private boolean misfire;
+    private boolean success;
+
+    public JobExecutionRecord() {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param subject  the subject of the event published by the job
+     * @param jobId  the ID of the job
+     * @param scheduledFireTime  the time at which the job was scheduled to fire
+     * @param fireTime  the time at which the job actually fired, null for misfires
+     * @param publishLatency  the time, in milliseconds, it took to publish the event
+     * @param misfire  whether this record represents a misfire
+     * @param success  whether the event was published successfully
+     */
+    public JobExecutionRecord(String subject, String jobId, Date scheduledFireTime, Date fireTime,
+                              long publishLatency, boolean misfire, boolean success) {
+        this.subject = subject;
+        this.jobId = jobId;
+        this.scheduledFireTime = scheduledFireTime;
+        this.fireTime = fireTime;
+        this.publishLatency = publishLatency;
+        this.misfire = misfire;
+        this.success = success;
+    }
+
+    /**
+     * Returns the fire lag - the difference, in milliseconds, between the actual and scheduled fire time.
+     *
+     * @return the fire lag, 0 if either of the times is unknown
+     */
+    public long getFireLag() {
+        if (scheduledFireTime == null || fireTime == null) {
+            return 0;
+        }
+        return fireTime.getTime() - scheduledFireTime.getTime();
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public Date getScheduledFireTime() {
+        return scheduledFireTime;
+    }
+
+    public void setScheduledFireTime(Date scheduledFireTime) {
+        this.scheduledFireTime = scheduledFireTime;
+    }
+
+    public Date getFireTime() {
+        return fireTime;
+    }
+
+    public void setFireTime(Date fireTime) {
+        this.fireTime = fireTime;
+    }
+
+    public long getPublishLatency() {
+        return publishLatency;
+    }
+
+    public void setPublishLatency(long publishLatency) {
+        this.publishLatency = publishLatency;
+    }
+
+    public boolean isMisfire() {
+        return misfire;
+    }
+
+    public void setMisfire(boolean misfire) {
+        this.misfire = misfire;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+}
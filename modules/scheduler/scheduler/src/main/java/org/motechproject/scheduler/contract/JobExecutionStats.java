@@ -0,0 +1,117 @@
+package org.motechproject.scheduler.contract;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * JobExecutionStats holds the aggregated execution history of all jobs publishing events with the same subject.
+ * All times are given in milliseconds.
+ */
+public class JobExecutionStats implements Serializable {
+
+    private static final long serialVersionUID = 2766210843326471185L;
+
+    private String subject;
+    private long executions;
+    private long misfires;
+    private long failures;
+    private long averageFireLag;
+    private long maxFireLag;
+    private long fireLagPercentile95;
+    private long averagePublishLatency;
+    private long maxPublishLatency;
+    private Date lastFireTime;
+
+    public JobExecutionStats() {
+    }
+
+    public JobExecutionStats(String subject) {
+        this.subject = subject;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public long getExecutions() {
+        return executions;
+    }
+
+    public void setExecutions(long executions) {
+        this.executions = executions;
+    }
+
+    public long getMisfires() {
+        return misfires;
+    }
+
+    public void setMisfires(long misfires) {
+        this.misfires = misfires;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public void setFailures(long failures) {
+        this.failures = failures;
+    }
+
+    public long getAverageFireLag() {
+        return averageFireLag;
+    }
+
+    public void setAverageFireLag(long averageFireLag) {
+        this.averageFireLag = averageFireLag;
+    }
+
+    public long getMaxFireLag() {
+        return maxFireLag;
+    }
+
+    public void setMaxFireLag(long maxFireLag) {
+        this.maxFireLag = maxFireLag;
+    }
+
+    /**
+     * Returns the 95th percentile of the fire lag. It is computed from the executions still kept in the history
+     * buffer, so unlike the other values, it does not cover the whole uptime.
+     *
+     * @return the 95th percentile of the fire lag
+     */
+    public long getFireLagPercentile95() {
+        return fireLagPercentile95;
+    }
+
+    public void setFireLagPercentile95(long fireLagPercentile95) {
+        this.fireLagPercentile95 = fireLagPercentile95;
+    }
+
+    public long getAveragePublishLatency() {
+        return averagePublishLatency;
+    }
+
+    public void setAveragePublishLatency(long averagePublishLatency) {
+        this.averagePublishLatency = averagePublishLatency;
+    }
+
+    public long getMaxPublishLatency() {
+        return maxPublishLatency;
+    }
+
+    public void setMaxPublishLatency(long maxPublishLatency) {
+        this.maxPublishLatency = maxPublishLatency;
+    }
+
+    public Date getLastFireTime() {
+        return lastFireTime;
+    }
+
+    public void setLastFireTime(Date lastFireTime) {
+        this.lastFireTime = lastFireTime;
+    }
+}
@@ -36,6 +36,8 @@ public abstract class SchedulableJob implements Serializable {
 
     private boolean ignorePastFiresAtStart;
 
+    private boolean volatileJob;
+
     protected SchedulableJob() {
         this(null, null, false, false);
     }
@@ -90,10 +92,25 @@ public abstract class SchedulableJob implements Serializable {
         this.ignorePastFiresAtStart = ignorePastFiresAtStart;
     }
 
+    public boolean isVolatile() {
+        return volatileJob;
+    }
+
+    /**
+     * Marks the job as volatile. Volatile jobs are short-lived jobs that can be rebuilt by their owners, so they are
+     * kept in the in-memory scheduler instead of the JDBC job store, if the volatile scheduler is enabled.
+     *
+     * @param volatileJob true if the job should be kept in memory
+     */
+    public void setVolatile(boolean volatileJob) {
+        this.volatileJob = volatileJob;
+    }
+
     protected boolean equals(SchedulableJob other) {
         return ObjectUtils.equals(motechEvent, other.motechEvent)
                 && ObjectUtils.equals(startDate, other.startDate)
                 && uiDefined == other.uiDefined
-                && ignorePastFiresAtStart == other.ignorePastFiresAtStart;
+                && ignorePastFiresAtStart == other.ignorePastFiresAtStart
+                && volatileJob == other.volatileJob;
     }
 }
@@ -1,9 +1,14 @@
 package org.motechproject.scheduler.factory;
 
+import org.apache.commons.lang.StringUtils;
 import org.motechproject.scheduler.exception.SchedulerInstantiationException;
 import org.motechproject.scheduler.exception.SchedulerShutdownException;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
+import org.quartz.simpl.CascadingClassLoadHelper;
+import org.quartz.spi.ClassLoadHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationContext;
@@ -12,20 +17,72 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import static java.lang.Boolean.getBoolean;
 
 /**
- * The <code>MotechSchedulerFactoryBean</code> is used to create scheduler and start it.
+ * The <code>MotechSchedulerFactoryBean</code> is used to create scheduler and start it. Apart from the main, JDBC
+ * backed scheduler it can also create a second, in-memory scheduler which holds volatile jobs. The volatile scheduler
+ * is controlled by the <code>scheduler.volatile.*</code> properties.
+ * <p>
+ * The JDBC backed scheduler can run in clustered mode and can be split into partitions, see
+ * {@link SchedulerPartitioner}. Each partition is backed by a separate Quartz scheduler. The clustering and
+ * partitioning properties can be overridden with system properties of the same names, so several nodes can run
+ * from the same configuration. In clustered mode, partitions whose owners stopped checking in are taken over by the
+ * other nodes, see {@link PartitionFailoverMonitor}.
  */
 @Component("motechSchedulerFactoryBean")
 public class MotechSchedulerFactoryBean {
 
+    public static final String VOLATILE_ENABLED = "scheduler.volatile.enabled";
+    public static final String VOLATILE_THREAD_COUNT = "scheduler.volatile.threadCount";
+    public static final String VOLATILE_SNAPSHOT_FILE = "scheduler.volatile.snapshot.file";
+    public static final String VOLATILE_SNAPSHOT_INTERVAL = "scheduler.volatile.snapshot.intervalInSeconds";
+
+    public static final String CLUSTERED = "org.quartz.jobStore.isClustered";
+    public static final String CLUSTER_CHECKIN_INTERVAL = "org.quartz.jobStore.clusterCheckinInterval";
+    public static final String INSTANCE_ID = "org.quartz.scheduler.instanceId";
+    public static final String PARTITION_COUNT = "scheduler.partition.count";
+    public static final String PARTITION_OWNED = "scheduler.partition.owned";
+    public static final String PARTITION_FAILOVER = "scheduler.partition.failover";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MotechSchedulerFactoryBean.class);
+
+    private static final String[] SYSTEM_OVERRIDES = {CLUSTERED, CLUSTER_CHECKIN_INTERVAL, INSTANCE_ID,
+            PARTITION_COUNT, PARTITION_OWNED, PARTITION_FAILOVER};
+
+    private static final String INSTANCE_NAME = "org.quartz.scheduler.instanceName";
+    private static final String DEFAULT_INSTANCE_NAME = "MotechScheduler";
+    private static final String DATA_SOURCE = "org.quartz.jobStore.dataSource";
+    private static final String DATA_SOURCE_PREFIX = "org.quartz.dataSource.";
+    private static final String TABLE_PREFIX = "org.quartz.jobStore.tablePrefix";
+    private static final String DEFAULT_TABLE_PREFIX = "QRTZ_";
+    private static final String DEFAULT_CLUSTER_CHECKIN_INTERVAL = "7500";
+    private static final String VOLATILE_INSTANCE_NAME = "MotechVolatileScheduler";
+    private static final String DEFAULT_VOLATILE_THREAD_COUNT = "3";
+    private static final String DEFAULT_MISFIRE_THRESHOLD = "1000";
+    private static final String MISFIRE_THRESHOLD = "org.quartz.jobStore.misfireThreshold";
+
     private ApplicationContext applicationContext;
 
     private SchedulerFactoryBean schedulerFactoryBean;
 
+    private List<SchedulerFactoryBean> partitionSchedulerFactoryBeans = new ArrayList<>();
+
+    private SchedulerPartitioner partitioner;
+
+    private PartitionFailoverMonitor failoverMonitor;
+
+    private SchedulerFactoryBean volatileSchedulerFactoryBean;
+
+    private VolatileSchedulerSnapshotter snapshotter;
+
     private Properties schedulerProperties;
 
     /**
@@ -41,20 +98,32 @@ public class MotechSchedulerFactoryBean {
     }
 
     /**
-     * Creates the Spring {@code SchedulerFactoryBean}.
+     * Creates the Spring {@code SchedulerFactoryBean}s, one for every partition, and starts the schedulers of the
+     * partitions owned by this node.
      */
     @PostConstruct
     public void init() {
-        schedulerFactoryBean = new SchedulerFactoryBean();
-        schedulerFactoryBean.setQuartzProperties(schedulerProperties);
-        schedulerFactoryBean.setWaitForJobsToCompleteOnShutdown(getBooleanWithDefault(schedulerProperties.getProperty("scheduler.waitForJobsToCompleteOnShutdown"), true));
-        schedulerFactoryBean.setApplicationContextSchedulerContextKey("applicationContext");
-        schedulerFactoryBean.setApplicationContext(applicationContext);
-        try {
-            schedulerFactoryBean.afterPropertiesSet();
-            schedulerFactoryBean.getScheduler().start();
-        } catch (Exception e) {
-            throw new SchedulerInstantiationException("Failed to instantiate scheduler with configuration from quartz.properties", e);
+        Properties properties = new Properties();
+        properties.putAll(schedulerProperties);
+        applySystemOverrides(properties);
+
+        partitioner = new SchedulerPartitioner(properties.getProperty(INSTANCE_NAME, DEFAULT_INSTANCE_NAME),
+                Integer.parseInt(properties.getProperty(PARTITION_COUNT, "1").trim()),
+                properties.getProperty(PARTITION_OWNED));
+
+        for (int partition = 0; partition < partitioner.getPartitionCount(); partition++) {
+            partitionSchedulerFactoryBeans.add(initScheduler(properties, partition));
+        }
+        schedulerFactoryBean = partitionSchedulerFactoryBeans.get(0);
+
+        if (partitioner.isPartitioned()) {
+            LOGGER.info("Scheduler partitioned into {} partitions, partitions owned by this node: {}",
+                    partitioner.getPartitionCount(), partitioner.getOwnedPartitions());
+            initFailoverMonitor(properties);
+        }
+
+        if (Boolean.parseBoolean(properties.getProperty(VOLATILE_ENABLED, "false").trim())) {
+            initVolatileScheduler();
         }
     }
 
@@ -64,7 +133,18 @@ public class MotechSchedulerFactoryBean {
     @PreDestroy
     public void shutdown() {
         try {
-            schedulerFactoryBean.destroy();
+            if (failoverMonitor != null) {
+                failoverMonitor.stop();
+            }
+            if (volatileSchedulerFactoryBean != null) {
+                if (snapshotter != null) {
+                    snapshotter.stop();
+                }
+                volatileSchedulerFactoryBean.destroy();
+            }
+            for (int i = partitionSchedulerFactoryBeans.size() - 1; i >= 0; i--) {
+                partitionSchedulerFactoryBeans.get(i).destroy();
+            }
         } catch (SchedulerException e) {
             throw new SchedulerShutdownException("Failed to shutdown scheduler", e);
         }
@@ -83,6 +163,191 @@ public class MotechSchedulerFactoryBean {
         return getQuartzSchedulerFactoryBean().getScheduler();
     }
 
+    /**
+     * Returns the schedulers of all partitions, ordered by partition. If partitioning is disabled, the list
+     * contains only the scheduler returned by {@link #getQuartzScheduler()}.
+     *
+     * @return the schedulers of all partitions
+     */
+    public List<Scheduler> getQuartzSchedulers() {
+        List<Scheduler> schedulers = new ArrayList<>(partitionSchedulerFactoryBeans.size());
+        for (SchedulerFactoryBean factoryBean : partitionSchedulerFactoryBeans) {
+            schedulers.add(factoryBean.getScheduler());
+        }
+        return schedulers;
+    }
+
+    /**
+     * Returns the scheduler of the partition to which the job with the given external ID belongs.
+     *
+     * @param partitionKey  the external ID of the job
+     * @return the scheduler of the partition
+     */
+    public Scheduler getQuartzScheduler(String partitionKey) {
+        return partitionSchedulerFactoryBeans.get(partitioner.getPartition(partitionKey)).getScheduler();
+    }
+
+    /**
+     * Returns the scheduler of the partition with the given scheduler name, as stored in the job store.
+     *
+     * @param schedulerName  the name of the scheduler
+     * @return the scheduler, the scheduler of partition 0 if there is no partition with the given name
+     */
+    public Scheduler getQuartzSchedulerByName(String schedulerName) {
+        for (int partition = 0; partition < partitionSchedulerFactoryBeans.size(); partition++) {
+            if (partitioner.getSchedulerName(partition).equals(schedulerName)) {
+                return partitionSchedulerFactoryBeans.get(partition).getScheduler();
+            }
+        }
+        return getQuartzScheduler();
+    }
+
+    public SchedulerPartitioner getPartitioner() {
+        return partitioner;
+    }
+
+    /**
+     * Returns the monitor taking over the partitions of failed nodes.
+     *
+     * @return the monitor, null if the scheduler is not clustered, not partitioned, all partitions are owned by this
+     * node or the failover is disabled
+     */
+    public PartitionFailoverMonitor getPartitionFailoverMonitor() {
+        return failoverMonitor;
+    }
+
+    /**
+     * Returns the in-memory scheduler used for volatile jobs.
+     *
+     * @return the volatile scheduler, null if the volatile scheduler is disabled
+     */
+    public Scheduler getVolatileQuartzScheduler() {
+        return volatileSchedulerFactoryBean == null ? null : volatileSchedulerFactoryBean.getScheduler();
+    }
+
+    private SchedulerFactoryBean initScheduler(Properties baseProperties, int partition) {
+        Properties properties = baseProperties;
+        if (partition > 0) {
+            properties = partitionProperties(baseProperties, partition);
+        }
+
+        SchedulerFactoryBean factoryBean = new SchedulerFactoryBean();
+        factoryBean.setQuartzProperties(properties);
+        factoryBean.setSchedulerName(partitioner.getSchedulerName(partition));
+        factoryBean.setWaitForJobsToCompleteOnShutdown(getBooleanWithDefault(properties.getProperty("scheduler.waitForJobsToCompleteOnShutdown"), true));
+        factoryBean.setApplicationContextSchedulerContextKey("applicationContext");
+        factoryBean.setApplicationContext(applicationContext);
+        try {
+            factoryBean.afterPropertiesSet();
+            // schedulers of partitions owned by other nodes are kept in standby, they never acquire triggers
+            if (partitioner.isOwned(partition)) {
+                factoryBean.getScheduler().start();
+            }
+        } catch (Exception e) {
+            throw new SchedulerInstantiationException("Failed to instantiate scheduler with configuration from quartz.properties", e);
+        }
+        return factoryBean;
+    }
+
+    private void initFailoverMonitor(Properties properties) {
+        if (!getBooleanProperty(properties, CLUSTERED, false) || !getBooleanProperty(properties, PARTITION_FAILOVER, true)) {
+            return;
+        }
+
+        Map<String, Scheduler> standbySchedulers = new LinkedHashMap<>();
+        for (int partition = 0; partition < partitioner.getPartitionCount(); partition++) {
+            if (!partitioner.isOwned(partition)) {
+                standbySchedulers.put(partitioner.getSchedulerName(partition),
+                        partitionSchedulerFactoryBeans.get(partition).getScheduler());
+            }
+        }
+
+        if (!standbySchedulers.isEmpty()) {
+            failoverMonitor = new PartitionFailoverMonitor(standbySchedulers, properties.getProperty(DATA_SOURCE),
+                    properties.getProperty(TABLE_PREFIX, DEFAULT_TABLE_PREFIX),
+                    Long.parseLong(properties.getProperty(CLUSTER_CHECKIN_INTERVAL, DEFAULT_CLUSTER_CHECKIN_INTERVAL).trim()));
+            failoverMonitor.start();
+        }
+    }
+
+    private Properties partitionProperties(Properties baseProperties, int partition) {
+        // every partition needs its own data source, since Quartz closes the data source of a scheduler on shutdown
+        String dataSource = baseProperties.getProperty(DATA_SOURCE);
+        String partitionDataSource = dataSource + "_" + partition;
+        String dataSourcePrefix = DATA_SOURCE_PREFIX + dataSource + ".";
+
+        Properties properties = new Properties();
+        for (String name : baseProperties.stringPropertyNames()) {
+            String value = baseProperties.getProperty(name);
+            if (dataSource != null && name.startsWith(dataSourcePrefix)) {
+                properties.setProperty(DATA_SOURCE_PREFIX + partitionDataSource + "." +
+                        name.substring(dataSourcePrefix.length()), value);
+            } else {
+                properties.setProperty(name, value);
+            }
+        }
+
+        if (dataSource != null) {
+            properties.setProperty(DATA_SOURCE, partitionDataSource);
+        }
+        return properties;
+    }
+
+    private void applySystemOverrides(Properties properties) {
+        // allows running several nodes from the same configuration, for example locally
+        for (String name : SYSTEM_OVERRIDES) {
+            String value = System.getProperty(name);
+            if (StringUtils.isNotBlank(value)) {
+                properties.setProperty(name, value);
+            }
+        }
+    }
+
+    private void initVolatileScheduler() {
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", VOLATILE_INSTANCE_NAME);
+        properties.setProperty("org.quartz.threadPool.class", "org.quartz.simpl.SimpleThreadPool");
+        properties.setProperty("org.quartz.threadPool.threadCount",
+                schedulerProperties.getProperty(VOLATILE_THREAD_COUNT, DEFAULT_VOLATILE_THREAD_COUNT));
+        properties.setProperty("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore");
+        properties.setProperty(MISFIRE_THRESHOLD,
+                schedulerProperties.getProperty(MISFIRE_THRESHOLD, DEFAULT_MISFIRE_THRESHOLD));
+
+        volatileSchedulerFactoryBean = new SchedulerFactoryBean();
+        volatileSchedulerFactoryBean.setQuartzProperties(properties);
+        volatileSchedulerFactoryBean.setSchedulerName(VOLATILE_INSTANCE_NAME);
+        volatileSchedulerFactoryBean.setWaitForJobsToCompleteOnShutdown(getBooleanWithDefault(schedulerProperties.getProperty("scheduler.waitForJobsToCompleteOnShutdown"), true));
+        volatileSchedulerFactoryBean.setApplicationContextSchedulerContextKey("applicationContext");
+        volatileSchedulerFactoryBean.setApplicationContext(applicationContext);
+        try {
+            volatileSchedulerFactoryBean.afterPropertiesSet();
+
+            String snapshotFile = schedulerProperties.getProperty(VOLATILE_SNAPSHOT_FILE);
+            if (StringUtils.isNotBlank(snapshotFile)) {
+                long interval = Long.parseLong(schedulerProperties.getProperty(VOLATILE_SNAPSHOT_INTERVAL, "0").trim());
+                snapshotter = new VolatileSchedulerSnapshotter(volatileSchedulerFactoryBean.getScheduler(),
+                        createClassLoadHelper(), new File(snapshotFile.trim()), interval);
+                snapshotter.start();
+            }
+
+            volatileSchedulerFactoryBean.getScheduler().start();
+        } catch (Exception e) {
+            throw new SchedulerInstantiationException("Failed to instantiate the volatile scheduler", e);
+        }
+    }
+
+    private ClassLoadHelper createClassLoadHelper() {
+        // Quartz uses this helper by default for loading the classes of jobs, which can come from other bundles
+        ClassLoadHelper classLoadHelper = new CascadingClassLoadHelper();
+        classLoadHelper.initialize();
+        return classLoadHelper;
+    }
+
+    private boolean getBooleanProperty(Properties properties, String name, boolean defaultValue) {
+        String value = properties.getProperty(name);
+        return StringUtils.isBlank(value) ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
     private boolean getBooleanWithDefault(String s, boolean defaultValue) {
         return s != null ? getBoolean(s) : defaultValue;
     }
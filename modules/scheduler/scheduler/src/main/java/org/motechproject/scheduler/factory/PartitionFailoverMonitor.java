@@ -0,0 +1,147 @@
+package org.motechproject.scheduler.factory;
+
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.utils.DBConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes over the partitions whose owners are gone. The schedulers of partitions not owned by this node are kept in
+ * standby, so without this monitor the jobs of a partition would never fire once all the nodes owning it failed.
+ * The monitor periodically reads the cluster check-ins from the scheduler state table, the same table Quartz uses
+ * for detecting failed nodes, and starts the standby scheduler of every partition none of whose instances checked in
+ * during the last {@link #MISSED_CHECKINS} check-in intervals. A partition that was taken over is shared with its
+ * owners in the usual clustered way once they are back.
+ */
+public class PartitionFailoverMonitor {
+
+    static final int MISSED_CHECKINS = 3;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionFailoverMonitor.class);
+
+    private final Map<String, Scheduler> standbySchedulers;
+    private final String dataSource;
+    private final String tablePrefix;
+    private final long checkinInterval;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * Constructor.
+     *
+     * @param standbySchedulers  the schedulers of the partitions not owned by this node, keyed by their names
+     * @param dataSource  the name of the Quartz data source of the job store
+     * @param tablePrefix  the prefix of the Quartz tables
+     * @param checkinInterval  the cluster check-in interval, in milliseconds
+     */
+    public PartitionFailoverMonitor(Map<String, Scheduler> standbySchedulers, String dataSource, String tablePrefix,
+                                    long checkinInterval) {
+        this.standbySchedulers = new LinkedHashMap<>(standbySchedulers);
+        this.dataSource = dataSource;
+        this.tablePrefix = tablePrefix;
+        this.checkinInterval = checkinInterval;
+    }
+
+    /**
+     * Starts the periodic checks. The first check is delayed, so that the owners of the partitions started at about
+     * the same time as this node have a chance to check in.
+     */
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "motech-scheduler-partition-failover");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                check();
+            }
+        }, checkinInterval * MISSED_CHECKINS, checkinInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic checks.
+     */
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Starts the standby schedulers of the partitions which have no live instances.
+     */
+    public synchronized void check() {
+        Set<String> liveSchedulers;
+        try {
+            liveSchedulers = getLiveSchedulers();
+        } catch (SQLException e) {
+            LOGGER.error("Unable to read the cluster state, partitions of failed nodes will not be taken over", e);
+            return;
+        }
+
+        Iterator<Map.Entry<String, Scheduler>> iterator = standbySchedulers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Scheduler> entry = iterator.next();
+            if (!liveSchedulers.contains(entry.getKey())) {
+                try {
+                    LOGGER.warn("No node owning the scheduler partition {} checked in, taking the partition over",
+                            entry.getKey());
+                    entry.getValue().start();
+                    iterator.remove();
+                } catch (SchedulerException e) {
+                    LOGGER.error("Unable to take over the scheduler partition {}", entry.getKey(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the names of the partition schedulers which are still waiting for their owners.
+     *
+     * @return the names of the schedulers in standby
+     */
+    public synchronized Set<String> getStandbySchedulerNames() {
+        return new HashSet<>(standbySchedulers.keySet());
+    }
+
+    private Set<String> getLiveSchedulers() throws SQLException {
+        Set<String> liveSchedulers = new HashSet<>();
+        // unquoted, like in the Quartz queries, so the name matches however the database folds its case
+        String query = "SELECT SCHED_NAME, LAST_CHECKIN_TIME, CHECKIN_INTERVAL FROM " + tablePrefix + "SCHEDULER_STATE";
+        long now = System.currentTimeMillis();
+
+        try (Connection conn = DBConnectionManager.getInstance().getConnection(dataSource);
+             PreparedStatement stmt = conn.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                long lastCheckin = rs.getLong("LAST_CHECKIN_TIME");
+                long interval = Math.max(rs.getLong("CHECKIN_INTERVAL"), checkinInterval);
+                if (now - lastCheckin < interval * MISSED_CHECKINS) {
+                    liveSchedulers.add(rs.getString("SCHED_NAME"));
+                }
+            }
+        }
+
+        return liveSchedulers;
+    }
+}
@@ -0,0 +1,103 @@
+package org.motechproject.scheduler.factory;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Assigns jobs to scheduler partitions. Every partition is backed by a separate Quartz scheduler, with its own name,
+ * and so its own rows and locks in the job store. A job is assigned to a partition based on the hash of its
+ * external ID, so all jobs of the same entity (for example a patient) end up in the same partition. A node fires
+ * only the jobs from the partitions it owns, the schedulers of the other partitions are kept in standby and are only
+ * used for storing and looking up jobs. Partition 0 always uses the base scheduler name, so jobs scheduled before
+ * partitioning was enabled remain where they were.
+ */
+public class SchedulerPartitioner {
+
+    private final String baseName;
+    private final int partitionCount;
+    private final Set<Integer> ownedPartitions;
+
+    /**
+     * Constructor.
+     *
+     * @param baseName  the name of the scheduler, used for partition 0, not null
+     * @param partitionCount  the number of partitions, values lower than 1 are treated as 1
+     * @param ownedPartitions  the comma separated list of partitions owned by this node, all partitions if blank
+     */
+    public SchedulerPartitioner(String baseName, int partitionCount, String ownedPartitions) {
+        this.baseName = baseName;
+        this.partitionCount = Math.max(partitionCount, 1);
+        this.ownedPartitions = parseOwnedPartitions(ownedPartitions, this.partitionCount);
+    }
+
+    /**
+     * Returns the partition of the job with the given key.
+     *
+     * @param partitionKey  the external ID of the job, null is assigned to partition 0
+     * @return the partition, between 0 (inclusive) and the partition count (exclusive)
+     */
+    public int getPartition(String partitionKey) {
+        if (partitionKey == null || partitionCount == 1) {
+            return 0;
+        }
+        return (partitionKey.hashCode() & Integer.MAX_VALUE) % partitionCount;
+    }
+
+    /**
+     * Returns the name of the Quartz scheduler backing the given partition.
+     *
+     * @param partition  the partition
+     * @return the name of the scheduler
+     */
+    public String getSchedulerName(int partition) {
+        return partition == 0 ? baseName : baseName + "_" + partition;
+    }
+
+    /**
+     * Checks whether this node fires the jobs from the given partition.
+     *
+     * @param partition  the partition
+     * @return true if this node owns the partition, false otherwise
+     */
+    public boolean isOwned(int partition) {
+        return ownedPartitions.contains(partition);
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public Set<Integer> getOwnedPartitions() {
+        return Collections.unmodifiableSet(ownedPartitions);
+    }
+
+    public boolean isPartitioned() {
+        return partitionCount > 1;
+    }
+
+    private static Set<Integer> parseOwnedPartitions(String ownedPartitions, int partitionCount) {
+        Set<Integer> owned = new TreeSet<>();
+
+        if (StringUtils.isBlank(ownedPartitions)) {
+            for (int i = 0; i < partitionCount; i++) {
+                owned.add(i);
+            }
+            return owned;
+        }
+
+        for (String partition : ownedPartitions.split(",")) {
+            if (StringUtils.isNotBlank(partition)) {
+                int value = Integer.parseInt(partition.trim());
+                if (value < 0 || value >= partitionCount) {
+                    throw new IllegalArgumentException(String.format("Partition %d is out of range, the number of " +
+                            "partitions is %d", value, partitionCount));
+                }
+                owned.add(value);
+            }
+        }
+        return owned;
+    }
+}
@@ -0,0 +1,256 @@
+package org.motechproject.scheduler.factory;
+
+import org.quartz.JobDetail;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.spi.ClassLoadHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes the jobs of the in-memory (volatile) scheduler to a snapshot file and restores them when
+ * the scheduler starts. The snapshot is written to a temporary file first and then moved over the previous one, so
+ * a crash during the write never leaves a truncated snapshot behind. Every job is serialized separately, so a job
+ * that cannot be restored, for example because the bundle providing its class is not installed anymore, does not
+ * prevent restoring the others. Classes are resolved through the given {@link ClassLoadHelper}, the same way
+ * Quartz resolves the classes of jobs from the JDBC job store, since jobs can come from other bundles.
+ */
+public class VolatileSchedulerSnapshotter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VolatileSchedulerSnapshotter.class);
+
+    private final Scheduler scheduler;
+    private final ClassLoadHelper classLoadHelper;
+    private final File snapshotFile;
+    private final long intervalInSeconds;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * Constructor.
+     *
+     * @param scheduler the in-memory scheduler whose jobs will be saved
+     * @param classLoadHelper the helper used for resolving the classes of restored jobs and triggers
+     * @param snapshotFile the file to which the snapshots will be written
+     * @param intervalInSeconds the interval between snapshots, values lower than 1 disable periodic snapshots
+     */
+    public VolatileSchedulerSnapshotter(Scheduler scheduler, ClassLoadHelper classLoadHelper, File snapshotFile,
+                                        long intervalInSeconds) {
+        this.scheduler = scheduler;
+        this.classLoadHelper = classLoadHelper;
+        this.snapshotFile = snapshotFile;
+        this.intervalInSeconds = intervalInSeconds;
+    }
+
+    /**
+     * Restores jobs from the last snapshot, if one exists, and starts the periodic snapshots.
+     */
+    public void start() {
+        restore();
+
+        if (intervalInSeconds > 0) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "motech-volatile-scheduler-snapshot");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    snapshot();
+                }
+            }, intervalInSeconds, intervalInSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops the periodic snapshots and writes the final snapshot.
+     */
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        snapshot();
+    }
+
+    /**
+     * Writes all jobs of the scheduler, together with their triggers, to the snapshot file.
+     */
+    public synchronized void snapshot() {
+        File tmpFile = new File(snapshotFile.getAbsolutePath() + ".tmp");
+
+        try {
+            List<byte[]> entries = new ArrayList<>();
+            for (JobKey key : scheduler.getJobKeys(GroupMatcher.anyJobGroup())) {
+                JobDetail jobDetail = scheduler.getJobDetail(key);
+                if (jobDetail != null) {
+                    try {
+                        entries.add(serialize(new JobEntry(jobDetail, new ArrayList<>(scheduler.getTriggersOfJob(key)))));
+                    } catch (IOException e) {
+                        LOGGER.error("Unable to save volatile job {} to the snapshot", key, e);
+                    }
+                }
+            }
+
+            File parent = snapshotFile.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Unable to create directory " + parent.getAbsolutePath());
+            }
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(entries.size());
+                for (byte[] entry : entries) {
+                    out.writeInt(entry.length);
+                    out.write(entry);
+                }
+            }
+
+            if (snapshotFile.exists() && !snapshotFile.delete()) {
+                throw new IOException("Unable to replace snapshot " + snapshotFile.getAbsolutePath());
+            }
+            if (!tmpFile.renameTo(snapshotFile)) {
+                throw new IOException("Unable to move snapshot to " + snapshotFile.getAbsolutePath());
+            }
+
+            LOGGER.debug("Saved {} volatile jobs to {}", entries.size(), snapshotFile);
+        } catch (SchedulerException | IOException e) {
+            LOGGER.error("Unable to save the snapshot of volatile jobs to {}", snapshotFile, e);
+        }
+    }
+
+    /**
+     * Schedules again all jobs saved in the snapshot file. Jobs which no longer have triggers that may fire
+     * are skipped, as are jobs which cannot be read or scheduled.
+     */
+    public synchronized void restore() {
+        if (!snapshotFile.exists()) {
+            return;
+        }
+
+        int restored = 0;
+        int failed = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+            int count = in.readInt();
+
+            for (int i = 0; i < count; i++) {
+                byte[] entry = new byte[in.readInt()];
+                in.readFully(entry);
+
+                try {
+                    if (restore(deserialize(entry))) {
+                        restored++;
+                    }
+                } catch (IOException | ClassNotFoundException | ClassCastException | SchedulerException e) {
+                    LOGGER.error("Unable to restore volatile job {} of {} from {}", i + 1, count, snapshotFile, e);
+                    failed++;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Unable to read the snapshot of volatile jobs from {}", snapshotFile, e);
+        }
+
+        LOGGER.info("Restored {} volatile jobs from {}, {} jobs could not be restored", restored, snapshotFile, failed);
+    }
+
+    private boolean restore(JobEntry entry) throws SchedulerException {
+        List<Trigger> triggers = new ArrayList<>();
+        for (Trigger trigger : entry.getTriggers()) {
+            if (trigger.mayFireAgain()) {
+                triggers.add(trigger);
+            }
+        }
+
+        if (triggers.isEmpty()) {
+            return false;
+        }
+
+        scheduler.scheduleJob(entry.getJobDetail(), new HashSet<>(triggers), true);
+        return true;
+    }
+
+    private byte[] serialize(JobEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(entry);
+        }
+        return bytes.toByteArray();
+    }
+
+    private JobEntry deserialize(byte[] entry) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ClassLoadHelperObjectInputStream(new ByteArrayInputStream(entry))) {
+            return (JobEntry) in.readObject();
+        }
+    }
+
+    /**
+     * Resolves classes through the class load helper. Classes it cannot load, such as arrays or classes private to
+     * the scheduler bundle, are left to the default resolution.
+     */
+    private final class ClassLoadHelperObjectInputStream extends ObjectInputStream {
+
+        private ClassLoadHelperObjectInputStream(ByteArrayInputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return classLoadHelper.loadClass(desc.getName());
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+
+    /**
+     * A single job stored in the snapshot.
+     */
+    private static class JobEntry implements Serializable {
+
+        private static final long serialVersionUID = 4451926421362541627L;
+
+        private final JobDetail jobDetail;
+        private final List<Trigger> triggers;
+
+        JobEntry(JobDetail jobDetail, List<Trigger> triggers) {
+            this.jobDetail = jobDetail;
+            this.triggers = triggers;
+        }
+
+        JobDetail getJobDetail() {
+            return jobDetail;
+        }
+
+        List<Trigger> getTriggers() {
+            return triggers;
+        }
+    }
+}
@@ -45,6 +45,8 @@ public class MotechSchedulerListener {
 
         RepeatingSchedulableJob repeatingJob = new RepeatingSchedulableJob(jobEvent, repeatCount - 1, repeatIntervalInSeconds,
                 DateTime.now().plusSeconds(repeatIntervalInSeconds), null, false);
+        // task retries are short-lived, there is no need to keep them in the JDBC job store
+        repeatingJob.setVolatile(true);
 
         schedulerService.scheduleRepeatingJob(repeatingJob);
     }
@@ -0,0 +1,37 @@
+package org.motechproject.scheduler.service;
+
+import org.motechproject.scheduler.contract.JobExecutionStats;
+
+import java.util.List;
+
+/**
+ * JMX view of the scheduler execution history. Registered as
+ * <code>org.motechproject.scheduler:type=JobExecutionHistory</code>.
+ */
+public interface JobExecutionHistoryMXBean {
+
+    /**
+     * @return the number of job executions recorded since startup
+     */
+    long getTotalExecutions();
+
+    /**
+     * @return the number of misfires recorded since startup
+     */
+    long getTotalMisfires();
+
+    /**
+     * @return the highest fire lag, in milliseconds, recorded since startup
+     */
+    long getMaxFireLag();
+
+    /**
+     * @return the aggregated execution history, one entry per subject
+     */
+    List<JobExecutionStats> getStats();
+
+    /**
+     * Removes the whole execution history kept in memory.
+     */
+    void clear();
+}
@@ -0,0 +1,65 @@
+package org.motechproject.scheduler.service;
+
+import org.motechproject.scheduler.contract.JobExecutionRecord;
+import org.motechproject.scheduler.contract.JobExecutionStats;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Records the execution history of scheduled jobs - fire lag, misfires and event publish latency - and provides
+ * aggregates of it per event subject. The most recent executions are kept in a fixed-size, in-memory ring buffer,
+ * they can optionally be persisted to rolling files as well.
+ */
+public interface JobExecutionHistoryService {
+
+    /**
+     * Records a fire of a job.
+     *
+     * @param subject  the subject of the event published by the job
+     * @param jobId  the ID of the job
+     * @param scheduledFireTime  the time at which the job was scheduled to fire
+     * @param fireTime  the time at which the job actually fired
+     * @param publishLatency  the time, in milliseconds, it took to publish the event
+     * @param success  whether the event was published successfully
+     */
+    void recordExecution(String subject, String jobId, Date scheduledFireTime, Date fireTime, long publishLatency,
+                         boolean success);
+
+    /**
+     * Records a misfire of a job.
+     *
+     * @param jobId  the ID of the job
+     * @param scheduledFireTime  the time at which the job was scheduled to fire
+     */
+    void recordMisfire(String jobId, Date scheduledFireTime);
+
+    /**
+     * Returns the most recent executions of jobs with the given subject, newest first.
+     *
+     * @param subject  the subject of the events, null for all subjects
+     * @param max  the maximum number of records to return
+     * @return the list of records
+     */
+    List<JobExecutionRecord> getRecentExecutions(String subject, int max);
+
+    /**
+     * Returns the aggregated execution history for all subjects.
+     *
+     * @return the list of aggregates, one per subject
+     */
+    List<JobExecutionStats> getStats();
+
+    /**
+     * Returns the aggregated execution history for the given subject.
+     *
+     * @param subject  the subject of the events
+     * @return the aggregates, null if no job with the given subject fired yet
+     */
+    JobExecutionStats getStats(String subject);
+
+    /**
+     * Removes the whole execution history kept in memory.
+     */
+    void clear();
+}
@@ -12,6 +12,7 @@ import org.quartz.SchedulerContext;
 import org.quartz.SchedulerException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
 
 import java.util.Map;
@@ -65,9 +66,29 @@ public class MotechScheduledJob implements Job {
 
             ApplicationContext applicationContext = (ApplicationContext) schedulerContext.get("applicationContext");
             EventRelay eventRelay = applicationContext.getBean(EventRelay.class);
-            eventRelay.sendEventMessage(motechEvent);
+
+            long publishStart = System.currentTimeMillis();
+            boolean success = false;
+            try {
+                eventRelay.sendEventMessage(motechEvent);
+                success = true;
+            } finally {
+                recordExecution(applicationContext, jobExecutionContext, eventType, jobId,
+                        System.currentTimeMillis() - publishStart, success);
+            }
         } catch (RuntimeException e) {
             LOGGER.error("Job execution failed.", e);
         }
     }
+
+    private void recordExecution(ApplicationContext applicationContext, JobExecutionContext jobExecutionContext,
+                                 String subject, String jobId, long publishLatency, boolean success) {
+        try {
+            JobExecutionHistoryService historyService = applicationContext.getBean(JobExecutionHistoryService.class);
+            historyService.recordExecution(subject, jobId, jobExecutionContext.getScheduledFireTime(),
+                    jobExecutionContext.getFireTime(), publishLatency, success);
+        } catch (BeansException e) {
+            LOGGER.debug("Execution history is not available, the execution of job {} will not be recorded", jobId, e);
+        }
+    }
 }
@@ -0,0 +1,42 @@
+package org.motechproject.scheduler.service;
+
+import org.joda.time.DateTime;
+import org.motechproject.scheduler.contract.JobId;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service for forecasting the times at which scheduled jobs will fire. The fire times are computed incrementally,
+ * without replaying every fire of the trigger, and are cached for every version of the trigger, so repeated
+ * queries, for example when building calendars for many patients, do not hit the job store.
+ */
+public interface MotechSchedulerForecastService {
+
+    /**
+     * Returns the times at which the job with the given ID will fire between the given dates (both inclusive).
+     *
+     * @param jobId  the ID of the job, not null
+     * @param startDate  the beginning of the range, not null
+     * @param endDate  the end of the range, not null
+     * @return the list of fire times, empty if the job does not exist
+     */
+    List<DateTime> getFireTimes(JobId jobId, DateTime startDate, DateTime endDate);
+
+    /**
+     * Returns the times at which the jobs with the given IDs will fire between the given dates (both inclusive).
+     *
+     * @param jobIds  the IDs of the jobs, not null
+     * @param startDate  the beginning of the range, not null
+     * @param endDate  the end of the range, not null
+     * @return the map of job ID values (as returned by {@link JobId#value()}) to their fire times, jobs that
+     * do not exist are mapped to empty lists
+     */
+    Map<String, List<DateTime>> getFireTimes(Collection<? extends JobId> jobIds, DateTime startDate, DateTime endDate);
+
+    /**
+     * Removes all cached forecasts.
+     */
+    void clearCache();
+}
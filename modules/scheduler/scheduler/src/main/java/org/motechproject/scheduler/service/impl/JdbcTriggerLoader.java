@@ -0,0 +1,289 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.motechproject.commons.sql.util.Drivers;
+import org.motechproject.scheduler.trigger.PeriodIntervalTriggerPersistenceDelegate;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.ScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.TriggerKey;
+import org.quartz.impl.jdbcjobstore.CalendarIntervalTriggerPersistenceDelegate;
+import org.quartz.impl.jdbcjobstore.SimplePropertiesTriggerProperties;
+import org.quartz.impl.jdbcjobstore.TriggerPersistenceDelegate.TriggerPropertyBundle;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.utils.DBConnectionManager;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TimeZone;
+
+import static org.quartz.JobKey.jobKey;
+import static org.quartz.SimpleScheduleBuilder.simpleSchedule;
+
+/**
+ * Loads triggers of many jobs from the JDBC job store with a single query for every chunk of keys, instead of one
+ * query for every job made by {@link org.quartz.Scheduler#getTrigger(TriggerKey)}. Triggers are rebuilt from their
+ * rows the same way the Quartz trigger persistence delegates rebuild them. Triggers of types which cannot be rebuilt
+ * from their rows, such as triggers stored as blobs, are returned without the trigger itself, only with the name of
+ * the scheduler owning them.
+ */
+class JdbcTriggerLoader {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private static final String DATA_SOURCE = "org.quartz.jobStore.dataSource";
+    private static final String TABLE_PREFIX = "org.quartz.jobStore.tablePrefix";
+    private static final String DRIVER = "org.quartz.dataSource.motechDS.driver";
+
+    private static final String TYPE_CRON = "CRON";
+    private static final String TYPE_SIMPLE = "SIMPLE";
+
+    private final Properties sqlProperties;
+    private final Map<String, BundleFactory> simplePropertiesTypes = new HashMap<>();
+
+    JdbcTriggerLoader(Properties sqlProperties) {
+        this.sqlProperties = sqlProperties;
+
+        BundleFactory calendarInterval = new CalendarIntervalBundleFactory();
+        BundleFactory periodInterval = new PeriodIntervalBundleFactory();
+        simplePropertiesTypes.put(calendarInterval.getType(), calendarInterval);
+        simplePropertiesTypes.put(periodInterval.getType(), periodInterval);
+    }
+
+    /**
+     * Loads the triggers with the given keys, owned by the schedulers with the given names.
+     *
+     * @param keys  the keys of the triggers, all from the same group
+     * @param schedulerNames  the names of the schedulers, as stored in the job store
+     * @return the loaded triggers, triggers which do not exist are not present in the map
+     * @throws SQLException if the triggers could not be loaded
+     */
+    Map<TriggerKey, LoadedTrigger> load(Collection<TriggerKey> keys, Collection<String> schedulerNames)
+            throws SQLException {
+        Map<TriggerKey, LoadedTrigger> triggers = new HashMap<>();
+        List<TriggerKey> keyList = new ArrayList<>(keys);
+
+        try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE))) {
+            for (int from = 0; from < keyList.size(); from += CHUNK_SIZE) {
+                List<TriggerKey> chunk = keyList.subList(from, Math.min(from + CHUNK_SIZE, keyList.size()));
+                loadChunk(conn, chunk, schedulerNames, triggers);
+            }
+        }
+
+        return triggers;
+    }
+
+    private void loadChunk(Connection conn, List<TriggerKey> chunk, Collection<String> schedulerNames,
+                           Map<TriggerKey, LoadedTrigger> triggers) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(buildQuery(chunk.size(), schedulerNames.size()))) {
+            int idx = 1;
+            stmt.setString(idx++, chunk.get(0).getGroup());
+            for (String schedulerName : schedulerNames) {
+                stmt.setString(idx++, schedulerName);
+            }
+            for (TriggerKey key : chunk) {
+                stmt.setString(idx++, key.getName());
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    TriggerKey key = TriggerKey.triggerKey(rs.getString("TRIGGER_NAME"), rs.getString("TRIGGER_GROUP"));
+                    triggers.put(key, new LoadedTrigger(rs.getString("SCHED_NAME"), buildTrigger(rs, key)));
+                }
+            }
+        }
+    }
+
+    private OperableTrigger buildTrigger(ResultSet rs, TriggerKey key) throws SQLException {
+        String type = rs.getString("TRIGGER_TYPE");
+        TriggerPropertyBundle bundle;
+
+        if (TYPE_CRON.equals(type)) {
+            bundle = cronBundle(rs);
+        } else if (TYPE_SIMPLE.equals(type)) {
+            ScheduleBuilder<?> scheduleBuilder = simpleSchedule()
+                    .withRepeatCount(rs.getInt("REPEAT_COUNT"))
+                    .withIntervalInMilliseconds(rs.getLong("REPEAT_INTERVAL"));
+            bundle = new TriggerPropertyBundle(scheduleBuilder, new String[]{"timesTriggered"},
+                    new Object[]{rs.getInt("TIMES_TRIGGERED")});
+        } else if (simplePropertiesTypes.containsKey(type)) {
+            bundle = simplePropertiesTypes.get(type).getBundle(simpleProperties(rs));
+        } else {
+            bundle = null;
+        }
+
+        if (bundle == null) {
+            return null;
+        }
+
+        OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger()
+                .withIdentity(key)
+                .forJob(jobKey(rs.getString("JOB_NAME"), rs.getString("JOB_GROUP")))
+                .withPriority(rs.getInt("PRIORITY"))
+                .modifiedByCalendar(rs.getString("CALENDAR_NAME"))
+                .startAt(new Date(rs.getLong("START_TIME")))
+                .endAt(toDate(rs.getLong("END_TIME")))
+                .withSchedule(bundle.getScheduleBuilder())
+                .build();
+
+        trigger.setMisfireInstruction(rs.getInt("MISFIRE_INSTR"));
+        trigger.setNextFireTime(toDate(rs.getLong("NEXT_FIRE_TIME")));
+        trigger.setPreviousFireTime(toDate(rs.getLong("PREV_FIRE_TIME")));
+
+        BeanWrapper wrapper = new BeanWrapperImpl(trigger);
+        for (int i = 0; i < bundle.getStatePropertyNames().length; i++) {
+            wrapper.setPropertyValue(bundle.getStatePropertyNames()[i], bundle.getStatePropertyValues()[i]);
+        }
+
+        return trigger;
+    }
+
+    private TriggerPropertyBundle cronBundle(ResultSet rs) throws SQLException {
+        String cronExpression = rs.getString("CRON_EXPRESSION");
+        String timeZoneId = rs.getString("TIME_ZONE_ID");
+
+        try {
+            CronScheduleBuilder scheduleBuilder = CronScheduleBuilder.cronScheduleNonvalidatedExpression(cronExpression);
+            if (timeZoneId != null) {
+                scheduleBuilder = scheduleBuilder.inTimeZone(TimeZone.getTimeZone(timeZoneId));
+            }
+            return new TriggerPropertyBundle(scheduleBuilder, null, null);
+        } catch (ParseException e) {
+            // left to the scheduler, which reports the invalid expression
+            return null;
+        }
+    }
+
+    private SimplePropertiesTriggerProperties simpleProperties(ResultSet rs) throws SQLException {
+        SimplePropertiesTriggerProperties properties = new SimplePropertiesTriggerProperties();
+
+        properties.setString1(rs.getString("STR_PROP_1"));
+        properties.setString2(rs.getString("STR_PROP_2"));
+        properties.setString3(rs.getString("STR_PROP_3"));
+        properties.setInt1(rs.getInt("INT_PROP_1"));
+        properties.setInt2(rs.getInt("INT_PROP_2"));
+        properties.setLong1(rs.getLong("LONG_PROP_1"));
+        properties.setLong2(rs.getLong("LONG_PROP_2"));
+        properties.setDecimal1(rs.getBigDecimal("DEC_PROP_1"));
+        properties.setDecimal2(rs.getBigDecimal("DEC_PROP_2"));
+        properties.setBoolean1(rs.getBoolean("BOOL_PROP_1"));
+        properties.setBoolean2(rs.getBoolean("BOOL_PROP_2"));
+
+        return properties;
+    }
+
+    private String buildQuery(int keyCount, int schedulerCount) {
+        String triggers = table("TRIGGERS");
+
+        return new StringBuilder("SELECT T.SCHED_NAME, T.TRIGGER_NAME, T.TRIGGER_GROUP, T.JOB_NAME, T.JOB_GROUP, ")
+                .append("T.TRIGGER_TYPE, T.START_TIME, T.END_TIME, T.NEXT_FIRE_TIME, T.PREV_FIRE_TIME, T.PRIORITY, ")
+                .append("T.MISFIRE_INSTR, T.CALENDAR_NAME, C.CRON_EXPRESSION, C.TIME_ZONE_ID, S.REPEAT_COUNT, ")
+                .append("S.REPEAT_INTERVAL, S.TIMES_TRIGGERED, P.STR_PROP_1, P.STR_PROP_2, P.STR_PROP_3, ")
+                .append("P.INT_PROP_1, P.INT_PROP_2, P.LONG_PROP_1, P.LONG_PROP_2, P.DEC_PROP_1, P.DEC_PROP_2, ")
+                .append("P.BOOL_PROP_1, P.BOOL_PROP_2 FROM ").append(triggers).append(" T")
+                .append(join("CRON_TRIGGERS", "C"))
+                .append(join("SIMPLE_TRIGGERS", "S"))
+                .append(join("SIMPROP_TRIGGERS", "P"))
+                .append(" WHERE T.TRIGGER_GROUP = ?")
+                .append(" AND T.SCHED_NAME IN (").append(placeholders(schedulerCount)).append(')')
+                .append(" AND T.TRIGGER_NAME IN (").append(placeholders(keyCount)).append(')')
+                .toString();
+    }
+
+    private String join(String table, String alias) {
+        return String.format(" LEFT JOIN %s %s ON %2$s.SCHED_NAME = T.SCHED_NAME AND %2$s.TRIGGER_NAME = T.TRIGGER_NAME" +
+                " AND %2$s.TRIGGER_GROUP = T.TRIGGER_GROUP", table(table), alias);
+    }
+
+    private String table(String name) {
+        String table = sqlProperties.getProperty(TABLE_PREFIX) + name;
+        return Drivers.MYSQL_DRIVER.equals(sqlProperties.getProperty(DRIVER)) ? table : "\"" + table.toLowerCase() + "\"";
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    private static Date toDate(long time) {
+        return time > 0 ? new Date(time) : null;
+    }
+
+    /**
+     * A trigger loaded from the job store, together with the name of the scheduler owning it.
+     */
+    static final class LoadedTrigger {
+
+        private final String schedulerName;
+        private final Trigger trigger;
+
+        LoadedTrigger(String schedulerName, Trigger trigger) {
+            this.schedulerName = schedulerName;
+            this.trigger = trigger;
+        }
+
+        String getSchedulerName() {
+            return schedulerName;
+        }
+
+        /**
+         * @return the trigger, null if it could not be rebuilt from its row
+         */
+        Trigger getTrigger() {
+            return trigger;
+        }
+    }
+
+    /**
+     * Rebuilds schedules of the trigger types stored as simple properties, using their persistence delegates.
+     */
+    private interface BundleFactory {
+
+        String getType();
+
+        TriggerPropertyBundle getBundle(SimplePropertiesTriggerProperties properties);
+    }
+
+    private static final class CalendarIntervalBundleFactory extends CalendarIntervalTriggerPersistenceDelegate
+            implements BundleFactory {
+
+        @Override
+        public String getType() {
+            return getHandledTriggerTypeDiscriminator();
+        }
+
+        @Override
+        public TriggerPropertyBundle getBundle(SimplePropertiesTriggerProperties properties) {
+            return getTriggerPropertyBundle(properties);
+        }
+    }
+
+    private static final class PeriodIntervalBundleFactory extends PeriodIntervalTriggerPersistenceDelegate
+            implements BundleFactory {
+
+        @Override
+        public String getType() {
+            return getHandledTriggerTypeDiscriminator();
+        }
+
+        @Override
+        public TriggerPropertyBundle getBundle(SimplePropertiesTriggerProperties properties) {
+            return getTriggerPropertyBundle(properties);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.motechproject.scheduler.contract.JobExecutionRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Appends job execution records to a file, one CSV line per record. Once the file grows over the size limit it is
+ * rolled over: <code>history.csv</code> becomes <code>history.csv.1</code>, <code>history.csv.1</code> becomes
+ * <code>history.csv.2</code> and so on, up to the configured number of files. Records are written by a background
+ * thread, so the scheduler threads never wait for the disk. If the queue is full, records are dropped.
+ */
+class JobExecutionHistoryFileWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobExecutionHistoryFileWriter.class);
+
+    private static final String HEADER = "subject,jobId,scheduledFireTime,fireTime,fireLag,publishLatency,misfire,success";
+    private static final int QUEUE_CAPACITY = 10000;
+
+    private final File file;
+    private final long maxSize;
+    private final int maxFiles;
+    private final BlockingQueue<JobExecutionRecord> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+
+    private Thread thread;
+    private Writer writer;
+    private long size;
+
+    JobExecutionHistoryFileWriter(File file, long maxSize, int maxFiles) {
+        this.file = file;
+        this.maxSize = maxSize;
+        this.maxFiles = maxFiles;
+    }
+
+    void start() {
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeRecords();
+            }
+        }, "motech-scheduler-history-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    void write(JobExecutionRecord record) {
+        if (!queue.offer(record)) {
+            LOGGER.warn("The execution history queue is full, dropping the record for job {}", record.getJobId());
+        }
+    }
+
+    private void writeRecords() {
+        List<JobExecutionRecord> batch = new ArrayList<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                writeBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            queue.drainTo(batch);
+            writeBatch(batch);
+            close();
+        }
+    }
+
+    private void writeBatch(List<JobExecutionRecord> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            for (JobExecutionRecord record : batch) {
+                if (writer == null || size >= maxSize) {
+                    roll();
+                }
+                String line = toLine(record);
+                writer.write(line);
+                size += line.length();
+            }
+            writer.flush();
+        } catch (IOException e) {
+            LOGGER.error("Unable to write the execution history to {}", file, e);
+            close();
+        }
+    }
+
+    private void roll() throws IOException {
+        close();
+
+        if (file.exists() && file.length() >= maxSize) {
+            for (int i = maxFiles - 1; i > 0; i--) {
+                File source = i == 1 ? file : new File(file.getPath() + "." + (i - 1));
+                File target = new File(file.getPath() + "." + i);
+                if (source.exists() && (!target.exists() || target.delete()) && !source.renameTo(target)) {
+                    LOGGER.warn("Unable to roll over {} to {}", source, target);
+                }
+            }
+            if (file.exists() && !file.delete()) {
+                LOGGER.warn("Unable to remove {}", file);
+            }
+        }
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent.getAbsolutePath());
+        }
+
+        boolean newFile = !file.exists();
+        size = file.length();
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        if (newFile) {
+            writer.write(HEADER);
+            writer.write('\n');
+        }
+    }
+
+    private void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to close {}", file, e);
+            }
+            writer = null;
+        }
+    }
+
+    private String toLine(JobExecutionRecord record) {
+        return new StringBuilder()
+                .append(escape(record.getSubject())).append(',')
+                .append(escape(record.getJobId())).append(',')
+                .append(time(record)).append(',')
+                .append(record.getFireTime() == null ? "" : record.getFireTime().getTime()).append(',')
+                .append(record.getFireLag()).append(',')
+                .append(record.getPublishLatency()).append(',')
+                .append(record.isMisfire()).append(',')
+                .append(record.isSuccess()).append('\n')
+                .toString();
+    }
+
+    private String time(JobExecutionRecord record) {
+        return record.getScheduledFireTime() == null ? "" : String.valueOf(record.getScheduledFireTime().getTime());
+    }
+
+    private String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.contains(",") || value.contains("\"")
+                ? '"' + value.replace("\"", "\"\"") + '"'
+                : value;
+    }
+}
@@ -0,0 +1,373 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.config.SettingsFacade;
+import org.motechproject.scheduler.contract.JobExecutionRecord;
+import org.motechproject.scheduler.contract.JobExecutionStats;
+import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
+import org.motechproject.scheduler.service.JobExecutionHistoryMXBean;
+import org.motechproject.scheduler.service.JobExecutionHistoryService;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.listeners.TriggerListenerSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default implementation of the {@link JobExecutionHistoryService}. Aggregates are updated on every record and cover
+ * the whole uptime, while the individual records are kept in a fixed-size ring buffer, so the memory used by the
+ * history does not grow with the number of fires. Misfires are collected by a trigger listener registered in the
+ * schedulers. The aggregates are also exposed through JMX.
+ */
+@Service("jobExecutionHistoryService")
+public class JobExecutionHistoryServiceImpl implements JobExecutionHistoryService, JobExecutionHistoryMXBean {
+
+    public static final String HISTORY_ENABLED = "scheduler.history.enabled";
+    public static final String HISTORY_CAPACITY = "scheduler.history.capacity";
+    public static final String HISTORY_FILE = "scheduler.history.file";
+    public static final String HISTORY_FILE_MAX_SIZE = "scheduler.history.file.maxSizeInKb";
+    public static final String HISTORY_FILE_MAX_FILES = "scheduler.history.file.maxFiles";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobExecutionHistoryServiceImpl.class);
+
+    private static final String OBJECT_NAME = "org.motechproject.scheduler:type=JobExecutionHistory";
+    private static final String LISTENER_NAME = "motechExecutionHistoryListener";
+    private static final int DEFAULT_CAPACITY = 10000;
+    private static final int DEFAULT_MAX_SIZE_IN_KB = 10240;
+    private static final int DEFAULT_MAX_FILES = 5;
+    private static final int KB = 1024;
+    private static final double PERCENTILE_95 = 0.95;
+
+    private final boolean enabled;
+    private final JobExecutionRecord[] buffer;
+    private int next;
+    private boolean full;
+
+    private final Map<String, SubjectStats> stats = new ConcurrentHashMap<>();
+    private final Map<String, String> subjectsByJobId = new ConcurrentHashMap<>();
+    private final AtomicLong totalExecutions = new AtomicLong();
+    private final AtomicLong totalMisfires = new AtomicLong();
+    private final AtomicLong maxFireLag = new AtomicLong();
+
+    private MotechSchedulerFactoryBean motechSchedulerFactoryBean;
+    private JobExecutionHistoryFileWriter fileWriter;
+    private ObjectName objectName;
+
+    @Autowired
+    public JobExecutionHistoryServiceImpl(MotechSchedulerFactoryBean motechSchedulerFactoryBean,
+                                          SettingsFacade schedulerSettings) {
+        this.motechSchedulerFactoryBean = motechSchedulerFactoryBean;
+
+        String enabledProperty = schedulerSettings.getProperty(HISTORY_ENABLED);
+        this.enabled = StringUtils.isBlank(enabledProperty) || Boolean.parseBoolean(enabledProperty.trim());
+        this.buffer = new JobExecutionRecord[getInt(schedulerSettings.getProperty(HISTORY_CAPACITY), DEFAULT_CAPACITY)];
+
+        String file = schedulerSettings.getProperty(HISTORY_FILE);
+        if (enabled && StringUtils.isNotBlank(file)) {
+            long maxSize = (long) getInt(schedulerSettings.getProperty(HISTORY_FILE_MAX_SIZE), DEFAULT_MAX_SIZE_IN_KB) * KB;
+            int maxFiles = getInt(schedulerSettings.getProperty(HISTORY_FILE_MAX_FILES), DEFAULT_MAX_FILES);
+            fileWriter = new JobExecutionHistoryFileWriter(new File(file.trim()), maxSize, maxFiles);
+        }
+    }
+
+    /**
+     * Registers the misfire listener and the MBean, and starts writing history files, if configured.
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+
+        for (Scheduler scheduler : motechSchedulerFactoryBean.getQuartzSchedulers()) {
+            registerMisfireListener(scheduler);
+        }
+        if (motechSchedulerFactoryBean.getVolatileQuartzScheduler() != null) {
+            registerMisfireListener(motechSchedulerFactoryBean.getVolatileQuartzScheduler());
+        }
+
+        if (fileWriter != null) {
+            fileWriter.start();
+        }
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Unable to register the execution history MBean", e);
+            objectName = null;
+        }
+    }
+
+    /**
+     * Stops writing history files and unregisters the MBean.
+     */
+    @PreDestroy
+    public void destroy() {
+        if (fileWriter != null) {
+            fileWriter.stop();
+        }
+
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                LOGGER.warn("Unable to unregister the execution history MBean", e);
+            }
+        }
+    }
+
+    @Override
+    public void recordExecution(String subject, String jobId, Date scheduledFireTime, Date fireTime,
+                                long publishLatency, boolean success) {
+        if (!enabled) {
+            return;
+        }
+
+        if (jobId != null && subject != null) {
+            subjectsByJobId.put(jobId, subject);
+        }
+
+        JobExecutionRecord record = new JobExecutionRecord(subject, jobId, scheduledFireTime, fireTime,
+                publishLatency, false, success);
+        record(record);
+
+        totalExecutions.incrementAndGet();
+        long lag = record.getFireLag();
+        long currentMax = maxFireLag.get();
+        while (lag > currentMax && !maxFireLag.compareAndSet(currentMax, lag)) {
+            currentMax = maxFireLag.get();
+        }
+    }
+
+    @Override
+    public void recordMisfire(String jobId, Date scheduledFireTime) {
+        if (!enabled) {
+            return;
+        }
+
+        // the subject is not known at this point without loading the job, so it is taken from the previous fires
+        String subject = subjectsByJobId.get(jobId);
+        record(new JobExecutionRecord(subject == null ? jobId : subject, jobId, scheduledFireTime, null, 0,
+                true, false));
+
+        totalMisfires.incrementAndGet();
+    }
+
+    @Override
+    public List<JobExecutionRecord> getRecentExecutions(String subject, int max) {
+        List<JobExecutionRecord> records = new ArrayList<>();
+        for (JobExecutionRecord record : snapshot()) {
+            if (records.size() >= max) {
+                break;
+            }
+            if (subject == null || subject.equals(record.getSubject())) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public List<JobExecutionStats> getStats() {
+        List<JobExecutionRecord> records = snapshot();
+
+        List<JobExecutionStats> result = new ArrayList<>();
+        for (SubjectStats subjectStats : stats.values()) {
+            result.add(subjectStats.toStats(records));
+        }
+        return result;
+    }
+
+    @Override
+    public JobExecutionStats getStats(String subject) {
+        SubjectStats subjectStats = stats.get(subject);
+        return subjectStats == null ? null : subjectStats.toStats(snapshot());
+    }
+
+    @Override
+    public long getTotalExecutions() {
+        return totalExecutions.get();
+    }
+
+    @Override
+    public long getTotalMisfires() {
+        return totalMisfires.get();
+    }
+
+    @Override
+    public long getMaxFireLag() {
+        return maxFireLag.get();
+    }
+
+    @Override
+    public void clear() {
+        synchronized (buffer) {
+            Arrays.fill(buffer, null);
+            next = 0;
+            full = false;
+        }
+        stats.clear();
+        totalExecutions.set(0);
+        totalMisfires.set(0);
+        maxFireLag.set(0);
+    }
+
+    private void record(JobExecutionRecord record) {
+        if (buffer.length > 0) {
+            synchronized (buffer) {
+                buffer[next] = record;
+                next = (next + 1) % buffer.length;
+                if (next == 0) {
+                    full = true;
+                }
+            }
+        }
+
+        String subject = record.getSubject();
+        if (subject != null) {
+            SubjectStats subjectStats = stats.get(subject);
+            if (subjectStats == null) {
+                stats.putIfAbsent(subject, new SubjectStats(subject));
+                subjectStats = stats.get(subject);
+            }
+            subjectStats.add(record);
+        }
+
+        if (fileWriter != null) {
+            fileWriter.write(record);
+        }
+    }
+
+    /**
+     * Returns the records kept in the buffer, newest first.
+     */
+    private List<JobExecutionRecord> snapshot() {
+        synchronized (buffer) {
+            int size = full ? buffer.length : next;
+            List<JobExecutionRecord> records = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) {
+                records.add(buffer[(next - i + buffer.length) % buffer.length]);
+            }
+            return records;
+        }
+    }
+
+    private void registerMisfireListener(Scheduler scheduler) {
+        try {
+            scheduler.getListenerManager().addTriggerListener(new MisfireListener());
+        } catch (SchedulerException e) {
+            LOGGER.error("Unable to register the misfire listener, misfires will not be recorded", e);
+        }
+    }
+
+    private static int getInt(String value, int defaultValue) {
+        return StringUtils.isBlank(value) ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * Aggregates for a single subject, updated with every record.
+     */
+    private static class SubjectStats {
+
+        private final String subject;
+        private long executions;
+        private long misfires;
+        private long failures;
+        private long totalFireLag;
+        private long maxFireLag;
+        private long totalPublishLatency;
+        private long maxPublishLatency;
+        private Date lastFireTime;
+
+        SubjectStats(String subject) {
+            this.subject = subject;
+        }
+
+        synchronized void add(JobExecutionRecord record) {
+            if (record.isMisfire()) {
+                misfires++;
+                return;
+            }
+
+            executions++;
+            if (!record.isSuccess()) {
+                failures++;
+            }
+            totalFireLag += record.getFireLag();
+            maxFireLag = Math.max(maxFireLag, record.getFireLag());
+            totalPublishLatency += record.getPublishLatency();
+            maxPublishLatency = Math.max(maxPublishLatency, record.getPublishLatency());
+            lastFireTime = record.getFireTime();
+        }
+
+        synchronized JobExecutionStats toStats(List<JobExecutionRecord> records) {
+            JobExecutionStats result = new JobExecutionStats(subject);
+            result.setExecutions(executions);
+            result.setMisfires(misfires);
+            result.setFailures(failures);
+            result.setAverageFireLag(executions == 0 ? 0 : totalFireLag / executions);
+            result.setMaxFireLag(maxFireLag);
+            result.setAveragePublishLatency(executions == 0 ? 0 : totalPublishLatency / executions);
+            result.setMaxPublishLatency(maxPublishLatency);
+            result.setLastFireTime(lastFireTime);
+            result.setFireLagPercentile95(percentile95(records));
+            return result;
+        }
+
+        private long percentile95(List<JobExecutionRecord> records) {
+            List<Long> lags = new ArrayList<>();
+            for (JobExecutionRecord record : records) {
+                if (!record.isMisfire() && subject.equals(record.getSubject())) {
+                    lags.add(record.getFireLag());
+                }
+            }
+
+            if (lags.isEmpty()) {
+                return 0;
+            }
+
+            Collections.sort(lags);
+            int index = (int) Math.ceil(PERCENTILE_95 * lags.size()) - 1;
+            return lags.get(Math.max(index, 0));
+        }
+    }
+
+    /**
+     * Records misfires of all triggers.
+     */
+    private class MisfireListener extends TriggerListenerSupport {
+
+        @Override
+        public String getName() {
+            return LISTENER_NAME;
+        }
+
+        @Override
+        public void triggerMisfired(Trigger trigger) {
+            recordMisfire(trigger.getKey().getName(), trigger.getNextFireTime());
+        }
+    }
+}
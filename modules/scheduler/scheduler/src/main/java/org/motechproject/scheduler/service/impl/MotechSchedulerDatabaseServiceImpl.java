@@ -1,5 +1,6 @@
 package org.motechproject.scheduler.service.impl;
 
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
@@ -34,7 +35,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import javax.annotation.PostConstruct;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -44,6 +44,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -76,22 +78,16 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
     private static final String TRIGGERS = "TRIGGERS";
     private static final String JOB_DETAILS = "JOB_DETAILS";
     private static final String JOB_DATA = "JOB_DATA";
+    private static final String SCHED_NAME = "SCHED_NAME";
     private static final String OR = " OR ";
     private static final String AND = " AND ";
 
     @Autowired
     private Properties sqlProperties;
 
-    private Scheduler scheduler;
-
     @Autowired
     private MotechSchedulerFactoryBean motechSchedulerFactoryBean;
 
-    @PostConstruct
-    public void init() {
-        scheduler = motechSchedulerFactoryBean.getQuartzScheduler();
-    }
-
     @Override
     public int countJobs(JobsSearchSettings jobsSearchSettings) throws MotechSchedulerJobRetrievalException {
         String query = buildJobsCountSqlQuery(jobsSearchSettings);
@@ -99,15 +95,15 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         try {
             rowCount = executeCountQuery(query);
             LOGGER.debug("Executing {}", query);
-            return rowCount;
-        } catch (SQLException e) {
+            return rowCount + getVolatileJobKeys(jobsSearchSettings).size();
+        } catch (SQLException | SchedulerException e) {
             throw new MotechSchedulerJobRetrievalException("Jobs counting failed.", e);
         }
     }
 
     private String getQuery(JobsSearchSettings jobsSearchSettings){
         String query;
-        if (isBlank(jobsSearchSettings.getName()) &&  isBlank(jobsSearchSettings.getActivity()) && isBlank(jobsSearchSettings.getStatus()) && isBlank(jobsSearchSettings.getTimeFrom()) && isBlank(jobsSearchSettings.getTimeTo())) { //NO CHECKSTYLE BooleanExpressionComplexity
+        if (!isFiltered(jobsSearchSettings)) {
             query = buildJobsAllSqlQuery();
         } else if (isBlank(jobsSearchSettings.getActivity()) || isBlank(jobsSearchSettings.getStatus())) {
             query = null;
@@ -116,7 +112,16 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         }
         return query;
     }
-    
+
+    private boolean isFiltered(JobsSearchSettings jobsSearchSettings) {
+        return !(isBlank(jobsSearchSettings.getName()) &&  isBlank(jobsSearchSettings.getActivity()) && isBlank(jobsSearchSettings.getStatus()) && isBlank(jobsSearchSettings.getTimeFrom()) && isBlank(jobsSearchSettings.getTimeTo())); //NO CHECKSTYLE BooleanExpressionComplexity
+    }
+
+    /**
+     * Returns the jobs matching the given settings. The jobs of the database backed schedulers are retrieved using
+     * SQL, the jobs of the in-memory scheduler for volatile jobs are matched against the same filters and listed
+     * after them, sorted separately.
+     */
     @Override
     public List<JobBasicInfo> getScheduledJobsBasicInfo(JobsSearchSettings jobsSearchSettings) throws MotechSchedulerJobRetrievalException {
         List<JobBasicInfo> jobBasicInfos = new LinkedList<>();
@@ -131,6 +136,7 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         columnNames.add(TRIGGER_NAME);
         columnNames.add(TRIGGER_GROUP);
         columnNames.add(JOB_DATA);
+        columnNames.add(SCHED_NAME);
         List<List<Object>> objects;
 
         try {
@@ -138,35 +144,13 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
 
             for (List<Object> row : objects) {
                 JobKey jobKey = new JobKey(row.get(0).toString(), row.get(1).toString());
-                Trigger trigger = scheduler.getTriggersOfJob(jobKey).get(0);
-                String jobName = jobKey.getName();
-                String jobGroup = jobKey.getGroup();
-                String jobType = getJobType(jobKey);
-                String activity = getJobActivity(trigger);
-                String info = getJobInfo(trigger, jobType);
-                String status = getJobStatus(trigger.getKey());
-                String startDate = getStartDate(trigger);
-                String nextFireDate = "";
-                if (trigger.getNextFireTime() != null) {
-                    nextFireDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(trigger.getNextFireTime().getTime());
-                }
-                String endDate = getEndDate(trigger, jobType);
-                boolean uiDefined = getUiDefined((byte[]) row.get(2));
-
-                jobBasicInfos.add(new JobBasicInfo(
-                        activity,
-                        status,
-                        jobName,
-                        jobGroup,
-                        startDate,
-                        nextFireDate,
-                        endDate,
-                        jobType,
-                        info,
-                        uiDefined
-                ));
+                // with partitioning enabled, the job can belong to any of the partition schedulers
+                Scheduler owner = motechSchedulerFactoryBean.getQuartzSchedulerByName(row.get(3).toString());
+                jobBasicInfos.add(getJobBasicInfo(owner, jobKey, getUiDefined((byte[]) row.get(2))));
             }
 
+            addVolatileJobsBasicInfo(jobBasicInfos, jobsSearchSettings);
+
             return jobBasicInfos;
         } catch (SQLException | SchedulerException | ClassNotFoundException | IOException e) {
             throw new MotechSchedulerJobRetrievalException("Retrieval of scheduled jobs failed.", e);
@@ -179,28 +163,30 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         List<EventInfo> eventInfos = new ArrayList<>();
 
         try {
-            for (String groupName : scheduler.getJobGroupNames()) {
-                for (JobKey jobKey : scheduler.getJobKeys(GroupMatcher.jobGroupEquals(groupName))) {
-                    if (jobKey.getName().equals(jobBasicInfo.getName())) {
-                        EventInfo eventInfo = new EventInfo();
-                        String subject;
-
-                        Map<String, Object> parameters = scheduler.getJobDetail(jobKey).getJobDataMap().getWrappedMap();
-                        Map<String, Object> metadata = (HashMap) parameters.get(SchedulerConstants.EVENT_METADATA);
-                        parameters.remove(SchedulerConstants.EVENT_METADATA);
-                        parameters.putAll(metadata);
-
-                        eventInfo.setParameters(parameters);
-
-                        if (eventInfo.getParameters().containsKey(SchedulerConstants.EVENT_TYPE_KEY_NAME)) {
-                            subject = eventInfo.getParameters().get(SchedulerConstants.EVENT_TYPE_KEY_NAME).toString();
-                            eventInfo.getParameters().remove(SchedulerConstants.EVENT_TYPE_KEY_NAME);
-                        } else {
-                            subject = jobKey.getName().substring(0, jobKey.getName().indexOf('-'));
+            for (Scheduler partitionScheduler : getAllSchedulers()) {
+                for (String groupName : partitionScheduler.getJobGroupNames()) {
+                    for (JobKey jobKey : partitionScheduler.getJobKeys(GroupMatcher.jobGroupEquals(groupName))) {
+                        if (jobKey.getName().equals(jobBasicInfo.getName())) {
+                            EventInfo eventInfo = new EventInfo();
+                            String subject;
+
+                            Map<String, Object> parameters = partitionScheduler.getJobDetail(jobKey).getJobDataMap().getWrappedMap();
+                            Map<String, Object> metadata = (HashMap) parameters.get(SchedulerConstants.EVENT_METADATA);
+                            parameters.remove(SchedulerConstants.EVENT_METADATA);
+                            parameters.putAll(metadata);
+
+                            eventInfo.setParameters(parameters);
+
+                            if (eventInfo.getParameters().containsKey(SchedulerConstants.EVENT_TYPE_KEY_NAME)) {
+                                subject = eventInfo.getParameters().get(SchedulerConstants.EVENT_TYPE_KEY_NAME).toString();
+                                eventInfo.getParameters().remove(SchedulerConstants.EVENT_TYPE_KEY_NAME);
+                            } else {
+                                subject = jobKey.getName().substring(0, jobKey.getName().indexOf('-'));
+                            }
+
+                            eventInfo.setSubject(subject);
+                            eventInfos.add(eventInfo);
                         }
-
-                        eventInfo.setSubject(subject);
-                        eventInfos.add(eventInfo);
                     }
                 }
             }
@@ -212,6 +198,206 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         }
     }
 
+    private JobBasicInfo getJobBasicInfo(Scheduler owner, JobKey jobKey, boolean uiDefined) throws SchedulerException {
+        Trigger trigger = owner.getTriggersOfJob(jobKey).get(0);
+        String jobType = getJobType(jobKey);
+        String nextFireDate = "";
+        if (trigger.getNextFireTime() != null) {
+            nextFireDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(trigger.getNextFireTime().getTime());
+        }
+
+        return new JobBasicInfo(
+                getJobActivity(trigger),
+                getJobStatus(owner, trigger.getKey()),
+                jobKey.getName(),
+                jobKey.getGroup(),
+                getStartDate(trigger),
+                nextFireDate,
+                getEndDate(trigger, jobType),
+                jobType,
+                getJobInfo(trigger, jobType),
+                uiDefined
+        );
+    }
+
+    private List<Scheduler> getAllSchedulers() {
+        List<Scheduler> schedulers = new ArrayList<>(motechSchedulerFactoryBean.getQuartzSchedulers());
+        Scheduler volatileScheduler = motechSchedulerFactoryBean.getVolatileQuartzScheduler();
+        if (volatileScheduler != null) {
+            schedulers.add(volatileScheduler);
+        }
+        return schedulers;
+    }
+
+    /**
+     * Appends the volatile jobs belonging to the requested page. They follow the jobs stored in the database, so
+     * a page is filled with them only once there are no more jobs in the database.
+     */
+    private void addVolatileJobsBasicInfo(List<JobBasicInfo> jobBasicInfos, JobsSearchSettings jobsSearchSettings)
+            throws SchedulerException, SQLException {
+        List<JobKey> jobKeys = getVolatileJobKeys(jobsSearchSettings);
+        if (jobKeys.isEmpty()) {
+            return;
+        }
+
+        int from = 0;
+        int to = jobKeys.size();
+        // the query listing all jobs is not paged
+        if (isPaged(jobsSearchSettings) && isFiltered(jobsSearchSettings)) {
+            int rows = jobsSearchSettings.getRows();
+            if (jobBasicInfos.size() >= rows) {
+                return;
+            }
+
+            if (jobBasicInfos.isEmpty()) {
+                int offset = getOffset(jobsSearchSettings);
+                from = Math.min(Math.max(offset - executeCountQuery(buildJobsCountSqlQuery(jobsSearchSettings)), 0), to);
+            }
+            to = Math.min(from + rows - jobBasicInfos.size(), to);
+        }
+
+        Scheduler volatileScheduler = motechSchedulerFactoryBean.getVolatileQuartzScheduler();
+        for (JobKey jobKey : jobKeys.subList(from, to)) {
+            boolean uiDefined = isUiDefined(volatileScheduler.getJobDetail(jobKey).getJobDataMap());
+            jobBasicInfos.add(getJobBasicInfo(volatileScheduler, jobKey, uiDefined));
+        }
+    }
+
+    /**
+     * Returns the keys of the jobs of the volatile scheduler matching the given settings, using the same filters
+     * and ordering as the queries for the jobs stored in the database.
+     */
+    private List<JobKey> getVolatileJobKeys(final JobsSearchSettings jobsSearchSettings) throws SchedulerException {
+        final Scheduler volatileScheduler = motechSchedulerFactoryBean.getVolatileQuartzScheduler();
+        List<JobKey> jobKeys = new ArrayList<>();
+        if (volatileScheduler == null || getQuery(jobsSearchSettings) == null) {
+            return jobKeys;
+        }
+
+        final Map<JobKey, Trigger> triggers = new HashMap<>();
+        for (JobKey jobKey : volatileScheduler.getJobKeys(GroupMatcher.anyJobGroup())) {
+            List<? extends Trigger> jobTriggers = volatileScheduler.getTriggersOfJob(jobKey);
+            if (!jobTriggers.isEmpty() && matches(volatileScheduler, jobTriggers.get(0), jobsSearchSettings)) {
+                jobKeys.add(jobKey);
+                triggers.put(jobKey, jobTriggers.get(0));
+            }
+        }
+
+        if (isNotBlank(jobsSearchSettings.getSortColumn()) && isNotBlank(jobsSearchSettings.getSortDirection())) {
+            final String sortColumn = getSortColumn(jobsSearchSettings.getSortColumn());
+            final boolean descending = "desc".equalsIgnoreCase(jobsSearchSettings.getSortDirection());
+
+            Collections.sort(jobKeys, new Comparator<JobKey>() {
+                @Override
+                public int compare(JobKey first, JobKey second) {
+                    int result = ObjectUtils.compare(getSortValue(volatileScheduler, first, triggers.get(first), sortColumn),
+                            getSortValue(volatileScheduler, second, triggers.get(second), sortColumn));
+                    return descending ? -result : result;
+                }
+            });
+        }
+
+        return jobKeys;
+    }
+
+    private boolean matches(Scheduler owner, Trigger trigger, JobsSearchSettings jobsSearchSettings)
+            throws SchedulerException {
+        long now = DateTime.now().getMillis();
+        long startTime = trigger.getStartTime().getTime();
+        long endTime = trigger.getEndTime() == null ? 0 : trigger.getEndTime().getTime();
+
+        if (isNotBlank(jobsSearchSettings.getName()) && !trigger.getKey().getName().contains(jobsSearchSettings.getName())) {
+            return false;
+        }
+        if (isNotBlank(jobsSearchSettings.getTimeFrom()) && startTime < DateTimeFormat.forPattern(DATE_FORMAT_PATTERN)
+                .parseDateTime(jobsSearchSettings.getTimeFrom()).getMillis()) {
+            return false;
+        }
+        if (isNotBlank(jobsSearchSettings.getTimeTo()) && startTime > DateTimeFormat.forPattern(DATE_FORMAT_PATTERN)
+                .parseDateTime(jobsSearchSettings.getTimeTo()).getMillis()) {
+            return false;
+        }
+
+        return matchesActivity(startTime, endTime, now, jobsSearchSettings.getActivity())
+                && matchesStatus(owner.getTriggerState(trigger.getKey()), jobsSearchSettings.getStatus());
+    }
+
+    private boolean matchesActivity(long startTime, long endTime, long now, String activity) {
+        if (activity == null) {
+            return true;
+        }
+
+        String[] activityElements = activity.split(",");
+        if (activityElements.length >= 3) {
+            return true;
+        }
+
+        for (String element : activityElements) {
+            if (JobBasicInfo.ACTIVITY_NOTSTARTED.equals(element)) {
+                if (startTime > now) {
+                    return true;
+                }
+            } else if (JobBasicInfo.ACTIVITY_FINISHED.equals(element)) {
+                if (endTime < now && endTime != 0) {
+                    return true;
+                }
+            } else if (startTime <= now && (endTime >= now || endTime == 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesStatus(Trigger.TriggerState state, String status) {
+        if (status == null) {
+            return true;
+        }
+
+        String[] statusElements = status.split(",");
+        if (statusElements.length >= 4) {
+            return true;
+        }
+
+        for (String element : statusElements) {
+            if (Trigger.TriggerState.ERROR.toString().equals(element)
+                    || Trigger.TriggerState.BLOCKED.toString().equals(element)
+                    || Trigger.TriggerState.PAUSED.toString().equals(element)) {
+                if (state.toString().equals(element)) {
+                    return true;
+                }
+            } else if (state == Trigger.TriggerState.NORMAL || state == Trigger.TriggerState.COMPLETE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Comparable getSortValue(Scheduler owner, JobKey jobKey, Trigger trigger, String sortColumn) {
+        try {
+            if (START_TIME.equals(sortColumn)) {
+                return trigger.getStartTime();
+            } else if (END_TIME.equals(sortColumn)) {
+                return trigger.getEndTime();
+            } else if (TRIGGER_STATE.equals(sortColumn)) {
+                return owner.getTriggerState(trigger.getKey()).toString();
+            } else if (TRIGGER_TYPE.equals(sortColumn)) {
+                return getJobType(jobKey);
+            } else {
+                return trigger.getKey().getName();
+            }
+        } catch (SchedulerException e) {
+            throw new IllegalStateException("Unable to read the state of the trigger " + trigger.getKey(), e);
+        }
+    }
+
+    private boolean isPaged(JobsSearchSettings jobsSearchSettings) {
+        return jobsSearchSettings.getRows() != null && jobsSearchSettings.getPage() != null;
+    }
+
+    private int getOffset(JobsSearchSettings jobsSearchSettings) {
+        return (jobsSearchSettings.getPage() == 0) ? 0 : (jobsSearchSettings.getPage() - 1) * jobsSearchSettings.getRows();
+    }
+
     private List<List<Object>> executeQuery(String query, List<String> columns) throws SQLException {
         List<List<Object>> rows = new LinkedList<>();
 
@@ -374,12 +560,12 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
 
     private String buildJobsBasicInfoSqlQuery(JobsSearchSettings jobsSearchSettings) {
 
-        StringBuilder sb = new StringBuilder("SELECT A.TRIGGER_NAME, A.TRIGGER_GROUP, B.JOB_DATA FROM ")
+        StringBuilder sb = new StringBuilder("SELECT A.TRIGGER_NAME, A.TRIGGER_GROUP, B.JOB_DATA, A.SCHED_NAME FROM ")
                 .append(getCorrectNameRepresentation(sqlProperties.get(TABLE_PREFIX).toString() + TRIGGERS))
                 .append(" AS A JOIN ")
                 .append(getCorrectNameRepresentation(sqlProperties.get(TABLE_PREFIX).toString() + JOB_DETAILS))
                 .append(" AS B")
-                .append(" ON A.TRIGGER_NAME = B.JOB_NAME AND A.TRIGGER_GROUP = B.JOB_GROUP")
+                .append(" ON A.SCHED_NAME = B.SCHED_NAME AND A.TRIGGER_NAME = B.JOB_NAME AND A.TRIGGER_GROUP = B.JOB_GROUP")
                 .append(buildWhereCondition(jobsSearchSettings));
 
         if (isNotBlank(jobsSearchSettings.getSortColumn()) && isNotBlank(jobsSearchSettings.getSortDirection())) {
@@ -389,9 +575,8 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
                     .append(" ")
                     .append(jobsSearchSettings.getSortDirection().toUpperCase());
         }
-        if (jobsSearchSettings.getRows() != null && jobsSearchSettings.getPage() != null) {
-            int offset = (jobsSearchSettings.getPage() == 0) ? 0 : (jobsSearchSettings.getPage() - 1) * jobsSearchSettings.getRows();
-            sb.append(" LIMIT ").append(jobsSearchSettings.getRows()).append(" OFFSET ").append(offset);
+        if (isPaged(jobsSearchSettings)) {
+            sb.append(" LIMIT ").append(jobsSearchSettings.getRows()).append(" OFFSET ").append(getOffset(jobsSearchSettings));
         }
 
         return sb.toString();
@@ -405,9 +590,9 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
     }
 
     private String buildJobsAllSqlQuery() {
-        StringBuilder sb = new StringBuilder("SELECT A. TRIGGER_NAME, A.TRIGGER_GROUP, B.JOB_DATA FROM ")
+        StringBuilder sb = new StringBuilder("SELECT A. TRIGGER_NAME, A.TRIGGER_GROUP, B.JOB_DATA, A.SCHED_NAME FROM ")
             .append(getCorrectNameRepresentation(sqlProperties.get(TABLE_PREFIX).toString() + TRIGGERS))
-            .append(" AS A JOIN QRTZ_JOB_DETAILS AS B ON A.TRIGGER_NAME = B.JOB_NAME AND A.TRIGGER_GROUP = B.JOB_GROUP");
+            .append(" AS A JOIN QRTZ_JOB_DETAILS AS B ON A.SCHED_NAME = B.SCHED_NAME AND A.TRIGGER_NAME = B.JOB_NAME AND A.TRIGGER_GROUP = B.JOB_GROUP");
         return sb.toString();
     }
 
@@ -509,8 +694,8 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         }
     }
 
-    private String getJobStatus(TriggerKey triggerKey) throws SchedulerException {
-        Trigger.TriggerState currentTriggerState = scheduler.getTriggerState(triggerKey);
+    private String getJobStatus(Scheduler owner, TriggerKey triggerKey) throws SchedulerException {
+        Trigger.TriggerState currentTriggerState = owner.getTriggerState(triggerKey);
         if (currentTriggerState == Trigger.TriggerState.ERROR) {
             return JobBasicInfo.STATUS_ERROR;
         } else if (currentTriggerState == Trigger.TriggerState.BLOCKED) {
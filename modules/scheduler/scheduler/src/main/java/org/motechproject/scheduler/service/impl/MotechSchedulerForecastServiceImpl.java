@@ -0,0 +1,447 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.joda.time.DateTime;
+import org.motechproject.commons.date.util.DateUtil;
+import org.motechproject.config.SettingsFacade;
+import org.motechproject.scheduler.contract.JobId;
+import org.motechproject.scheduler.exception.MotechSchedulerException;
+import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
+import org.motechproject.scheduler.service.MotechSchedulerForecastService;
+import org.motechproject.scheduler.trigger.FireTimeForecaster;
+import org.motechproject.scheduler.trigger.PeriodIntervalTrigger;
+import org.quartz.CalendarIntervalTrigger;
+import org.quartz.CronTrigger;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.impl.jdbcjobstore.JobStoreSupport;
+import org.quartz.listeners.SchedulerListenerSupport;
+import org.quartz.listeners.TriggerListenerSupport;
+import org.quartz.spi.OperableTrigger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.motechproject.scheduler.service.impl.MotechSchedulerServiceImpl.JOB_GROUP_NAME;
+import static org.quartz.TriggerKey.triggerKey;
+
+/**
+ * Default implementation of the {@link MotechSchedulerForecastService}. Triggers and their computed fire times are
+ * kept in a bounded LRU cache. Cached entries are dropped when the trigger is changed, fired or removed on this node,
+ * and reloaded after the configured time to live, so changes made by other cluster nodes are picked up as well.
+ * A reloaded trigger which did not change keeps the fire times computed for its previous copy. Triggers missing from
+ * the cache are loaded from the JDBC job store with a single query for every chunk of jobs, see
+ * {@link JdbcTriggerLoader}.
+ */
+@Service("schedulerForecastService")
+public class MotechSchedulerForecastServiceImpl implements MotechSchedulerForecastService {
+
+    public static final String CACHE_TTL = "scheduler.forecast.cache.ttlInSeconds";
+    public static final String CACHE_MAX_SIZE = "scheduler.forecast.cache.maxSize";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MotechSchedulerForecastServiceImpl.class);
+
+    private static final long DEFAULT_TTL_IN_SECONDS = 60;
+    private static final int DEFAULT_MAX_SIZE = 10000;
+    private static final int MILLIS_PER_SECOND = 1000;
+    private static final String LISTENER_NAME = "motechForecastCacheListener";
+
+    private List<Scheduler> schedulers = new ArrayList<>();
+    private List<Scheduler> nonJdbcSchedulers = new ArrayList<>();
+    private Map<String, Scheduler> jdbcSchedulers = new LinkedHashMap<>();
+    private JdbcTriggerLoader triggerLoader;
+
+    private long ttlInMillis;
+    private Map<TriggerKey, Forecast> cache;
+
+    @Autowired
+    public MotechSchedulerForecastServiceImpl(MotechSchedulerFactoryBean motechSchedulerFactoryBean,
+                                              SettingsFacade schedulerSettings,
+                                              @Qualifier("sqlProperties") Properties sqlProperties) {
+        if (motechSchedulerFactoryBean.getVolatileQuartzScheduler() != null) {
+            schedulers.add(motechSchedulerFactoryBean.getVolatileQuartzScheduler());
+        }
+        schedulers.addAll(motechSchedulerFactoryBean.getQuartzSchedulers());
+
+        for (Scheduler scheduler : schedulers) {
+            if (isJdbc(scheduler)) {
+                jdbcSchedulers.put(getName(scheduler), scheduler);
+            } else {
+                nonJdbcSchedulers.add(scheduler);
+            }
+        }
+        this.triggerLoader = new JdbcTriggerLoader(sqlProperties);
+
+        this.ttlInMillis = getLong(schedulerSettings.getProperty(CACHE_TTL), DEFAULT_TTL_IN_SECONDS) * MILLIS_PER_SECOND;
+        final int maxSize = (int) getLong(schedulerSettings.getProperty(CACHE_MAX_SIZE), DEFAULT_MAX_SIZE);
+
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<TriggerKey, Forecast>(16, 0.75f, true) {
+            private static final long serialVersionUID = -2304870553766046437L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TriggerKey, Forecast> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Registers the listeners responsible for dropping outdated forecasts.
+     */
+    @PostConstruct
+    public void registerListeners() {
+        for (Scheduler target : schedulers) {
+            registerListeners(target);
+        }
+    }
+
+    @Override
+    public List<DateTime> getFireTimes(JobId jobId, DateTime startDate, DateTime endDate) {
+        try {
+            TriggerKey key = triggerKey(jobId.value(), JOB_GROUP_NAME);
+            Forecast forecast = getForecasts(Collections.singletonList(key)).get(key);
+            if (forecast == null) {
+                return new ArrayList<>();
+            }
+            return DateUtil.datesToDateTimes(forecast.getFireTimes(DateUtil.toDate(startDate), DateUtil.toDate(endDate)));
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException(String.format("Can not get fire times of the job %s for dates: %s %s %s",
+                    jobId, startDate, endDate, e.getMessage()), e);
+        }
+    }
+
+    @Override
+    public Map<String, List<DateTime>> getFireTimes(Collection<? extends JobId> jobIds, DateTime startDate,
+                                                    DateTime endDate) {
+        List<TriggerKey> keys = new ArrayList<>();
+        for (JobId jobId : jobIds) {
+            keys.add(triggerKey(jobId.value(), JOB_GROUP_NAME));
+        }
+
+        try {
+            Map<TriggerKey, Forecast> forecasts = getForecasts(keys);
+            Date from = DateUtil.toDate(startDate);
+            Date to = DateUtil.toDate(endDate);
+
+            Map<String, List<DateTime>> fireTimes = new HashMap<>();
+            for (TriggerKey key : keys) {
+                Forecast forecast = forecasts.get(key);
+                fireTimes.put(key.getName(), forecast == null ? new ArrayList<DateTime>() :
+                        DateUtil.datesToDateTimes(forecast.getFireTimes(from, to)));
+            }
+            return fireTimes;
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException(String.format("Can not get fire times of the jobs %s for dates: %s %s %s",
+                    jobIds, startDate, endDate, e.getMessage()), e);
+        }
+    }
+
+    @Override
+    public void clearCache() {
+        cache.clear();
+    }
+
+    private Map<TriggerKey, Forecast> getForecasts(Collection<TriggerKey> keys) throws SchedulerException {
+        Map<TriggerKey, Forecast> forecasts = new HashMap<>();
+        Map<TriggerKey, Forecast> outdated = new HashMap<>();
+        long now = System.currentTimeMillis();
+
+        for (TriggerKey key : keys) {
+            Forecast cached = cache.get(key);
+            if (cached != null && now - cached.getLoadTime() < ttlInMillis) {
+                forecasts.put(key, cached);
+            } else {
+                outdated.put(key, cached);
+            }
+        }
+
+        if (outdated.isEmpty()) {
+            return forecasts;
+        }
+
+        Map<TriggerKey, Trigger> triggers = loadTriggers(outdated.keySet());
+
+        for (Map.Entry<TriggerKey, Forecast> entry : outdated.entrySet()) {
+            TriggerKey key = entry.getKey();
+            Forecast cached = entry.getValue();
+            Trigger trigger = triggers.get(key);
+
+            if (trigger == null) {
+                cache.remove(key);
+                continue;
+            }
+
+            String version = version(trigger);
+            Forecast forecast;
+            if (cached != null && cached.getVersion().equals(version)) {
+                cached.setLoadTime(now);
+                forecast = cached;
+            } else {
+                forecast = new Forecast((OperableTrigger) trigger, version, now);
+            }
+
+            cache.put(key, forecast);
+            forecasts.put(key, forecast);
+        }
+
+        return forecasts;
+    }
+
+    private Map<TriggerKey, Trigger> loadTriggers(Set<TriggerKey> keys) throws SchedulerException {
+        Map<TriggerKey, Trigger> triggers = new HashMap<>();
+        Set<TriggerKey> remaining = new HashSet<>(keys);
+
+        for (Scheduler scheduler : nonJdbcSchedulers) {
+            loadTriggers(scheduler, remaining, triggers);
+        }
+
+        if (remaining.isEmpty() || jdbcSchedulers.isEmpty()) {
+            return triggers;
+        }
+
+        try {
+            Map<TriggerKey, JdbcTriggerLoader.LoadedTrigger> loaded = triggerLoader.load(remaining,
+                    jdbcSchedulers.keySet());
+
+            for (Map.Entry<TriggerKey, JdbcTriggerLoader.LoadedTrigger> entry : loaded.entrySet()) {
+                Trigger trigger = entry.getValue().getTrigger();
+                if (trigger == null) {
+                    // a trigger type which cannot be rebuilt from its row, left to its scheduler
+                    trigger = jdbcSchedulers.get(entry.getValue().getSchedulerName()).getTrigger(entry.getKey());
+                }
+                if (trigger != null) {
+                    triggers.put(entry.getKey(), trigger);
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Unable to load {} triggers with a single query, loading them one by one", remaining.size(), e);
+            for (Scheduler scheduler : jdbcSchedulers.values()) {
+                loadTriggers(scheduler, remaining, triggers);
+            }
+        }
+
+        return triggers;
+    }
+
+    private void loadTriggers(Scheduler scheduler, Set<TriggerKey> remaining, Map<TriggerKey, Trigger> triggers)
+            throws SchedulerException {
+        Iterator<TriggerKey> iterator = remaining.iterator();
+        while (iterator.hasNext()) {
+            TriggerKey key = iterator.next();
+            Trigger trigger = scheduler.getTrigger(key);
+            if (trigger != null) {
+                triggers.put(key, trigger);
+                iterator.remove();
+            }
+        }
+    }
+
+    private void invalidate(TriggerKey key) {
+        cache.remove(key);
+    }
+
+    private void invalidate(JobKey jobKey) {
+        // MOTECH jobs always share their names and groups with their triggers
+        cache.remove(triggerKey(jobKey.getName(), jobKey.getGroup()));
+    }
+
+    private void registerListeners(Scheduler target) {
+        try {
+            target.getListenerManager().addSchedulerListener(new ForecastSchedulerListener());
+            target.getListenerManager().addTriggerListener(new ForecastTriggerListener());
+        } catch (SchedulerException e) {
+            LOGGER.error("Unable to register forecast cache listeners, cached forecasts will expire after {} ms",
+                    ttlInMillis, e);
+        }
+    }
+
+    private static boolean isJdbc(Scheduler scheduler) {
+        try {
+            return JobStoreSupport.class.isAssignableFrom(scheduler.getMetaData().getJobStoreClass());
+        } catch (SchedulerException e) {
+            LOGGER.warn("Unable to read the job store of a scheduler, its triggers will be loaded one by one", e);
+            return false;
+        }
+    }
+
+    private static String getName(Scheduler scheduler) {
+        try {
+            return scheduler.getSchedulerName();
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException("Unable to read the name of a scheduler", e);
+        }
+    }
+
+    private static String version(Trigger trigger) {
+        StringBuilder sb = new StringBuilder(trigger.getClass().getName())
+                .append('|').append(time(trigger.getStartTime()))
+                .append('|').append(time(trigger.getEndTime()))
+                .append('|').append(time(trigger.getNextFireTime()));
+
+        if (trigger instanceof CronTrigger) {
+            sb.append('|').append(((CronTrigger) trigger).getCronExpression());
+        } else if (trigger instanceof SimpleTrigger) {
+            SimpleTrigger simpleTrigger = (SimpleTrigger) trigger;
+            sb.append('|').append(simpleTrigger.getRepeatInterval()).append('|').append(simpleTrigger.getRepeatCount());
+        } else if (trigger instanceof CalendarIntervalTrigger) {
+            CalendarIntervalTrigger calendarTrigger = (CalendarIntervalTrigger) trigger;
+            sb.append('|').append(calendarTrigger.getRepeatInterval())
+                    .append('|').append(calendarTrigger.getRepeatIntervalUnit());
+        } else if (trigger instanceof PeriodIntervalTrigger) {
+            sb.append('|').append(((PeriodIntervalTrigger) trigger).getRepeatPeriod());
+        }
+
+        return sb.toString();
+    }
+
+    private static long time(Date date) {
+        return date == null ? -1 : date.getTime();
+    }
+
+    private static long getLong(String value, long defaultValue) {
+        return StringUtils.isBlank(value) ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    /**
+     * A cached trigger, together with the range of fire times computed for it so far.
+     */
+    private static class Forecast {
+
+        private final OperableTrigger trigger;
+        private final String version;
+        private volatile long loadTime;
+
+        private List<Date> fireTimes = new ArrayList<>();
+        private Date coveredFrom;
+        private Date coveredTo;
+
+        Forecast(OperableTrigger trigger, String version, long loadTime) {
+            this.trigger = trigger;
+            this.version = version;
+            this.loadTime = loadTime;
+        }
+
+        synchronized List<Date> getFireTimes(Date from, Date to) {
+            if (coveredFrom == null || from.before(coveredFrom) || from.after(coveredTo)) {
+                Date anchor = lastFireTimeNotAfter(from);
+                fireTimes = FireTimeForecaster.computeFireTimes(trigger, anchor, from, to);
+                coveredFrom = from;
+                coveredTo = to;
+            } else if (to.after(coveredTo)) {
+                Date anchor = fireTimes.isEmpty() ? null : fireTimes.get(fireTimes.size() - 1);
+                fireTimes.addAll(FireTimeForecaster.computeFireTimes(trigger, anchor,
+                        new Date(coveredTo.getTime() + 1), to));
+                coveredTo = to;
+            }
+
+            List<Date> result = new ArrayList<>();
+            for (Date fireTime : fireTimes) {
+                if (fireTime.after(to)) {
+                    break;
+                }
+                if (!fireTime.before(from)) {
+                    result.add(fireTime);
+                }
+            }
+            return result;
+        }
+
+        private Date lastFireTimeNotAfter(Date date) {
+            Date anchor = null;
+            for (Date fireTime : fireTimes) {
+                if (fireTime.after(date)) {
+                    break;
+                }
+                anchor = fireTime;
+            }
+            return anchor;
+        }
+
+        String getVersion() {
+            return version;
+        }
+
+        long getLoadTime() {
+            return loadTime;
+        }
+
+        void setLoadTime(long loadTime) {
+            this.loadTime = loadTime;
+        }
+    }
+
+    /**
+     * Drops forecasts of triggers that were changed or removed.
+     */
+    private class ForecastSchedulerListener extends SchedulerListenerSupport {
+
+        @Override
+        public void jobScheduled(Trigger trigger) {
+            invalidate(trigger.getKey());
+        }
+
+        @Override
+        public void jobUnscheduled(TriggerKey triggerKey) {
+            invalidate(triggerKey);
+        }
+
+        @Override
+        public void triggerFinalized(Trigger trigger) {
+            invalidate(trigger.getKey());
+        }
+
+        @Override
+        public void jobDeleted(JobKey jobKey) {
+            invalidate(jobKey);
+        }
+
+        @Override
+        public void schedulingDataCleared() {
+            clearCache();
+        }
+    }
+
+    /**
+     * Drops forecasts of triggers that fired or misfired, since their next fire time changes.
+     */
+    private class ForecastTriggerListener extends TriggerListenerSupport {
+
+        @Override
+        public String getName() {
+            return LISTENER_NAME;
+        }
+
+        @Override
+        public void triggerMisfired(Trigger trigger) {
+            invalidate(trigger.getKey());
+        }
+
+        @Override
+        public void triggerComplete(Trigger trigger, JobExecutionContext context,
+                                    Trigger.CompletedExecutionInstruction triggerInstructionCode) {
+            invalidate(trigger.getKey());
+        }
+    }
+}
@@ -23,7 +23,9 @@ import org.motechproject.scheduler.contract.SchedulableJob;
 import org.motechproject.scheduler.exception.MotechSchedulerException;
 import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
 import org.motechproject.scheduler.service.MotechScheduledJob;
+import org.motechproject.scheduler.service.MotechSchedulerForecastService;
 import org.motechproject.scheduler.service.MotechSchedulerService;
+import org.motechproject.scheduler.trigger.FireTimeForecaster;
 import org.motechproject.scheduler.trigger.PeriodIntervalScheduleBuilder;
 import org.quartz.CalendarIntervalScheduleBuilder;
 import org.quartz.CronScheduleBuilder;
@@ -39,7 +41,6 @@ import org.quartz.SimpleTrigger;
 import org.quartz.Trigger;
 import org.quartz.TriggerKey;
 import org.quartz.TriggerUtils;
-import org.quartz.impl.calendar.BaseCalendar;
 import org.quartz.impl.matchers.GroupMatcher;
 import org.quartz.impl.triggers.CronTriggerImpl;
 import org.quartz.spi.OperableTrigger;
@@ -95,15 +96,35 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
     private Scheduler scheduler;
 
+    private Scheduler volatileScheduler;
+
+    private List<Scheduler> schedulers;
+
+    private MotechSchedulerFactoryBean motechSchedulerFactoryBean;
+
+    private MotechSchedulerForecastService forecastService;
+
     private Map<String, Integer> cronTriggerMisfirePolicies;
     private Map<String, Integer> simpleTriggerMisfirePolicies;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MotechSchedulerServiceImpl.class);
 
     @Autowired
-    public MotechSchedulerServiceImpl(MotechSchedulerFactoryBean motechSchedulerFactoryBean, SettingsFacade schedulerSettings) {
+    public MotechSchedulerServiceImpl(MotechSchedulerFactoryBean motechSchedulerFactoryBean, SettingsFacade schedulerSettings,
+                                      MotechSchedulerForecastService forecastService) {
         this.schedulerSettings = schedulerSettings;
+        this.forecastService = forecastService;
         this.scheduler = motechSchedulerFactoryBean.getQuartzScheduler();
+        this.volatileScheduler = motechSchedulerFactoryBean.getVolatileQuartzScheduler();
+        this.motechSchedulerFactoryBean = motechSchedulerFactoryBean;
+
+        // the volatile scheduler goes first, since looking it up does not hit the database
+        this.schedulers = new ArrayList<>();
+        if (volatileScheduler != null) {
+            schedulers.add(volatileScheduler);
+        }
+        schedulers.addAll(motechSchedulerFactoryBean.getQuartzSchedulers());
+
         constructMisfirePoliciesMaps();
     }
 
@@ -218,12 +239,14 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         CronTrigger trigger;
         JobDetail job;
+        Scheduler owner;
         try {
-            trigger = (CronTrigger) scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
+            owner = schedulerFor(triggerKey(jobId.value(), JOB_GROUP_NAME));
+            trigger = (CronTrigger) owner.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
             if (trigger == null) {
                 throw new MotechSchedulerException(format("Can not reschedule the job: %s The job does not exist (not scheduled)", jobId));
             }
-            job = scheduler.getJobDetail(trigger.getJobKey());
+            job = owner.getJobDetail(trigger.getJobKey());
         } catch (SchedulerException e) {
             throw new MotechSchedulerException(String.format("Can not reschedule the job: %s.\n Can not get a trigger associated with that job %s", jobId, e.getMessage()), e);
         } catch (ClassCastException e) {
@@ -246,7 +269,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .build();
 
         try {
-            scheduler.rescheduleJob(triggerKey(jobId.value(), JOB_GROUP_NAME), newTrigger);
+            owner.rescheduleJob(triggerKey(jobId.value(), JOB_GROUP_NAME), newTrigger);
         } catch (SchedulerException e) {
             throw new MotechSchedulerException(String.format("Can not reschedule the job: %s %s", jobId, e.getMessage()), e);
         }
@@ -296,7 +319,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Unscheduling jobs with prefix: ", jobIdPrefix);
             }
-            List<TriggerKey> triggerKeys = new ArrayList<>(scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
+            List<TriggerKey> triggerKeys = getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME));
             List<String> triggerNames = extractTriggerNames(triggerKeys);
             for (String triggerName : triggerNames) {
                 if (StringUtils.isNotEmpty(jobIdPrefix) && triggerName.contains(jobIdPrefix)) {
@@ -353,7 +376,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug(format("Safe unscheduling the Jobs given jobIdPrefix: %s", jobIdPrefix));
             }
-            List<TriggerKey> triggerKeys = new ArrayList<>(scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
+            List<TriggerKey> triggerKeys = getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME));
             List<String> triggerNames = extractTriggerNames(triggerKeys);
             for (String triggerName : triggerNames) {
                 if (StringUtils.isNotEmpty(jobIdPrefix) && triggerName.contains(jobIdPrefix)) {
@@ -370,7 +393,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         try {
             JobKey key = new JobKey(info.getName(), info.getGroup());
             validateJob(key);
-            scheduler.pauseJob(key);
+            schedulerFor(key).pauseJob(key);
             info.setStatus(JobBasicInfo.STATUS_PAUSED);
             return info;
         } catch (MotechSchedulerException | SchedulerException e) {
@@ -384,7 +407,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         try {
             JobKey key = new JobKey(info.getName(), info.getGroup());
             validateJob(key);
-            scheduler.resumeJob(key);
+            schedulerFor(key).resumeJob(key);
             info.setStatus(JobBasicInfo.STATUS_OK);
             return info;
         } catch (MotechSchedulerException | SchedulerException e) {
@@ -398,7 +421,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         try {
             JobKey key = new JobKey(info.getName(), info.getGroup());
             validateJob(key);
-            scheduler.deleteJob(key);
+            schedulerFor(key).deleteJob(key);
         } catch (MotechSchedulerException | SchedulerException e) {
             throw new MotechSchedulerException(String.format("Can not delete the job:\n %s\n%s\n%s",
                     info.getName(), info.getGroup(), e.getMessage()), e);
@@ -409,8 +432,11 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public SchedulableJob getJob(JobBasicInfo info) {
         try {
             JobKey key = jobKey(info.getName(), info.getGroup());
-            return SchedulableJobBuilder.buildJob(key, scheduler.getJobDetail(key).getJobDataMap(),
-                    scheduler.getTriggersOfJob(key).get(0));
+            Scheduler owner = schedulerFor(key);
+            SchedulableJob job = SchedulableJobBuilder.buildJob(key, owner.getJobDetail(key).getJobDataMap(),
+                    owner.getTriggersOfJob(key).get(0));
+            job.setVolatile(owner == volatileScheduler);
+            return job;
         } catch (SchedulerException e) {
             throw new MotechSchedulerException(String.format("Can not retrieve the job:\n %s\n %s\n %s", info.getName(),
                     info.getGroup(), e.getMessage()), e);
@@ -421,7 +447,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public DateTime getPreviousFireDate(JobId jobId) {
         Date previousFireTime = null;
         try {
-            Trigger trigger = scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
+            Trigger trigger = getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
             if (trigger != null) {
                 previousFireTime = trigger.getPreviousFireTime();
             }
@@ -436,7 +462,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public DateTime getNextFireDate(JobId jobId) {
         Date nextFireTime = null;
         try {
-            Trigger trigger = scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
+            Trigger trigger = getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
             if (trigger != null) {
                 nextFireTime = trigger.getNextFireTime();
             }
@@ -450,22 +476,11 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     /*
      * Assumes that the externalJobId is non-repeating in nature. Thus the fetch is for jobId.value() and not
      * jobId.repeatingId()
-     * Uses quartz API to fetch the exact triggers. Fast
+     * Uses the forecast service, which caches the triggers and their fire times. Fast
      */
     @Override
     public List<DateTime> getScheduledJobTimings(String subject, String externalJobId, DateTime startDate, DateTime endDate) {
-        JobId jobId = new CronJobId(subject, externalJobId);
-        Trigger trigger;
-        try {
-            trigger = scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
-            return DateUtil.datesToDateTimes(TriggerUtils.computeFireTimesBetween(
-                    (OperableTrigger) trigger, new BaseCalendar(), DateUtil.toDate(startDate), DateUtil.toDate(endDate)));
-
-        } catch (SchedulerException e) {
-            throw new MotechSchedulerException(String.format(
-                    "Can not get scheduled job timings given subject and externalJobId for dates : %s %s %s %s %s",
-                    subject, externalJobId, startDate.toString(), endDate.toString(), e.getMessage()), e);
-        }
+        return forecastService.getFireTimes(new CronJobId(subject, externalJobId), startDate, endDate);
     }
 
     /*
@@ -479,13 +494,12 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         JobId jobId = new CronJobId(subject, externalJobIdPrefix);
         List<Date> messageTimings = new ArrayList<>();
         try {
-            List<TriggerKey> triggerKeys = new ArrayList<TriggerKey>(
-                    scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
+            List<TriggerKey> triggerKeys = getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME));
             for (TriggerKey triggerKey : triggerKeys) {
                 if (StringUtils.isNotEmpty(externalJobIdPrefix) && triggerKey.getName().contains(jobId.value())) {
-                    Trigger trigger = scheduler.getTrigger(triggerKey);
-                    messageTimings.addAll(TriggerUtils.computeFireTimesBetween(
-                            (OperableTrigger) trigger, new BaseCalendar(), DateUtil.toDate(startDate), DateUtil.toDate(endDate)));
+                    Trigger trigger = getTrigger(triggerKey);
+                    messageTimings.addAll(FireTimeForecaster.computeFireTimes(
+                            (OperableTrigger) trigger, DateUtil.toDate(startDate), DateUtil.toDate(endDate)));
                 }
             }
 
@@ -558,7 +572,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         Trigger existingTrigger;
         try {
-            existingTrigger = scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
+            existingTrigger = getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
         } catch (SchedulerException e) {
             throw new MotechSchedulerException(format("Schedule or reschedule the job: %s.\n%s", jobId, e.getMessage()),
                     "scheduler.error.cantRescheduleJob", Arrays.asList(jobId.value(), e.getMessage()), e);
@@ -585,7 +599,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                     .build();
         }
 
-        scheduleJob(jobDetail, trigger, update);
+        scheduleJob(jobDetail, trigger, update, job.isVolatile());
     }
 
     private void scheduleRepeatingJob(RepeatingSchedulableJob job, boolean update) {
@@ -615,7 +629,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         jobDetail.getJobDataMap().put(EVENT_METADATA, createMetadataForMisfireSchedulableJob(job, motechEvent));
 
         try {
-            if (scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME)) != null) {
+            if (getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME)) != null) {
                 unscheduleJob(jobId);
             }
         } catch (SchedulerException e) {
@@ -644,7 +658,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         Trigger trigger = buildJobDetail(job, DateUtil.toDate(jobStartTime),
                 DateUtil.toDate(jobEndTime), jobId, jobDetail, scheduleBuilder);
-        scheduleJob(jobDetail, trigger, update);
+        scheduleJob(jobDetail, trigger, update, job.isVolatile());
     }
 
     private Map<String, Object> createMetadataForMisfireSchedulableJob(MisfireSchedulableJob job, MotechEvent event) {
@@ -680,7 +694,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         Trigger trigger = buildJobDetail(job, DateUtil.toDate(job.getStartDate()),
                 DateUtil.toDate(job.getEndDate()), jobId, jobDetail, scheduleBuilder);
-        scheduleJob(jobDetail, trigger, update);
+        scheduleJob(jobDetail, trigger, update, job.isVolatile());
     }
 
     private void scheduleRunOnceJob(RunOnceSchedulableJob job, boolean update) {
@@ -713,7 +727,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .startAt(DateUtil.toDate(job.getStartDate()))
                 .build();
 
-        scheduleJob(jobDetail, trigger, update);
+        scheduleJob(jobDetail, trigger, update, job.isVolatile());
     }
 
     private void scheduleDayOfWeekJob(DayOfWeekSchedulableJob job, boolean update) {
@@ -731,6 +745,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         CronTriggerImpl cronTrigger = (CronTriggerImpl) cronScheduleBuilder.build();
         CronSchedulableJob cronSchedulableJob = new CronSchedulableJob(motechEvent, cronTrigger.getCronExpression(),
                 job.getStartDate(), job.getEndDate(), job.isIgnorePastFiresAtStart(), job.isUiDefined());
+        cronSchedulableJob.setVolatile(job.isVolatile());
 
         scheduleCronJob(cronSchedulableJob, true, update);
     }
@@ -750,17 +765,28 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     }
 
     private void scheduleJob(JobDetail jobDetail, Trigger trigger) {
-        scheduleJob(jobDetail, trigger, false);
+        scheduleJob(jobDetail, trigger, false, false);
     }
 
-    private void scheduleJob(JobDetail jobDetail, Trigger trigger, boolean update) {
+    private void scheduleJob(JobDetail jobDetail, Trigger trigger, boolean update, boolean volatileJob) {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Scheduling job:" + jobDetail);
         }
         try {
+            Scheduler target = volatileJob && volatileScheduler != null
+                    ? volatileScheduler
+                    : motechSchedulerFactoryBean.getQuartzScheduler(jobDetail.getJobDataMap().getString(JOB_ID_KEY));
+
+            // a job that was volatile before could still be in the in-memory store, checking it is cheap; the
+            // opposite move is handled by unscheduling the existing trigger, partitions never change for a job
+            if (volatileScheduler != null && target != volatileScheduler
+                    && volatileScheduler.checkExists(jobDetail.getKey())) {
+                volatileScheduler.deleteJob(jobDetail.getKey());
+            }
+
             Set<Trigger> triggerSet = new HashSet<>();
             triggerSet.add(trigger);
-            scheduler.scheduleJob(jobDetail, triggerSet, update);
+            target.scheduleJob(jobDetail, triggerSet, update);
         } catch (SchedulerException e) {
             throw new MotechSchedulerException(String.format("Can not schedule the job:\n %s\n%s\n%s",
                     jobDetail.toString(), trigger.toString(), e.getMessage()),
@@ -774,7 +800,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
         try {
             assertArgumentNotNull("ScheduledJobID", jobId);
-            scheduler.unscheduleJob(triggerKey(jobId, JOB_GROUP_NAME));
+            unscheduleFromAnyScheduler(triggerKey(jobId, JOB_GROUP_NAME));
         } catch (SchedulerException e) {
             throw new MotechSchedulerException(String.format("Can not unschedule the job: %s %s",
                     jobId, e.getMessage()), e);
@@ -787,14 +813,14 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
         try {
             assertArgumentNotNull("ScheduledJobID", jobId);
-            scheduler.unscheduleJob(triggerKey(jobId, JOB_GROUP_NAME));
+            unscheduleFromAnyScheduler(triggerKey(jobId, JOB_GROUP_NAME));
         } catch (SchedulerException e) {
             LOGGER.error("Unable to unschedule job with ID {}", jobId, e);
         }
     }
 
     private void validateJob(JobKey key) throws SchedulerException {
-        JobDetail detail = scheduler.getJobDetail(key);
+        JobDetail detail = schedulerFor(key).getJobDetail(key);
 
         if (detail == null) {
             throw new MotechSchedulerException(String.format("Job doesn't exist:\n %s\n %s", key.getName(),
@@ -809,6 +835,51 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
     }
 
+    private void unscheduleFromAnyScheduler(TriggerKey key) throws SchedulerException {
+        // a job is only ever present in one of the stores, so there is no need to touch the rest once it is found
+        for (Scheduler candidate : schedulers) {
+            if (candidate.unscheduleJob(key)) {
+                return;
+            }
+        }
+    }
+
+    private Scheduler schedulerFor(JobKey key) throws SchedulerException {
+        for (Scheduler candidate : schedulers) {
+            if (candidate != scheduler && candidate.checkExists(key)) {
+                return candidate;
+            }
+        }
+        return scheduler;
+    }
+
+    private Scheduler schedulerFor(TriggerKey key) throws SchedulerException {
+        for (Scheduler candidate : schedulers) {
+            if (candidate != scheduler && candidate.checkExists(key)) {
+                return candidate;
+            }
+        }
+        return scheduler;
+    }
+
+    private Trigger getTrigger(TriggerKey key) throws SchedulerException {
+        for (Scheduler candidate : schedulers) {
+            Trigger trigger = candidate.getTrigger(key);
+            if (trigger != null) {
+                return trigger;
+            }
+        }
+        return null;
+    }
+
+    private List<TriggerKey> getTriggerKeys(GroupMatcher<TriggerKey> matcher) throws SchedulerException {
+        List<TriggerKey> triggerKeys = new ArrayList<>();
+        for (Scheduler candidate : schedulers) {
+            triggerKeys.addAll(candidate.getTriggerKeys(matcher));
+        }
+        return triggerKeys;
+    }
+
     private boolean isJobUIDefined(JobDataMap jobDataMap) {
         return jobDataMap.get(EVENT_METADATA) != null &&  (Boolean) ((Map<String, Object>) jobDataMap.get(EVENT_METADATA)).get(UI_DEFINED);
     }
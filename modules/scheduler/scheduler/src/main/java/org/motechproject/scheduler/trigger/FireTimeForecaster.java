@@ -0,0 +1,115 @@
+package org.motechproject.scheduler.trigger;
+
+import org.joda.time.Period;
+import org.quartz.TriggerUtils;
+import org.quartz.impl.calendar.BaseCalendar;
+import org.quartz.spi.OperableTrigger;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Computes the times at which a trigger will fire within a given range. The results are the same as the ones returned
+ * by {@link TriggerUtils#computeFireTimesBetween(OperableTrigger, org.quartz.Calendar, Date, Date)} with an
+ * all-inclusive calendar, but instead of replaying every fire of the trigger from its next fire time, the forecaster
+ * jumps straight to the first fire time in the range whenever the trigger allows it:
+ * <ul>
+ *     <li>simple, cron and calendar interval triggers compute their fire times relative to the start time, so
+ *     {@code getFireTimeAfter} can be asked directly for the first fire time in the range,</li>
+ *     <li>period triggers with a fixed-length period (no years, months, weeks or days) are arithmetic sequences, so the
+ *     first fire time in the range is computed in closed form,</li>
+ *     <li>period triggers with calendar-based periods are walked step by step, starting from an anchor - a known fire
+ *     time of the trigger. Callers that cache fire times can pass the last known one to continue from there.</li>
+ * </ul>
+ * This class is stateless and thread safe, the given triggers are never modified.
+ */
+public final class FireTimeForecaster {
+
+    /**
+     * Computes the fire times of the given trigger, between {@code from} and {@code to} (both inclusive).
+     * The fire times are computed starting from the next fire time of the trigger.
+     *
+     * @param trigger the trigger for which fire times should be computed
+     * @param from the beginning of the range
+     * @param to the end of the range
+     * @return the list of fire times, never null
+     */
+    public static List<Date> computeFireTimes(OperableTrigger trigger, Date from, Date to) {
+        return computeFireTimes(trigger, null, from, to);
+    }
+
+    /**
+     * Computes the fire times of the given trigger, between {@code from} and {@code to} (both inclusive).
+     *
+     * @param trigger the trigger for which fire times should be computed
+     * @param anchor a known fire time of the trigger, not after {@code from}, from which the computation can start;
+     *               if null, the next fire time of the trigger is used
+     * @param from the beginning of the range
+     * @param to the end of the range
+     * @return the list of fire times, never null
+     */
+    public static List<Date> computeFireTimes(OperableTrigger trigger, Date anchor, Date from, Date to) {
+        Date nextFireTime = trigger.getNextFireTime();
+
+        if (nextFireTime == null) {
+            // the trigger was never added to a scheduler, let quartz compute its first fire time
+            return new ArrayList<>(TriggerUtils.computeFireTimesBetween(trigger, new BaseCalendar(), from, to));
+        }
+
+        Date start = (anchor == null || anchor.before(nextFireTime)) ? nextFireTime : anchor;
+
+        Date first;
+        if (!start.before(from)) {
+            first = start;
+        } else if (trigger instanceof PeriodIntervalTriggerImpl) {
+            first = firstPeriodFireTime((PeriodIntervalTriggerImpl) trigger, start, from);
+        } else {
+            first = trigger.getFireTimeAfter(new Date(from.getTime() - 1));
+        }
+
+        List<Date> fireTimes = new ArrayList<>();
+        Date fireTime = first;
+        while (fireTime != null && !fireTime.after(to)) {
+            fireTimes.add(fireTime);
+            fireTime = trigger.getFireTimeAfter(fireTime);
+        }
+
+        return fireTimes;
+    }
+
+    /**
+     * Checks whether the fire times of the given period can be computed in closed form, that is whether the period
+     * always has the same length.
+     *
+     * @param period the period to check
+     * @return true if the period has a fixed length
+     */
+    public static boolean isFixedLength(Period period) {
+        return period != null && period.getYears() == 0 && period.getMonths() == 0 && period.getWeeks() == 0
+                && period.getDays() == 0;
+    }
+
+    private static Date firstPeriodFireTime(PeriodIntervalTriggerImpl trigger, Date start, Date from) {
+        Period period = trigger.getRepeatPeriod();
+
+        if (isFixedLength(period)) {
+            long length = period.toStandardDuration().getMillis();
+            long distance = from.getTime() - start.getTime();
+            long steps = (distance + length - 1) / length;
+            Date first = new Date(start.getTime() + steps * length);
+
+            Date endTime = trigger.getEndTime();
+            return (endTime != null && endTime.before(first)) ? null : first;
+        }
+
+        Date fireTime = start;
+        while (fireTime != null && fireTime.before(from)) {
+            fireTime = trigger.getFireTimeAfter(fireTime);
+        }
+        return fireTime;
+    }
+
+    private FireTimeForecaster() {
+    }
+}
@@ -3,9 +3,12 @@ package org.motechproject.scheduler.web.controller;
 import org.motechproject.scheduler.constants.SchedulerConstants;
 import org.motechproject.scheduler.contract.JobBasicInfo;
 import org.motechproject.scheduler.contract.JobDetailedInfo;
+import org.motechproject.scheduler.contract.JobExecutionRecord;
+import org.motechproject.scheduler.contract.JobExecutionStats;
 import org.motechproject.scheduler.contract.JobsSearchSettings;
 import org.motechproject.scheduler.contract.SchedulableJob;
 import org.motechproject.scheduler.exception.MotechSchedulerException;
+import org.motechproject.scheduler.service.JobExecutionHistoryService;
 import org.motechproject.scheduler.service.MotechSchedulerDatabaseService;
 import org.motechproject.scheduler.service.MotechSchedulerService;
 import org.motechproject.scheduler.web.domain.JobsRecords;
@@ -18,6 +21,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
@@ -45,6 +49,9 @@ public class JobsController {
     @Autowired
     private MotechSchedulerService motechSchedulerService;
 
+    @Autowired
+    private JobExecutionHistoryService jobExecutionHistoryService;
+
     private JobsRecords previousJobsRecords;
 
     /**
@@ -155,6 +162,31 @@ public class JobsController {
         return motechSchedulerService.getJob(jobInfo);
     }
 
+    /**
+     * Returns the execution statistics - fire lag, misfires and publish latency - of jobs, per event subject.
+     *
+     * @return the statistics for every subject
+     */
+    @RequestMapping(value = "/jobs/history/stats", method = RequestMethod.GET)
+    @ResponseBody
+    public List<JobExecutionStats> getExecutionStats() {
+        return jobExecutionHistoryService.getStats();
+    }
+
+    /**
+     * Returns the most recent executions of jobs, newest first.
+     *
+     * @param subject  the subject of the events published by the jobs, all subjects if not given
+     * @param max  the maximum number of returned executions
+     * @return the recent executions
+     */
+    @RequestMapping(value = "/jobs/history", method = RequestMethod.GET)
+    @ResponseBody
+    public List<JobExecutionRecord> getExecutionHistory(@RequestParam(required = false) String subject,
+                                                        @RequestParam(defaultValue = "100") int max) {
+        return jobExecutionHistoryService.getRecentExecutions(subject, max);
+    }
+
     @ExceptionHandler(MotechSchedulerException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ResponseBody
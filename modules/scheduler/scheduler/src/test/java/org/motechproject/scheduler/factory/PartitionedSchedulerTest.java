@@ -0,0 +1,200 @@
+package org.motechproject.scheduler.factory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.SchedulerException;
+import org.springframework.context.ApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.quartz.JobBuilder.newJob;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+/**
+ * Runs two scheduler nodes, each owning one of two partitions, against one embedded database.
+ */
+public class PartitionedSchedulerTest {
+
+    private static final String[] SCHEMA = {"db/migration/scheduler/default/V1__Base_version_2.1.sql",
+            "db/migration/scheduler/default/V2__MOTECH-1482.sql"};
+
+    private static final long CHECKIN_INTERVAL = 1000;
+    private static final long TIMEOUT = 30000;
+
+    private static final Map<String, String> FIRED_BY = new ConcurrentHashMap<>();
+
+    private static int databaseCounter;
+
+    private String url;
+    private Connection keepAlive;
+
+    private MotechSchedulerFactoryBean nodeA;
+    private MotechSchedulerFactoryBean nodeB;
+
+    @Before
+    public void setUp() throws SQLException, IOException {
+        FIRED_BY.clear();
+
+        url = "jdbc:h2:mem:partitioned" + (++databaseCounter) +
+                ";MODE=PostgreSQL;MVCC=FALSE;MV_STORE=FALSE;LOCK_TIMEOUT=10000";
+        keepAlive = DriverManager.getConnection(url, "sa", "");
+        createSchema();
+
+        nodeA = createNode("nodeA", "0");
+        nodeB = createNode("nodeB", "1");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        if (nodeB != null) {
+            nodeB.shutdown();
+        }
+        nodeA.shutdown();
+        keepAlive.close();
+    }
+
+    @Test
+    public void shouldFireJobsOnlyOnNodesOwningTheirPartitions() throws SchedulerException, InterruptedException {
+        String first = externalIdOfPartition(0);
+        String second = externalIdOfPartition(1);
+
+        // both jobs are scheduled through one node, each one is stored in the scheduler of its partition
+        schedule(nodeA, first);
+        schedule(nodeA, second);
+
+        waitUntilFired(first, second);
+
+        assertEquals("nodeA", FIRED_BY.get(first));
+        assertEquals("nodeB", FIRED_BY.get(second));
+        assertTrue(nodeA.getPartitionFailoverMonitor().getStandbySchedulerNames().contains("MotechScheduler_1"));
+    }
+
+    @Test
+    public void shouldTakeOverPartitionOfFailedNode() throws SchedulerException, InterruptedException {
+        nodeB.shutdown();
+        nodeB = null;
+
+        String orphaned = externalIdOfPartition(1);
+        schedule(nodeA, orphaned);
+
+        waitUntilFired(orphaned);
+
+        assertEquals("nodeA", FIRED_BY.get(orphaned));
+        assertTrue(nodeA.getPartitionFailoverMonitor().getStandbySchedulerNames().isEmpty());
+    }
+
+    private MotechSchedulerFactoryBean createNode(String instanceId, String ownedPartitions) {
+        String dataSource = instanceId + "DS";
+        String dataSourcePrefix = "org.quartz.dataSource." + dataSource + ".";
+
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", "MotechScheduler");
+        properties.setProperty("org.quartz.scheduler.instanceId", instanceId);
+        properties.setProperty("org.quartz.scheduler.idleWaitTime", "1000");
+        properties.setProperty("org.quartz.threadPool.class", "org.quartz.simpl.SimpleThreadPool");
+        properties.setProperty("org.quartz.threadPool.threadCount", "2");
+        properties.setProperty("org.quartz.jobStore.class", "org.quartz.impl.jdbcjobstore.JobStoreTX");
+        properties.setProperty("org.quartz.jobStore.driverDelegateClass",
+                "org.quartz.impl.jdbcjobstore.PostgreSQLDelegate");
+        properties.setProperty("org.quartz.jobStore.dataSource", dataSource);
+        properties.setProperty("org.quartz.jobStore.tablePrefix", "QRTZ_");
+        properties.setProperty("org.quartz.jobStore.isClustered", "true");
+        properties.setProperty("org.quartz.jobStore.clusterCheckinInterval", String.valueOf(CHECKIN_INTERVAL));
+        properties.setProperty(dataSourcePrefix + "driver", "org.h2.Driver");
+        properties.setProperty(dataSourcePrefix + "URL", url);
+        properties.setProperty(dataSourcePrefix + "user", "sa");
+        properties.setProperty(dataSourcePrefix + "password", "");
+        properties.setProperty(dataSourcePrefix + "maxConnections", "5");
+        properties.setProperty(MotechSchedulerFactoryBean.PARTITION_COUNT, "2");
+        properties.setProperty(MotechSchedulerFactoryBean.PARTITION_OWNED, ownedPartitions);
+
+        MotechSchedulerFactoryBean node = new MotechSchedulerFactoryBean(mock(ApplicationContext.class), properties);
+        node.init();
+        return node;
+    }
+
+    private void createSchema() throws SQLException, IOException {
+        try (Statement stmt = keepAlive.createStatement()) {
+            for (String script : SCHEMA) {
+                for (String sql : readStatements(script)) {
+                    stmt.execute(sql);
+                }
+            }
+        }
+    }
+
+    private List<String> readStatements(String script) throws IOException {
+        List<String> statements = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                getClass().getClassLoader().getResourceAsStream(script), StandardCharsets.UTF_8))) {
+            StringBuilder sb = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().startsWith("--")) {
+                    sb.append(line).append('\n');
+                }
+            }
+            for (String sql : sb.toString().split(";")) {
+                if (!sql.trim().isEmpty()) {
+                    statements.add(sql);
+                }
+            }
+        }
+        return statements;
+    }
+
+    private String externalIdOfPartition(int partition) {
+        int i = 0;
+        while (nodeA.getPartitioner().getPartition("patient-" + i) != partition) {
+            i++;
+        }
+        return "patient-" + i;
+    }
+
+    private void schedule(MotechSchedulerFactoryBean node, String externalId) throws SchedulerException {
+        node.getQuartzScheduler(externalId).scheduleJob(
+                newJob(RecordingJob.class).withIdentity(externalId).build(),
+                newTrigger().withIdentity(externalId).startNow().build());
+    }
+
+    private void waitUntilFired(String... jobNames) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        for (String jobName : jobNames) {
+            while (!FIRED_BY.containsKey(jobName) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            assertTrue("The job " + jobName + " did not fire", FIRED_BY.containsKey(jobName));
+        }
+    }
+
+    public static class RecordingJob implements Job {
+
+        @Override
+        public void execute(JobExecutionContext context) throws JobExecutionException {
+            try {
+                FIRED_BY.put(context.getJobDetail().getKey().getName(), context.getScheduler().getSchedulerInstanceId());
+            } catch (SchedulerException e) {
+                throw new JobExecutionException(e);
+            }
+        }
+    }
+}
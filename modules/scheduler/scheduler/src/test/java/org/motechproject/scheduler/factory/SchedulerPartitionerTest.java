@@ -0,0 +1,54 @@
+package org.motechproject.scheduler.factory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SchedulerPartitionerTest {
+
+    @Test
+    public void shouldAssignEverythingToFirstPartitionWhenNotPartitioned() {
+        SchedulerPartitioner partitioner = new SchedulerPartitioner("MotechScheduler", 1, null);
+
+        assertFalse(partitioner.isPartitioned());
+        assertEquals(0, partitioner.getPartition("patient-1"));
+        assertEquals(0, partitioner.getPartition(null));
+        assertTrue(partitioner.isOwned(0));
+        assertEquals("MotechScheduler", partitioner.getSchedulerName(0));
+    }
+
+    @Test
+    public void shouldAssignJobsToPartitionsByExternalId() {
+        SchedulerPartitioner partitioner = new SchedulerPartitioner("MotechScheduler", 4, "");
+
+        int[] counts = new int[4];
+        for (int i = 0; i < 1000; i++) {
+            int partition = partitioner.getPartition("patient-" + i);
+            assertEquals(partition, partitioner.getPartition("patient-" + i));
+            counts[partition]++;
+        }
+
+        for (int count : counts) {
+            assertTrue(count > 150);
+        }
+        assertEquals(0, partitioner.getPartition(null));
+        assertEquals("MotechScheduler_3", partitioner.getSchedulerName(3));
+    }
+
+    @Test
+    public void shouldOwnOnlyConfiguredPartitions() {
+        SchedulerPartitioner partitioner = new SchedulerPartitioner("MotechScheduler", 4, "1, 3");
+
+        assertFalse(partitioner.isOwned(0));
+        assertTrue(partitioner.isOwned(1));
+        assertFalse(partitioner.isOwned(2));
+        assertTrue(partitioner.isOwned(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectPartitionsOutOfRange() {
+        new SchedulerPartitioner("MotechScheduler", 2, "0,2");
+    }
+}
@@ -0,0 +1,128 @@
+package org.motechproject.scheduler.factory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.quartz.Job;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.simpl.CascadingClassLoadHelper;
+import org.quartz.spi.ClassLoadHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Properties;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.quartz.JobBuilder.newJob;
+import static org.quartz.SimpleScheduleBuilder.repeatHourlyForever;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+public class VolatileSchedulerSnapshotterTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Scheduler source;
+    private Scheduler target;
+    private ClassLoadHelper classLoadHelper;
+    private File snapshotFile;
+
+    @Before
+    public void setUp() throws SchedulerException {
+        source = createScheduler("SnapshotSource");
+        target = createScheduler("SnapshotTarget");
+
+        classLoadHelper = spy(new CascadingClassLoadHelper());
+        classLoadHelper.initialize();
+
+        snapshotFile = new File(folder.getRoot(), "volatile.snapshot");
+    }
+
+    @After
+    public void tearDown() throws SchedulerException {
+        source.shutdown();
+        target.shutdown();
+    }
+
+    @Test
+    public void shouldRestoreJobsThroughClassLoadHelper() throws SchedulerException, ClassNotFoundException {
+        schedule(newJob(TestJob.class).withIdentity("job", "group").build());
+
+        new VolatileSchedulerSnapshotter(source, classLoadHelper, snapshotFile, 0).snapshot();
+        new VolatileSchedulerSnapshotter(target, classLoadHelper, snapshotFile, 0).restore();
+
+        assertTrue(target.checkExists(JobKey.jobKey("job", "group")));
+        verify(classLoadHelper, atLeastOnce()).loadClass(TestJob.class.getName());
+    }
+
+    @Test
+    public void shouldSkipJobsWhichCannotBeRestored() throws SchedulerException {
+        JobDetail broken = newJob(TestJob.class).withIdentity("broken", "group").build();
+        broken.getJobDataMap().put("value", new UnreadableValue());
+
+        schedule(newJob(TestJob.class).withIdentity("first", "group").build());
+        schedule(broken);
+        schedule(newJob(TestJob.class).withIdentity("last", "group").build());
+
+        new VolatileSchedulerSnapshotter(source, classLoadHelper, snapshotFile, 0).snapshot();
+        new VolatileSchedulerSnapshotter(target, classLoadHelper, snapshotFile, 0).restore();
+
+        assertTrue(target.checkExists(JobKey.jobKey("first", "group")));
+        assertTrue(target.checkExists(JobKey.jobKey("last", "group")));
+        assertFalse(target.checkExists(JobKey.jobKey("broken", "group")));
+    }
+
+    private void schedule(JobDetail jobDetail) throws SchedulerException {
+        Trigger trigger = newTrigger()
+                .withIdentity(jobDetail.getKey().getName(), jobDetail.getKey().getGroup())
+                .startAt(new Date(System.currentTimeMillis() + HOUR))
+                .withSchedule(repeatHourlyForever())
+                .build();
+
+        source.scheduleJob(jobDetail, trigger);
+    }
+
+    private Scheduler createScheduler(String name) throws SchedulerException {
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", name);
+        properties.setProperty("org.quartz.threadPool.class", "org.quartz.simpl.SimpleThreadPool");
+        properties.setProperty("org.quartz.threadPool.threadCount", "1");
+        properties.setProperty("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore");
+
+        return new StdSchedulerFactory(properties).getScheduler();
+    }
+
+    public static class TestJob implements Job {
+
+        @Override
+        public void execute(JobExecutionContext context) {
+        }
+    }
+
+    private static class UnreadableValue implements Serializable {
+
+        private static final long serialVersionUID = -5281927634552314207L;
+
+        private void readObject(ObjectInputStream in) throws IOException {
+            throw new InvalidObjectException("The value cannot be read");
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.config.SettingsFacade;
+import org.motechproject.scheduler.contract.JobExecutionRecord;
+import org.motechproject.scheduler.contract.JobExecutionStats;
+import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class JobExecutionHistoryServiceImplTest {
+
+    @Mock
+    private MotechSchedulerFactoryBean motechSchedulerFactoryBean;
+
+    @Mock
+    private SettingsFacade schedulerSettings;
+
+    private JobExecutionHistoryServiceImpl historyService;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        when(schedulerSettings.getProperty(JobExecutionHistoryServiceImpl.HISTORY_CAPACITY)).thenReturn("3");
+        historyService = new JobExecutionHistoryServiceImpl(motechSchedulerFactoryBean, schedulerSettings);
+    }
+
+    @Test
+    public void shouldAggregateExecutionsPerSubject() {
+        historyService.recordExecution("a", "a-1", new Date(0), new Date(10), 4, true);
+        historyService.recordExecution("a", "a-1", new Date(100), new Date(130), 8, false);
+        historyService.recordExecution("b", "b-1", new Date(0), new Date(0), 2, true);
+        historyService.recordMisfire("a-1", new Date(200));
+
+        JobExecutionStats stats = historyService.getStats("a");
+
+        assertEquals(2, stats.getExecutions());
+        assertEquals(1, stats.getMisfires());
+        assertEquals(1, stats.getFailures());
+        assertEquals(20, stats.getAverageFireLag());
+        assertEquals(30, stats.getMaxFireLag());
+        assertEquals(30, stats.getFireLagPercentile95());
+        assertEquals(6, stats.getAveragePublishLatency());
+        assertEquals(8, stats.getMaxPublishLatency());
+
+        assertEquals(2, historyService.getStats().size());
+        assertEquals(3, historyService.getTotalExecutions());
+        assertEquals(1, historyService.getTotalMisfires());
+        assertEquals(30, historyService.getMaxFireLag());
+    }
+
+    @Test
+    public void shouldKeepOnlyMostRecentExecutions() {
+        for (int i = 0; i < 5; i++) {
+            historyService.recordExecution("a", "a-" + i, new Date(i), new Date(i), 0, true);
+        }
+
+        List<JobExecutionRecord> records = historyService.getRecentExecutions(null, 10);
+
+        assertEquals(3, records.size());
+        assertEquals("a-4", records.get(0).getJobId());
+        assertEquals("a-2", records.get(2).getJobId());
+        assertEquals(5, historyService.getStats("a").getExecutions());
+    }
+
+    @Test
+    public void shouldClearHistory() {
+        historyService.recordExecution("a", "a-1", new Date(0), new Date(10), 4, true);
+
+        historyService.clear();
+
+        assertTrue(historyService.getRecentExecutions(null, 10).isEmpty());
+        assertNull(historyService.getStats("a"));
+        assertEquals(0, historyService.getTotalExecutions());
+    }
+}
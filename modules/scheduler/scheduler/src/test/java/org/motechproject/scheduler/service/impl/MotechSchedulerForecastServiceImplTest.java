@@ -0,0 +1,151 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.config.SettingsFacade;
+import org.motechproject.scheduler.contract.CronJobId;
+import org.motechproject.scheduler.contract.JobId;
+import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.impl.StdSchedulerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.motechproject.scheduler.service.impl.MotechSchedulerServiceImpl.JOB_GROUP_NAME;
+import static org.quartz.JobBuilder.newJob;
+import static org.quartz.SimpleScheduleBuilder.repeatHourlyForever;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MotechSchedulerForecastServiceImplTest {
+
+    private static final JobId JOB_ID = new CronJobId("subject", "id");
+    private static final JobId OTHER_JOB_ID = new CronJobId("subject", "other");
+
+    @Mock
+    private MotechSchedulerFactoryBean schedulerFactoryBean;
+
+    @Mock
+    private SettingsFacade settings;
+
+    private Scheduler scheduler;
+
+    private DateTime start = DateTime.now().withMillisOfSecond(0).plusMinutes(1);
+
+    @Before
+    public void setUp() throws SchedulerException {
+        Properties properties = new Properties();
+        properties.setProperty("org.quartz.scheduler.instanceName", "ForecastTest");
+        properties.setProperty("org.quartz.threadPool.class", "org.quartz.simpl.SimpleThreadPool");
+        properties.setProperty("org.quartz.threadPool.threadCount", "1");
+        properties.setProperty("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore");
+
+        scheduler = spy(new StdSchedulerFactory(properties).getScheduler());
+
+        when(schedulerFactoryBean.getQuartzSchedulers()).thenReturn(Arrays.asList(scheduler));
+
+        scheduler.scheduleJob(newJob(TestJob.class).withIdentity(JOB_ID.value(), JOB_GROUP_NAME).build(),
+                trigger(JOB_ID, start));
+    }
+
+    @After
+    public void tearDown() throws SchedulerException {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void shouldReturnCachedForecast() throws SchedulerException {
+        MotechSchedulerForecastServiceImpl forecastService = createService("60");
+
+        List<DateTime> first = forecastService.getFireTimes(JOB_ID, start, start.plusHours(2));
+        List<DateTime> second = forecastService.getFireTimes(JOB_ID, start, start.plusHours(5));
+
+        assertEquals(3, first.size());
+        assertEquals(6, second.size());
+        verify(scheduler, times(1)).getTrigger(any(TriggerKey.class));
+    }
+
+    @Test
+    public void shouldReloadExpiredForecast() throws SchedulerException {
+        MotechSchedulerForecastServiceImpl forecastService = createService("0");
+
+        forecastService.getFireTimes(JOB_ID, start, start.plusHours(2));
+        forecastService.getFireTimes(JOB_ID, start, start.plusHours(2));
+
+        verify(scheduler, times(2)).getTrigger(any(TriggerKey.class));
+    }
+
+    @Test
+    public void shouldDropForecastOfRescheduledJob() throws SchedulerException {
+        MotechSchedulerForecastServiceImpl forecastService = createService("60");
+        forecastService.registerListeners();
+
+        List<DateTime> fireTimes = forecastService.getFireTimes(JOB_ID, start, start.plusHours(2));
+        assertEquals(start.getMillis(), fireTimes.get(0).getMillis());
+
+        DateTime newStart = start.plusMinutes(30);
+        TriggerKey key = TriggerKey.triggerKey(JOB_ID.value(), JOB_GROUP_NAME);
+        scheduler.rescheduleJob(key, trigger(JOB_ID, newStart));
+
+        fireTimes = forecastService.getFireTimes(JOB_ID, start, start.plusHours(2));
+
+        assertEquals(newStart.getMillis(), fireTimes.get(0).getMillis());
+        verify(scheduler, times(2)).getTrigger(key);
+    }
+
+    @Test
+    public void shouldReturnFireTimesOfManyJobs() throws SchedulerException {
+        MotechSchedulerForecastServiceImpl forecastService = createService("60");
+        forecastService.getFireTimes(JOB_ID, start, start.plusHours(2));
+
+        Map<String, List<DateTime>> fireTimes = forecastService.getFireTimes(Arrays.asList(JOB_ID, OTHER_JOB_ID),
+                start, start.plusHours(2));
+
+        assertEquals(2, fireTimes.size());
+        assertEquals(3, fireTimes.get(JOB_ID.value()).size());
+        assertTrue(fireTimes.get(OTHER_JOB_ID.value()).isEmpty());
+        // the cached job is not loaded again, only the missing one is looked up
+        verify(scheduler, times(2)).getTrigger(any(TriggerKey.class));
+    }
+
+    private MotechSchedulerForecastServiceImpl createService(String ttlInSeconds) {
+        when(settings.getProperty(MotechSchedulerForecastServiceImpl.CACHE_TTL)).thenReturn(ttlInSeconds);
+        return new MotechSchedulerForecastServiceImpl(schedulerFactoryBean, settings, new Properties());
+    }
+
+    private Trigger trigger(JobId jobId, DateTime startTime) {
+        return newTrigger()
+                .withIdentity(jobId.value(), JOB_GROUP_NAME)
+                .forJob(jobId.value(), JOB_GROUP_NAME)
+                .startAt(startTime.toDate())
+                .withSchedule(repeatHourlyForever())
+                .build();
+    }
+
+    public static class TestJob implements Job {
+
+        @Override
+        public void execute(JobExecutionContext context) {
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.motechproject.scheduler.trigger;
+
+import org.joda.time.DateTime;
+import org.joda.time.Period;
+import org.junit.Test;
+import org.quartz.ScheduleBuilder;
+import org.quartz.TriggerUtils;
+import org.quartz.impl.calendar.BaseCalendar;
+import org.quartz.spi.OperableTrigger;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.quartz.CronScheduleBuilder.cronSchedule;
+import static org.quartz.SimpleScheduleBuilder.simpleSchedule;
+import static org.quartz.TriggerBuilder.newTrigger;
+
+public class FireTimeForecasterTest {
+
+    private static final DateTime START = new DateTime(2015, 1, 31, 10, 0, 0, 0);
+
+    @Test
+    public void shouldForecastSimpleTriggerFireTimes() {
+        OperableTrigger trigger = trigger(simpleSchedule().withIntervalInMinutes(15).withRepeatCount(5000), null);
+
+        assertSameAsQuartz(trigger, START.plusDays(10).plusMinutes(7), START.plusDays(11));
+        assertSameAsQuartz(trigger, START.minusDays(1), START.plusHours(2));
+        assertSameAsQuartz(trigger, START.plusDays(60), START.plusDays(61));
+    }
+
+    @Test
+    public void shouldForecastCronTriggerFireTimes() {
+        OperableTrigger trigger = trigger(cronSchedule("0 30 9 ? * MON,WED"), START.plusYears(1));
+
+        assertSameAsQuartz(trigger, START.plusMonths(3), START.plusMonths(5));
+        assertSameAsQuartz(trigger, START.plusMonths(11), START.plusYears(2));
+    }
+
+    @Test
+    public void shouldForecastFixedLengthPeriodTriggerFireTimes() {
+        OperableTrigger trigger = trigger(PeriodIntervalScheduleBuilder.periodIntervalSchedule()
+                .withRepeatPeriod(Period.hours(5).plusMinutes(20)), START.plusMonths(6));
+
+        assertSameAsQuartz(trigger, START.plusMonths(2).plusMinutes(3), START.plusMonths(2).plusDays(3));
+        assertSameAsQuartz(trigger, START.plusMonths(5).plusDays(29), START.plusMonths(7));
+    }
+
+    @Test
+    public void shouldForecastCalendarPeriodTriggerFireTimes() {
+        OperableTrigger trigger = trigger(PeriodIntervalScheduleBuilder.periodIntervalSchedule()
+                .withRepeatPeriod(Period.months(1)), null);
+
+        assertSameAsQuartz(trigger, START.plusYears(2), START.plusYears(3));
+    }
+
+    @Test
+    public void shouldContinueFromAnchor() {
+        OperableTrigger trigger = trigger(PeriodIntervalScheduleBuilder.periodIntervalSchedule()
+                .withRepeatPeriod(Period.months(1)), null);
+
+        List<Date> firstYear = FireTimeForecaster.computeFireTimes(trigger, START.toDate(), START.plusYears(1).toDate());
+        Date anchor = firstYear.get(firstYear.size() - 1);
+
+        List<Date> expected = TriggerUtils.computeFireTimesBetween(trigger, new BaseCalendar(),
+                START.plusYears(1).plusMillis(1).toDate(), START.plusYears(2).toDate());
+        List<Date> actual = FireTimeForecaster.computeFireTimes(trigger, anchor,
+                START.plusYears(1).plusMillis(1).toDate(), START.plusYears(2).toDate());
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void shouldReturnEmptyListWhenTriggerDoesNotFireInRange() {
+        OperableTrigger trigger = trigger(simpleSchedule().withIntervalInHours(1).withRepeatCount(3), null);
+
+        assertTrue(FireTimeForecaster.computeFireTimes(trigger, START.plusDays(1).toDate(),
+                START.plusDays(2).toDate()).isEmpty());
+    }
+
+    @Test
+    public void shouldRecognizeFixedLengthPeriods() {
+        assertTrue(FireTimeForecaster.isFixedLength(Period.hours(36)));
+        assertFalse(FireTimeForecaster.isFixedLength(Period.days(1)));
+        assertFalse(FireTimeForecaster.isFixedLength(Period.months(1).plusHours(1)));
+    }
+
+    private OperableTrigger trigger(ScheduleBuilder scheduleBuilder, DateTime endTime) {
+        OperableTrigger trigger = (OperableTrigger) newTrigger()
+                .withIdentity("test")
+                .withSchedule(scheduleBuilder)
+                .startAt(START.toDate())
+                .endAt(endTime == null ? null : endTime.toDate())
+                .build();
+        trigger.computeFirstFireTime(null);
+        return trigger;
+    }
+
+    private void assertSameAsQuartz(OperableTrigger trigger, DateTime from, DateTime to) {
+        List<Date> expected = TriggerUtils.computeFireTimesBetween(trigger, new BaseCalendar(), from.toDate(), to.toDate());
+        List<Date> actual = FireTimeForecaster.computeFireTimes(trigger, from.toDate(), to.toDate());
+
+        assertEquals(expected, actual);
+    }
+}
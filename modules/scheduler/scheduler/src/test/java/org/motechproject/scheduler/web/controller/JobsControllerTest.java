@@ -5,6 +5,9 @@ import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.motechproject.scheduler.contract.JobBasicInfo;
+import org.motechproject.scheduler.contract.JobExecutionRecord;
+import org.motechproject.scheduler.contract.JobExecutionStats;
+import org.motechproject.scheduler.service.JobExecutionHistoryService;
 import org.motechproject.scheduler.service.MotechSchedulerDatabaseService;
 import org.motechproject.scheduler.service.MotechSchedulerService;
 import org.motechproject.scheduler.contract.JobsSearchSettings;
@@ -13,8 +16,10 @@ import org.quartz.SchedulerException;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -34,6 +39,9 @@ public class JobsControllerTest {
     @Mock
     MotechSchedulerDatabaseService motechSchedulerDatabaseService;
 
+    @Mock
+    JobExecutionHistoryService jobExecutionHistoryService;
+
     JobBasicInfo testJobBasicInfo1;
     JobBasicInfo testJobBasicInfo2;
     JobBasicInfo testJobBasicInfo3;
@@ -105,6 +113,23 @@ public class JobsControllerTest {
         verify(motechSchedulerDatabaseService).getScheduledJobDetailedInfo(testJobBasicInfo3);
     }
 
+    @Test
+    public void shouldGetExecutionStats() {
+        List<JobExecutionStats> stats = asList(new JobExecutionStats("subject"));
+        when(jobExecutionHistoryService.getStats()).thenReturn(stats);
+
+        assertEquals(stats, jobsController.getExecutionStats());
+    }
+
+    @Test
+    public void shouldGetExecutionHistory() {
+        List<JobExecutionRecord> records = asList(new JobExecutionRecord("subject", "subject-job", new Date(0),
+                new Date(10), 5, false, true));
+        when(jobExecutionHistoryService.getRecentExecutions("subject", 10)).thenReturn(records);
+
+        assertEquals(records, jobsController.getExecutionHistory("subject", 10));
+    }
+
     private JobsSearchSettings getDefaultGridSettings() {
         JobsSearchSettings jobsSearchSettings = new JobsSearchSettings();
 
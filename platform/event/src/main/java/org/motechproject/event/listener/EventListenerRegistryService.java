@@ -1,5 +1,7 @@
 package org.motechproject.event.listener;
 
+import org.motechproject.server.osgi.event.EventSubscriptionRegistry;
+
 import java.util.List;
 import java.util.Set;
 
@@ -7,7 +9,7 @@ import java.util.Set;
  * Gives access to the registry of listeners for Motech events. This interface is necessary for OSGi service publication.
  * One can register themselves to listen for a specific set of event's subject.
  */
-public interface EventListenerRegistryService {
+public interface EventListenerRegistryService extends EventSubscriptionRegistry {
 
     /**
      * Registers the event listener to be notified when events with the matching
@@ -42,6 +44,7 @@ public interface EventListenerRegistryService {
      * @param subject the subject of the event
      * @return {@code true} if the subject has any listeners; {@code false} otherwise
      */
+    @Override
     boolean hasListener(String subject);
 
     /**
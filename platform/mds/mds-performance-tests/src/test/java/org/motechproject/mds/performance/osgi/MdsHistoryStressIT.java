@@ -0,0 +1,118 @@
+package org.motechproject.mds.performance.osgi;
+
+import org.eclipse.gemini.blueprint.util.OsgiBundleUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.TrackingDto;
+import org.motechproject.mds.performance.service.MdsDummyDataGenerator;
+import org.motechproject.mds.performance.service.impl.MdsDummyDataGeneratorImpl;
+import org.motechproject.mds.service.EntityService;
+import org.motechproject.mds.service.JarGeneratorService;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.util.ClassName;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.testing.osgi.container.MotechNativeTestContainerFactory;
+import org.motechproject.testing.osgi.helper.ServiceRetriever;
+import org.ops4j.pax.exam.ExamFactory;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerSuite;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.util.List;
+
+import static org.junit.Assert.assertNotNull;
+import static org.motechproject.mds.util.Constants.BundleNames.MDS_ENTITIES_SYMBOLIC_NAME;
+
+/**
+ * Measures updates of instances of an entity with history recording. Instances are updated both with changed
+ * and with unchanged values, since unchanged instances used to require loading and comparing their latest
+ * historical revisions. Run it once for each value of the <code>mds.history.mode</code> property, to compare
+ * writing revisions in the same transaction with writing them asynchronously.
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerSuite.class)
+@ExamFactory(MotechNativeTestContainerFactory.class)
+public class MdsHistoryStressIT extends LoggingPerformanceIT {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MdsHistoryStressIT.class);
+
+    private static final int TEST_INSTANCES = Integer.parseInt(System.getProperty("mds.performance.quantity"));
+
+    private MdsDummyDataGenerator generator;
+    private String entityClassName;
+
+    @Inject
+    private BundleContext bundleContext;
+    @Inject
+    private EntityService entityService;
+    @Inject
+    private JarGeneratorService jarGeneratorService;
+
+    @Before
+    public void setUp() throws Exception {
+        setUpSecurityContext("motech_bot", "motech", "mdsSchemaAccess");
+
+        generator = new MdsDummyDataGeneratorImpl(entityService, jarGeneratorService, bundleContext);
+        generator.setEntityPrefix("HistoryStressITEntity");
+        entityClassName = String.format("%s.%s", Constants.PackagesGenerated.ENTITY,
+                generator.getEntityPrefix().concat("0"));
+    }
+
+    @Test
+    public void testHistoryPerformance() throws Exception {
+        generator.generateDummyEntities(1, 4, 0, false);
+
+        EntityDto entityDto = entityService.getEntityByClassName(entityClassName);
+        TrackingDto tracking = entityService.getAdvancedSettings(entityDto.getId(), true).getTracking();
+        tracking.setRecordHistory(true);
+        entityService.updateTracking(entityDto.getId(), tracking);
+        jarGeneratorService.regenerateMdsDataBundle(entityService.getSchema());
+
+        Bundle entitiesBundle = OsgiBundleUtils.findBundleBySymbolicName(bundleContext, MDS_ENTITIES_SYMBOLIC_NAME);
+        assertNotNull(entitiesBundle);
+
+        MotechDataService service = (MotechDataService) ServiceRetriever.getService(entitiesBundle.getBundleContext(),
+                ClassName.getInterfaceName(entityClassName), true);
+
+        generator.generateDummyInstances(entityDto.getId(), TEST_INSTANCES);
+
+        stressTestUpdatingWithChanges(service, entityDto.getId());
+        stressTestUpdatingWithoutChanges(service);
+    }
+
+    private void stressTestUpdatingWithChanges(MotechDataService service, Long entityId) throws Exception {
+        List<Object> allObjects = service.retrieveAll();
+
+        Long startTime = System.nanoTime();
+        for (Object object : allObjects) {
+            Object changed = generator.makeDummyInstance(entityId);
+            PropertyUtil.safeSetProperty(changed, Constants.Util.ID_FIELD_NAME,
+                    PropertyUtil.safeGetProperty(object, Constants.Util.ID_FIELD_NAME));
+            service.updateFromTransient(changed);
+        }
+        Long endTime = (System.nanoTime() - startTime) / 1000000;
+
+        LOGGER.info("MDS Service: Updating " + TEST_INSTANCES + " changed instances with history took " + endTime + "ms.");
+        logToFile((double) endTime);
+    }
+
+    private void stressTestUpdatingWithoutChanges(MotechDataService service) {
+        List<Object> allObjects = service.retrieveAll();
+
+        Long startTime = System.nanoTime();
+        for (Object object : allObjects) {
+            service.update(object);
+        }
+        Long endTime = (System.nanoTime() - startTime) / 1000000;
+
+        LOGGER.info("MDS Service: Updating " + TEST_INSTANCES + " unchanged instances with history took " + endTime + "ms.");
+        logToFile((double) endTime);
+    }
+}
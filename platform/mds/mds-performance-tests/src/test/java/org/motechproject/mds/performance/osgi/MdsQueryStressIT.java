@@ -0,0 +1,100 @@
+package org.motechproject.mds.performance.osgi;
+
+import org.eclipse.gemini.blueprint.util.OsgiBundleUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.performance.service.MdsDummyDataGenerator;
+import org.motechproject.mds.performance.service.impl.MdsDummyDataGeneratorImpl;
+import org.motechproject.mds.service.EntityService;
+import org.motechproject.mds.service.JarGeneratorService;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.util.ClassName;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.testing.osgi.container.MotechNativeTestContainerFactory;
+import org.motechproject.testing.osgi.helper.ServiceRetriever;
+import org.ops4j.pax.exam.ExamFactory;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerSuite;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertNotNull;
+import static org.motechproject.mds.util.Constants.BundleNames.MDS_ENTITIES_SYMBOLIC_NAME;
+
+/**
+ * Measures lookups of single instances of an entity by their ids. All of these lookups have the same shape,
+ * so only the first of them has its filter generated and compiled, the query plan cache statistics of the
+ * entity are logged after the lookups.
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerSuite.class)
+@ExamFactory(MotechNativeTestContainerFactory.class)
+public class MdsQueryStressIT extends LoggingPerformanceIT {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MdsQueryStressIT.class);
+
+    private static final int TEST_INSTANCES = Integer.parseInt(System.getProperty("mds.performance.quantity"));
+
+    private MdsDummyDataGenerator generator;
+    private String entityClassName;
+
+    @Inject
+    private BundleContext bundleContext;
+    @Inject
+    private EntityService entityService;
+    @Inject
+    private JarGeneratorService jarGeneratorService;
+
+    @Before
+    public void setUp() throws Exception {
+        setUpSecurityContext("motech_bot", "motech", "mdsSchemaAccess");
+
+        generator = new MdsDummyDataGeneratorImpl(entityService, jarGeneratorService, bundleContext);
+        generator.setEntityPrefix("QueryStressITEntity");
+        entityClassName = String.format("%s.%s", Constants.PackagesGenerated.ENTITY,
+                generator.getEntityPrefix().concat("0"));
+    }
+
+    @Test
+    public void testQueryPerformance() throws Exception {
+        generator.generateDummyEntities(1, 4, 0, true);
+
+        EntityDto entityDto = entityService.getEntityByClassName(entityClassName);
+
+        Bundle entitiesBundle = OsgiBundleUtils.findBundleBySymbolicName(bundleContext, MDS_ENTITIES_SYMBOLIC_NAME);
+        assertNotNull(entitiesBundle);
+
+        MotechDataService service = (MotechDataService) ServiceRetriever.getService(entitiesBundle.getBundleContext(),
+                ClassName.getInterfaceName(entityClassName), true);
+
+        generator.generateDummyInstances(entityDto.getId(), TEST_INSTANCES);
+
+        List<Object> ids = new ArrayList<>();
+        for (Object instance : service.retrieveAll()) {
+            ids.add(PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME));
+        }
+
+        stressTestLookups(service, ids);
+    }
+
+    private void stressTestLookups(MotechDataService service, List<Object> ids) {
+        Long startTime = System.nanoTime();
+        for (Object id : ids) {
+            service.retrieve(Constants.Util.ID_FIELD_NAME, id);
+        }
+        Long endTime = (System.nanoTime() - startTime) / 1000000;
+
+        LOGGER.info("MDS Service: Looking up " + ids.size() + " instances by id took " + endTime + "ms.");
+        LOGGER.info("MDS Service: Query plan cache statistics: " + service.getQueryPlanCacheStatistics());
+        logToFile((double) endTime);
+    }
+}
@@ -1,6 +1,7 @@
 package org.motechproject.mds.web.controller;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.jackson.map.ObjectMapper;
@@ -41,7 +42,6 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.management.InstanceNotFoundException;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
@@ -90,8 +90,7 @@ public class InstanceController extends MdsController {
     @RequestMapping(value = "/instances/deleteBlob/{entityId}/{instanceId}/{fieldId}", method = RequestMethod.GET)
     @ResponseStatus(HttpStatus.OK)
     public void deleteBlobContent(@PathVariable Long entityId, @PathVariable Long instanceId, @PathVariable Long fieldId) {
-        EntityRecord record = instanceService.getEntityInstance(entityId, instanceId);
-        instanceService.saveInstance(record, fieldId);
+        instanceService.deleteBlobField(entityId, instanceId, fieldId);
     }
 
     @RequestMapping(value = "/instances/{entityId}/new")
@@ -111,25 +110,18 @@ public class InstanceController extends MdsController {
     @RequestMapping(value = "/instances/{entityId}/{instanceId}/{fieldName}", method = RequestMethod.GET)
     @ResponseBody
     public void getBlobField(@PathVariable Long entityId, @PathVariable Long instanceId,
-                             @PathVariable String fieldName, HttpServletResponse response) throws IOException, InstanceNotFoundException {
-        byte[] content;
-        Object value = instanceService.getInstanceField(entityId, instanceId, fieldName);
-        if (value instanceof  byte[]) {
-            content = (byte[]) value;
-        } else {
-            content = ArrayUtils.toPrimitive((Byte[]) value);
-        }
-
-        try (OutputStream outputStream = response.getOutputStream()) {
+                             @PathVariable String fieldName, HttpServletResponse response) throws IOException {
+        // the value is copied straight from the database to the response
+        try (InputStream content = instanceService.openBlobField(entityId, instanceId, fieldName);
+             OutputStream outputStream = response.getOutputStream()) {
             response.setHeader("Accept-Ranges", "bytes");
 
-            if (content.length == 0) {
+            if (content == null) {
                 response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             } else {
                 response.setStatus(HttpServletResponse.SC_OK);
+                IOUtils.copy(content, outputStream);
             }
-
-            outputStream.write(content);
         }
     }
 
@@ -263,7 +255,7 @@ public class InstanceController extends MdsController {
 
         final String fileName = "Entity_" + entityId + "_instances";
 
-        response.setContentType("text/csv");
+        response.setContentType(Constants.ExportFormat.PDF.equals(outputFormat) ? "application/pdf" : "text/csv");
         response.setCharacterEncoding(UTF_8);
         response.setHeader(
                 "Content-Disposition",
@@ -274,6 +266,8 @@ public class InstanceController extends MdsController {
 
         QueryParams queryParams = new QueryParams(1, pageSize, QueryParamsBuilder.buildOrderList(settings, fieldMap));
 
+        // rows are written to the response as they are exported, chunk by chunk, so the response
+        // is not buffered as a whole
         if (Constants.ExportFormat.PDF.equals(outputFormat)) {
             csvImportExportService.exportPdf(entityId, response.getOutputStream(), settings.getLookup(), queryParams,
                     settings.getSelectedFields(), fieldMap);
@@ -281,6 +275,7 @@ public class InstanceController extends MdsController {
             csvImportExportService.exportCsv(entityId, response.getWriter(), settings.getLookup(), queryParams,
                     settings.getSelectedFields(), fieldMap);
         }
+        response.flushBuffer();
     }
 
     @RequestMapping(value = "/entities/{entityId}/instances", method = RequestMethod.POST)
@@ -5,6 +5,7 @@ import org.datanucleus.exceptions.NucleusOptimisticException;
 import org.datanucleus.exceptions.NucleusUserException;
 import org.motechproject.mds.exception.rest.RestBadBodyFormatException;
 import org.motechproject.mds.exception.rest.RestEntityNotFoundException;
+import org.motechproject.mds.exception.rest.RestInternalException;
 import org.motechproject.mds.exception.rest.RestLookupExecutionForbiddenException;
 import org.motechproject.mds.exception.rest.RestLookupNotFoundException;
 import org.motechproject.mds.exception.rest.RestNoLookupResultException;
@@ -29,9 +30,11 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 
 import javax.jdo.JDOUserException;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.ConstraintViolationException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Map;
 
 /**
@@ -50,47 +53,88 @@ public class MdsRestController  {
     @RequestMapping(value = "/{moduleName}/{namespace}/{entityName}", method = RequestMethod.GET)
     @ResponseBody
     public Object get(@PathVariable String moduleName, @PathVariable String namespace,
-                    @PathVariable String entityName, @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, moduleName, namespace, requestParams, null);
+                    @PathVariable String entityName, @RequestParam Map<String, String> requestParams,
+                    HttpServletResponse response) {
+        return doGet(entityName, moduleName, namespace, requestParams, null, response);
     }
 
     @RequestMapping(value = "/{moduleName}/{entityName}", method = RequestMethod.GET)
     @ResponseBody
     public Object get(@PathVariable String moduleName, @PathVariable String entityName,
-                    @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, moduleName, null, requestParams, null);
+                    @RequestParam Map<String, String> requestParams, HttpServletResponse response) {
+        return doGet(entityName, moduleName, null, requestParams, null, response);
     }
 
     @RequestMapping(value = "/lookup/{entityName}/{lookupName}", method = RequestMethod.GET)
     @ResponseBody
     public Object lookupGet(@PathVariable String entityName, @PathVariable String lookupName,
-                      @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, null, null, requestParams, lookupName);
+                      @RequestParam Map<String, String> requestParams, HttpServletResponse response) {
+        return doGet(entityName, null, null, requestParams, lookupName, response);
     }
 
     @RequestMapping(value = "/lookup/{moduleName}/{entityName}/{lookupName}", method = RequestMethod.GET)
     @ResponseBody
     public Object lookupGet(@PathVariable String moduleName, @PathVariable String entityName,
-                      @PathVariable String lookupName, @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, moduleName, null, requestParams, lookupName);
+                      @PathVariable String lookupName, @RequestParam Map<String, String> requestParams,
+                      HttpServletResponse response) {
+        return doGet(entityName, moduleName, null, requestParams, lookupName, response);
     }
 
     @RequestMapping(value = "/lookup/{moduleName}/{namespace}/{entityName}/{lookupName}", method = RequestMethod.GET)
     @ResponseBody
     public Object lookupGet(@PathVariable String moduleName, @PathVariable String namespace,
                       @PathVariable String entityName, @PathVariable String lookupName,
-                      @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, moduleName, namespace, requestParams, lookupName);
+                      @RequestParam Map<String, String> requestParams, HttpServletResponse response) {
+        return doGet(entityName, moduleName, namespace, requestParams, lookupName, response);
+    }
+
+    @RequestMapping(value = "/lookup/{entityName}/{lookupName}", method = RequestMethod.POST)
+    @ResponseBody
+    public Object lookupPost(@PathVariable String entityName, @PathVariable String lookupName,
+                             @RequestParam Map<String, String> requestParams, HttpServletRequest request) {
+        return doBulkLookup(entityName, null, null, lookupName, requestParams, request);
+    }
+
+    @RequestMapping(value = "/lookup/{moduleName}/{entityName}/{lookupName}", method = RequestMethod.POST)
+    @ResponseBody
+    public Object lookupPost(@PathVariable String moduleName, @PathVariable String entityName,
+                             @PathVariable String lookupName, @RequestParam Map<String, String> requestParams,
+                             HttpServletRequest request) {
+        return doBulkLookup(entityName, moduleName, null, lookupName, requestParams, request);
+    }
+
+    @RequestMapping(value = "/lookup/{moduleName}/{namespace}/{entityName}/{lookupName}", method = RequestMethod.POST)
+    @ResponseBody
+    public Object lookupPost(@PathVariable String moduleName, @PathVariable String namespace,
+                             @PathVariable String entityName, @PathVariable String lookupName,
+                             @RequestParam Map<String, String> requestParams, HttpServletRequest request) {
+        return doBulkLookup(entityName, moduleName, namespace, lookupName, requestParams, request);
+    }
+
+    private Object doBulkLookup(String entityName, String moduleName, String namespace, String lookupName,
+                                Map<String, String> requestParams, HttpServletRequest request) {
+        debugRequest("POST", entityName, moduleName, namespace);
+
+        MdsRestFacade restFacade = restFacadeRetriever.getRestFacade(entityName, moduleName, namespace);
+        Boolean includeBlob = ParamParser.getIncludeBlob(requestParams);
+
+        // the body is a list of lookup parameter maps, all of them are looked up at once
+        try (InputStream bodyInStream = request.getInputStream()) {
+            return restFacade.executeBulkLookup(lookupName, bodyInStream, includeBlob != null && includeBlob);
+        } catch (IOException e) {
+            throw new RestBadBodyFormatException("Unable to read request body", e);
+        }
     }
 
     @RequestMapping(value = "/{entityName}", method = RequestMethod.GET)
     @ResponseBody
-    public Object get(@PathVariable String entityName, @RequestParam Map<String, String> requestParams) {
-        return doGet(entityName, null, null, requestParams, null);
+    public Object get(@PathVariable String entityName, @RequestParam Map<String, String> requestParams,
+                      HttpServletResponse response) {
+        return doGet(entityName, null, null, requestParams, null, response);
     }
 
     private Object doGet(String entityName, String moduleName, String namespace,
-                       Map<String, String> requestParams, String pathLookupName) {
+                       Map<String, String> requestParams, String pathLookupName, HttpServletResponse response) {
         debugRequest("GET", entityName, moduleName, namespace);
 
         QueryParams queryParams = ParamParser.buildQueryParams(requestParams);
@@ -102,8 +146,13 @@ public class MdsRestController  {
         MdsRestFacade restFacade = restFacadeRetriever.getRestFacade(entityName, moduleName, namespace);
 
         Boolean includeBlob = ParamParser.getIncludeBlob(requestParams);
+        Boolean stream = ParamParser.getStream(requestParams);
 
-        if (lookupName != null) {
+        if (stream != null && stream && id == null) {
+            // the response is written by the facade, nothing is returned for the message converters
+            doStream(restFacade, lookupName, requestParams, queryParams, includeBlob != null && includeBlob, response);
+            return null;
+        } else if (lookupName != null) {
             // lookup
             return restFacade.executeLookup(lookupName, requestParams, queryParams, includeBlob != null && includeBlob);
         } else if (id != null) {
@@ -111,7 +160,28 @@ public class MdsRestController  {
             return restFacade.get(id, includeBlob == null || includeBlob);
         } else {
             // get records
-            return restFacade.get(queryParams, includeBlob != null && includeBlob);
+            Boolean estimateCount = ParamParser.getEstimateCount(requestParams);
+            return restFacade.get(queryParams, includeBlob != null && includeBlob,
+                    estimateCount != null && estimateCount);
+        }
+    }
+
+    private void doStream(MdsRestFacade restFacade, String lookupName, Map<String, String> requestParams,
+                          QueryParams queryParams, boolean includeBlob, HttpServletResponse response) {
+        response.setContentType("application/json;charset=UTF-8");
+
+        try {
+            // the stream is not closed here, so that errors can still be reported before anything was written
+            OutputStream output = response.getOutputStream();
+
+            if (lookupName != null) {
+                restFacade.streamLookup(lookupName, requestParams, queryParams, includeBlob, output);
+            } else {
+                Boolean estimateCount = ParamParser.getEstimateCount(requestParams);
+                restFacade.stream(queryParams, includeBlob, estimateCount != null && estimateCount, output);
+            }
+        } catch (IOException e) {
+            throw new RestInternalException("Unable to write the response", e);
         }
     }
 
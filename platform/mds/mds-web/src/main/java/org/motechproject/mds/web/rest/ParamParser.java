@@ -2,9 +2,12 @@ package org.motechproject.mds.web.rest;
 
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.rest.RestCursor;
 import org.motechproject.mds.util.Order;
 import org.motechproject.mds.web.exception.InvalidParameterException;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -20,6 +23,9 @@ public final class ParamParser {
     public static final String LOOKUP_NAME = "lookup";
     public static final String ID = "id";
     public static final String INCLUDE_BLOB = "includeBlob";
+    public static final String CURSOR = "cursor";
+    public static final String ESTIMATE_COUNT = "estimateCount";
+    public static final String STREAM = "stream";
 
     public static QueryParams buildQueryParams(Map<String, String> requestParams) {
         Integer page;
@@ -45,6 +51,17 @@ public final class ParamParser {
 
         order = buildOrder(sortBy, orderDir);
 
+        if (requestParams.containsKey(CURSOR)) {
+            // keyset pagination, the page number is ignored
+            List<Order> orderList = new ArrayList<>();
+            if (order != null) {
+                orderList.add(order);
+            }
+
+            RestCursor cursor = getCursor(requestParams);
+            return QueryParams.after(cursor.getId(), cursor.getValues(), pageSize, orderList);
+        }
+
         return new QueryParams(page, pageSize, order);
     }
 
@@ -66,23 +83,43 @@ public final class ParamParser {
     }
 
     public static Boolean getIncludeBlob(Map<String, String> requestParams) {
+        return getBoolean(requestParams, INCLUDE_BLOB);
+    }
+
+    public static Boolean getEstimateCount(Map<String, String> requestParams) {
+        return getBoolean(requestParams, ESTIMATE_COUNT);
+    }
+
+    public static Boolean getStream(Map<String, String> requestParams) {
+        return getBoolean(requestParams, STREAM);
+    }
+
+    private static RestCursor getCursor(Map<String, String> requestParams) {
+        try {
+            return RestCursor.decode(requestParams.get(CURSOR));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidParameterException("Given cursor is not valid!", e);
+        }
+    }
+
+    private static Boolean getBoolean(Map<String, String> requestParams, String key) {
 
-        Boolean includeBlob = null;
+        Boolean result = null;
 
-        if (requestParams.containsKey(INCLUDE_BLOB)) {
+        if (requestParams.containsKey(key)) {
 
-            String value = requestParams.get(INCLUDE_BLOB);
+            String value = requestParams.get(key);
 
             if (value.toLowerCase().equals("true")) {
-                includeBlob = Boolean.TRUE;
+                result = Boolean.TRUE;
             } else if (value.toLowerCase().equals("false")) {
-                includeBlob = Boolean.FALSE;
+                result = Boolean.FALSE;
             } else {
-                throw new InvalidParameterException("The \"includeBlob\" is neither \"true\" nor \"false\"");
+                throw new InvalidParameterException(String.format("The \"%s\" is neither \"true\" nor \"false\"", key));
             }
         }
 
-        return includeBlob;
+        return result;
     }
 
     private static Integer getInteger(Map<String, String> requestParams, String key, Integer defaultVal) {
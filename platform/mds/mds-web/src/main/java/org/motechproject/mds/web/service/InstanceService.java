@@ -14,6 +14,7 @@ import org.motechproject.mds.web.domain.Records;
 import org.motechproject.mds.web.domain.RelationshipsUpdate;
 
 import javax.management.InstanceNotFoundException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -287,6 +288,30 @@ public interface InstanceService {
      */
     Object getInstanceField(Long entityId, Long instanceId, String fieldName) throws InstanceNotFoundException;
 
+    /**
+     * Opens a stream reading the value of a blob field of an instance, without loading the whole value into
+     * memory. The caller is responsible for closing the stream. Throws
+     * {@link org.motechproject.mds.exception.entity.EntityNotFoundException} if entity of given id does not exist.
+     *
+     * @param entityId id of the entity
+     * @param instanceId id of the instance
+     * @param fieldName name of the blob field
+     * @return the stream with the value of the field, or null if the instance does not exist or the field has no value
+     */
+    InputStream openBlobField(Long entityId, Long instanceId, String fieldName);
+
+    /**
+     * Clears the value of a blob field of an instance. The value is written straight to the database, so
+     * neither this nor other blob values of the instance are loaded into memory. Throws
+     * {@link org.motechproject.mds.exception.field.FieldNotFoundException} if the field is not a blob field of the
+     * entity, and {@link org.motechproject.mds.exception.object.ObjectNotFoundException} if the instance does not exist.
+     *
+     * @param entityId id of the entity
+     * @param instanceId id of the instance
+     * @param fieldId id of the blob field
+     */
+    void deleteBlobField(Long entityId, Long instanceId, Long fieldId);
+
     /**
      * Checks whether the logged in user has access to the entity with the given ID.
      *
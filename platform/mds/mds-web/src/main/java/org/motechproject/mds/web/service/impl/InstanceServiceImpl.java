@@ -11,6 +11,7 @@ import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 import org.motechproject.commons.date.model.Time;
 import org.motechproject.mds.display.DisplayHelper;
+import org.motechproject.mds.domain.RelationshipHolder;
 import org.motechproject.mds.domain.EntityType;
 import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.dto.FieldDto;
@@ -34,8 +35,14 @@ import org.motechproject.mds.filter.Filters;
 import org.motechproject.mds.helper.DataServiceHelper;
 import org.motechproject.mds.helper.bundle.MdsBundleHelper;
 import org.motechproject.mds.lookup.LookupExecutor;
+import org.motechproject.mds.query.EqualProperty;
 import org.motechproject.mds.query.InMemoryQueryFilter;
+import org.motechproject.mds.query.Property;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.query.QueryExecutor;
 import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.query.QueryUtil;
+import org.motechproject.mds.query.RelatedInstancesProperty;
 import org.motechproject.mds.service.EntityService;
 import org.motechproject.mds.service.HistoryService;
 import org.motechproject.mds.service.HistoryTrashClassHelper;
@@ -44,8 +51,10 @@ import org.motechproject.mds.service.TrashService;
 import org.motechproject.mds.service.TypeService;
 import org.motechproject.mds.service.UserPreferencesService;
 import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
 import org.motechproject.mds.util.MDSClassLoader;
 import org.motechproject.mds.util.MemberUtil;
+import org.motechproject.mds.util.Order;
 import org.motechproject.mds.util.PropertyUtil;
 import org.motechproject.mds.util.SecurityMode;
 import org.motechproject.mds.util.StateManagerUtil;
@@ -71,8 +80,11 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.jdo.Query;
 import javax.management.InstanceNotFoundException;
 import java.beans.PropertyDescriptor;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -233,6 +245,31 @@ public class InstanceServiceImpl implements InstanceService {
         return service.getDetachedField(instance, fieldName);
     }
 
+    @Override
+    public InputStream openBlobField(Long entityId, Long instanceId, String fieldName) {
+        EntityDto entity = getEntity(entityId);
+        MotechDataService service = getServiceForEntity(entity);
+        validateCredentialsForReading(entity);
+
+        return service.openBlob(instanceId, fieldName);
+    }
+
+    @Override
+    public void deleteBlobField(Long entityId, Long instanceId, Long fieldId) {
+        EntityDto entity = getEntity(entityId);
+        validateCredentials(entity);
+        validateNonEditableProperty(entity);
+
+        FieldDto field = entityService.getEntityFieldById(entityId, fieldId);
+        if (field == null || !field.getType().isBlob()) {
+            throw new FieldNotFoundException(entity.getClassName(), fieldId);
+        }
+
+        MotechDataService service = getServiceForEntity(entity);
+        // the same empty value the field is cleared to when the whole instance is saved
+        service.writeBlob(instanceId, field.getBasic().getName(), new ByteArrayInputStream(ArrayUtils.EMPTY_BYTE_ARRAY));
+    }
+
     @Override
     public List<BasicEntityRecord> getEntityRecordsFromLookup(Long entityId, String lookupName, Map<String, Object> lookupMap,
                                                          QueryParams queryParams) {
@@ -513,62 +550,136 @@ public class InstanceServiceImpl implements InstanceService {
             EntityDto relatedEntity = getEntity(relatedClass);
             List<FieldDto> relatedFields = getEntityFields(relatedEntity.getId());
             MotechDataService relatedDataService = getServiceForEntity(relatedEntity);
-            Collection relatedAsColl = new ArrayList<>();
 
-            // If the relationship already exists, fetch instances and use correct type
-            if (instanceId != null) {
-                // get the instance of the original entity
-                Object instance = service.findById(instanceId);
-
-                if (instance == null) {
-                    throw new ObjectNotFoundException(entityName, instanceId);
-                }
-
-                // the value of the related field
-                relatedAsColl = TypeHelper.asCollection(PropertyUtil.getProperty(instance, fieldName));
+            // If the relationship already exists, make sure the instance does, without loading the instance
+            if (instanceId != null && !instanceExists(service, instanceId)) {
+                throw new ObjectNotFoundException(entityName, instanceId);
             }
 
-            relatedAsColl.addAll(relatedDataService.findByIds(filter.getAddedIds()));
-
-            List<Long> updatedInstancesIds = new ArrayList<>();
+            // records edited in the grid are new instances that replace the existing ones
+            List<Long> excludedIds = new ArrayList<>(filter.getRemovedIds());
             for (EntityRecord record : filter.getAddedNewRecords()) {
                 Integer id = (Integer) record.getFieldByName(Constants.Util.ID_FIELD_NAME).getValue();
                 if (id != null && id > 0) {
-                    updatedInstancesIds.add(id.longValue());
+                    excludedIds.add(id.longValue());
                 }
             }
 
-            relatedAsColl.removeIf(new Predicate() {
-                @Override
-                public boolean test(Object o) {
-                    Long objectId = (Long) PropertyUtil.safeGetProperty(o, Constants.Util.ID_FIELD_NAME);
-                    return filter.getRemovedIds().contains(objectId) || updatedInstancesIds.contains(objectId);
+            // only the pending changes are kept in memory, they go before the instances from the database
+            List newInstances = new ArrayList<>();
+            for (EntityRecord record : filter.getAddedNewRecords()) {
+                newInstances.add(newInstanceFromEntityRecord(getEntityClass(relatedEntity), relatedFields, record.getFields(), relatedDataService));
+            }
+            newInstances = InMemoryQueryFilter.filter(newInstances, new QueryParams(queryParams.getOrderList()));
+
+            List relatedInstances = new ArrayList<>();
+            long relatedCount = 0;
+
+            if (instanceId != null || !filter.getAddedIds().isEmpty()) {
+                RelatedInstancesProperty property = new RelatedInstancesProperty(entity.getClassName(), fieldName,
+                        isCollectionRelationship(relatedField), instanceId, filter.getAddedIds(), excludedIds);
+
+                relatedCount = countRelatedInstances(relatedDataService, property);
+
+                // the page of database instances, shifted by the new instances shown on the previous pages
+                long fromIncl = 0;
+                Long toExcl = null;
+                if (queryParams.isPagingSet()) {
+                    long pageStart = (long) (queryParams.getPage() - 1) * queryParams.getPageSize();
+                    fromIncl = Math.max(0, pageStart - newInstances.size());
+                    toExcl = Math.max(0, pageStart + queryParams.getPageSize() - newInstances.size());
                 }
-            });
 
-            for (EntityRecord record : filter.getAddedNewRecords()) {
-                relatedAsColl.add(newInstanceFromEntityRecord(getEntityClass(relatedEntity), relatedFields, record.getFields(), relatedDataService));
+                if (fromIncl < relatedCount && (toExcl == null || fromIncl < toExcl)) {
+                    relatedInstances = retrieveRelatedInstances(relatedDataService, property, queryParams.getOrderList(),
+                            fromIncl, toExcl);
+                }
             }
 
-            // apply pagination ordering (currently in memory)
-            List filtered = InMemoryQueryFilter.filter(relatedAsColl, queryParams);
+            List filtered = new ArrayList<>();
+            if (queryParams.isPagingSet()) {
+                int pageStart = (queryParams.getPage() - 1) * queryParams.getPageSize();
+                int newFromIncl = Math.min(pageStart, newInstances.size());
+                int newToExcl = Math.min(pageStart + queryParams.getPageSize(), newInstances.size());
+                filtered.addAll(newInstances.subList(newFromIncl, newToExcl));
+            } else {
+                filtered.addAll(newInstances);
+            }
+            filtered.addAll(relatedInstances);
 
             // convert the instance to a grid-friendly form
             List<BasicEntityRecord> entityRecords = instancesToBasicRecords(filtered, relatedEntity, relatedFields,
                     relatedDataService, EntityType.STANDARD);
 
             // counts for the grid
-            int recordCount = relatedAsColl.size();
+            int recordCount = (int) relatedCount + newInstances.size();
             int rowCount = (int) Math.ceil(recordCount / (double) queryParams.getPageSize());
 
             // package as records
             return new Records<>(queryParams.getPage(), rowCount, recordCount, entityRecords);
-        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException | IllegalArgumentException |
+        } catch (IllegalAccessException | NoSuchMethodException | IllegalArgumentException |
                 ClassNotFoundException | CannotCompileException | InstantiationException | NoSuchFieldException e) {
            throw new ObjectReadException(entityId, e);
         }
     }
 
+    private boolean isCollectionRelationship(FieldDto field) {
+        RelationshipHolder holder = new RelationshipHolder(field);
+        return holder.isOneToMany() || holder.isManyToMany();
+    }
+
+    private boolean instanceExists(MotechDataService service, Long instanceId) {
+        final Property property = new EqualProperty<>(Constants.Util.ID_FIELD_NAME, instanceId, Long.class.getName());
+
+        long count = (long) service.executeQuery(new QueryExecution<Long>() {
+            @Override
+            public Long execute(Query query, InstanceSecurityRestriction restriction) {
+                QueryUtil.useFilter(query, Collections.singletonList(property), restriction);
+                QueryUtil.setCountResult(query);
+
+                return (Long) QueryExecutor.executeWithArray(query, new Object[]{property}, restriction);
+            }
+        });
+
+        return count > 0;
+    }
+
+    private long countRelatedInstances(MotechDataService relatedDataService, final RelatedInstancesProperty property) {
+        return (long) relatedDataService.executeQuery(new QueryExecution<Long>() {
+            @Override
+            public Long execute(Query query, InstanceSecurityRestriction restriction) {
+                useRelatedInstancesFilter(query, property, restriction);
+                QueryUtil.setCountResult(query);
+
+                return (Long) QueryExecutor.executeWithArray(query, new Object[]{property}, restriction);
+            }
+        });
+    }
+
+    private List retrieveRelatedInstances(MotechDataService relatedDataService, final RelatedInstancesProperty property,
+                                          final List<Order> orderList, final long fromIncl, final Long toExcl) {
+        return (List) relatedDataService.executeQuery(new QueryExecution<List>() {
+            @Override
+            public List execute(Query query, InstanceSecurityRestriction restriction) {
+                useRelatedInstancesFilter(query, property, restriction);
+                QueryUtil.setQueryParams(query, new QueryParams(orderList));
+                if (toExcl != null) {
+                    query.setRange(fromIncl, toExcl);
+                }
+
+                return (List) QueryExecutor.executeWithArray(query, new Object[]{property}, restriction);
+            }
+        });
+    }
+
+    private void useRelatedInstancesFilter(Query query, RelatedInstancesProperty property,
+                                           InstanceSecurityRestriction restriction) {
+        QueryUtil.useFilter(query, Collections.<Property>singletonList(property), restriction);
+        if (property.getVariableDeclaration() != null) {
+            query.declareVariables(property.getVariableDeclaration());
+        }
+    }
+
     private Object newInstanceFromEntityRecord(Class<?> entityClass, List<FieldDto> entityFields, List<FieldRecord> fields, MotechDataService service)
             throws IllegalAccessException, InstantiationException, ClassNotFoundException, NoSuchMethodException, CannotCompileException, NoSuchFieldException {
         Object instance = entityClass.newInstance();
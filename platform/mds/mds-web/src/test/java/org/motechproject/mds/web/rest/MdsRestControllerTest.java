@@ -18,6 +18,7 @@ import org.motechproject.mds.exception.rest.RestNotSupportedException;
 import org.motechproject.mds.exception.rest.RestOperationNotSupportedException;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.rest.MdsRestFacade;
+import org.motechproject.mds.rest.RestBulkLookupResult;
 import org.motechproject.mds.rest.RestProjection;
 import org.motechproject.mds.rest.RestResponse;
 import org.motechproject.mds.util.Order;
@@ -29,6 +30,7 @@ import javax.validation.ConstraintViolationException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -59,6 +61,7 @@ public class MdsRestControllerTest {
     private static final String PAGINATION_STR = "page=5&pageSize=14&sort=name&order=desc";
     private static final String LOOKUP_STR = "strField=something&intField=3";
     private static final String LOOKUP_PAGINATION_STR = PAGINATION_STR + "&" + LOOKUP_STR;
+    private static final String BULK_LOOKUP_BODY = "[{\"strField\":\"something\",\"intField\":\"3\"}]";
 
     private static final String NAME_FIELD = "name";
     private static final String VAL_FIELD = "val";
@@ -194,7 +197,7 @@ public class MdsRestControllerTest {
         when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, NAMESPACE))
                 .thenReturn(restFacade);
 
-        when(restFacade.get(any(QueryParams.class), anyBoolean()))
+        when(restFacade.get(any(QueryParams.class), anyBoolean(), anyBoolean()))
                 .thenThrow(new RestOperationNotSupportedException("not supported"));
         doThrow(new RestOperationNotSupportedException("not supported")).
                 when(restFacade).create(any(InputStream.class));
@@ -309,6 +312,21 @@ public class MdsRestControllerTest {
         testSingleReturnLookup(ENTITY_NAME, MODULE_NAME, NAMESPACE, true);
     }
 
+    @Test
+    public void shouldExecuteBulkLookupsForEude() throws Exception {
+        testBulkLookup(ENTITY_NAME, null, null);
+    }
+
+    @Test
+    public void shouldExecuteBulkLookupsForEntityWithModule() throws Exception {
+        testBulkLookup(ENTITY_NAME, MODULE_NAME, null);
+    }
+
+    @Test
+    public void shouldExecuteBulkLookupsForEntityWithModuleAndNs() throws Exception {
+        testBulkLookup(ENTITY_NAME, MODULE_NAME, NAMESPACE);
+    }
+
     // lookup errors
 
     @Test
@@ -339,6 +357,30 @@ public class MdsRestControllerTest {
         verify(restFacade).executeLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean());
     }
 
+    @Test
+    public void shouldReturn403ForForbiddenBulkLookups() throws Exception {
+        when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, NAMESPACE))
+                .thenReturn(restFacade);
+        when(restFacade.executeBulkLookup(eq(LOOKUP_NAME), any(InputStream.class), anyBoolean()))
+                .thenThrow(new RestLookupExecutionForbiddenException(LOOKUP_NAME));
+
+        mockMvc.perform(
+                post(buildUrl(ENTITY_NAME, MODULE_NAME, NAMESPACE, LOOKUP_NAME)).body(BULK_LOOKUP_BODY.getBytes())
+        ).andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void shouldReturn400ForBadBulkLookupBody() throws Exception {
+        when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, NAMESPACE))
+                .thenReturn(restFacade);
+        when(restFacade.executeBulkLookup(eq(LOOKUP_NAME), any(InputStream.class), anyBoolean()))
+                .thenThrow(new RestBadBodyFormatException("bad body"));
+
+        mockMvc.perform(
+                post(buildUrl(ENTITY_NAME, MODULE_NAME, NAMESPACE, LOOKUP_NAME)).body("not a list".getBytes())
+        ).andExpect(status().isBadRequest());
+    }
+
     // general errors
 
     @Test
@@ -396,7 +438,7 @@ public class MdsRestControllerTest {
 
         when(restFacadeRetriever.getRestFacade(entityName, moduleName, namespace))
                 .thenReturn(restFacade);
-        when(restFacade.get(any(QueryParams.class), anyBoolean())).thenReturn(response);
+        when(restFacade.get(any(QueryParams.class), anyBoolean(), anyBoolean())).thenReturn(response);
 
         when(restFacade.get(1l, true)).thenReturn(response2);
 
@@ -413,7 +455,7 @@ public class MdsRestControllerTest {
          .andExpect(content().string(objectMapper.writeValueAsString(response2)));
 
         ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
-        verify(restFacade).get(captor.capture(), anyBoolean());
+        verify(restFacade).get(captor.capture(), anyBoolean(), anyBoolean());
         ArgumentCaptor<Long> longCaptor = ArgumentCaptor.forClass(Long.class);
         verify(restFacade).get(longCaptor.capture(), anyBoolean());
 
@@ -519,6 +561,30 @@ public class MdsRestControllerTest {
         verifyLookupExecution();
     }
 
+    private void testBulkLookup(String entityName, String moduleName, String namespace) throws Exception {
+        Map<String, String> lookupParams = new LinkedHashMap<>();
+        lookupParams.put("strField", "something");
+        lookupParams.put("intField", "3");
+
+        RestProjection projection = new RestProjection();
+        projection.put(NAME_FIELD, "T1");
+        projection.put(VAL_FIELD, 3);
+
+        final List<RestBulkLookupResult> results = asList(new RestBulkLookupResult(lookupParams, asList(projection)));
+        when(restFacadeRetriever.getRestFacade(entityName, moduleName, namespace))
+                .thenReturn(restFacade);
+        when(restFacade.executeBulkLookup(eq(LOOKUP_NAME), any(InputStream.class), anyBoolean()))
+                .thenReturn(results);
+
+        mockMvc.perform(
+                post(buildUrl(entityName, moduleName, namespace, LOOKUP_NAME) + "?includeBlob=true")
+                        .body(BULK_LOOKUP_BODY.getBytes())
+        ).andExpect(status().isOk())
+         .andExpect(content().string(objectMapper.writeValueAsString(results)));
+
+        verify(restFacade).executeBulkLookup(eq(LOOKUP_NAME), any(InputStream.class), eq(true));
+    }
+
     private void verifyLookupExecution() {
         ArgumentCaptor<Map> lookupMapCaptor = ArgumentCaptor.forClass(Map.class);
         ArgumentCaptor<QueryParams> queryParamsCaptor = ArgumentCaptor.forClass(QueryParams.class);
@@ -2,8 +2,11 @@ package org.motechproject.mds.web.rest;
 
 import org.junit.Test;
 import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.rest.RestCursor;
 import org.motechproject.mds.util.Order;
+import org.motechproject.mds.web.exception.InvalidParameterException;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -52,6 +55,33 @@ public class ParamParserTest {
         assertEquals(Order.Direction.ASC, queryParams.getOrderList().get(0).getDirection());
     }
 
+    @Test
+    public void shouldBuildQueryParamsFromCursor() {
+        Map<String, String> requestParams = new HashMap<>();
+        requestParams.put("page", "14");
+        requestParams.put("pageSize", "120");
+        requestParams.put("sort", "someColumn");
+        requestParams.put("cursor", RestCursor.encode(2500L, Arrays.asList("value", null)));
+
+        QueryParams queryParams = ParamParser.buildQueryParams(requestParams);
+
+        assertTrue(queryParams.isKeysetSet());
+        assertEquals(Long.valueOf(2500L), queryParams.getAfterId());
+        assertEquals(Arrays.<Object>asList("value", null), queryParams.getAfterValues());
+        assertEquals(Integer.valueOf(1), queryParams.getPage());
+        assertEquals(Integer.valueOf(120), queryParams.getPageSize());
+        assertEquals(1, queryParams.getOrderList().size());
+        assertEquals("someColumn", queryParams.getOrderList().get(0).getField());
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void shouldNotAcceptInvalidCursor() {
+        Map<String, String> requestParams = new HashMap<>();
+        requestParams.put("cursor", "not a cursor");
+
+        ParamParser.buildQueryParams(requestParams);
+    }
+
     @Test
     public void shouldGetLookupName() {
         Map<String, String> requestParams = new HashMap<>();
@@ -8,8 +8,11 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Matchers;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 import org.motechproject.commons.date.model.Time;
 import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.mds.domain.OneToManyRelationship;
@@ -20,9 +23,11 @@ import org.motechproject.mds.dto.MetadataDto;
 import org.motechproject.mds.dto.TypeDto;
 import org.motechproject.mds.exception.entity.EntityInstancesNonEditableException;
 import org.motechproject.mds.exception.entity.EntityNotFoundException;
+import org.motechproject.mds.exception.field.FieldNotFoundException;
 import org.motechproject.mds.exception.object.ObjectNotFoundException;
 import org.motechproject.mds.exception.object.ObjectUpdateException;
 import org.motechproject.mds.exception.object.SecurityException;
+import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.DefaultMotechDataService;
 import org.motechproject.mds.service.EntityService;
@@ -53,7 +58,10 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.context.SecurityContextImpl;
 import org.springframework.security.core.userdetails.User;
 
+import javax.jdo.Query;
 import javax.management.InstanceNotFoundException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -638,7 +646,11 @@ public class InstanceServiceTest {
         mockTestClassEntity();
         mockTestClassService();
         mockTestClassFields();
-        when(serviceForAnotherSample.findById(INSTANCE_ID)).thenReturn(sampleForRelationshipTesting());
+        Query ownerQuery = mockQuery(serviceForAnotherSample);
+        when(ownerQuery.executeWithArray(Matchers.<Object>anyVararg())).thenReturn(1L);
+
+        Query query = mockQuery(testClassMotechDataService);
+        when(query.executeWithArray(Matchers.<Object>anyVararg())).thenReturn(3L, asList(new TestClass(1), new TestClass(2)));
 
         QueryParams queryParams = new QueryParams(1, 2, new Order(Constants.Util.ID_FIELD_NAME, Order.Direction.ASC));
         Records<BasicEntityRecord> records = instanceService.getRelatedFieldValue(ANOTHER_ENTITY_ID, INSTANCE_ID,
@@ -650,11 +662,26 @@ public class InstanceServiceTest {
         assertEquals(Integer.valueOf(3), records.getRecords()); // 3 records total
         assertEquals(asList(1L, 2L), extract(records.getRows(), on(BasicEntityRecord.class).getFieldByName("id").getValue()));
 
+        // the page is retrieved from the database, the related collection is not loaded
+        verify(query, times(2)).setFilter("((owner.id == param0_0 && owner.testClasses.contains(this)))");
+        verify(query, times(2)).declareVariables(AnotherSample.class.getName() + " owner");
+        verify(query).setResult("count(this)");
+        verify(query).setOrdering("id ascending");
+        verify(query).setRange(0, 2);
+
+        // the owner is only counted, it is not loaded together with its relationship
+        verify(ownerQuery).setFilter("id == param0");
+        verify(ownerQuery).setResult("count(this)");
+        verify(ownerQuery).executeWithArray(INSTANCE_ID);
+        verify(serviceForAnotherSample, never()).findById(anyLong());
+
         RelationshipsUpdate filter = new RelationshipsUpdate();
         filter.setRemovedIds(Arrays.asList(1L, 2L));
         filter.setAddedIds(Arrays.asList(50L));
 
-        when(testClassMotechDataService.findByIds(filter.getAddedIds())).thenReturn(Arrays.asList(new TestClass(50)));
+        query = mockQuery(testClassMotechDataService);
+        when(query.executeWithArray(Matchers.<Object>anyVararg())).thenReturn(2L, asList(new TestClass(3), new TestClass(50)));
+
         records = instanceService.getRelatedFieldValue(ANOTHER_ENTITY_ID, INSTANCE_ID,
                 "testClasses", filter, queryParams);
 
@@ -664,6 +691,41 @@ public class InstanceServiceTest {
         assertEquals(Integer.valueOf(2), records.getRecords()); // 2 records total
         // 1L and 2L removed, 50L added
         assertEquals(asList(3L, 50L), extract(records.getRows(), on(BasicEntityRecord.class).getFieldByName("id").getValue()));
+
+        verify(query, times(2)).setFilter("(((owner.id == param0_0 && owner.testClasses.contains(this)) || " +
+                "param0_1.contains(id)) && !param0_2.contains(id))");
+        verify(query, times(2)).executeWithArray(INSTANCE_ID, filter.getAddedIds(), filter.getRemovedIds());
+    }
+
+    @Test(expected = ObjectNotFoundException.class)
+    public void shouldThrowExceptionIfOwnerOfRelatedInstancesDoesNotExist() {
+        mockDataService();
+        mockAnotherEntity();
+        mockEntity();
+        mockSampleFields();
+        mockAnotherEntityFields();
+        mockTestClassEntity();
+        mockTestClassService();
+        mockTestClassFields();
+        Query ownerQuery = mockQuery(serviceForAnotherSample);
+        when(ownerQuery.executeWithArray(Matchers.<Object>anyVararg())).thenReturn(0L);
+
+        instanceService.getRelatedFieldValue(ANOTHER_ENTITY_ID, INSTANCE_ID, "testClasses",
+                new RelationshipsUpdate(), new QueryParams(1, 2));
+    }
+
+    private Query mockQuery(MotechDataService service) {
+        final Query query = mock(Query.class);
+
+        when(service.executeQuery(any(QueryExecution.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                QueryExecution execution = (QueryExecution) invocation.getArguments()[0];
+                return execution.execute(query, null);
+            }
+        });
+
+        return query;
     }
 
     private RelationshipsUpdate buildRelationshipUpdate() {
@@ -730,6 +792,66 @@ public class InstanceServiceTest {
         verify(motechDataService).getDetachedField(instance, "blobField");
     }
 
+    @Test
+    public void shouldOpenBlobField() {
+        EntityDto entityDto = new EntityDto();
+        entityDto.setReadOnlySecurityMode(null);
+        entityDto.setSecurityMode(null);
+        entityDto.setClassName(TestSample.class.getName());
+
+        when(entityService.getEntity(ENTITY_ID + 1)).thenReturn(entityDto);
+        mockDataService();
+        InputStream content = new ByteArrayInputStream(new byte[]{1, 2, 3});
+        when(motechDataService.openBlob(INSTANCE_ID, "blobField")).thenReturn(content);
+
+        assertEquals(content, instanceService.openBlobField(ENTITY_ID + 1, INSTANCE_ID, "blobField"));
+        verify(motechDataService, never()).getDetachedField(any(), anyString());
+    }
+
+    @Test
+    public void shouldDeleteBlobFieldUsingStream() throws Exception {
+        EntityDto entityDto = new EntityDto();
+        entityDto.setClassName(TestSample.class.getName());
+
+        FieldDto blobField = FieldTestHelper.fieldDto(6L, "blobField", Byte[].class.getName(), "Blob field", null);
+        blobField.setType(TypeDto.BLOB);
+
+        when(entityService.getEntity(ENTITY_ID + 1)).thenReturn(entityDto);
+        when(entityService.getEntityFieldById(ENTITY_ID + 1, 6L)).thenReturn(blobField);
+        mockDataService();
+
+        instanceService.deleteBlobField(ENTITY_ID + 1, INSTANCE_ID, 6L);
+
+        ArgumentCaptor<InputStream> captor = ArgumentCaptor.forClass(InputStream.class);
+        verify(motechDataService).writeBlob(eq(INSTANCE_ID), eq("blobField"), captor.capture());
+        assertEquals(-1, captor.getValue().read());
+        verify(motechDataService, never()).update(any());
+        verify(motechDataService, never()).getDetachedField(any(), anyString());
+    }
+
+    @Test(expected = FieldNotFoundException.class)
+    public void shouldNotDeleteValueOfFieldWhichIsNotBlob() {
+        EntityDto entityDto = new EntityDto();
+        entityDto.setClassName(TestSample.class.getName());
+
+        when(entityService.getEntity(ENTITY_ID + 1)).thenReturn(entityDto);
+        when(entityService.getEntityFieldById(ENTITY_ID + 1, 1L)).thenReturn(
+                FieldTestHelper.fieldDto(1L, "strField", String.class.getName(), "String field", null));
+        mockDataService();
+
+        instanceService.deleteBlobField(ENTITY_ID + 1, INSTANCE_ID, 1L);
+    }
+
+    @Test(expected = EntityInstancesNonEditableException.class)
+    public void shouldThrowExceptionWhileDeletingBlobFieldInNonEditableEntity() {
+        EntityDto nonEditableEntity = new EntityDto();
+        nonEditableEntity.setNonEditable(true);
+
+        when(entityService.getEntity(ANOTHER_ENTITY_ID)).thenReturn(nonEditableEntity);
+
+        instanceService.deleteBlobField(ANOTHER_ENTITY_ID, INSTANCE_ID, 6L);
+    }
+
     private void setUpSecurityContext() {
         SimpleGrantedAuthority authority = new SimpleGrantedAuthority("mdsSchemaAccess");
         List<SimpleGrantedAuthority> authorities = asList(authority);
@@ -8,7 +8,7 @@ import java.util.List;
 
 /**
  * The <code>EntityInfrastructureBuilder</code> is responsible for building infrastructure for a given entity:
- * repository, interface and service classes.
+ * repository, interface and service classes, and the property accessor of the entity.
  */
 public interface EntityInfrastructureBuilder {
 
@@ -17,7 +17,10 @@ public interface EntityInfrastructureBuilder {
      * given entity. The names for classes are generated by
      * {@link org.motechproject.mds.util.ClassName#getRepositoryName(String)},
      * {@link org.motechproject.mds.util.ClassName#getInterfaceName(String)},
-     * {@link org.motechproject.mds.util.ClassName#getServiceClassName(String)}, respectively.
+     * {@link org.motechproject.mds.util.ClassName#getServiceClassName(String)}, respectively. The
+     * {@link org.motechproject.mds.util.PropertyAccessor} of the entity, named by
+     * {@link org.motechproject.mds.util.ClassName#getAccessorName(String)}, is built too, unless the
+     * entity class cannot be inspected.
      *
      * @param entity an instance of {@link org.motechproject.mds.domain.Entity}
      * @param schemaHolder the current MDS schema holder
@@ -0,0 +1,273 @@
+package org.motechproject.mds.builder.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.domain.ClassData;
+import org.motechproject.mds.domain.EntityType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the enhanced classes of entities between constructions of the entities bundle. For each entity the
+ * enhanced entity class is kept, together with its history and trash classes. Classes are stored with the
+ * fingerprint of the entity they were built for and are reused only if the fingerprint has not changed since.
+ * If a directory is given, the cache is also written to disk, one file per entity, so that it survives
+ * restarts of the platform. Files written by a different build of MDS are ignored, since the classes
+ * generated for the same entity may differ between builds. This class is not thread safe, it is guarded by
+ * the {@link MDSConstructorImpl}.
+ *
+ * @see org.motechproject.mds.helper.EntityFingerprints
+ */
+class EnhancedClassCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EnhancedClassCache.class);
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String FILE_EXTENSION = ".classes";
+    private static final String TMP_FILE_EXTENSION = ".tmp";
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final File directory;
+    private final String mdsVersion;
+
+    /**
+     * Creates a cache which is written to the given directory. Classes written there before by the same build
+     * of MDS are loaded right away.
+     *
+     * @param directory the directory for the cache files, null if the cache should be kept in memory only
+     * @param mdsVersion the identifier of the MDS build
+     */
+    EnhancedClassCache(File directory, String mdsVersion) {
+        this.directory = directory;
+        this.mdsVersion = StringUtils.defaultString(mdsVersion);
+
+        if (directory != null) {
+            load();
+        }
+    }
+
+    /**
+     * Checks whether enhanced classes built for the given fingerprint of the entity are available.
+     *
+     * @param entityClassName the class name of the entity
+     * @param fingerprint the current fingerprint of the entity
+     * @return true if the classes are cached for the given fingerprint, false otherwise
+     */
+    boolean contains(String entityClassName, String fingerprint) {
+        Entry entry = entries.get(entityClassName);
+        return entry != null && entry.fingerprint.equals(fingerprint);
+    }
+
+    /**
+     * Returns the cached enhanced class with the given name, which is either the entity class or its
+     * history or trash class.
+     *
+     * @param entityClassName the class name of the entity
+     * @param className the name of the class to return
+     * @return the enhanced class, or null if it is not cached
+     */
+    ClassData get(String entityClassName, String className) {
+        Entry entry = entries.get(entityClassName);
+        return entry == null ? null : entry.classes.get(className);
+    }
+
+    /**
+     * Caches the enhanced classes of the entity, replacing any classes cached for it before.
+     *
+     * @param entityClassName the class name of the entity
+     * @param fingerprint the fingerprint of the entity the classes were built for
+     * @param classes the enhanced entity class and its history and trash classes
+     */
+    void put(String entityClassName, String fingerprint, Collection<ClassData> classes) {
+        Entry entry = new Entry(fingerprint);
+
+        for (ClassData classData : classes) {
+            entry.classes.put(classData.getClassName(), classData);
+        }
+
+        entries.put(entityClassName, entry);
+
+        if (directory != null) {
+            write(entityClassName, entry);
+        }
+    }
+
+    /**
+     * Removes the classes of all entities other than the given ones.
+     *
+     * @param entityClassNames the class names of entities which classes should be kept
+     */
+    void retain(Collection<String> entityClassNames) {
+        Iterator<String> it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            String entityClassName = it.next();
+
+            if (!entityClassNames.contains(entityClassName)) {
+                it.remove();
+
+                if (directory != null) {
+                    FileUtils.deleteQuietly(file(entityClassName));
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all cached classes. Only the files of this cache are deleted, other files in its directory
+     * are left untouched.
+     */
+    void clear() {
+        entries.clear();
+
+        File[] files = directory == null ? null : directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.getName().endsWith(FILE_EXTENSION) || file.getName().endsWith(TMP_FILE_EXTENSION)) {
+                FileUtils.deleteQuietly(file);
+            }
+        }
+    }
+
+    private void load() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.getName().endsWith(TMP_FILE_EXTENSION)) {
+                // left by a write that did not finish
+                FileUtils.deleteQuietly(file);
+                continue;
+            } else if (!file.getName().endsWith(FILE_EXTENSION)) {
+                continue;
+            }
+
+            String entityClassName = StringUtils.removeEnd(file.getName(), FILE_EXTENSION);
+
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                Entry entry = read(input);
+
+                if (entry == null) {
+                    LOGGER.debug("Removing enhanced classes of {} cached by another build of MDS", entityClassName);
+                    FileUtils.deleteQuietly(file);
+                } else {
+                    entries.put(entityClassName, entry);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.warn("Unable to read the enhanced classes of {} from the cache, they will be built again",
+                        entityClassName, e);
+                FileUtils.deleteQuietly(file);
+            }
+        }
+
+        LOGGER.info("Loaded enhanced classes of {} entities from {}", entries.size(), directory);
+    }
+
+    private Entry read(DataInputStream input) throws IOException {
+        if (input.readInt() != FORMAT_VERSION || !mdsVersion.equals(input.readUTF())) {
+            return null;
+        }
+
+        Entry entry = new Entry(input.readUTF());
+
+        int count = input.readInt();
+        for (int i = 0; i < count; ++i) {
+            String className = input.readUTF();
+            String module = readNullable(input);
+            String namespace = readNullable(input);
+            EntityType type = EntityType.valueOf(input.readUTF());
+            boolean interfaceClass = input.readBoolean();
+            boolean enumClassData = input.readBoolean();
+
+            byte[] bytecode = new byte[input.readInt()];
+            input.readFully(bytecode);
+
+            entry.classes.put(className, new ClassData(className, module, namespace, bytecode, interfaceClass,
+                    type, enumClassData));
+        }
+
+        return entry;
+    }
+
+    private void write(String entityClassName, Entry entry) {
+        File file = file(entityClassName);
+        File tmpFile = null;
+
+        try {
+            Files.createDirectories(directory.toPath());
+
+            // write to a temporary file first, so that a crash never leaves a partially written entry
+            tmpFile = File.createTempFile(entityClassName, TMP_FILE_EXTENSION, directory);
+
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                output.writeInt(FORMAT_VERSION);
+                output.writeUTF(mdsVersion);
+                output.writeUTF(entry.fingerprint);
+
+                output.writeInt(entry.classes.size());
+                for (ClassData classData : entry.classes.values()) {
+                    byte[] bytecode = classData.getBytecode();
+
+                    output.writeUTF(classData.getClassName());
+                    writeNullable(output, classData.getModule());
+                    writeNullable(output, classData.getNamespace());
+                    output.writeUTF(classData.getType().name());
+                    output.writeBoolean(classData.isInterfaceClass());
+                    output.writeBoolean(classData.isEnumClassData());
+                    output.writeInt(bytecode.length);
+                    output.write(bytecode);
+                }
+            }
+
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write the enhanced classes of {} to the cache", entityClassName, e);
+            FileUtils.deleteQuietly(tmpFile);
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    private String readNullable(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private void writeNullable(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private File file(String entityClassName) {
+        return new File(directory, entityClassName + FILE_EXTENSION);
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final Map<String, ClassData> classes = new LinkedHashMap<>();
+
+        private Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.service.TransactionalMotechDataService;
 import org.motechproject.mds.util.ClassName;
 import org.motechproject.mds.util.JavassistUtil;
+import org.motechproject.mds.util.PropertyAccessor;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
@@ -38,7 +39,7 @@ import static javassist.bytecode.SignatureAttribute.TypeParameter;
 
 /**
  * The <code>EntityInfrastructureBuilder</code> class is responsible for building infrastructure for a given entity:
- * repository, interface and service classes. These classes are created only if they are not present
+ * repository, interface, service and property accessor classes. These classes are created only if they are not present
  * in the classpath. This implementation uses javassist in order to construct the classes.
  */
 @Component
@@ -79,6 +80,13 @@ public class EntityInfrastructureBuilderImpl implements EntityInfrastructureBuil
         );
         list.add(new ClassData(serviceClassName, serviceCode));
 
+        // create the property accessor, the service uses reflection for entities without it
+        String accessorClassName = MotechClassPool.getAccessorName(className);
+        byte[] accessorCode = getAccessorCode(accessorClassName, className);
+        if (null != accessorCode) {
+            list.add(new ClassData(accessorClassName, accessorCode));
+        }
+
         return list;
     }
 
@@ -143,13 +151,17 @@ public class EntityInfrastructureBuilderImpl implements EntityInfrastructureBuil
 
             List<CtMethod> methods = new ArrayList<>();
 
-            // for each lookup we generate three methods - normal lookup, lookup with query params and
-            // a count method for the lookup
+            // for each lookup we generate up to five methods - normal lookup, lookup with query params,
+            // a count method, a streaming method (skipped for single object lookups) and a bulk method
+            // (only for lookups by plain values) for the lookup
             if (null != entity) {
                 List<LookupDto> lookups = schemaHolder.getLookups(entity);
 
                 for (LookupDto lookup : lookups) {
                     for (LookupType lookupType : LookupType.values()) {
+                        if (!lookupType.isApplicable(entity, lookup, schemaHolder)) {
+                            continue;
+                        }
                         LookupBuilder lookupBuilder = new LookupBuilder(entity, lookup, interfaceClass,
                                 lookupType, schemaHolder);
                         methods.add(lookupBuilder.buildSignature());
@@ -187,13 +199,17 @@ public class EntityInfrastructureBuilderImpl implements EntityInfrastructureBuil
 
             List<CtMethod> methods = new ArrayList<>();
 
-            // for each lookup we generate three methods - normal lookup, lookup with query params and
-            // a count method for the lookup
+            // for each lookup we generate up to five methods - normal lookup, lookup with query params,
+            // a count method, a streaming method (skipped for single object lookups) and a bulk method
+            // (only for lookups by plain values) for the lookup
             if (null != entity) {
                 List<LookupDto> lookups = schemaHolder.getLookups(entity);
 
                 for (LookupDto lookup : lookups) {
                     for (LookupType lookupType : LookupType.values()) {
+                        if (!lookupType.isApplicable(entity, lookup, schemaHolder)) {
+                            continue;
+                        }
                         LookupBuilder lookupBuilder = new LookupBuilder(entity, lookup, serviceClass,
                                 lookupType, schemaHolder);
                         methods.add(lookupBuilder.buildMethod());
@@ -214,6 +230,36 @@ public class EntityInfrastructureBuilderImpl implements EntityInfrastructureBuil
         }
     }
 
+    private byte[] getAccessorCode(String accessorClassName, String className) {
+        CtClass accessorClass = null;
+
+        try {
+            CtClass entityClass = classPool.getCtClass(className);
+            CtClass superClass = classPool.getCtClass(PropertyAccessor.class.getName());
+
+            accessorClass = createOrRetrieveClass(accessorClassName, superClass);
+
+            PropertyAccessorBuilder accessorBuilder = new PropertyAccessorBuilder(entityClass, accessorClass);
+
+            // clear the members generated for the previous version of the entity
+            removeExistingMethods(accessorClass);
+            removeDefaultConstructor(accessorClass);
+
+            accessorClass.addConstructor(accessorBuilder.buildConstructor());
+            accessorClass.addMethod(accessorBuilder.buildGetMethod());
+            accessorClass.addMethod(accessorBuilder.buildSetMethod());
+
+            return accessorClass.toBytecode();
+        } catch (NotFoundException | IOException | CannotCompileException e) {
+            // the accessor is optional, so we don't leave an incomplete class in the pool
+            LOGGER.warn("Unable to build the property accessor for {}, reflection will be used", className, e);
+            if (null != accessorClass) {
+                accessorClass.detach();
+            }
+            return null;
+        }
+    }
+
     private static String getGenericSignature(String typeName) {
         ClassType classType = new ClassType(typeName);
         TypeParameter parameter = new TypeParameter("T", classType, null);
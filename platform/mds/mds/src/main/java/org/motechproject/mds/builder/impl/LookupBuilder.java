@@ -5,6 +5,7 @@ import javassist.CtClass;
 import javassist.CtMethod;
 import javassist.CtNewMethod;
 import javassist.NotFoundException;
+import javassist.bytecode.Descriptor;
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.commons.api.Range;
 import org.motechproject.mds.domain.ComboboxHolder;
@@ -16,6 +17,7 @@ import org.motechproject.mds.dto.LookupFieldDto;
 import org.motechproject.mds.dto.LookupFieldType;
 import org.motechproject.mds.dto.SchemaHolder;
 import org.motechproject.mds.dto.TypeDto;
+import org.motechproject.mds.query.CloseableIterator;
 import org.motechproject.mds.query.CollectionProperty;
 import org.motechproject.mds.query.PropertyBuilder;
 import org.motechproject.mds.query.QueryParams;
@@ -31,8 +33,10 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
+import static org.motechproject.mds.builder.impl.LookupType.BULK;
 import static org.motechproject.mds.builder.impl.LookupType.COUNT;
 import static org.motechproject.mds.builder.impl.LookupType.SIMPLE;
+import static org.motechproject.mds.builder.impl.LookupType.STREAM;
 import static org.motechproject.mds.builder.impl.LookupType.WITH_QUERY_PARAMS;
 
 /**
@@ -57,13 +61,23 @@ class LookupBuilder {
 
         this.lookup = lookup;
         this.lookupType = lookupType;
-        this.lookupName = (lookupType == COUNT)
-                ? LookupName.lookupCountMethod(lookup.getMethodName())
-                : lookup.getMethodName();
+        this.lookupName = lookupName(lookup, lookupType);
 
         this.schemaHolder = schemaHolder;
     }
 
+    private static String lookupName(LookupDto lookup, LookupType lookupType) {
+        if (lookupType == COUNT) {
+            return LookupName.lookupCountMethod(lookup.getMethodName());
+        } else if (lookupType == STREAM) {
+            return LookupName.lookupStreamMethod(lookup.getMethodName());
+        } else if (lookupType == BULK) {
+            return LookupName.lookupBulkMethod(lookup.getMethodName());
+        } else {
+            return lookup.getMethodName();
+        }
+    }
+
     CtMethod buildSignature() throws CannotCompileException, NotFoundException {
         return build(false);
     }
@@ -73,6 +87,10 @@ class LookupBuilder {
     }
 
     private CtMethod build(boolean body) throws CannotCompileException, NotFoundException {
+        if (BULK == lookupType) {
+            return buildBulk(body);
+        }
+
         Collection<String> paramCollection = new ArrayList<>();
         List<String> fieldOrder = lookup.getFieldsOrder();
 
@@ -103,12 +121,17 @@ class LookupBuilder {
         }
 
         // query params at the end for ordering/paging
-        if (WITH_QUERY_PARAMS == lookupType) {
+        if (WITH_QUERY_PARAMS == lookupType || STREAM == lookupType) {
             String queryParam = String.format("%s queryParams", QueryParams.class.getName());
 
             paramCollection.add(queryParam);
         }
 
+        // and the fetch size for streaming
+        if (STREAM == lookupType) {
+            paramCollection.add("int fetchSize");
+        }
+
         String params = StringUtils.join(paramCollection, ", ");
         String signature = String.format("public %s %s(%s)", returnType(), lookupName, params);
         String methodAsString = body
@@ -123,6 +146,45 @@ class LookupBuilder {
         return method;
     }
 
+    private CtMethod buildBulk(boolean body) throws CannotCompileException {
+        // the keys are values of the field for a lookup on a single field, lists of values otherwise
+        List<String> fieldNames = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+
+        for (String fieldName : lookup.getFieldsOrder()) {
+            fieldNames.add('"' + fieldName + '"');
+            types.add('"' + getBulkKeyType(getLookupField(fieldName)) + '"');
+        }
+
+        String keyType = fieldNames.size() == 1
+                ? getBulkKeyType(getLookupField(lookup.getFieldsOrder().get(0)))
+                : List.class.getName();
+
+        String signature = String.format("public %s %s(%s keys)", Map.class.getName(), lookupName,
+                Collection.class.getName());
+        String methodAsString = body
+                ? String.format("%s{return retrieveGrouped(new String[]{%s}, new String[]{%s}, keys);}", signature,
+                        StringUtils.join(fieldNames, ", "), StringUtils.join(types, ", "))
+                : String.format("%s;", signature);
+
+        // Map<K, List<T>> method(Collection<K> keys)
+        String generic = String.format("(%s)L%s<%s%s>;",
+                JavassistUtil.genericSignature(Collection.class.getName(), keyType),
+                Descriptor.toJvmName(Map.class.getName()), JavassistUtil.toGenericParam(keyType),
+                JavassistUtil.genericSignature(List.class.getName(), className));
+
+        CtMethod method = CtNewMethod.make(methodAsString, definition);
+        method.setGenericSignature(generic);
+
+        return method;
+    }
+
+    private String getBulkKeyType(FieldDto field) {
+        return field.getType().isCombobox()
+                ? new ComboboxHolder(entity, field).getUnderlyingType()
+                : field.getType().getTypeClass();
+    }
+
     private String body() {
         StringBuilder body = new StringBuilder();
 
@@ -253,6 +315,8 @@ class LookupBuilder {
         StringBuilder sb = new StringBuilder();
         if (COUNT == lookupType) {
             sb.append("return count(properties);");
+        } else if (STREAM == lookupType) {
+            sb.append("return stream(properties, queryParams, fetchSize);");
         } else {
             if (lookup.isSingleObjectReturn()) {
                 sb.append("Object result = retrieveUnique(properties");
@@ -286,6 +350,8 @@ class LookupBuilder {
     private String returnType() {
         if (lookupType == LookupType.COUNT) {
             return "long";
+        } else if (lookupType == LookupType.STREAM) {
+            return CloseableIterator.class.getName();
         } else if (lookup.isSingleObjectReturn()) {
             return className;
         } else {
@@ -320,7 +386,8 @@ class LookupBuilder {
     private String copyParamTypeFromMethod(int idx, FieldDto field) throws NotFoundException {
         for (CtMethod method : definition.getMethods()) {
             if (method.getName().equalsIgnoreCase(lookupName) ||
-                    LookupName.lookupCountMethod(method.getName()).equalsIgnoreCase(lookupName)) {
+                    LookupName.lookupCountMethod(method.getName()).equalsIgnoreCase(lookupName) ||
+                    LookupName.lookupStreamMethod(method.getName()).equalsIgnoreCase(lookupName)) {
                 CtClass[] types = method.getParameterTypes();
 
                 if (types.length > idx) {
@@ -388,9 +455,15 @@ class LookupBuilder {
                 sb.append(JavassistUtil.genericSignature(paramType, genericType));
             }
         }
+        if (STREAM == lookupType) {
+            sb.append(JavassistUtil.toGenericParam(QueryParams.class.getName()));
+            sb.append('I');
+        }
         sb.append(')');
 
-        if (lookup.isSingleObjectReturn()) {
+        if (STREAM == lookupType) {
+            sb.append(JavassistUtil.genericSignature(CloseableIterator.class.getName(), className));
+        } else if (lookup.isSingleObjectReturn()) {
             sb.append(JavassistUtil.toGenericParam(className));
         } else {
             sb.append(JavassistUtil.genericSignature(List.class.getName(), className));
@@ -1,7 +1,16 @@
 package org.motechproject.mds.builder.impl;
 
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.domain.ComboboxHolder;
+import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.dto.LookupDto;
+import org.motechproject.mds.dto.LookupFieldDto;
+import org.motechproject.mds.dto.LookupFieldType;
+import org.motechproject.mds.dto.SchemaHolder;
+
 /**
- * Represents the three lookup methods generated.
+ * Represents the lookup methods generated.
  */
 enum LookupType {
     /**
@@ -15,5 +24,52 @@ enum LookupType {
     /**
      * result count lookup.
      */
-    COUNT
+    COUNT,
+    /**
+     * Streaming lookup, returning a closeable iterator. Not generated for lookups returning a single object.
+     */
+    STREAM,
+    /**
+     * Bulk lookup, taking a collection of lookup keys and returning the matching instances grouped by the keys.
+     * Generated only for lookups comparing fields of the entity itself with single values.
+     */
+    BULK;
+
+    boolean isApplicable(EntityDto entity, LookupDto lookup, SchemaHolder schemaHolder) {
+        if (this == STREAM) {
+            return !lookup.isSingleObjectReturn();
+        } else if (this == BULK) {
+            return isBulkApplicable(entity, lookup, schemaHolder);
+        } else {
+            return true;
+        }
+    }
+
+    private static boolean isBulkApplicable(EntityDto entity, LookupDto lookup, SchemaHolder schemaHolder) {
+        if (entity == null || lookup.getFieldsOrder() == null || lookup.getFieldsOrder().isEmpty()) {
+            return false;
+        }
+
+        for (String fieldName : lookup.getFieldsOrder()) {
+            // lookups by related fields would need a join for each key
+            if (fieldName.contains(".")) {
+                return false;
+            }
+
+            FieldDto field = schemaHolder.getFieldByName(entity, fieldName);
+            LookupFieldDto lookupField = field == null ? null : lookup.getLookupField(field.getBasic().getName());
+
+            if (lookupField == null || lookupField.getType() != LookupFieldType.VALUE
+                    || StringUtils.isNotBlank(lookupField.getCustomOperator()) || field.getType().isRelationship()) {
+                return false;
+            }
+
+            // values of multi-select comboboxes are matched by contains, not equality
+            if (field.getType().isCombobox() && new ComboboxHolder(entity, field).isCollection()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
 }
@@ -5,6 +5,8 @@ import javassist.CannotCompileException;
 import javassist.CtClass;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.time.StopWatch;
 import org.motechproject.commons.sql.service.SqlDBManager;
 import org.motechproject.mds.builder.EntityBuilder;
 import org.motechproject.mds.builder.EntityInfrastructureBuilder;
@@ -23,6 +25,7 @@ import org.motechproject.mds.dto.TypeDto;
 import org.motechproject.mds.enhancer.MdsJDOEnhancer;
 import org.motechproject.mds.exception.entity.EntityCreationException;
 import org.motechproject.mds.helper.ClassTableName;
+import org.motechproject.mds.helper.EntityFingerprints;
 import org.motechproject.mds.helper.EntitySorter;
 import org.motechproject.mds.helper.bundle.MdsBundleHelper;
 import org.motechproject.mds.javassist.JavassistLoader;
@@ -46,21 +49,26 @@ import javax.jdo.PersistenceManagerFactory;
 import javax.jdo.Query;
 import javax.jdo.datastore.JDOConnection;
 import javax.jdo.metadata.JDOMetadata;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * Default implementation of {@link org.motechproject.mds.builder.MDSConstructor} interface.
@@ -70,6 +78,8 @@ public class MDSConstructorImpl implements MDSConstructor {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MDSConstructorImpl.class);
 
+    private static final String BND_LAST_MODIFIED_HEADER = "Bnd-LastModified";
+
     private MdsConfig mdsConfig;
     private EntityBuilder entityBuilder;
     private EntityInfrastructureBuilder infrastructureBuilder;
@@ -80,8 +90,13 @@ public class MDSConstructorImpl implements MDSConstructor {
     private PersistenceManagerFactory persistenceManagerFactory;
     private SqlDBManager sqlDBManager;
 
+    private EnhancedClassCache enhancedClassCache;
+
     @Override
     public synchronized boolean constructEntities(SchemaHolder schemaHolder) {
+        StopWatch stopWatch = new StopWatch();
+        stopWatch.start();
+
         // To be able to register updated class, we need to reload class loader
         // and therefore add all the classes again
         MotechClassPool.clearEnhancedData();
@@ -98,6 +113,10 @@ public class MDSConstructorImpl implements MDSConstructor {
         filterEntities(entities);
         sortEntities(entities, schemaHolder);
 
+        // entities which did not change since the last construction reuse their enhanced classes
+        Map<String, String> fingerprints = fingerprintEntities(entities, schemaHolder);
+        Set<String> cachedEntities = getCachedEntities(entities, fingerprints);
+
         // create enum for appropriate combobox fields
         for (EntityDto entity : entities) {
             buildEnum(loader, enhancer, entity, schemaHolder);
@@ -115,6 +134,9 @@ public class MDSConstructorImpl implements MDSConstructor {
         // (We don't have to generate it for main class,
         // since we just fetch fields from existing definition
         for (EntityDto entity : entities) {
+            if (cachedEntities.contains(entity.getClassName())) {
+                continue;
+            }
             if (entity.isRecordHistory()) {
                 entityBuilder.prepareHistoryClass(entity);
             }
@@ -122,19 +144,21 @@ public class MDSConstructorImpl implements MDSConstructor {
         }
 
         // Build classes
-        Map<String, ClassData> classDataMap = buildClasses(entities, schemaHolder);
+        Map<String, ClassData> classDataMap = buildClasses(entities, schemaHolder, cachedEntities);
         List<Class> classes = new ArrayList<>();
 
         // We add the java classes to both
-        // the temporary ClassLoader and enhancer
+        // the temporary ClassLoader and enhancer,
+        // classes taken from the cache are already enhanced
         for (EntityDto entity : entities) {
             String className = entity.getClassName();
+            boolean enhanced = cachedEntities.contains(className);
 
-            Class<?> definition = addClassData(loader, enhancer, classDataMap.get(className));
+            Class<?> definition = addClassData(loader, enhancer, classDataMap.get(className), enhanced);
             if (entity.isRecordHistory()) {
-                addClassData(loader, enhancer, classDataMap.get(ClassName.getHistoryClassName(className)));
+                addClassData(loader, enhancer, classDataMap.get(ClassName.getHistoryClassName(className)), enhanced);
             }
-            addClassData(loader, enhancer, classDataMap.get(ClassName.getTrashClassName(className)));
+            addClassData(loader, enhancer, classDataMap.get(ClassName.getTrashClassName(className)), enhanced);
 
             classes.add(definition);
 
@@ -156,30 +180,145 @@ public class MDSConstructorImpl implements MDSConstructor {
 
         // we register the enhanced class bytes
         // and build the infrastructure classes
-        registerEnhancedClassBytes(entities, enhancer, schemaHolder);
+        registerEnhancedClassBytes(entities, enhancer, schemaHolder, classDataMap, cachedEntities);
 
         metadataBuilder.fixEnhancerIssuesInMetadata(jdoMetadata, schemaHolder);
 
+        cacheEnhancedClasses(entities, fingerprints, cachedEntities, classDataMap);
+
+        stopWatch.stop();
+        LOGGER.info("Constructed {} entities in {} ms, enhanced classes of {} entities were reused",
+                entities.size(), stopWatch.getTime(), cachedEntities.size());
+
         return CollectionUtils.isNotEmpty(entities);
     }
 
-    private void registerEnhancedClassBytes(List<EntityDto> entities, MdsJDOEnhancer enhancer, SchemaHolder schemaHolder) {
+    private Map<String, String> fingerprintEntities(List<EntityDto> entities, SchemaHolder schemaHolder) {
+        if (!isIncrementalConstruction()) {
+            // the cache is not even loaded unless incremental construction was switched off since the start
+            if (enhancedClassCache != null) {
+                enhancedClassCache.clear();
+            }
+            return new HashMap<>();
+        }
+
+        return EntityFingerprints.compute(entities, schemaHolder, bundleContext);
+    }
+
+    private Set<String> getCachedEntities(List<EntityDto> entities, Map<String, String> fingerprints) {
+        Set<String> cachedEntities = new HashSet<>();
+
+        for (EntityDto entity : entities) {
+            String className = entity.getClassName();
+            String fingerprint = fingerprints.get(className);
+
+            if (fingerprint != null && getEnhancedClassCache().contains(className, fingerprint)) {
+                cachedEntities.add(className);
+            }
+        }
+
+        if (!fingerprints.isEmpty()) {
+            LOGGER.debug("Reusing enhanced classes of {} out of {} entities", cachedEntities.size(), entities.size());
+        }
+
+        return cachedEntities;
+    }
+
+    private void cacheEnhancedClasses(List<EntityDto> entities, Map<String, String> fingerprints,
+                                      Set<String> cachedEntities, Map<String, ClassData> classDataMap) {
+        if (fingerprints.isEmpty()) {
+            return;
+        }
+
+        List<String> classNames = new ArrayList<>();
+
+        for (EntityDto entity : entities) {
+            String className = entity.getClassName();
+            classNames.add(className);
+
+            if (cachedEntities.contains(className)) {
+                continue;
+            }
+
+            List<ClassData> enhancedClasses = new ArrayList<>();
+            enhancedClasses.add(withEnhancedBytes(classDataMap.get(className),
+                    MotechClassPool.getEnhancedClassData(className)));
+            if (entity.isRecordHistory()) {
+                enhancedClasses.add(withEnhancedBytes(classDataMap.get(ClassName.getHistoryClassName(className)),
+                        MotechClassPool.getHistoryClassData(className)));
+            }
+            enhancedClasses.add(withEnhancedBytes(classDataMap.get(ClassName.getTrashClassName(className)),
+                    MotechClassPool.getTrashClassData(className)));
+
+            getEnhancedClassCache().put(className, fingerprints.get(className), enhancedClasses);
+        }
+
+        // forget entities that were removed from the schema
+        getEnhancedClassCache().retain(classNames);
+    }
+
+    private ClassData withEnhancedBytes(ClassData built, ClassData enhanced) {
+        // the built class data carries the module, namespace and type required for building metadata
+        return new ClassData(built.getClassName(), built.getModule(), built.getNamespace(), enhanced.getBytecode(),
+                built.isInterfaceClass(), built.getType(), built.isEnumClassData());
+    }
+
+    private EnhancedClassCache getEnhancedClassCache() {
+        if (enhancedClassCache == null) {
+            enhancedClassCache = new EnhancedClassCache(getCacheDirectory(), getMdsBuild());
+        }
+        return enhancedClassCache;
+    }
+
+    private File getCacheDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".motech", "mds-cache").toFile();
+    }
+
+    private String getMdsBuild() {
+        // snapshot builds share the version, so the build time is included as well
+        Bundle mdsBundle = bundleContext.getBundle();
+        Object buildTime = mdsBundle.getHeaders().get(BND_LAST_MODIFIED_HEADER);
+        return mdsBundle.getVersion() + "/" + (buildTime == null ? mdsBundle.getLastModified() : buildTime);
+    }
+
+    private boolean isIncrementalConstruction() {
+        if (mdsConfig == null) {
+            return false;
+        }
+
+        String property = mdsConfig.getProperties(Constants.Config.MODULE_FILE)
+                .getProperty(Constants.Config.MDS_INCREMENTAL_CONSTRUCTION);
+
+        return StringUtils.isBlank(property) || Boolean.parseBoolean(property.trim());
+    }
+
+    private void registerEnhancedClassBytes(List<EntityDto> entities, MdsJDOEnhancer enhancer, SchemaHolder schemaHolder,
+                                            Map<String, ClassData> classDataMap, Set<String> cachedEntities) {
         for (EntityDto entity : entities) {
             // register
             String className = entity.getClassName();
             LOGGER.debug("Registering {}", className);
 
-            registerClass(enhancer, entity);
+            boolean cached = cachedEntities.contains(className);
+
+            registerClass(entity, getEnhancedBytes(enhancer, classDataMap, className, cached));
             if (entity.isRecordHistory()) {
-                registerHistoryClass(enhancer, className);
+                String historyClassName = ClassName.getHistoryClassName(className);
+                registerHistoryClass(historyClassName, getEnhancedBytes(enhancer, classDataMap, historyClassName, cached));
             }
-            registerTrashClass(enhancer, className);
+            String trashClassName = ClassName.getTrashClassName(className);
+            registerTrashClass(trashClassName, getEnhancedBytes(enhancer, classDataMap, trashClassName, cached));
 
             LOGGER.debug("Building infrastructure for {}", className);
             buildInfrastructure(entity, schemaHolder);
         }
     }
 
+    private byte[] getEnhancedBytes(MdsJDOEnhancer enhancer, Map<String, ClassData> classDataMap, String className,
+                                    boolean cached) {
+        return cached ? classDataMap.get(className).getBytecode() : enhancer.getEnhancedBytes(className);
+    }
+
     private void sortEntities(List<EntityDto> entities, SchemaHolder schemaHolder) {
         List<EntityDto> byInheritance = EntitySorter.sortByInheritance(entities);
         List<EntityDto> byHasARelation = EntitySorter.sortByHasARelation(byInheritance, schemaHolder);
@@ -190,11 +329,17 @@ public class MDSConstructorImpl implements MDSConstructor {
         entities.addAll(byHasARelation);
     }
 
-    private Map<String, ClassData> buildClasses(List<EntityDto> entities, SchemaHolder schemaHolder) {
+    private Map<String, ClassData> buildClasses(List<EntityDto> entities, SchemaHolder schemaHolder,
+                                                Set<String> cachedEntities) {
         Map<String, ClassData> classDataMap = new LinkedHashMap<>();
 
-        //We build classes for all entities
+        //We build classes for all entities, unless they can be taken from the cache
         for (EntityDto entity : entities) {
+            if (cachedEntities.contains(entity.getClassName())) {
+                putCachedClasses(classDataMap, entity);
+                continue;
+            }
+
             List<FieldDto> fields = schemaHolder.getFields(entity);
 
             ClassData classData = buildClass(entity, fields);
@@ -218,6 +363,44 @@ public class MDSConstructorImpl implements MDSConstructor {
         return classDataMap;
     }
 
+    private void putCachedClasses(Map<String, ClassData> classDataMap, EntityDto entity) {
+        String className = entity.getClassName();
+        List<String> classNames = new ArrayList<>();
+
+        classNames.add(className);
+        if (entity.isRecordHistory()) {
+            classNames.add(ClassName.getHistoryClassName(className));
+        }
+        classNames.add(ClassName.getTrashClassName(className));
+
+        for (String name : classNames) {
+            ClassData classData = getEnhancedClassCache().get(className, name);
+            classDataMap.put(name, classData);
+
+            // classes cached on disk were not built since the start, but other entities might refer to them
+            if (MotechClassPool.getDefault().getOrNull(name) == null) {
+                addToClassPool(entity, classData);
+            }
+        }
+    }
+
+    private void addToClassPool(EntityDto entity, ClassData classData) {
+        if (entity.isDDE() && classData.getClassName().equals(entity.getClassName())) {
+            // the class of a DDE must come from its bundle, since it will be enhanced again if the entity changes
+            Bundle declaringBundle = MdsBundleHelper.searchForBundle(bundleContext, entity);
+
+            try {
+                JavassistUtil.loadClass(declaringBundle, entity.getClassName(), MotechClassPool.getDefault());
+            } catch (IOException e) {
+                throw new EntityCreationException("Unable to load class " + entity.getClassName() + " from bundle "
+                        + declaringBundle.getSymbolicName(), e);
+            }
+        } else {
+            ByteArrayClassPath classPath = new ByteArrayClassPath(classData.getClassName(), classData.getBytecode());
+            MotechClassPool.getDefault().appendClassPath(classPath);
+        }
+    }
+
     private void buildMetadata(List<EntityDto> entities, JDOMetadata jdoMetadata, Map<String, ClassData> classDataMap,
                                List<Class> classes, SchemaHolder schemaHolder) {
         for (EntityDto entity : entities) {
@@ -339,10 +522,7 @@ public class MDSConstructorImpl implements MDSConstructor {
         }
     }
 
-    private void registerHistoryClass(MdsJDOEnhancer enhancer, String className) {
-        String historyClassName = ClassName.getHistoryClassName(className);
-
-        byte[] enhancedBytes = enhancer.getEnhancedBytes(historyClassName);
+    private void registerHistoryClass(String historyClassName, byte[] enhancedBytes) {
         ClassData classData = new ClassData(historyClassName, enhancedBytes);
 
         // register with the classloader so that we avoid issues with the persistence manager
@@ -351,10 +531,7 @@ public class MDSConstructorImpl implements MDSConstructor {
         MotechClassPool.registerHistoryClassData(classData);
     }
 
-    private void registerTrashClass(MdsJDOEnhancer enhancer, String className) {
-        String trashClassName = ClassName.getTrashClassName(className);
-
-        byte[] enhancedBytes = enhancer.getEnhancedBytes(trashClassName);
+    private void registerTrashClass(String trashClassName, byte[] enhancedBytes) {
         ClassData classData = new ClassData(trashClassName, enhancedBytes);
 
         // register with the classloader so that we avoid issues with the persistence manager
@@ -363,8 +540,7 @@ public class MDSConstructorImpl implements MDSConstructor {
         MotechClassPool.registerTrashClassData(classData);
     }
 
-    private void registerClass(MdsJDOEnhancer enhancer, EntityDto entity) {
-        byte[] enhancedBytes = enhancer.getEnhancedBytes(entity.getClassName());
+    private void registerClass(EntityDto entity, byte[] enhancedBytes) {
         ClassData classData = new ClassData(entity, enhancedBytes);
 
         // register with the classloader so that we avoid issues with the persistence manager
@@ -374,8 +550,14 @@ public class MDSConstructorImpl implements MDSConstructor {
     }
 
     private Class<?> addClassData(JavassistLoader loader, MdsJDOEnhancer enhancer, ClassData data) {
+        return addClassData(loader, enhancer, data, false);
+    }
+
+    private Class<?> addClassData(JavassistLoader loader, MdsJDOEnhancer enhancer, ClassData data, boolean enhanced) {
         Class<?> definition = loader.loadClass(data);
-        enhancer.addClass(data);
+        if (!enhanced) {
+            enhancer.addClass(data);
+        }
         return definition;
     }
 
@@ -0,0 +1,203 @@
+package org.motechproject.mds.builder.impl;
+
+import javassist.CannotCompileException;
+import javassist.CtClass;
+import javassist.CtConstructor;
+import javassist.CtMethod;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.CtPrimitiveType;
+import javassist.Modifier;
+import javassist.NotFoundException;
+import javassist.bytecode.AccessFlag;
+import org.apache.commons.lang.StringUtils;
+
+import java.beans.Introspector;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The <code>PropertyAccessorBuilder</code> class creates the members of the
+ * {@link org.motechproject.mds.util.PropertyAccessor} implementation for the given entity class. The get and
+ * set methods switch on the index of the property and call the getter or the setter of the entity directly.
+ * Only properties with a public getter and a public setter of the same type are included, in the order of
+ * their names.
+ */
+class PropertyAccessorBuilder {
+    private static final String GET = "get";
+    private static final String IS = "is";
+    private static final String SET = "set";
+
+    private CtClass entityClass;
+    private CtClass definition;
+    private List<Property> properties;
+
+    PropertyAccessorBuilder(CtClass entityClass, CtClass definition) throws NotFoundException {
+        this.entityClass = entityClass;
+        this.definition = definition;
+        this.properties = findProperties(entityClass);
+    }
+
+    CtConstructor buildConstructor() throws CannotCompileException {
+        List<String> names = new ArrayList<>();
+        for (Property property : properties) {
+            names.add('"' + property.name + '"');
+        }
+
+        // javassist cannot compile an empty array initializer
+        String array = names.isEmpty()
+                ? "new String[0]"
+                : String.format("new String[]{%s}", StringUtils.join(names, ", "));
+
+        return CtNewConstructor.make(
+                String.format("public %s(){super(%s);}", definition.getSimpleName(), array), definition
+        );
+    }
+
+    CtMethod buildGetMethod() throws CannotCompileException {
+        StringBuilder body = new StringBuilder();
+        body.append("public Object get(Object instance, int index) {");
+        body.append(entityClass.getName()).append(" bean = (").append(entityClass.getName()).append(") instance;");
+        body.append("switch (index) {");
+
+        for (int i = 0; i < properties.size(); ++i) {
+            Property property = properties.get(i);
+            String call = String.format("bean.%s()", property.getter.getName());
+
+            body.append("case ").append(i).append(": return ");
+            if (property.type.isPrimitive()) {
+                body.append(((CtPrimitiveType) property.type).getWrapperName()).append(".valueOf(")
+                        .append(call).append(')');
+            } else {
+                body.append(call);
+            }
+            body.append(';');
+        }
+
+        appendEnd(body);
+
+        return CtNewMethod.make(body.toString(), definition);
+    }
+
+    CtMethod buildSetMethod() throws CannotCompileException {
+        StringBuilder body = new StringBuilder();
+        body.append("public void set(Object instance, int index, Object value) {");
+        body.append(entityClass.getName()).append(" bean = (").append(entityClass.getName()).append(") instance;");
+        body.append("switch (index) {");
+
+        for (int i = 0; i < properties.size(); ++i) {
+            Property property = properties.get(i);
+
+            body.append("case ").append(i).append(": ");
+            if (property.type.isPrimitive()) {
+                // a null cannot be unboxed, so it leaves the primitive value unchanged
+                CtPrimitiveType primitive = (CtPrimitiveType) property.type;
+                body.append(String.format("if (value != null) { bean.%s(((%s) value).%s()); }",
+                        property.setter.getName(), primitive.getWrapperName(), primitive.getGetMethodName()));
+            } else {
+                body.append(String.format("bean.%s((%s) value);", property.setter.getName(),
+                        property.type.getName()));
+            }
+            body.append("return;");
+        }
+
+        appendEnd(body);
+
+        return CtNewMethod.make(body.toString(), definition);
+    }
+
+    private static void appendEnd(StringBuilder body) {
+        // every case returns, so the method can only reach its end for an unknown index
+        body.append('}');
+        body.append("throw new IllegalArgumentException(\"No property with index \" + index);");
+        body.append('}');
+    }
+
+    private static List<Property> findProperties(CtClass entityClass) throws NotFoundException {
+        Map<String, CtMethod> getters = new HashMap<>();
+        Map<String, CtMethod> setters = new HashMap<>();
+        Set<String> ambiguous = new HashSet<>();
+
+        for (CtMethod method : entityClass.getMethods()) {
+            if (!isCandidate(method)) {
+                continue;
+            }
+
+            String name = method.getName();
+            CtClass[] parameterTypes = method.getParameterTypes();
+            CtClass returnType = method.getReturnType();
+
+            if (isGetter(name, parameterTypes, returnType)) {
+                String propertyName = Introspector.decapitalize(name.substring(name.startsWith(IS) ? 2 : 3));
+                putUnique(getters, ambiguous, propertyName, method);
+            } else if (name.length() > SET.length() && name.startsWith(SET) && parameterTypes.length == 1
+                    && returnType == CtClass.voidType) {
+                putUnique(setters, ambiguous, Introspector.decapitalize(name.substring(3)), method);
+            }
+        }
+
+        // the tree map keeps the order of the properties stable between builds
+        Map<String, Property> properties = new TreeMap<>();
+
+        for (Map.Entry<String, CtMethod> entry : getters.entrySet()) {
+            String propertyName = entry.getKey();
+            CtMethod setter = setters.get(propertyName);
+
+            if (setter == null || ambiguous.contains(propertyName)) {
+                continue;
+            }
+
+            CtClass type = entry.getValue().getReturnType();
+            if (type.getName().equals(setter.getParameterTypes()[0].getName())) {
+                properties.put(propertyName, new Property(propertyName, type, entry.getValue(), setter));
+            }
+        }
+
+        return new ArrayList<>(properties.values());
+    }
+
+    private static boolean isCandidate(CtMethod method) {
+        int modifiers = method.getModifiers();
+        boolean synthetic = (method.getMethodInfo().getAccessFlags() & (AccessFlag.SYNTHETIC | AccessFlag.BRIDGE)) != 0;
+
+        return Modifier.isPublic(modifiers) && !Modifier.isStatic(modifiers) && !synthetic
+                && !Object.class.getName().equals(method.getDeclaringClass().getName());
+    }
+
+    private static boolean isGetter(String name, CtClass[] parameterTypes, CtClass returnType) {
+        if (parameterTypes.length != 0) {
+            return false;
+        } else if (name.length() > GET.length() && name.startsWith(GET)) {
+            return returnType != CtClass.voidType;
+        } else {
+            return name.length() > IS.length() && name.startsWith(IS) && returnType == CtClass.booleanType;
+        }
+    }
+
+    private static void putUnique(Map<String, CtMethod> methods, Set<String> ambiguous, String propertyName,
+                                  CtMethod method) {
+        // overloaded accessors are left to reflection, which resolves them the same way the bean utils do
+        if (methods.put(propertyName, method) != null) {
+            ambiguous.add(propertyName);
+        }
+    }
+
+    private static final class Property {
+        private final String name;
+        private final CtClass type;
+        private final CtMethod getter;
+        private final CtMethod setter;
+
+        private Property(String name, CtClass type, CtMethod getter, CtMethod setter) {
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+}
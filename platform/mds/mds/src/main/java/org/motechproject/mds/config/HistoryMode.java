@@ -0,0 +1,38 @@
+package org.motechproject.mds.config;
+
+import static org.apache.commons.lang.StringUtils.isNotBlank;
+
+/**
+ * The <code>HistoryMode</code> presents when historical revisions of instances are written to the database.
+ * In the {@link #SYNC} mode revisions are written in the same transaction as the changes of instances. In the
+ * {@link #ASYNC} mode they are written in batches, in separate transactions, after the transaction with the
+ * changes commits, so revisions become visible with a short delay and are lost if MOTECH stops before
+ * writing them. This enum is related with the property
+ * {@link org.motechproject.mds.util.Constants.Config#MDS_HISTORY_MODE}.
+ */
+public enum HistoryMode {
+    SYNC, ASYNC;
+
+    /**
+     * Converts the given string to appropriate history mode. This method will never return
+     * {@literal null} value. If the appropriate mode doesn't exists then the {@link #SYNC} mode
+     * will be returned.
+     *
+     * @param string the string representation of the history mode.
+     * @return the appropriate history mode if exists; otherwise {@link #SYNC}
+     */
+    public static HistoryMode fromString(String string) {
+        HistoryMode result = SYNC;
+
+        if (isNotBlank(string)) {
+            for (HistoryMode mode : HistoryMode.values()) {
+                if (mode.name().equalsIgnoreCase(string.trim())) {
+                    result = mode;
+                    break;
+                }
+            }
+        }
+
+        return result;
+    }
+}
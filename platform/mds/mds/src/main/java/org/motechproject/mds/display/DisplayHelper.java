@@ -80,13 +80,32 @@ public final class DisplayHelper {
         return displayValue;
     }
 
-    private static Object getDisplayValueForCombobox(FieldDto field, Object value) {
-        Object displayValue;
+    /**
+     * Returns the mapping of combobox values to their display values, defined in the combobox field settings.
+     * The returned map can be passed to {@link #getDisplayValueForCombobox(Map, Object)}, so that the settings
+     * are not parsed again for every value.
+     *
+     * @param field the combobox field
+     * @return the map of values to display values, or null if the combobox allows user supplied values
+     */
+    public static Map<String, String> getComboboxDisplayValues(FieldDto field) {
         if (Constants.Util.FALSE.equalsIgnoreCase(field.getSettingsValueAsString(Constants.Settings.ALLOW_USER_SUPPLIED))) {
             String mapString = field.getSettingsValueAsString(Constants.Settings.COMBOBOX_VALUES);
+            return TypeHelper.parseStringToMap(String.class, String.class, mapString);
+        }
+        return null;
+    }
 
-            Map<String, String> comboboxValues = TypeHelper.parseStringToMap(String.class, String.class, mapString);
-
+    /**
+     * Parses the provided combobox value to display-friendly format, using the given display values.
+     *
+     * @param comboboxValues the map of values to display values, as returned by {@link #getComboboxDisplayValues(FieldDto)}
+     * @param value the value to be parsed
+     * @return {@link String} or {@link Collection} representation, depending on the value
+     */
+    public static Object getDisplayValueForCombobox(Map<String, String> comboboxValues, Object value) {
+        Object displayValue;
+        if (comboboxValues != null && value != null) {
             if (value instanceof Collection) {
                 Collection valuesToDisplay = new ArrayList();
                 Collection enumList = (Collection) value;
@@ -106,6 +125,10 @@ public final class DisplayHelper {
         return displayValue;
     }
 
+    private static Object getDisplayValueForCombobox(FieldDto field, Object value) {
+        return getDisplayValueForCombobox(getComboboxDisplayValues(field), value);
+    }
+
     private static Map<Long, String> buildDisplayValuesMapForRelationship(Collection values, Integer maxLength) {
         Map<Long, String> displayValues = new LinkedHashMap<>();
         for (Object obj : values) {
@@ -3,12 +3,14 @@ package org.motechproject.mds.domain;
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.mds.dto.AdvancedSettingsDto;
 import org.motechproject.mds.dto.BrowsingSettingsDto;
+import org.motechproject.mds.dto.CacheSettingsDto;
 import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.LookupDto;
 import org.motechproject.mds.dto.LookupFieldDto;
 import org.motechproject.mds.dto.RestOptionsDto;
 import org.motechproject.mds.dto.TrackingDto;
+import org.motechproject.mds.util.CachePolicy;
 import org.motechproject.mds.util.ClassName;
 import org.motechproject.mds.util.LookupName;
 import org.motechproject.mds.util.SecurityMode;
@@ -88,6 +90,15 @@ public class Entity {
     @Persistent
     private Integer maxFetchDepth;
 
+    @Persistent
+    private CachePolicy cachePolicy;
+
+    @Persistent
+    private Integer cacheTimeToLive;
+
+    @Persistent
+    private Integer cacheMaxSize;
+
     @Persistent(mappedBy = ENTITY)
     @Element(dependent = TRUE)
     private List<Lookup> lookups;
@@ -362,6 +373,30 @@ public class Entity {
         this.maxFetchDepth = maxFetchDepth;
     }
 
+    public CachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
+    public void setCachePolicy(CachePolicy cachePolicy) {
+        this.cachePolicy = cachePolicy;
+    }
+
+    public Integer getCacheTimeToLive() {
+        return cacheTimeToLive;
+    }
+
+    public void setCacheTimeToLive(Integer cacheTimeToLive) {
+        this.cacheTimeToLive = cacheTimeToLive;
+    }
+
+    public Integer getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    public void setCacheMaxSize(Integer cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
+
     @NotPersistent
     public boolean isBaseEntity() {
         return TypeHelper.isBaseEntity(getSuperClass());
@@ -526,6 +561,10 @@ public class Entity {
             tracking.setEntity(this);
         }
 
+        cachePolicy = draft.getCachePolicy();
+        cacheTimeToLive = draft.getCacheTimeToLive();
+        cacheMaxSize = draft.getCacheMaxSize();
+
         incrementVersion();
 
         securityMode = draft.getSecurityMode();
@@ -574,6 +613,7 @@ public class Entity {
         advancedSettingsDto.setBrowsing(getBrowsingSettings().toDto());
         advancedSettingsDto.setRestOptions(restDto);
         advancedSettingsDto.setTracking(trackingDto);
+        advancedSettingsDto.setCache(cacheSettingsDto());
 
         return advancedSettingsDto;
     }
@@ -583,6 +623,20 @@ public class Entity {
         updateBrowsingSettings(advancedSettings);
         updateRestOptions(advancedSettings);
         updateTracking(advancedSettings);
+        updateCacheSettings(advancedSettings.getCache());
+    }
+
+    @NotPersistent
+    public CacheSettingsDto cacheSettingsDto() {
+        return new CacheSettingsDto(null != cachePolicy ? cachePolicy : CachePolicy.OFF, cacheTimeToLive, cacheMaxSize);
+    }
+
+    public void updateCacheSettings(CacheSettingsDto cacheSettings) {
+        if (null != cacheSettings) {
+            cachePolicy = cacheSettings.getPolicy();
+            cacheTimeToLive = cacheSettings.getTimeToLive();
+            cacheMaxSize = cacheSettings.getMaxSize();
+        }
     }
 
     protected void updateRestOptions(AdvancedSettingsDto advancedSettings) {
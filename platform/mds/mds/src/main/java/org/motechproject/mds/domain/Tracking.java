@@ -1,6 +1,7 @@
 package org.motechproject.mds.domain;
 
 import org.motechproject.mds.dto.TrackingDto;
+import org.motechproject.mds.event.CrudEventMode;
 
 import javax.jdo.annotations.IdGeneratorStrategy;
 import javax.jdo.annotations.IdentityType;
@@ -38,6 +39,9 @@ public class Tracking {
     @Persistent
     private boolean allowDeleteEvent;
 
+    @Persistent
+    private CrudEventMode crudEventMode;
+
     @Persistent
     private boolean modifiedByUser;
 
@@ -62,6 +66,7 @@ public class Tracking {
         dto.setAllowCreateEvent(allowCreateEvent);
         dto.setAllowUpdateEvent(allowUpdateEvent);
         dto.setAllowDeleteEvent(allowDeleteEvent);
+        dto.setCrudEventMode(null != crudEventMode ? crudEventMode : CrudEventMode.INDIVIDUAL);
         dto.setModifiedByUser(modifiedByUser);
         dto.setNonEditable(nonEditable);
 
@@ -72,6 +77,7 @@ public class Tracking {
         allowCreateEvent = trackingDto.isAllowCreateEvent();
         allowDeleteEvent = trackingDto.isAllowDeleteEvent();
         allowUpdateEvent = trackingDto.isAllowUpdateEvent();
+        crudEventMode = trackingDto.getCrudEventMode();
         recordHistory = trackingDto.isRecordHistory();
         modifiedByUser = trackingDto.isModifiedByUser();
         nonEditable = trackingDto.isNonEditable();
@@ -125,6 +131,14 @@ public class Tracking {
         this.allowDeleteEvent = allowDeleteEvent;
     }
 
+    public CrudEventMode getCrudEventMode() {
+        return crudEventMode;
+    }
+
+    public void setCrudEventMode(CrudEventMode crudEventMode) {
+        this.crudEventMode = crudEventMode;
+    }
+
     public boolean isModifiedByUser() {
         return modifiedByUser;
     }
@@ -148,6 +162,7 @@ public class Tracking {
         copy.setAllowCreateEvent(allowCreateEvent);
         copy.setAllowUpdateEvent(allowUpdateEvent);
         copy.setAllowDeleteEvent(allowDeleteEvent);
+        copy.setCrudEventMode(crudEventMode);
         copy.setModifiedByUser(modifiedByUser);
         copy.setNonEditable(nonEditable);
 
@@ -156,7 +171,8 @@ public class Tracking {
 
     @Override
     public int hashCode() {
-        return Objects.hash(recordHistory, allowCreateEvent, allowUpdateEvent, allowDeleteEvent, nonEditable);
+        return Objects.hash(recordHistory, allowCreateEvent, allowUpdateEvent, allowDeleteEvent, crudEventMode,
+                nonEditable);
     }
 
     @Override
@@ -175,6 +191,7 @@ public class Tracking {
                 Objects.equals(this.allowCreateEvent, other.allowCreateEvent) &&
                 Objects.equals(this.allowUpdateEvent, other.allowUpdateEvent) &&
                 Objects.equals(this.allowDeleteEvent, other.allowDeleteEvent) &&
+                Objects.equals(this.crudEventMode, other.crudEventMode) &&
                 Objects.equals(this.nonEditable, other.nonEditable);
     }
 }
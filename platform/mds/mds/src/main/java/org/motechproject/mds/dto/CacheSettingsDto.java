@@ -0,0 +1,94 @@
+package org.motechproject.mds.dto;
+
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.motechproject.mds.util.CachePolicy;
+
+/**
+ * The <code>CacheSettingsDto</code> contains the cache settings of an entity, that is the cache policy and
+ * its bounds. The time to live is only used by the {@link CachePolicy#TIME_TO_LIVE} policy, the maximum size
+ * is used by all policies that cache instances.
+ */
+public class CacheSettingsDto {
+
+    private CachePolicy policy;
+    private Integer timeToLive;
+    private Integer maxSize;
+
+    public CacheSettingsDto() {
+        this(CachePolicy.OFF, null, null);
+    }
+
+    public CacheSettingsDto(CachePolicy policy, Integer timeToLive, Integer maxSize) {
+        this.policy = policy;
+        this.timeToLive = timeToLive;
+        this.maxSize = maxSize;
+    }
+
+    public CachePolicy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(CachePolicy policy) {
+        this.policy = null != policy ? policy : CachePolicy.OFF;
+    }
+
+    /**
+     * @return the time, in seconds, for which instances are cached, null if not set
+     */
+    public Integer getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(Integer timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * @return the maximum number of cached instances, null if unbounded
+     */
+    public Integer getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(Integer maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @JsonIgnore
+    public boolean isEnabled() {
+        return policy != null && policy != CachePolicy.OFF;
+    }
+
+    @JsonIgnore
+    public boolean isQueryResultsCached() {
+        return policy == CachePolicy.READ_MOSTLY;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return EqualsBuilder.reflectionEquals(this, obj);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
+    }
+}
@@ -0,0 +1,102 @@
+package org.motechproject.mds.dto;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+import org.motechproject.mds.util.CachePolicy;
+
+/**
+ * The <code>CacheStatisticsDto</code> contains the level 2 cache statistics of an entity, collected since
+ * the cache was created. Misses include instances loaded into the cache for the first time, evictions
+ * include only instances evicted because of the cache policy, either expired or over the size bound.
+ */
+public class CacheStatisticsDto {
+
+    private String entityClassName;
+    private CachePolicy policy;
+    private int size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public CacheStatisticsDto() {
+        this(null);
+    }
+
+    public CacheStatisticsDto(String entityClassName) {
+        this(entityClassName, CachePolicy.OFF, 0, 0, 0, 0);
+    }
+
+    public CacheStatisticsDto(String entityClassName, CachePolicy policy, int size, long hits, long misses,
+                              long evictions) {
+        this.entityClassName = entityClassName;
+        this.policy = policy;
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    public String getEntityClassName() {
+        return entityClassName;
+    }
+
+    public void setEntityClassName(String entityClassName) {
+        this.entityClassName = entityClassName;
+    }
+
+    public CachePolicy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(CachePolicy policy) {
+        this.policy = policy;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public void setEvictions(long evictions) {
+        this.evictions = evictions;
+    }
+
+    /**
+     * @return the ratio of hits to all retrievals from the cache, 0 if there were none
+     */
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
+    }
+}
@@ -0,0 +1,78 @@
+package org.motechproject.mds.dto;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+
+/**
+ * The <code>QueryPlanCacheStatisticsDto</code> contains the statistics of the query plan cache of an entity,
+ * that is the number of cached query plans and the hits and misses counted since the cache was created. Misses
+ * include queries which plans cannot be cached.
+ *
+ * @see org.motechproject.mds.query.QueryPlanCache
+ */
+public class QueryPlanCacheStatisticsDto {
+
+    private String entityClassName;
+    private int size;
+    private long hits;
+    private long misses;
+
+    public QueryPlanCacheStatisticsDto() {
+        this(null, 0, 0, 0);
+    }
+
+    public QueryPlanCacheStatisticsDto(String entityClassName, int size, long hits, long misses) {
+        this.entityClassName = entityClassName;
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    public String getEntityClassName() {
+        return entityClassName;
+    }
+
+    public void setEntityClassName(String entityClassName) {
+        this.entityClassName = entityClassName;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    /**
+     * @return the ratio of hits to all queries planned using the cache, 0 if there were none
+     */
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
+    }
+}
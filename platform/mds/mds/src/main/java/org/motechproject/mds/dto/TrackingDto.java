@@ -4,6 +4,7 @@ import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
+import org.motechproject.mds.event.CrudEventMode;
 
 /**
  * The <code>TrackingDto</code> contains properties that describe the audit settings of an Entity,
@@ -14,6 +15,7 @@ public class TrackingDto {
     private boolean allowCreateEvent;
     private boolean allowUpdateEvent;
     private boolean allowDeleteEvent;
+    private CrudEventMode crudEventMode = CrudEventMode.INDIVIDUAL;
     private boolean modifiedByUser;
     private boolean nonEditable;
 
@@ -68,6 +70,20 @@ public class TrackingDto {
         this.allowUpdateEvent = value;
     }
 
+    /**
+     * @return the way CRUD events of the entity are published
+     */
+    public CrudEventMode getCrudEventMode() {
+        return crudEventMode;
+    }
+
+    /**
+     * @param crudEventMode the way CRUD events of the entity are published, null for individual events
+     */
+    public void setCrudEventMode(CrudEventMode crudEventMode) {
+        this.crudEventMode = null != crudEventMode ? crudEventMode : CrudEventMode.INDIVIDUAL;
+    }
+
     public boolean isModifiedByUser() {
         return modifiedByUser;
     }
@@ -5,9 +5,11 @@ import org.apache.commons.collections.Predicate;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.jackson.annotate.JsonIgnore;
 import org.motechproject.mds.dto.AdvancedSettingsDto;
+import org.motechproject.mds.dto.CacheSettingsDto;
 import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.LookupDto;
+import org.motechproject.mds.event.CrudEventMode;
 import org.motechproject.mds.exception.field.FieldNotFoundException;
 import org.motechproject.mds.util.ClassName;
 import org.motechproject.mds.util.SecurityMode;
@@ -139,6 +141,11 @@ public class EntityInfo {
         return advancedSettings.getTracking().isAllowDeleteEvent();
     }
 
+    @JsonIgnore
+    public CrudEventMode getCrudEventMode() {
+        return advancedSettings.getTracking().getCrudEventMode();
+    }
+
     @JsonIgnore
     public boolean isRestCreateEnabled() {
         return advancedSettings.getRestOptions().isCreate();
@@ -159,6 +166,11 @@ public class EntityInfo {
         return advancedSettings.getRestOptions().isDelete();
     }
 
+    @JsonIgnore
+    public CacheSettingsDto getCacheSettings() {
+        return advancedSettings.getCache();
+    }
+
     @JsonIgnore
     public boolean isRecordHistory() {
         return entity.isRecordHistory();
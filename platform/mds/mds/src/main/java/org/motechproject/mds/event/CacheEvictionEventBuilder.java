@@ -0,0 +1,46 @@
+package org.motechproject.mds.event;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.motechproject.mds.util.Constants.MDSEvents.ENTITY_CLASS;
+import static org.motechproject.mds.util.Constants.MDSEvents.ORIGIN_INSTANCE_ID;
+
+/**
+ * The <code>CacheEvictionEventBuilder</code> class is responsible for creating the events broadcast to other
+ * MOTECH instances after instances of a cached entity were changed, so that they evict the entity from their
+ * level 2 caches.
+ */
+public final class CacheEvictionEventBuilder {
+
+    private static final UUID INSTANCE_ID = UUID.randomUUID();
+
+    private CacheEvictionEventBuilder() {
+    }
+
+    /**
+     * Builds parameters for a cache eviction event.
+     *
+     * @param entityClassName entity class name
+     * @return constructed parameters for the event
+     */
+    public static Map<String, Object> buildEventParams(String entityClassName) {
+        Map<String, Object> params = new HashMap<>();
+
+        params.put(ENTITY_CLASS, entityClassName);
+        params.put(ORIGIN_INSTANCE_ID, INSTANCE_ID);
+
+        return params;
+    }
+
+    /**
+     * Checks whether a cache eviction event was broadcast by this MOTECH instance.
+     *
+     * @param originInstanceId the origin instance id from the parameters of the event
+     * @return true if the event was broadcast by this instance, false otherwise
+     */
+    public static boolean isFromThisInstance(Object originInstanceId) {
+        return INSTANCE_ID.equals(originInstanceId);
+    }
+}
@@ -0,0 +1,19 @@
+package org.motechproject.mds.event;
+
+/**
+ * This enum describes how the CRUD events of an entity are published. Regardless of the mode, events are published
+ * after the transaction making the changes is committed, every instance is reported once per transaction for each
+ * type of change, and no events are published if nothing listens to them.
+ */
+public enum CrudEventMode {
+    /**
+     * An event is published for every changed instance. Bulk operations, such as creating a collection of
+     * instances, publish a single bulk event with the ids of the instances.
+     */
+    INDIVIDUAL,
+    /**
+     * All changes of a given type made in a transaction are published as bulk events with the ids of the
+     * changed instances, up to the bulk chunk size of the data service per event.
+     */
+    BATCHED
+}
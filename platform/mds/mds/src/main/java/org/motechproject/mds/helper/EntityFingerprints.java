@@ -0,0 +1,140 @@
+package org.motechproject.mds.helper;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.motechproject.mds.domain.RelationshipHolder;
+import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.dto.SchemaHolder;
+import org.motechproject.mds.exception.MdsException;
+import org.motechproject.mds.helper.bundle.MdsBundleHelper;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * The <code>EntityFingerprints</code> is a helper class that computes fingerprints of entities. A fingerprint
+ * covers the definition of an entity (its settings, fields and advanced settings) and the definitions of all
+ * entities it depends on, that is its superclass and the entities it is related with, transitively. The classes
+ * generated for an entity will not change as long as its fingerprint does not change, which allows reusing them
+ * between constructions of the entities bundle.
+ */
+public final class EntityFingerprints {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String BND_LAST_MODIFIED_HEADER = "Bnd-LastModified";
+
+    /**
+     * Computes fingerprints of the given entities. Entities outside of the given list are ignored when
+     * resolving dependencies. For DDE entities the version and build time of the declaring bundle are
+     * included, since their classes are built from the bundle.
+     *
+     * @param entities the entities for which fingerprints should be computed
+     * @param schemaHolder the holder of the current MDS schema
+     * @param bundleContext the context used for finding declaring bundles of DDE entities, can be null
+     * @return the fingerprints of the given entities, mapped by entity class names
+     */
+    public static Map<String, String> compute(List<EntityDto> entities, SchemaHolder schemaHolder,
+                                              BundleContext bundleContext) {
+        Map<String, String> definitions = new HashMap<>();
+        Map<String, List<String>> dependencies = new HashMap<>();
+
+        for (EntityDto entity : entities) {
+            definitions.put(entity.getClassName(), definitionDigest(entity, schemaHolder, bundleContext));
+        }
+
+        for (EntityDto entity : entities) {
+            dependencies.put(entity.getClassName(), dependencies(entity, schemaHolder));
+        }
+
+        Map<String, String> fingerprints = new LinkedHashMap<>();
+
+        for (EntityDto entity : entities) {
+            StringBuilder closure = new StringBuilder();
+            for (String className : dependencyClosure(entity.getClassName(), definitions, dependencies)) {
+                closure.append(className).append(':').append(definitions.get(className)).append('\n');
+            }
+
+            fingerprints.put(entity.getClassName(), DigestUtils.sha256Hex(closure.toString()));
+        }
+
+        return fingerprints;
+    }
+
+    private static String definitionDigest(EntityDto entity, SchemaHolder schemaHolder, BundleContext bundleContext) {
+        Map<String, Object> definition = new LinkedHashMap<>();
+
+        definition.put("entity", entity);
+        definition.put("fields", schemaHolder.getFields(entity));
+        definition.put("advancedSettings", schemaHolder.getAdvancedSettings(entity));
+
+        if (entity.isDDE() && bundleContext != null) {
+            Bundle declaringBundle = MdsBundleHelper.searchForBundle(bundleContext, entity);
+            definition.put("bundleBuild", declaringBundle == null ? null : bundleBuild(declaringBundle));
+        }
+
+        try {
+            return DigestUtils.sha256Hex(OBJECT_MAPPER.writeValueAsString(definition));
+        } catch (IOException e) {
+            throw new MdsException("Unable to compute the fingerprint of entity " + entity.getClassName(), e);
+        }
+    }
+
+    private static String bundleBuild(Bundle bundle) {
+        // unlike the modification time of the bundle, the build time survives reinstalling the same bundle
+        Object buildTime = bundle.getHeaders().get(BND_LAST_MODIFIED_HEADER);
+        return bundle.getVersion() + "/" + (buildTime == null ? bundle.getLastModified() : buildTime);
+    }
+
+    private static List<String> dependencies(EntityDto entity, SchemaHolder schemaHolder) {
+        List<String> dependencies = new ArrayList<>();
+
+        if (StringUtils.isNotBlank(entity.getSuperClass())) {
+            dependencies.add(entity.getSuperClass());
+        }
+
+        for (FieldDto field : schemaHolder.getFields(entity)) {
+            if (field.getType().isRelationship()) {
+                String relatedClass = new RelationshipHolder(field).getRelatedClass();
+                if (StringUtils.isNotBlank(relatedClass)) {
+                    dependencies.add(relatedClass);
+                }
+            }
+        }
+
+        return dependencies;
+    }
+
+    private static SortedSet<String> dependencyClosure(String className, Map<String, String> definitions,
+                                                       Map<String, List<String>> dependencies) {
+        SortedSet<String> closure = new TreeSet<>();
+        Deque<String> toVisit = new ArrayDeque<>();
+        toVisit.push(className);
+
+        while (!toVisit.isEmpty()) {
+            String current = toVisit.pop();
+
+            if (definitions.containsKey(current) && closure.add(current)) {
+                for (String dependency : dependencies.get(current)) {
+                    toVisit.push(dependency);
+                }
+            }
+        }
+
+        return closure;
+    }
+
+    private EntityFingerprints() {
+    }
+}
@@ -6,6 +6,7 @@ import org.motechproject.mds.domain.FieldMetadata;
 import org.motechproject.mds.dto.TypeDto;
 import org.motechproject.mds.util.MemberUtil;
 import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.mds.util.TypeHelper;
 
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.InvocationTargetException;
@@ -121,6 +122,10 @@ public final class FieldHelper {
                 if (descriptor == null) {
                     throw new IllegalStateException("Property [" + property + "] not available on class: "
                             + target.getClass().getName());
+                } else if (descriptor.getPropertyType().isEnum() && value.get(0) instanceof String) {
+                    // the UI sends the names of enum constants, such as the CRUD event mode
+                    PropertyUtil.safeSetProperty(target, property,
+                            TypeHelper.parse(value.get(0), descriptor.getPropertyType()));
                 } else {
                     PropertyUtil.safeSetProperty(target, property, value.get(0));
                 }
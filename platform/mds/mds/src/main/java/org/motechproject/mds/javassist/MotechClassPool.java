@@ -116,6 +116,10 @@ public final class MotechClassPool {
         return ClassName.getServiceClassName(className);
     }
 
+    public static String getAccessorName(String className) {
+        return ClassName.getAccessorName(className);
+    }
+
     public static void registerHistoryClassData(ClassData cData) {
         historyClassData.put(cData.getClassName(), cData);
     }
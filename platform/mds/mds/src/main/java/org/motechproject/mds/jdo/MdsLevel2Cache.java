@@ -0,0 +1,299 @@
+package org.motechproject.mds.jdo;
+
+import org.datanucleus.NucleusContext;
+import org.datanucleus.StoreNucleusContext;
+import org.datanucleus.cache.CachedPC;
+import org.datanucleus.cache.SoftLevel2Cache;
+import org.joda.time.DateTimeUtils;
+import org.motechproject.mds.dto.CacheSettingsDto;
+import org.motechproject.mds.dto.CacheStatisticsDto;
+import org.motechproject.mds.util.CachePolicy;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The level 2 cache of the MDS data store, registered in DataNucleus as the <code>mds</code> cache type. It keeps
+ * instances using soft references, like the default DataNucleus cache, but only instances of entities with a
+ * cache policy other than {@link CachePolicy#OFF}, and it applies the settings of the policy: instances of entities
+ * with the {@link CachePolicy#TIME_TO_LIVE} policy expire after the configured time, and once the number of cached
+ * instances of an entity reaches the maximum size, the least recently used one is evicted. Entities without a maximum
+ * size keep at most {@link #DEFAULT_MAX_SIZE} instances. Cache settings of entities are registered by their data
+ * services, when these are initialized. Hits, misses and evictions are counted for every entity.
+ * <p>
+ * Every entity has its own region, with its own lock, so instances of different entities are cached concurrently.
+ * The region of a cached instance is found using the class of the instance, so ids of instances which were
+ * collected by the garbage collector stay in their regions until they are evicted as the least recently used ones.
+ */
+public class MdsLevel2Cache extends SoftLevel2Cache {
+
+    /**
+     * The maximum number of cached instances of an entity without a maximum size.
+     */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private static final long serialVersionUID = -2461376286433318215L;
+
+    private static final int MILLIS_IN_SECOND = 1000;
+
+    private static final Map<String, CacheSettingsDto> CACHE_SETTINGS = new ConcurrentHashMap<>();
+
+    private final transient NucleusContext nucleusContext;
+
+    private final ConcurrentMap<String, CacheRegion> regions = new ConcurrentHashMap<>();
+
+    public MdsLevel2Cache(NucleusContext nucleusContext) {
+        super(nucleusContext);
+        this.nucleusContext = nucleusContext;
+    }
+
+    /**
+     * Registers the cache settings of the given entity. Instances already cached using different settings are
+     * evicted when the cache is accessed next time.
+     *
+     * @param entityClassName the class name of the entity
+     * @param cacheSettings the cache settings of the entity, null if the entity should not be cached
+     */
+    public static void registerCacheSettings(String entityClassName, CacheSettingsDto cacheSettings) {
+        if (cacheSettings == null || !cacheSettings.isEnabled()) {
+            CACHE_SETTINGS.remove(entityClassName);
+        } else {
+            CACHE_SETTINGS.put(entityClassName, cacheSettings);
+        }
+    }
+
+    @Override
+    public CachedPC get(Object oid) {
+        CachedPC pc = super.get(oid);
+        if (pc == null) {
+            return null;
+        }
+
+        CacheRegion region = currentRegion(pc.getObjectClass().getName());
+        if (region == null || !region.hit(oid)) {
+            // cached using previous settings, expired, or evicted from its region in the meantime
+            super.evict(oid);
+            return null;
+        }
+
+        return pc;
+    }
+
+    @Override
+    public CachedPC put(Object oid, CachedPC pc) {
+        if (oid == null || pc == null) {
+            return null;
+        }
+
+        CacheRegion region = currentRegion(pc.getObjectClass().getName());
+        if (region == null) {
+            return null;
+        }
+
+        CachedPC previous = super.put(oid, pc);
+
+        Object eldest = region.put(oid, pc.getObjectClass());
+        if (eldest != null) {
+            super.evict(eldest);
+        }
+
+        return previous;
+    }
+
+    @Override
+    public void evict(Object oid) {
+        CachedPC pc = super.get(oid);
+        super.evict(oid);
+
+        if (pc != null) {
+            CacheRegion region = regions.get(pc.getObjectClass().getName());
+            if (region != null) {
+                region.remove(oid);
+            }
+        }
+    }
+
+    @Override
+    public void evictAll() {
+        super.evictAll();
+
+        for (CacheRegion region : regions.values()) {
+            region.clear();
+        }
+    }
+
+    /**
+     * Evicts all instances of the given class, and also drops cached query results for the class, so that
+     * changes made to the database outside of this cache, for example by a different MOTECH instance, are
+     * visible to lookups.
+     *
+     * @param pcClass the class to evict the instances of
+     * @param subclasses true if instances of subclasses should be also evicted
+     */
+    @Override
+    public void evictAll(Class pcClass, boolean subclasses) {
+        super.evictAll(pcClass, subclasses);
+
+        for (CacheRegion region : regions.values()) {
+            Class<?> objectClass = region.getObjectClass();
+            boolean evicted = objectClass != null && (subclasses
+                    ? pcClass.isAssignableFrom(objectClass)
+                    : pcClass.equals(objectClass));
+
+            if (evicted) {
+                region.clear();
+            }
+        }
+
+        if (nucleusContext instanceof StoreNucleusContext) {
+            ((StoreNucleusContext) nucleusContext).getStoreManager().getQueryManager()
+                    .evictQueryResultsForType(pcClass);
+        }
+    }
+
+    /**
+     * Returns the cache statistics of the given entity.
+     *
+     * @param entityClassName the class name of the entity
+     * @return the statistics of the entity, empty if the entity was never cached
+     */
+    public CacheStatisticsDto getStatistics(String entityClassName) {
+        CacheRegion region = regions.get(entityClassName);
+        if (region == null) {
+            return new CacheStatisticsDto(entityClassName);
+        }
+        return region.toStatistics();
+    }
+
+    private CacheRegion currentRegion(String className) {
+        CacheSettingsDto cacheSettings = CACHE_SETTINGS.get(className);
+        CacheRegion region = regions.get(className);
+
+        if (region != null && !region.getSettings().equals(cacheSettings)) {
+            // the settings of the entity changed, instances cached using the old ones are dropped
+            if (regions.remove(className, region)) {
+                for (Object oid : region.clear()) {
+                    super.evict(oid);
+                }
+            }
+            region = null;
+        }
+
+        if (region == null && cacheSettings != null) {
+            CacheRegion newRegion = new CacheRegion(className, cacheSettings);
+            region = regions.putIfAbsent(className, newRegion);
+            if (region == null) {
+                region = newRegion;
+            }
+        }
+
+        return region;
+    }
+
+    /**
+     * The cached instances of a single entity, in the order of access, with their expiration times.
+     * Guarded by its own lock.
+     */
+    private static class CacheRegion {
+
+        private final String className;
+        private final CacheSettingsDto settings;
+        private final long timeToLive;
+        private final int maxSize;
+        private final LinkedHashMap<Object, Long> expirationTimes = new LinkedHashMap<>(16, 0.75f, true);
+
+        private volatile Class<?> objectClass;
+        private long hits;
+        private long misses;
+        private long evictions;
+
+        CacheRegion(String className, CacheSettingsDto settings) {
+            this.className = className;
+            this.settings = settings;
+            this.timeToLive = settings.getPolicy() == CachePolicy.TIME_TO_LIVE && settings.getTimeToLive() != null
+                    ? (long) settings.getTimeToLive() * MILLIS_IN_SECOND
+                    : 0;
+            this.maxSize = settings.getMaxSize() == null ? DEFAULT_MAX_SIZE : settings.getMaxSize();
+        }
+
+        CacheSettingsDto getSettings() {
+            return settings;
+        }
+
+        Class<?> getObjectClass() {
+            return objectClass;
+        }
+
+        /**
+         * Registers an access to the given instance.
+         *
+         * @return true if the instance is cached and did not expire, false if it has to be loaded from the database
+         */
+        synchronized boolean hit(Object oid) {
+            Long expirationTime = expirationTimes.get(oid);
+            if (expirationTime == null) {
+                misses++;
+                return false;
+            }
+            if (expirationTime < DateTimeUtils.currentTimeMillis()) {
+                expirationTimes.remove(oid);
+                misses++;
+                evictions++;
+                return false;
+            }
+
+            hits++;
+            return true;
+        }
+
+        /**
+         * Adds the given instance to the region.
+         *
+         * @return the id of the least recently used instance, if it has to be evicted, null otherwise
+         */
+        synchronized Object put(Object oid, Class<?> pcClass) {
+            objectClass = pcClass;
+
+            if (!expirationTimes.containsKey(oid)) {
+                // not cached before, so the instance was just loaded from the database
+                misses++;
+            }
+            expirationTimes.put(oid, timeToLive > 0 ? DateTimeUtils.currentTimeMillis() + timeToLive : Long.MAX_VALUE);
+
+            if (maxSize > 0 && expirationTimes.size() > maxSize) {
+                Iterator<Object> it = expirationTimes.keySet().iterator();
+                Object eldest = it.next();
+                it.remove();
+                evictions++;
+                return eldest;
+            }
+
+            return null;
+        }
+
+        synchronized void remove(Object oid) {
+            expirationTimes.remove(oid);
+        }
+
+        /**
+         * Removes all instances from the region.
+         *
+         * @return the ids of the removed instances
+         */
+        synchronized List<Object> clear() {
+            List<Object> oids = new ArrayList<>(expirationTimes.keySet());
+            expirationTimes.clear();
+            return oids;
+        }
+
+        synchronized CacheStatisticsDto toStatistics() {
+            return new CacheStatisticsDto(className, settings.getPolicy(), expirationTimes.size(), hits, misses,
+                    evictions);
+        }
+    }
+}
@@ -7,7 +7,8 @@ import javax.jdo.listener.StoreLifecycleListener;
 
 /**
  * The history listener which listens to store events.
- * After the object gets stored this listener will create its history
+ * Before the object gets stored this listener registers its changed fields,
+ * after the object gets stored this listener will create its history
  * using the {@link org.motechproject.mds.service.HistoryService}. Listener
  * operations are executed in one transaction with the actual store.
  */
@@ -17,6 +18,8 @@ public class HistoryListener extends BaseListener<HistoryService> implements Sto
     public void preStore(InstanceLifecycleEvent event) {
         Object instance = event.getSource();
         getLogger().trace("Pre-store event received for {}", instance);
+
+        getService().registerChanges(instance);
     }
 
     @Override
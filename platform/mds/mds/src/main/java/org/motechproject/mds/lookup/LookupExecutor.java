@@ -1,20 +1,12 @@
 package org.motechproject.mds.lookup;
 
-import org.apache.commons.lang.reflect.MethodUtils;
-import org.motechproject.commons.api.Range;
-import org.motechproject.mds.domain.ComboboxHolder;
+import org.datanucleus.store.query.QueryNotUniqueException;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.LookupDto;
-import org.motechproject.mds.dto.LookupFieldDto;
-import org.motechproject.mds.dto.LookupFieldType;
-import org.motechproject.mds.exception.field.FieldNotFoundException;
 import org.motechproject.mds.exception.lookup.LookupExecutorException;
+import org.motechproject.mds.query.CloseableIterator;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.MotechDataService;
-import org.motechproject.mds.util.LookupName;
-import org.motechproject.mds.util.MDSClassLoader;
-import org.motechproject.mds.util.TypeHelper;
-import org.datanucleus.store.query.QueryNotUniqueException;
 
 import javax.jdo.JDOUserException;
 
@@ -22,29 +14,27 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * This class allows executing lookups by providing the lookup name
  * as a string and the lookup params in name-value map. Used both
  * by the REST api and the Databrowser UI for executing lookups based
  * on only metadata. The dataservice and metadata must be provided during
- * construction.
+ * construction. The lookup methods are invoked using a {@link LookupInvoker},
+ * resolved when the lookup is executed for the first time.
  */
 public class LookupExecutor {
 
     private final MotechDataService dataService;
     private final LookupDto lookup;
     private final Map<String, FieldDto> fieldsByName;
-    private final Class entityClass;
-    private final ClassLoader classLoader;
+
+    private volatile LookupInvoker invoker;
 
     public LookupExecutor(MotechDataService dataService, LookupDto lookup, Map<String, FieldDto> fieldsByName) {
         this.dataService = dataService;
         this.lookup = lookup;
         this.fieldsByName = fieldsByName;
-        this.entityClass = dataService.getClassType();
-        this.classLoader = dataService.getClass().getClassLoader();
     }
 
     public Object execute(Map<String, ?> lookupMap) {
@@ -52,21 +42,14 @@ public class LookupExecutor {
     }
 
     public Object execute(Map<String, ?> lookupMap, QueryParams queryParams) {
-        List<Object> args = getLookupArgs(lookupMap);
-        List<Class> argTypes = buildArgTypes();
+        LookupInvoker lookupInvoker = getInvoker();
+        Object[] args = lookupInvoker.buildArgs(lookupMap, queryParams);
         String lookupExceptionMessage = "Unable to execute lookup ";
         String lookupExceptionMessageKey = "mds.error.lookupExecError";
 
-        if (queryParams != null) {
-            args.add(queryParams);
-            argTypes.add(QueryParams.class);
-        }
-
         try {
-            return MethodUtils.invokeMethod(dataService, lookup.getMethodName(),
-                    args.toArray(new Object[args.size()]),
-                    argTypes.toArray(new Class[argTypes.size()]));
-        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return lookupInvoker.invoke(dataService, args);
+        } catch (NoSuchMethodException e) {
             throw new LookupExecutorException(lookupExceptionMessage + lookup.getLookupName() + ".", e, null);
         } catch (InvocationTargetException e) {
             if (e.getTargetException() instanceof JDOUserException) {
@@ -82,124 +65,69 @@ public class LookupExecutor {
         }
     }
 
-    public long executeCount(Map<String, ?> lookupMap) {
-        List<Object> args = getLookupArgs(lookupMap);
-        List<Class> argTypes = buildArgTypes();
-
-        String countMethodName = LookupName.lookupCountMethod(lookup.getMethodName());
+    public CloseableIterator executeStream(Map<String, ?> lookupMap, QueryParams queryParams, int fetchSize) {
+        LookupInvoker lookupInvoker = getInvoker();
+        Object[] args = lookupInvoker.buildArgs(lookupMap, queryParams == null ? new QueryParams(null, null) : queryParams);
 
         try {
-            return (long) MethodUtils.invokeMethod(dataService, countMethodName,
-                    args.toArray(new Object[args.size()]),
-                    argTypes.toArray(new Class[argTypes.size()]));
-        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-            throw new LookupExecutorException("Unable to execute count lookup " + lookup.getLookupName() + ".", e, null);
+            return lookupInvoker.invokeStream(dataService, args, fetchSize);
+        } catch (NoSuchMethodException | InvocationTargetException e) {
+            throw new LookupExecutorException("Unable to execute streaming lookup " + lookup.getLookupName() + ".", e, null);
         }
     }
 
-
-    private List<Object> getLookupArgs(Map<String, ?> paramMap) {
-        List<Object> args = new ArrayList<>();
-        for (LookupFieldDto lookupField : lookup.getLookupFields()) {
-            FieldDto field = fieldsByName.get(lookupField.getLookupFieldName());
-            if (field == null) {
-                throw new FieldNotFoundException(entityClass.getName(), lookupField.getName());
-            }
-
-            Object val = paramMap.get(lookupField.getLookupFieldName());
-
-            String typeClass = getTypeClass(field);
-            String genericType = getGenericTypeClass(field);
-
-            Object arg;
-            if (lookupField.getType() == LookupFieldType.RANGE) {
-                arg = TypeHelper.toRange(val, typeClass);
-            } else if (lookupField.getType() == LookupFieldType.SET) {
-                arg = TypeHelper.toSet(val, typeClass, classLoader);
-            } else {
-                arg = TypeHelper.parse(val, lookupField.isUseGenericParam() ? genericType : typeClass, classLoader);
-            }
-
-            args.add(arg);
+    /**
+     * Executes the lookup for each of the given parameter maps, using the bulk method of the lookup, so that
+     * all of them are looked up at once, instead of executing the lookup for each of them separately.
+     *
+     * @param lookupMaps the lookup parameters, one map for each execution
+     * @return the results of the lookup for each of the parameter maps, in the order of the maps
+     */
+    public List<List> executeBulk(List<? extends Map<String, ?>> lookupMaps) {
+        LookupInvoker lookupInvoker = getInvoker();
+
+        List<Object> keys = new ArrayList<>(lookupMaps.size());
+        for (Map<String, ?> lookupMap : lookupMaps) {
+            keys.add(lookupInvoker.buildBulkKey(lookupMap));
         }
-        return args;
-    }
 
-    private String getTypeClass(FieldDto field) {
-        String typeClass;
-
-        if (field.getType().isCombobox()) {
-            ComboboxHolder holder = new ComboboxHolder(entityClass, field);
-            typeClass = holder.getTypeClassName();
-        } else {
-            typeClass = (field.getType().isTextArea()) ? "java.lang.String" : field.getType().getTypeClass();
+        Map<Object, List> resultsByKey;
+        try {
+            resultsByKey = lookupInvoker.invokeBulk(dataService, keys);
+        } catch (NoSuchMethodException | InvocationTargetException e) {
+            throw new LookupExecutorException("Unable to execute bulk lookup " + lookup.getLookupName() + ".", e, null);
         }
 
-        return typeClass;
-    }
-
-    private String getGenericTypeClass(FieldDto field) {
-        String genericType = null;
-
-        if (field.getType().isCombobox()) {
-            ComboboxHolder holder = new ComboboxHolder(entityClass, field);
-
-            if (holder.isCollection()) {
-                genericType = holder.getUnderlyingType();
-            }
+        List<List> results = new ArrayList<>(keys.size());
+        for (Object key : keys) {
+            List result = resultsByKey.get(key);
+            results.add(result == null ? new ArrayList() : result);
         }
 
-        return genericType;
+        return results;
     }
 
-    private List<Class> buildArgTypes() {
-        List<Class> argTypes = new ArrayList<>();
-
-        for (LookupFieldDto lookupField : lookup.getLookupFields()) {
-
-            switch (lookupField.getType()) {
-                case RANGE:
-                    argTypes.add(Range.class);
-                    break;
-                case SET:
-                    argTypes.add(Set.class);
-                    break;
-                default:
-                    FieldDto field = fieldsByName.get(lookupField.getLookupFieldName());
-                    if (field == null) {
-                        throw new FieldNotFoundException(entityClass.getName(), lookupField.getName());
-                    }
-
-                    String typeClassName = getTypeClassName(lookupField, field);
+    public boolean isSingleObjectReturn() {
+        return lookup.isSingleObjectReturn();
+    }
 
-                    try {
-                        ClassLoader safeClassLoader = null == classLoader
-                                ? MDSClassLoader.getInstance()
-                                : classLoader;
+    public long executeCount(Map<String, ?> lookupMap) {
+        LookupInvoker lookupInvoker = getInvoker();
+        Object[] args = lookupInvoker.buildArgs(lookupMap, null);
 
-                        argTypes.add(safeClassLoader.loadClass(typeClassName));
-                    } catch (ClassNotFoundException e) {
-                        throw new IllegalStateException("Type not found " + typeClassName, e);
-                    }
-            }
+        try {
+            return lookupInvoker.invokeCount(dataService, args);
+        } catch (NoSuchMethodException | InvocationTargetException e) {
+            throw new LookupExecutorException("Unable to execute count lookup " + lookup.getLookupName() + ".", e, null);
         }
-
-        return argTypes;
     }
 
-    private String getTypeClassName(LookupFieldDto lookupField, FieldDto field) {
-        String typeClassName = (field.getType().isTextArea()) ? "java.lang.String" : field.getType().getTypeClass();
-
-        if (field.getType().isCombobox()) {
-            ComboboxHolder holder = new ComboboxHolder(entityClass, field);
-            
-            if (holder.isCollection() && lookupField.isUseGenericParam()) {
-                typeClassName = holder.getUnderlyingType();
-            } else {
-                typeClassName = holder.getTypeClassName();
-            }
+    private LookupInvoker getInvoker() {
+        LookupInvoker lookupInvoker = invoker;
+        if (lookupInvoker == null) {
+            lookupInvoker = LookupInvoker.getInvoker(dataService, lookup, fieldsByName);
+            invoker = lookupInvoker;
         }
-
-        return typeClassName;
+        return lookupInvoker;
     }
 }
@@ -0,0 +1,328 @@
+package org.motechproject.mds.lookup;
+
+import org.apache.commons.lang.reflect.MethodUtils;
+import org.motechproject.commons.api.Range;
+import org.motechproject.mds.domain.ComboboxHolder;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.dto.LookupDto;
+import org.motechproject.mds.dto.LookupFieldDto;
+import org.motechproject.mds.dto.LookupFieldType;
+import org.motechproject.mds.exception.field.FieldNotFoundException;
+import org.motechproject.mds.query.CloseableIterator;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.util.LookupName;
+import org.motechproject.mds.util.MDSClassLoader;
+import org.motechproject.mds.util.TypeHelper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A typed invoker of a single lookup of a data service. The lookup method, its variant taking
+ * {@link QueryParams}, its count method, its streaming method and its bulk method are resolved once and kept as method handles, together with
+ * converters of the lookup parameters, so that executing the lookup does not require finding the method
+ * and the parameter types by reflection every time. Invokers are cached per data service class and schema
+ * version of the entity, any change of the entity makes the data service use a new schema version and the
+ * invokers of its lookups are replaced. The cache is attached to the data service class itself, so it does not
+ * keep classes of regenerated entities bundles, or their class loaders, from being collected.
+ */
+final class LookupInvoker {
+
+    private static final ClassValue<Map<String, LookupInvoker>> INVOKERS =
+            new ClassValue<Map<String, LookupInvoker>>() {
+                @Override
+                protected Map<String, LookupInvoker> computeValue(Class<?> serviceClass) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    private final Class<?> serviceClass;
+    private final Long schemaVersion;
+    private final String lookupName;
+    private final ArgumentConverter[] converters;
+    private final ClassLoader classLoader;
+
+    private final MethodHandle lookupMethod;
+    private final MethodHandle lookupWithParamsMethod;
+    private final MethodHandle countMethod;
+    private final MethodHandle streamMethod;
+    private final MethodHandle bulkMethod;
+
+    /**
+     * Returns the invoker of the given lookup. If the data service has a schema version, the invoker is taken
+     * from the cache or created and cached, otherwise a new invoker is created.
+     *
+     * @param dataService the data service of the entity
+     * @param lookup the lookup to invoke
+     * @param fieldsByName the fields of the lookup, by their lookup field names
+     * @return the invoker of the lookup
+     */
+    static LookupInvoker getInvoker(MotechDataService dataService, LookupDto lookup,
+                                    Map<String, FieldDto> fieldsByName) {
+        Long schemaVersion = dataService.getSchemaVersion();
+        if (schemaVersion == null) {
+            return new LookupInvoker(dataService, lookup, fieldsByName);
+        }
+
+        Map<String, LookupInvoker> invokers = INVOKERS.get(dataService.getClass());
+        LookupInvoker invoker = invokers.get(lookup.getMethodName());
+
+        if (invoker == null || !schemaVersion.equals(invoker.schemaVersion)) {
+            invoker = new LookupInvoker(dataService, lookup, fieldsByName);
+            invokers.put(lookup.getMethodName(), invoker);
+        }
+
+        return invoker;
+    }
+
+    private LookupInvoker(MotechDataService dataService, LookupDto lookup, Map<String, FieldDto> fieldsByName) {
+        Class entityClass = dataService.getClassType();
+
+        this.serviceClass = dataService.getClass();
+        this.schemaVersion = dataService.getSchemaVersion();
+        this.lookupName = lookup.getLookupName();
+        this.classLoader = serviceClass.getClassLoader();
+
+        List<LookupFieldDto> lookupFields = lookup.getLookupFields();
+        this.converters = new ArgumentConverter[lookupFields.size()];
+        Class[] argTypes = new Class[lookupFields.size()];
+
+        for (int i = 0; i < lookupFields.size(); ++i) {
+            LookupFieldDto lookupField = lookupFields.get(i);
+            FieldDto field = fieldsByName.get(lookupField.getLookupFieldName());
+            if (field == null) {
+                throw new FieldNotFoundException(entityClass.getName(), lookupField.getName());
+            }
+
+            converters[i] = new ArgumentConverter(entityClass, lookupField, field);
+            argTypes[i] = converters[i].getArgType(classLoader);
+        }
+
+        Class[] argTypesWithParams = Arrays.copyOf(argTypes, argTypes.length + 1);
+        argTypesWithParams[argTypes.length] = QueryParams.class;
+
+        this.lookupMethod = findMethod(lookup.getMethodName(), argTypes);
+        this.lookupWithParamsMethod = findMethod(lookup.getMethodName(), argTypesWithParams);
+        this.countMethod = findMethod(LookupName.lookupCountMethod(lookup.getMethodName()), argTypes);
+
+        Class[] argTypesWithFetchSize = Arrays.copyOf(argTypesWithParams, argTypesWithParams.length + 1);
+        argTypesWithFetchSize[argTypesWithParams.length] = int.class;
+
+        // lookups returning a single instance have no streaming method
+        this.streamMethod = findMethod(LookupName.lookupStreamMethod(lookup.getMethodName()), argTypesWithFetchSize);
+
+        // only lookups by plain values have a bulk method
+        this.bulkMethod = findMethod(LookupName.lookupBulkMethod(lookup.getMethodName()),
+                new Class[]{Collection.class});
+    }
+
+    /**
+     * Converts the given lookup parameters to the arguments of the lookup method.
+     *
+     * @param paramMap the lookup parameters, by their lookup field names
+     * @param queryParams the query params, if not null they are added as the last argument
+     * @return the arguments of the lookup method
+     */
+    Object[] buildArgs(Map<String, ?> paramMap, QueryParams queryParams) {
+        int argCount = queryParams == null ? converters.length : converters.length + 1;
+        Object[] args = new Object[argCount];
+
+        for (int i = 0; i < converters.length; ++i) {
+            args[i] = converters[i].convert(paramMap, classLoader);
+        }
+        if (queryParams != null) {
+            args[converters.length] = queryParams;
+        }
+
+        return args;
+    }
+
+    /**
+     * Converts the given lookup parameters to the key of the bulk lookup method.
+     *
+     * @param paramMap the lookup parameters, by their lookup field names
+     * @return the converted value for a lookup on a single field, otherwise the list of converted values
+     */
+    Object buildBulkKey(Map<String, ?> paramMap) {
+        Object[] args = buildArgs(paramMap, null);
+        return args.length == 1 ? args[0] : Arrays.asList(args);
+    }
+
+    /**
+     * Invokes the lookup method, or its variant taking {@link QueryParams}, if the last of the given arguments
+     * are query params.
+     *
+     * @param dataService the data service to invoke the method on
+     * @param args the arguments, built using {@link #buildArgs(Map, QueryParams)}
+     * @return the result of the lookup
+     * @throws NoSuchMethodException if the data service does not have the lookup method
+     * @throws InvocationTargetException wrapping exceptions thrown by the lookup method, errors are rethrown
+     */
+    Object invoke(MotechDataService dataService, Object[] args)
+            throws NoSuchMethodException, InvocationTargetException {
+        MethodHandle method = args.length > converters.length ? lookupWithParamsMethod : lookupMethod;
+        return invoke(method, dataService, args);
+    }
+
+    /**
+     * Invokes the count method of the lookup.
+     *
+     * @param dataService the data service to invoke the method on
+     * @param args the arguments, built using {@link #buildArgs(Map, QueryParams)} without query params
+     * @return the count of instances matching the lookup
+     * @throws NoSuchMethodException if the data service does not have the count method
+     * @throws InvocationTargetException wrapping exceptions thrown by the count method, errors are rethrown
+     */
+    long invokeCount(MotechDataService dataService, Object[] args)
+            throws NoSuchMethodException, InvocationTargetException {
+        return (long) invoke(countMethod, dataService, args);
+    }
+
+    /**
+     * Invokes the streaming method of the lookup.
+     *
+     * @param dataService the data service to invoke the method on
+     * @param args the arguments, built using {@link #buildArgs(Map, QueryParams)} with query params
+     * @param fetchSize the number of instances fetched from the database at once
+     * @return the iterator over instances matching the lookup
+     * @throws NoSuchMethodException if the data service does not have the streaming method
+     * @throws InvocationTargetException wrapping exceptions thrown by the streaming method, errors are rethrown
+     */
+    CloseableIterator invokeStream(MotechDataService dataService, Object[] args, int fetchSize)
+            throws NoSuchMethodException, InvocationTargetException {
+        Object[] argsWithFetchSize = Arrays.copyOf(args, args.length + 1);
+        argsWithFetchSize[args.length] = fetchSize;
+
+        return (CloseableIterator) invoke(streamMethod, dataService, argsWithFetchSize);
+    }
+
+    /**
+     * Invokes the bulk method of the lookup.
+     *
+     * @param dataService the data service to invoke the method on
+     * @param keys the keys, built using {@link #buildBulkKey(Map)}
+     * @return the instances matching the keys, by the keys
+     * @throws NoSuchMethodException if the data service does not have the bulk method
+     * @throws InvocationTargetException wrapping exceptions thrown by the bulk method, errors are rethrown
+     */
+    Map<Object, List> invokeBulk(MotechDataService dataService, Collection<Object> keys)
+            throws NoSuchMethodException, InvocationTargetException {
+        return (Map<Object, List>) invoke(bulkMethod, dataService, new Object[]{keys});
+    }
+
+    private Object invoke(MethodHandle method, MotechDataService dataService, Object[] args)
+            throws NoSuchMethodException, InvocationTargetException {
+        if (method == null) {
+            throw new NoSuchMethodException("No method for lookup " + lookupName + " with " + args.length +
+                    " arguments in " + serviceClass.getName());
+        }
+
+        Object[] arguments = new Object[args.length + 1];
+        arguments[0] = dataService;
+        System.arraycopy(args, 0, arguments, 1, args.length);
+
+        try {
+            return (Object) method.invokeExact(arguments);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    private MethodHandle findMethod(String methodName, Class[] argTypes) {
+        Method method = MethodUtils.getMatchingAccessibleMethod(serviceClass, methodName, argTypes);
+        if (method == null) {
+            return null;
+        }
+
+        try {
+            MethodHandle handle = MethodHandles.publicLookup().unreflect(method);
+            // (service, args...) -> result, taking all arguments in a single array
+            return handle.asType(MethodType.genericMethodType(argTypes.length + 1))
+                    .asSpreader(Object[].class, argTypes.length + 1);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to access the " + methodName + " method of " +
+                    serviceClass.getName(), e);
+        }
+    }
+
+    /**
+     * Converts the value of a single lookup parameter to the type expected by the lookup method. The type
+     * information of the field is resolved when the converter is created.
+     */
+    private static final class ArgumentConverter {
+
+        private final String lookupFieldName;
+        private final LookupFieldType type;
+        private final String typeClass;
+        private final String parseClass;
+        private final String argTypeClass;
+
+        ArgumentConverter(Class entityClass, LookupFieldDto lookupField, FieldDto field) {
+            String genericType = null;
+            String fieldTypeClass = field.getType().isTextArea() ? String.class.getName() : field.getType().getTypeClass();
+            String fieldArgTypeClass = fieldTypeClass;
+
+            if (field.getType().isCombobox()) {
+                ComboboxHolder holder = new ComboboxHolder(entityClass, field);
+                fieldTypeClass = holder.getTypeClassName();
+
+                if (holder.isCollection()) {
+                    genericType = holder.getUnderlyingType();
+                }
+
+                fieldArgTypeClass = holder.isCollection() && lookupField.isUseGenericParam()
+                        ? genericType
+                        : fieldTypeClass;
+            }
+
+            this.lookupFieldName = lookupField.getLookupFieldName();
+            this.type = lookupField.getType();
+            this.typeClass = fieldTypeClass;
+            this.parseClass = lookupField.isUseGenericParam() ? genericType : fieldTypeClass;
+            this.argTypeClass = fieldArgTypeClass;
+        }
+
+        Object convert(Map<String, ?> paramMap, ClassLoader classLoader) {
+            Object val = paramMap.get(lookupFieldName);
+
+            if (type == LookupFieldType.RANGE) {
+                return TypeHelper.toRange(val, typeClass);
+            } else if (type == LookupFieldType.SET) {
+                return TypeHelper.toSet(val, typeClass, classLoader);
+            } else {
+                return TypeHelper.parse(val, parseClass, classLoader);
+            }
+        }
+
+        Class getArgType(ClassLoader classLoader) {
+            switch (type) {
+                case RANGE:
+                    return Range.class;
+                case SET:
+                    return Set.class;
+                default:
+                    try {
+                        ClassLoader safeClassLoader = null == classLoader
+                                ? MDSClassLoader.getInstance()
+                                : classLoader;
+
+                        return safeClassLoader.loadClass(argTypeClass);
+                    } catch (ClassNotFoundException e) {
+                        throw new IllegalStateException("Type not found " + argTypeClass, e);
+                    }
+            }
+        }
+    }
+}
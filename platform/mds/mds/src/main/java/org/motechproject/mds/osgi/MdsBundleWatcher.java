@@ -14,6 +14,7 @@ import org.motechproject.mds.dto.SchemaHolder;
 import org.motechproject.mds.exception.MdsException;
 import org.motechproject.mds.helper.bundle.MdsBundleHelper;
 import org.motechproject.mds.loader.EditableLookupsLoader;
+import org.motechproject.mds.reflections.BundleScans;
 import org.motechproject.mds.repository.internal.SchemaChangeLockManager;
 import org.motechproject.mds.service.EntityService;
 import org.motechproject.mds.service.JarGeneratorService;
@@ -81,12 +82,29 @@ public class MdsBundleWatcher implements SynchronousBundleListener {
         LOGGER.info("Scanning for MDS annotations");
         bundlesToRefresh = new ArrayList<>();
 
+        StopWatch totalStopWatch = new StopWatch();
+        totalStopWatch.start();
+
         StopWatch stopWatch = new StopWatch();
 
         SchemaHolder schemaHolder = lockAndGetSchema();
-        final List<MDSProcessorOutput> mdsProcessorOutputs = processInstalledBundles(schemaHolder);
 
         stopWatch.start();
+        List<Bundle> bundlesToScan = getBundlesToScan();
+        int scanned = BundleScans.scanAll(bundlesToScan);
+        stopWatch.stop();
+
+        LOGGER.info("Scanning of {} bundles finished in {} ms, {} bundles were not found in the scan cache",
+                bundlesToScan.size(), stopWatch.getTime(), scanned);
+
+        StopWatchHelper.restart(stopWatch);
+        final List<MDSProcessorOutput> mdsProcessorOutputs = processInstalledBundles(schemaHolder);
+        stopWatch.stop();
+
+        LOGGER.info("Reading annotations of {} bundles finished in {} ms", bundlesToScan.size(),
+                stopWatch.getTime());
+
+        StopWatchHelper.restart(stopWatch);
         new TransactionTemplate(transactionManager).execute(new TransactionCallbackWithoutResult() {
             @Override
             protected void doInTransactionWithoutResult(TransactionStatus status) {
@@ -122,6 +140,9 @@ public class MdsBundleWatcher implements SynchronousBundleListener {
         }
 
         bundleContext.addBundleListener(this);
+
+        totalStopWatch.stop();
+        LOGGER.info("MDS annotation scanning finished in {} ms", totalStopWatch.getTime());
     }
 
     /**
@@ -144,6 +165,18 @@ public class MdsBundleWatcher implements SynchronousBundleListener {
         handleBundleEvent(bundle, eventType);
     }
 
+    private List<Bundle> getBundlesToScan() {
+        List<Bundle> bundles = new ArrayList<>();
+
+        for (Bundle bundle : bundleContext.getBundles()) {
+            if (!skipBundle(bundle)) {
+                bundles.add(bundle);
+            }
+        }
+
+        return bundles;
+    }
+
     private List<MDSProcessorOutput> processInstalledBundles(SchemaHolder schemaHolder) {
         List<MDSProcessorOutput> outputs = new ArrayList<>();
 
@@ -217,6 +250,14 @@ public class MdsBundleWatcher implements SynchronousBundleListener {
             // Assert the bundle is resolved before processing annotations, to log any problems before annotation processing fails.
             assertBundleClassLoading(bundle);
 
+            try {
+                // a single scan of the bundle answers all queries made while processing its annotations
+                BundleScans.scan(bundle);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to scan bundle {}, it will be scanned separately for each annotation",
+                        bundle.getSymbolicName(), e);
+            }
+
             LOGGER.debug("Processing bundle {}", bundle.getSymbolicName());
             return processor.processAnnotations(bundle, schemaHolder);
         }
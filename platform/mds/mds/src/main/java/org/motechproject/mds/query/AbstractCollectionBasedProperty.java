@@ -20,6 +20,11 @@ public abstract class AbstractCollectionBasedProperty<T extends Collection> exte
         super(jdoVariableName, name, value, type);
     }
 
+    @Override
+    protected CharSequence generateShape() {
+        return String.valueOf(getValue().size());
+    }
+
     @Override
     public CharSequence generateDeclareParameter(int idx) {
         Collection<String> strings = new ArrayList<>();
@@ -0,0 +1,21 @@
+package org.motechproject.mds.query;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * An iterator over query results that holds on to database resources, a cursor and possibly a
+ * transaction, until it is closed. It is closed automatically once all results were read, but
+ * callers that stop earlier must close it themselves, preferably using a try-with-resources block.
+ *
+ * @param <T> the type of returned instances
+ */
+public interface CloseableIterator<T> extends Iterator<T>, Closeable {
+
+    /**
+     * Releases the cursor and the transaction used by this iterator. Calling this method more than
+     * once has no effect.
+     */
+    @Override
+    void close();
+}
@@ -27,6 +27,11 @@ public class CustomOperatorProperty<T> extends Property<T> {
         return operator;
     }
 
+    @Override
+    protected CharSequence generateShape() {
+        return operator;
+    }
+
     @Override
     public CharSequence generateFilter(int idx) {
         if (shouldIgnoreThisProperty()) {
@@ -18,6 +18,11 @@ public class EqualProperty<T> extends Property<T> {
         super(jdoVariableName, name, value, type);
     }
 
+    @Override
+    protected CharSequence generateShape() {
+        return "";
+    }
+
     @Override
     public CharSequence generateFilter(int idx) {
         if (isForRelation()) {
@@ -5,6 +5,8 @@ import org.apache.commons.collections.comparators.NullComparator;
 import org.apache.commons.collections.comparators.ReverseComparator;
 import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.Order;
+import org.motechproject.mds.util.PropertyAccessor;
+import org.motechproject.mds.util.PropertyAccessors;
 import org.springframework.util.comparator.CompoundComparator;
 
 import java.util.ArrayList;
@@ -55,9 +57,19 @@ public final class InMemoryQueryFilter {
     private static <T> List<T> order(Collection<T> collection, List<Order> orderList) {
         List<Comparator<T>> comparatorList = new ArrayList<>();
 
+        // the instances are usually of the same entity class, so its accessor is looked up only once
+        Object firstInstance = collection.isEmpty() ? null : collection.iterator().next();
+        Class<?> instanceClass = null == firstInstance ? null : firstInstance.getClass();
+        PropertyAccessor accessor = null == instanceClass ? null : PropertyAccessors.get(instanceClass);
+
         for (Order order : orderList) {
             Comparator<T> comparator = new BeanComparator<>(order.getField(), new NullComparator());
 
+            int index = null == accessor ? -1 : accessor.indexOf(order.getField());
+            if (index >= 0) {
+                comparator = new AccessorComparator<>(instanceClass, accessor, index, comparator);
+            }
+
             // reverse it if order is descending
             if (order.getDirection() == Order.Direction.DESC) {
                 comparator = new ReverseComparator(comparator);
@@ -100,4 +112,32 @@ public final class InMemoryQueryFilter {
 
     private InMemoryQueryFilter() {
     }
+
+    /**
+     * Compares instances using the property accessor of their class. Instances of other classes are
+     * compared using the fallback comparator, which uses reflection.
+     */
+    private static final class AccessorComparator<T> implements Comparator<T> {
+        private final Class<?> instanceClass;
+        private final PropertyAccessor accessor;
+        private final int index;
+        private final Comparator<T> fallback;
+
+        private AccessorComparator(Class<?> instanceClass, PropertyAccessor accessor, int index,
+                                   Comparator<T> fallback) {
+            this.instanceClass = instanceClass;
+            this.accessor = accessor;
+            this.index = index;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public int compare(T first, T second) {
+            if (first.getClass() == instanceClass && second.getClass() == instanceClass) {
+                return accessor.compare(first, second, index);
+            } else {
+                return fallback.compare(first, second);
+            }
+        }
+    }
 }
@@ -0,0 +1,70 @@
+package org.motechproject.mds.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The <code>InProperty</code> class represents a property that will be used in JDO query
+ * and it has to be equal to one of the values from the given collection. Unlike the {@link SetProperty},
+ * the values are passed as a single collection parameter, which is translated to an <code>IN</code> clause,
+ * so the size of the filter does not depend on the number of values. A null value in the collection
+ * matches instances without a value of the property.
+ *
+ * @param <T> type used in collection.
+ */
+public class InProperty<T> extends Property<Collection<T>> {
+
+    private static final String COLLECTION_TYPE = Collection.class.getName();
+
+    public InProperty(String name, Collection<T> value, String type) {
+        super(name, value, type);
+    }
+
+    @Override
+    protected CharSequence generateFilter(int idx) {
+        if (getNonNullValues().isEmpty()) {
+            return String.format("%s == null", getName());
+        }
+
+        String filter = String.format("param%d.contains(%s)", idx, getName());
+
+        return getValue().contains(null)
+                ? String.format("(%s || %s == null)", filter, getName())
+                : filter;
+    }
+
+    @Override
+    protected CharSequence generateShape() {
+        return String.format("%b:%b", getNonNullValues().isEmpty(), getValue().contains(null));
+    }
+
+    @Override
+    protected CharSequence generateDeclareParameter(int idx) {
+        return getNonNullValues().isEmpty() ? null : String.format("%s param%d", COLLECTION_TYPE, idx);
+    }
+
+    @Override
+    public Collection unwrap() {
+        List<T> values = getNonNullValues();
+        return values.isEmpty() ? Collections.emptyList() : Collections.singletonList(values);
+    }
+
+    @Override
+    protected boolean shouldIgnoreThisProperty() {
+        return getValue() == null || getValue().isEmpty();
+    }
+
+    private List<T> getNonNullValues() {
+        List<T> values = new ArrayList<>();
+
+        for (T value : getValue()) {
+            if (value != null) {
+                values.add(value);
+            }
+        }
+
+        return values;
+    }
+}
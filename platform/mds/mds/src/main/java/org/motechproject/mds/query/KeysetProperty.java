@@ -0,0 +1,130 @@
+package org.motechproject.mds.query;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.util.Order;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The <code>KeysetProperty</code> class represents a property that will be used in JDO query for keyset
+ * pagination. It restricts the results to records which come after the last record of the previous page
+ * in the given ordering, by comparing the ordered fields with their values in that record. The ordering
+ * must end with a unique field, such as the id, so that the position of the record is unambiguous.
+ * Null values are compared explicitly, according to where the datastore sorts them.
+ *
+ * @see QueryParams#isKeysetSet()
+ * @see QueryUtil#getKeysetOrderList(QueryParams)
+ */
+public class KeysetProperty extends Property<List<Object>> {
+
+    private final List<Order> orderList;
+    private final List<String> types;
+    private final boolean nullsLast;
+
+    /**
+     * Creates the property.
+     *
+     * @param orderList the ordering of the records, ending with a unique field
+     * @param values the values of the ordered fields in the last record of the previous page, in the same order
+     * @param types the class names of the ordered fields, in the same order
+     * @param nullsLast true if the datastore sorts nulls after other values in the ascending order,
+     *                  false if it sorts them before other values
+     */
+    public KeysetProperty(List<Order> orderList, List<Object> values, List<String> types, boolean nullsLast) {
+        super(null, values, null);
+
+        if (orderList.size() != values.size() || orderList.size() != types.size()) {
+            throw new IllegalArgumentException("Each ordered field must have a value and a type");
+        }
+        if (values.isEmpty() || values.get(values.size() - 1) == null) {
+            throw new IllegalArgumentException("The last ordered field must be unique and cannot be null");
+        }
+
+        this.orderList = orderList;
+        this.types = types;
+        this.nullsLast = nullsLast;
+    }
+
+    @Override
+    protected CharSequence generateFilter(int idx) {
+        // (f0 > p0) || (f0 == p0 && f1 > p1) || ..., where the comparisons of nulls are spelled out
+        List<String> alternatives = new ArrayList<>(orderList.size());
+        List<String> equalities = new ArrayList<>(orderList.size());
+
+        for (int i = 0; i < orderList.size(); ++i) {
+            String field = orderList.get(i).getField();
+            String following = following(i, idx);
+
+            if (following != null) {
+                List<String> conditions = new ArrayList<>(equalities);
+                conditions.add(following);
+                alternatives.add("(" + StringUtils.join(conditions, " && ") + ")");
+            }
+
+            equalities.add(getValue().get(i) == null
+                    ? String.format("%s == null", field)
+                    : String.format("%s == %s", field, paramName(idx, i)));
+        }
+
+        return "(" + StringUtils.join(alternatives, " || ") + ")";
+    }
+
+    @Override
+    protected CharSequence generateShape() {
+        List<Boolean> nulls = new ArrayList<>(orderList.size());
+        for (Object value : getValue()) {
+            nulls.add(value == null);
+        }
+
+        return String.format("%s:%s:%s:%s", orderList, types, nulls, nullsLast);
+    }
+
+    @Override
+    protected CharSequence generateDeclareParameter(int idx) {
+        List<String> declarations = new ArrayList<>(types.size());
+
+        for (int i = 0; i < types.size(); ++i) {
+            if (getValue().get(i) != null) {
+                declarations.add(String.format("%s %s", types.get(i), paramName(idx, i)));
+            }
+        }
+
+        return StringUtils.join(declarations, ", ");
+    }
+
+    @Override
+    public Collection unwrap() {
+        List<Object> values = new ArrayList<>(getValue().size());
+        for (Object value : getValue()) {
+            if (value != null) {
+                values.add(value);
+            }
+        }
+
+        return values;
+    }
+
+    private String following(int fieldIdx, int idx) {
+        Order order = orderList.get(fieldIdx);
+        String field = order.getField();
+        boolean ascending = order.getDirection() != Order.Direction.DESC;
+        // whether the nulls come after the other values in this ordering
+        boolean nullsFollow = ascending == nullsLast;
+
+        if (getValue().get(fieldIdx) == null) {
+            return nullsFollow ? null : String.format("%s != null", field);
+        }
+
+        String comparison = String.format("%s %s %s", field, ascending ? ">" : "<", paramName(idx, fieldIdx));
+        // the last field is unique, so it is never null
+        boolean last = fieldIdx == orderList.size() - 1;
+
+        return nullsFollow && !last ? String.format("(%s || %s == null)", comparison, field) : comparison;
+    }
+
+    private String paramName(int idx, int fieldIdx) {
+        return String.format("param%d_%d", idx, fieldIdx);
+    }
+}
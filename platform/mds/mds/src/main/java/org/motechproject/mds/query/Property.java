@@ -64,6 +64,36 @@ public abstract class Property<T> {
         return String.format("%s param%d", getType(), idx);
     }
 
+    /**
+     * Returns the shape of this property, that is everything its filter and parameter declaration depend on,
+     * apart from the index of the property. Properties with equal shapes generate equal filters, no matter
+     * the values of their parameters, so the filters can be reused by the {@link QueryPlanCache}.
+     *
+     * @return the shape of the property, or null if the filter of the property cannot be reused
+     */
+    public CharSequence asShape() {
+        if (shouldIgnoreThisProperty()) {
+            return "-";
+        }
+
+        CharSequence shape = generateShape();
+
+        return shape == null
+                ? null
+                : String.format("%s:%s:%s:%s:%s", getClass().getName(), name, type, jdoVariableName, shape);
+    }
+
+    /**
+     * Returns the part of the shape which depends on the value of the property, for example the number of
+     * parameters it is unwrapped to. Properties which filters depend on their values in other ways should
+     * return null, so that their filters are never reused.
+     *
+     * @return the value dependent part of the shape, or null if the filter cannot be reused
+     */
+    protected CharSequence generateShape() {
+        return null;
+    }
+
     public Collection unwrap() {
         return shouldIgnoreThisProperty() ? null : Arrays.asList(getValue());
     }
@@ -12,7 +12,10 @@ import java.util.List;
 
 /**
  * Utility class containing parameters which control order and size of query results.
- * Used mainly for paging/ordering queries from the UI.
+ * Used mainly for paging/ordering queries from the UI. Pages can be selected either by their number, or
+ * by the ordered values and the id of the last record of the previous page (keyset pagination). Keyset
+ * pagination does not require the database to skip the records of all previous pages, so it should be
+ * used for reading through large numbers of records.
  */
 public class QueryParams implements Serializable {
     private static final long serialVersionUID = 8635166802886633897L;
@@ -20,6 +23,8 @@ public class QueryParams implements Serializable {
     private final Integer page;
     private final Integer pageSize;
     private final List<Order> orderList;
+    private final Long afterId;
+    private final List<Object> afterValues;
 
     /**
      * Constant query parameter, that orders records ascending by ID.
@@ -65,6 +70,8 @@ public class QueryParams implements Serializable {
         this.page = page;
         this.pageSize = pageSize;
         this.orderList = new ArrayList<>();
+        this.afterId = null;
+        this.afterValues = new ArrayList<>();
         if (order != null) {
             orderList.add(order);
         }
@@ -78,9 +85,38 @@ public class QueryParams implements Serializable {
      * @param orderList the list of order instructions that will be applied to the query
      */
     public QueryParams(Integer page, Integer pageSize, List<Order> orderList) {
+        this(page, pageSize, orderList, null);
+    }
+
+    /**
+     * Creates query parameters.
+     *
+     * @param page number of page, should be 1 if the id of the last record of the previous page is given
+     * @param pageSize amount of entries to include, per page
+     * @param orderList the list of order instructions that will be applied to the query
+     * @param afterId the id of the last record of the previous page, null if pages are selected by their number
+     */
+    public QueryParams(Integer page, Integer pageSize, List<Order> orderList, Long afterId) {
+        this(page, pageSize, orderList, afterId, null);
+    }
+
+    /**
+     * Creates query parameters.
+     *
+     * @param page number of page, should be 1 if the id of the last record of the previous page is given
+     * @param pageSize amount of entries to include, per page
+     * @param orderList the list of order instructions that will be applied to the query
+     * @param afterId the id of the last record of the previous page, null if pages are selected by their number
+     * @param afterValues the values of the ordered fields in the last record of the previous page, in the
+     *                    order of {@link QueryUtil#getKeysetOrderList(QueryParams)}, without the id
+     */
+    public QueryParams(Integer page, Integer pageSize, List<Order> orderList, Long afterId,
+                       List<Object> afterValues) {
         this.page = page;
         this.pageSize = pageSize;
         this.orderList = (orderList == null) ? new ArrayList<Order>() : orderList;
+        this.afterId = afterId;
+        this.afterValues = (afterValues == null) ? new ArrayList<>() : afterValues;
     }
 
     public Integer getPage() {
@@ -95,6 +131,20 @@ public class QueryParams implements Serializable {
         return orderList;
     }
 
+    /**
+     * @return the id of the last record of the previous page, null if pages are selected by their number
+     */
+    public Long getAfterId() {
+        return afterId;
+    }
+
+    /**
+     * @return the values of the ordered fields in the last record of the previous page, without the id
+     */
+    public List<Object> getAfterValues() {
+        return afterValues;
+    }
+
     public boolean isOrderSet() {
         return !orderList.isEmpty();
     }
@@ -103,6 +153,10 @@ public class QueryParams implements Serializable {
         return page != null && pageSize != null;
     }
 
+    public boolean isKeysetSet() {
+        return afterId != null;
+    }
+
     public void addOrder(Order order) {
         orderList.add(order);
     }
@@ -116,6 +170,36 @@ public class QueryParams implements Serializable {
         return false;
     }
 
+    /**
+     * Creates query parameters selecting the page of records which come after the record with the given id,
+     * ordered by id only. Orderings on other fields require the values of these fields, see
+     * {@link #after(Long, List, Integer, List)}.
+     *
+     * @param afterId the id of the last record of the previous page
+     * @param pageSize amount of entries to include, per page
+     * @param orderList the list of order instructions that will be applied to the query
+     * @return query parameters for keyset pagination
+     */
+    public static QueryParams after(Long afterId, Integer pageSize, List<Order> orderList) {
+        return after(afterId, null, pageSize, orderList);
+    }
+
+    /**
+     * Creates query parameters selecting the page of records which come after the given record, in the given
+     * ordering. Records are additionally ordered by id, unless the ordering already contains it. The record is
+     * identified by its id and the values of its ordered fields, so it does not have to exist anymore.
+     *
+     * @param afterId the id of the last record of the previous page
+     * @param afterValues the values of the ordered fields in the last record of the previous page, without
+     *                    the id, in the order of {@link QueryUtil#getKeysetOrderList(QueryParams)}; may contain nulls
+     * @param pageSize amount of entries to include, per page
+     * @param orderList the list of order instructions that will be applied to the query
+     * @return query parameters for keyset pagination
+     */
+    public static QueryParams after(Long afterId, List<Object> afterValues, Integer pageSize, List<Order> orderList) {
+        return new QueryParams(1, pageSize, orderList, afterId, afterValues);
+    }
+
     /**
       * Creates query parameter that sorts records ascending, by the given field.
       *
@@ -147,7 +231,9 @@ public class QueryParams implements Serializable {
 
             return ObjectUtils.equals(page, other.page)
                     && ObjectUtils.equals(pageSize, other.pageSize)
-                    && ObjectUtils.equals(orderList, other.orderList);
+                    && ObjectUtils.equals(orderList, other.orderList)
+                    && ObjectUtils.equals(afterId, other.afterId)
+                    && ObjectUtils.equals(afterValues, other.afterValues);
         }
 
         return false;
@@ -159,6 +245,8 @@ public class QueryParams implements Serializable {
                 .append(page)
                 .append(pageSize)
                 .append(orderList)
+                .append(afterId)
+                .append(afterValues)
                 .toHashCode();
     }
 }
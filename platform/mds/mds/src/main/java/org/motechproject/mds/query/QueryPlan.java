@@ -0,0 +1,54 @@
+package org.motechproject.mds.query;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang.StringUtils;
+
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The <code>QueryPlan</code> class holds the filter and the parameter declarations generated for a list of
+ * properties. It does not hold the values of the parameters, so it can be applied to any query using properties
+ * of the same shapes.
+ *
+ * @see QueryPlanCache
+ */
+final class QueryPlan {
+
+    private final String filter;
+    private final String parameters;
+
+    private QueryPlan(String filter, String parameters) {
+        this.filter = filter;
+        this.parameters = parameters;
+    }
+
+    static QueryPlan build(List<Property> properties) {
+        Collection<CharSequence> filters = new ArrayList<>(properties.size());
+        Collection<CharSequence> declareParameter = new ArrayList<>(properties.size());
+
+        for (int idx = 0; idx < properties.size(); ++idx) {
+            Property property = properties.get(idx);
+
+            CollectionUtils.addIgnoreNull(filters, property.asFilter(idx));
+            CollectionUtils.addIgnoreNull(declareParameter, property.asDeclareParameter(idx));
+        }
+
+        return new QueryPlan(StringUtils.join(filters, " && "), StringUtils.join(declareParameter, ", "));
+    }
+
+    void apply(Query query) {
+        query.setFilter(filter);
+        query.declareParameters(parameters);
+    }
+
+    String getFilter() {
+        return filter;
+    }
+
+    String getParameters() {
+        return parameters;
+    }
+}
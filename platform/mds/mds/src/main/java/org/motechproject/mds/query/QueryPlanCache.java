@@ -0,0 +1,98 @@
+package org.motechproject.mds.query;
+
+import org.motechproject.mds.dto.QueryPlanCacheStatisticsDto;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>QueryPlanCache</code> keeps the filters and parameter declarations generated for the shapes of
+ * properties used in queries, so that queries using properties of the same shapes only have to bind the new
+ * values of the parameters. Since the generated filters are equal, DataNucleus also finds the compilations
+ * of these queries in its query compilation caches. The number of cached plans is bounded, plans of new shapes
+ * are not cached once the bound is reached. Properties which shapes cannot be determined are never cached.
+ *
+ * @see Property#asShape()
+ */
+public class QueryPlanCache {
+
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private static final String SHAPE_SEPARATOR = ";";
+
+    private final ConcurrentMap<String, QueryPlan> plans = new ConcurrentHashMap<>();
+    private final int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public QueryPlanCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public QueryPlanCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the plan for the given properties, either cached for properties of the same shapes, or built
+     * for the given properties.
+     *
+     * @param properties the properties used in the query
+     * @return the plan of the query
+     */
+    QueryPlan getPlan(List<Property> properties) {
+        String shape = getShape(properties);
+        QueryPlan plan = shape == null ? null : plans.get(shape);
+
+        if (plan != null) {
+            hits.incrementAndGet();
+            return plan;
+        }
+
+        misses.incrementAndGet();
+        plan = QueryPlan.build(properties);
+
+        if (shape != null && plans.size() < maxSize) {
+            plans.putIfAbsent(shape, plan);
+        }
+
+        return plan;
+    }
+
+    /**
+     * Returns the statistics of this cache, collected since it was created or last cleared.
+     *
+     * @param entityClassName the name of the entity class the cache is used for
+     * @return the statistics of the cache
+     */
+    public QueryPlanCacheStatisticsDto getStatistics(String entityClassName) {
+        return new QueryPlanCacheStatisticsDto(entityClassName, plans.size(), hits.get(), misses.get());
+    }
+
+    /**
+     * Removes all plans from this cache and resets its statistics.
+     */
+    public void clear() {
+        plans.clear();
+        hits.set(0);
+        misses.set(0);
+    }
+
+    private String getShape(List<Property> properties) {
+        StringBuilder shape = new StringBuilder();
+
+        for (Property property : properties) {
+            CharSequence propertyShape = property.asShape();
+            if (propertyShape == null) {
+                return null;
+            }
+
+            shape.append(propertyShape).append(SHAPE_SEPARATOR);
+        }
+
+        return shape.toString();
+    }
+}
@@ -1,13 +1,13 @@
 package org.motechproject.mds.query;
 
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.Order;
 
 import javax.jdo.Query;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -22,6 +22,10 @@ import static org.motechproject.mds.util.SecurityUtil.getUsername;
 public final class QueryUtil {
 
     private static final String QUERY_CANNOT_BE_NULL = "Query cannot be null";
+    private static final String RESULT_CACHE_TYPE = "datanucleus.query.resultCacheType";
+    private static final String RESULT_SET_TYPE = "datanucleus.rdbms.query.resultSetType";
+    private static final String LOAD_RESULTS_AT_COMMIT = "datanucleus.query.loadResultsAtCommit";
+    private static final String RESULTS_CACHED = "datanucleus.query.results.cached";
 
     private QueryUtil() {
     }
@@ -42,13 +46,38 @@ public final class QueryUtil {
 
                 query.setRange(fromIncl, toExcl);
             }
-            if (queryParams.isOrderSet()) {
+            if (queryParams.isKeysetSet()) {
+                String order = StringUtils.join(getKeysetOrderList(queryParams), ", ");
+                query.setOrdering(order);
+            } else if (queryParams.isOrderSet()) {
                 String order = StringUtils.join(queryParams.getOrderList(), ", ");
                 query.setOrdering(order);
             }
         }
     }
 
+    /**
+     * Returns the ordering used for keyset pagination with the given query params. It is the requested
+     * ordering up to the first order on the id field, or the requested ordering followed by the ascending
+     * order on the id field, if it does not contain it.
+     *
+     * @param queryParams the query params with the id of the last record of the previous page
+     * @return the ordering of records, ending with the order on the id field
+     */
+    public static List<Order> getKeysetOrderList(QueryParams queryParams) {
+        List<Order> orderList = new ArrayList<>();
+
+        for (Order order : queryParams.getOrderList()) {
+            orderList.add(order);
+            if (Constants.Util.ID_FIELD_NAME.equals(order.getField())) {
+                return orderList;
+            }
+        }
+
+        orderList.add(new Order(Constants.Util.ID_FIELD_NAME, Order.Direction.ASC));
+        return orderList;
+    }
+
     public static void useFilters(Query query, Filters filters) {
         if (query == null) {
             throw new IllegalArgumentException(QUERY_CANNOT_BE_NULL);
@@ -66,6 +95,11 @@ public final class QueryUtil {
 
     public static void useFilter(Query query, String[] properties, Object[] values, Map<String, String> fieldTypeMap,
                                  InstanceSecurityRestriction restriction) {
+        useFilter(query, properties, values, fieldTypeMap, restriction, null);
+    }
+
+    public static void useFilter(Query query, String[] properties, Object[] values, Map<String, String> fieldTypeMap,
+                                 InstanceSecurityRestriction restriction, QueryPlanCache planCache) {
         if (properties.length != values.length) {
             throw new IllegalArgumentException("properties length must equal to values length");
         }
@@ -84,7 +118,7 @@ public final class QueryUtil {
             }
         }
 
-        useFilter(query, list, restriction);
+        useFilter(query, list, restriction, planCache);
     }
 
     public static void useFilter(Query query, List<Property> properties) {
@@ -93,6 +127,20 @@ public final class QueryUtil {
 
     public static void useFilter(Query query, List<Property> properties,
                                  InstanceSecurityRestriction restriction) {
+        useFilter(query, properties, restriction, null);
+    }
+
+    /**
+     * Sets the filter and the parameter declarations built from the given properties on the given query. If a
+     * plan cache is given, the filter and the declarations are taken from it for properties of known shapes.
+     *
+     * @param query the query to set the filter on
+     * @param properties the properties to filter by
+     * @param restriction the security restriction of the entity, may be null
+     * @param planCache the cache of query plans, may be null
+     */
+    public static void useFilter(Query query, List<Property> properties,
+                                 InstanceSecurityRestriction restriction, QueryPlanCache planCache) {
         if (query == null) {
             throw new IllegalArgumentException(QUERY_CANNOT_BE_NULL);
         }
@@ -103,18 +151,8 @@ public final class QueryUtil {
             copy.add(new RestrictionProperty(restriction, getUsername()));
         }
 
-        Collection<CharSequence> filters = new ArrayList<>(copy.size());
-        Collection<CharSequence> declareParameter = new ArrayList<>(copy.size());
-
-        for (int idx = 0; idx < copy.size(); ++idx) {
-            Property property = copy.get(idx);
-
-            CollectionUtils.addIgnoreNull(filters, property.asFilter(idx));
-            CollectionUtils.addIgnoreNull(declareParameter, property.asDeclareParameter(idx));
-        }
-
-        query.setFilter(StringUtils.join(filters, " && "));
-        query.declareParameters(StringUtils.join(declareParameter, ", "));
+        QueryPlan plan = planCache == null ? QueryPlan.build(copy) : planCache.getPlan(copy);
+        plan.apply(query);
     }
 
     public static void useFilterFromPattern(Query query, String pattern, List<Property> properties) {
@@ -141,6 +179,44 @@ public final class QueryUtil {
         return StringUtils.isNotEmpty(string) ? String.format(".*%s.*", string) : string;
     }
 
+    /**
+     * Prepares the given query for streaming its results. The results are read through a forward-only
+     * cursor, {@code fetchSize} rows at a time, and are not cached by the query, so that they can be
+     * garbage collected once processed.
+     *
+     * @param query the query to prepare
+     * @param fetchSize the number of rows fetched from the database at once
+     */
+    public static void useStreaming(Query query, int fetchSize) {
+        if (query == null) {
+            throw new IllegalArgumentException(QUERY_CANNOT_BE_NULL);
+        }
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("The fetch size must be a positive number");
+        }
+
+        query.getFetchPlan().setFetchSize(fetchSize);
+        query.addExtension(RESULT_CACHE_TYPE, "none");
+        query.addExtension(RESULT_SET_TYPE, "forward-only");
+        query.addExtension(LOAD_RESULTS_AT_COMMIT, "false");
+        query.addExtension(RESULTS_CACHED, "false");
+    }
+
+    /**
+     * Makes the results of the given query cached in the query results cache of the persistence manager
+     * factory. The cache keeps the ids of the results only, instances are retrieved from the level 2 cache.
+     * Cached results of queries for a class are dropped whenever an instance of this class is changed.
+     *
+     * @param query the query to cache the results of
+     */
+    public static void useResultsCache(Query query) {
+        if (query == null) {
+            throw new IllegalArgumentException(QUERY_CANNOT_BE_NULL);
+        }
+
+        query.addExtension(RESULTS_CACHED, "true");
+    }
+
     public static void setCountResult(Query query) {
         if (query == null) {
             throw new IllegalArgumentException(QUERY_CANNOT_BE_NULL);
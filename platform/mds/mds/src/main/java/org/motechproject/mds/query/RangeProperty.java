@@ -74,6 +74,11 @@ public class RangeProperty<T> extends Property<Range<T>> {
         return params;
     }
 
+    @Override
+    protected CharSequence generateShape() {
+        return String.format("%b:%b", getValue().getMin() != null, getValue().getMax() != null);
+    }
+
     @Override
     public CharSequence generateDeclareParameter(int idx) {
         StringBuilder sb = new StringBuilder();
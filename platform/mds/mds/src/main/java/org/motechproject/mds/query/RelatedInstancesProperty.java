@@ -0,0 +1,136 @@
+package org.motechproject.mds.query;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.util.Constants;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The <code>RelatedInstancesProperty</code> class represents a property that will be used in JDO query
+ * on a related entity. It restricts the results to instances related to the given owner instance through
+ * the given relationship field of the owner, together with instances with the given ids, and excludes
+ * instances with the other given ids. This allows paginating and ordering the value of a relationship
+ * field in the database, instead of loading the whole collection. The owner instance is bound to a JDO
+ * variable, which must be declared in the query, see {@link #getVariableDeclaration()}.
+ */
+public class RelatedInstancesProperty extends Property<Long> {
+
+    private static final String OWNER_VARIABLE = "owner";
+    private static final String COLLECTION_TYPE = Collection.class.getName();
+
+    private final String ownerClass;
+    private final boolean collection;
+    private final Collection<Long> includedIds;
+    private final Collection<Long> excludedIds;
+
+    /**
+     * Creates the property.
+     *
+     * @param ownerClass the class name of the entity that owns the relationship field
+     * @param fieldName the name of the relationship field
+     * @param collection true if the field holds a collection of related instances, false if it holds
+     *                   a single instance
+     * @param ownerId the id of the owner instance, or null if the owner instance does not exist yet
+     * @param includedIds the ids of instances that should be returned even if they are not related to the owner
+     * @param excludedIds the ids of instances that should not be returned even if they are related to the owner
+     */
+    public RelatedInstancesProperty(String ownerClass, String fieldName, boolean collection, Long ownerId,
+                                    Collection<Long> includedIds, Collection<Long> excludedIds) {
+        super(fieldName, ownerId, Long.class.getName());
+
+        if (ownerId == null && CollectionUtils.isEmpty(includedIds)) {
+            throw new IllegalArgumentException("Either the owner instance or the included ids must be given");
+        }
+
+        this.ownerClass = ownerClass;
+        this.collection = collection;
+        this.includedIds = includedIds;
+        this.excludedIds = excludedIds;
+    }
+
+    /**
+     * Returns the declaration of the JDO variable bound to the owner instance, which must be passed to
+     * {@link javax.jdo.Query#declareVariables(String)}.
+     *
+     * @return the declaration of the variable, or null if no variable is used
+     */
+    public String getVariableDeclaration() {
+        return getValue() == null ? null : String.format("%s %s", ownerClass, OWNER_VARIABLE);
+    }
+
+    @Override
+    protected CharSequence generateFilter(int idx) {
+        // ((owner.id == p0 && owner.field.contains(this)) || p1.contains(id)) && !p2.contains(id)
+        List<String> alternatives = new ArrayList<>();
+        int paramIdx = 0;
+
+        if (getValue() != null) {
+            String related = collection
+                    ? String.format("%s.%s.contains(this)", OWNER_VARIABLE, getName())
+                    : String.format("%s.%s == this", OWNER_VARIABLE, getName());
+
+            alternatives.add(String.format("(%s.%s == %s && %s)", OWNER_VARIABLE, Constants.Util.ID_FIELD_NAME,
+                    paramName(idx, paramIdx++), related));
+        }
+        if (CollectionUtils.isNotEmpty(includedIds)) {
+            alternatives.add(String.format("%s.contains(%s)", paramName(idx, paramIdx++), Constants.Util.ID_FIELD_NAME));
+        }
+
+        String filter = "(" + StringUtils.join(alternatives, " || ") + ")";
+
+        if (CollectionUtils.isNotEmpty(excludedIds)) {
+            filter = String.format("(%s && !%s.contains(%s))", filter, paramName(idx, paramIdx),
+                    Constants.Util.ID_FIELD_NAME);
+        }
+
+        return filter;
+    }
+
+    @Override
+    protected CharSequence generateShape() {
+        return String.format("%s:%b:%b:%b:%b", ownerClass, collection, getValue() != null,
+                CollectionUtils.isNotEmpty(includedIds), CollectionUtils.isNotEmpty(excludedIds));
+    }
+
+    @Override
+    protected CharSequence generateDeclareParameter(int idx) {
+        List<String> declarations = new ArrayList<>();
+        int paramIdx = 0;
+
+        if (getValue() != null) {
+            declarations.add(String.format("%s %s", getType(), paramName(idx, paramIdx++)));
+        }
+        if (CollectionUtils.isNotEmpty(includedIds)) {
+            declarations.add(String.format("%s %s", COLLECTION_TYPE, paramName(idx, paramIdx++)));
+        }
+        if (CollectionUtils.isNotEmpty(excludedIds)) {
+            declarations.add(String.format("%s %s", COLLECTION_TYPE, paramName(idx, paramIdx)));
+        }
+
+        return StringUtils.join(declarations, ", ");
+    }
+
+    @Override
+    public Collection unwrap() {
+        List<Object> values = new ArrayList<>();
+
+        if (getValue() != null) {
+            values.add(getValue());
+        }
+        if (CollectionUtils.isNotEmpty(includedIds)) {
+            values.add(includedIds);
+        }
+        if (CollectionUtils.isNotEmpty(excludedIds)) {
+            values.add(excludedIds);
+        }
+
+        return values;
+    }
+
+    private String paramName(int idx, int valueIdx) {
+        return String.format("param%d_%d", idx, valueIdx);
+    }
+}
@@ -0,0 +1,83 @@
+package org.motechproject.mds.reflections;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The <code>BundleScanResult</code> holds the names of classes and methods found while scanning a bundle for
+ * MDS annotations. Only names are kept, so that the result can be written to disk and reused after a restart.
+ * The classes and methods are loaded from the bundle by the {@link ReflectionsUtil} when they are requested.
+ *
+ * @see BundleScans
+ */
+public class BundleScanResult {
+
+    private String bundleKey;
+    private Map<String, Set<String>> annotatedTypes = new TreeMap<>();
+    private Map<String, Set<String>> annotatedMethods = new TreeMap<>();
+    private Set<String> mdsInterfaces = new TreeSet<>();
+
+    public BundleScanResult() {
+        this(null);
+    }
+
+    public BundleScanResult(String bundleKey) {
+        this.bundleKey = bundleKey;
+    }
+
+    /**
+     * Returns the key of the bundle build that was scanned, which consists of the symbolic name, version and
+     * modification time of the bundle.
+     *
+     * @return the key of the scanned bundle
+     */
+    public String getBundleKey() {
+        return bundleKey;
+    }
+
+    public void setBundleKey(String bundleKey) {
+        this.bundleKey = bundleKey;
+    }
+
+    /**
+     * Returns the names of annotated types, mapped by the names of annotations they were looked up for.
+     * Subtypes of the annotated types are included.
+     *
+     * @return the annotated types
+     */
+    public Map<String, Set<String>> getAnnotatedTypes() {
+        return annotatedTypes;
+    }
+
+    public void setAnnotatedTypes(Map<String, Set<String>> annotatedTypes) {
+        this.annotatedTypes = annotatedTypes;
+    }
+
+    /**
+     * Returns the descriptors of annotated methods, mapped by the names of annotations they were looked up for.
+     *
+     * @return the annotated methods
+     */
+    public Map<String, Set<String>> getAnnotatedMethods() {
+        return annotatedMethods;
+    }
+
+    public void setAnnotatedMethods(Map<String, Set<String>> annotatedMethods) {
+        this.annotatedMethods = annotatedMethods;
+    }
+
+    /**
+     * Returns the names of interfaces extending the {@link org.motechproject.mds.service.MotechDataService}.
+     *
+     * @return the MDS interfaces
+     */
+    public Set<String> getMdsInterfaces() {
+        return mdsInterfaces;
+    }
+
+    public void setMdsInterfaces(Set<String> mdsInterfaces) {
+        this.mdsInterfaces = mdsInterfaces;
+    }
+}
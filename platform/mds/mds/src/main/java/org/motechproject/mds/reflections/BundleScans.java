@@ -0,0 +1,248 @@
+package org.motechproject.mds.reflections;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.motechproject.mds.annotations.Entity;
+import org.motechproject.mds.annotations.InstanceLifecycleListener;
+import org.motechproject.mds.annotations.InstanceLifecycleListeners;
+import org.motechproject.mds.annotations.Lookup;
+import org.motechproject.mds.service.MotechDataService;
+import org.osgi.framework.Bundle;
+import org.reflections.Reflections;
+import org.reflections.Store;
+import org.reflections.scanners.MethodAnnotationsScanner;
+import org.reflections.scanners.SubTypesScanner;
+import org.reflections.scanners.TypeAnnotationsScanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.reflections.util.Utils.index;
+
+/**
+ * The <code>BundleScans</code> class keeps the results of scanning bundles for MDS annotations. Each bundle is
+ * scanned once, looking for all annotations processed by MDS at the same time, and the {@link ReflectionsUtil}
+ * answers further queries about the bundle from the result. Results are also written to disk, keyed by the
+ * symbolic name, version and modification time of the bundle, so that bundles which did not change are not
+ * scanned again after a restart. Scanning reads the bundle jar only, it does not load any classes, which allows
+ * scanning many bundles at the same time.
+ *
+ * @see BundleScanResult
+ */
+public final class BundleScans {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BundleScans.class);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String FILE_EXTENSION = ".json";
+    private static final String TMP_FILE_EXTENSION = ".tmp";
+
+    private static final List<Class<? extends Annotation>> TYPE_ANNOTATIONS = Arrays.<Class<? extends Annotation>>asList(
+            Entity.class, InstanceLifecycleListeners.class);
+
+    private static final List<Class<? extends Annotation>> METHOD_ANNOTATIONS = Arrays.<Class<? extends Annotation>>asList(
+            Lookup.class, InstanceLifecycleListener.class);
+
+    private static final Map<String, BundleScanResult> RESULTS = new ConcurrentHashMap<>();
+
+    // a sibling of the enhanced class cache in mds-cache, which is cleared independently of the scan results
+    private static File cacheDirectory = Paths.get(System.getProperty("user.home"), ".motech", "mds-bundle-scans")
+            .toFile();
+
+    private BundleScans() {
+    }
+
+    /**
+     * Scans the given bundles on a fork-join pool. Bundles which were scanned before are read from the cache.
+     * Bundles which cannot be scanned are skipped, they will be scanned using the Reflections library
+     * when they are processed.
+     *
+     * @param bundles the bundles to scan
+     * @return the number of bundles that had to be scanned, that is were not found in the cache
+     */
+    public static int scanAll(Collection<Bundle> bundles) {
+        final AtomicInteger scanned = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (final Bundle bundle : bundles) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    try {
+                        if (doScan(bundle)) {
+                            scanned.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Unable to scan bundle {} for MDS annotations", bundle.getSymbolicName(), e);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            pool.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while scanning bundles for MDS annotations");
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdown();
+        }
+
+        return scanned.get();
+    }
+
+    /**
+     * Returns the result of scanning the given bundle, scanning it first if it was not scanned yet.
+     *
+     * @param bundle the bundle to scan
+     * @return the result of scanning the bundle
+     */
+    public static BundleScanResult scan(Bundle bundle) {
+        doScan(bundle);
+        return get(bundle);
+    }
+
+    /**
+     * Returns the result of scanning the given bundle, if the bundle was scanned and did not change since.
+     *
+     * @param bundle the bundle to look for
+     * @return the result of scanning the bundle, or null if it was not scanned
+     */
+    public static BundleScanResult get(Bundle bundle) {
+        if (bundle.getSymbolicName() == null) {
+            return null;
+        }
+
+        BundleScanResult result = RESULTS.get(bundle.getSymbolicName());
+        return result != null && StringUtils.equals(result.getBundleKey(), key(bundle)) ? result : null;
+    }
+
+    /**
+     * Removes all scan results, including the ones written to disk.
+     */
+    public static void clear() {
+        RESULTS.clear();
+        FileUtils.deleteQuietly(cacheDirectory);
+    }
+
+    static void setCacheDirectory(File cacheDirectory) {
+        // results kept in memory were read from or written to the previous directory
+        RESULTS.clear();
+        BundleScans.cacheDirectory = cacheDirectory;
+    }
+
+    private static boolean doScan(Bundle bundle) {
+        if (bundle.getSymbolicName() == null || get(bundle) != null) {
+            return false;
+        }
+
+        String key = key(bundle);
+        File file = new File(cacheDirectory, bundle.getSymbolicName() + FILE_EXTENSION);
+
+        BundleScanResult result = read(file, key);
+        boolean scanned = result == null;
+
+        if (scanned) {
+            LOGGER.debug("Scanning bundle {} for MDS annotations", bundle.getSymbolicName());
+            result = scanBundle(bundle, key);
+            write(file, result);
+        } else {
+            LOGGER.debug("Using cached scan results of bundle {}", bundle.getSymbolicName());
+        }
+
+        RESULTS.put(bundle.getSymbolicName(), result);
+
+        return scanned;
+    }
+
+    private static BundleScanResult scanBundle(Bundle bundle, String key) {
+        Reflections reflections = ReflectionsUtil.configureReflection(bundle, new WrappedBundleClassLoader(bundle),
+                new TypeAnnotationsScanner(), new SubTypesScanner(), new MethodAnnotationsScanner());
+        Store store = reflections.getStore();
+
+        BundleScanResult result = new BundleScanResult(key);
+
+        for (Class<? extends Annotation> annotation : TYPE_ANNOTATIONS) {
+            // the same types as returned by Reflections#getTypesAnnotatedWith, that is including subtypes
+            Set<String> annotated = toSet(store.get(index(TypeAnnotationsScanner.class), annotation.getName()));
+            annotated.addAll(toSet(store.getAll(index(TypeAnnotationsScanner.class), new ArrayList<>(annotated))));
+            annotated.addAll(toSet(store.getAll(index(SubTypesScanner.class), new ArrayList<>(annotated))));
+
+            result.getAnnotatedTypes().put(annotation.getName(), annotated);
+        }
+
+        for (Class<? extends Annotation> annotation : METHOD_ANNOTATIONS) {
+            result.getAnnotatedMethods().put(annotation.getName(),
+                    toSet(store.get(index(MethodAnnotationsScanner.class), annotation.getName())));
+        }
+
+        result.setMdsInterfaces(toSet(store.getAll(index(SubTypesScanner.class),
+                Arrays.asList(MotechDataService.class.getName()))));
+
+        return result;
+    }
+
+    private static BundleScanResult read(File file, String key) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            BundleScanResult result = OBJECT_MAPPER.readValue(file, BundleScanResult.class);
+            return StringUtils.equals(result.getBundleKey(), key) ? result : null;
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read cached scan results from {}, the bundle will be scanned again", file, e);
+            return null;
+        }
+    }
+
+    private static void write(File file, BundleScanResult result) {
+        File tmpFile = null;
+
+        try {
+            Files.createDirectories(cacheDirectory.toPath());
+
+            // write to a temporary file first, so that a crash never leaves partially written results
+            tmpFile = File.createTempFile(file.getName(), TMP_FILE_EXTENSION, cacheDirectory);
+            OBJECT_MAPPER.writeValue(tmpFile, result);
+
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write scan results to {}", file, e);
+            FileUtils.deleteQuietly(tmpFile);
+        }
+    }
+
+    private static String key(Bundle bundle) {
+        return bundle.getSymbolicName() + "/" + bundle.getVersion() + "/" + bundle.getLastModified();
+    }
+
+    private static Set<String> toSet(Iterable<String> names) {
+        Set<String> set = new TreeSet<>();
+        for (String name : names) {
+            set.add(name);
+        }
+        return set;
+    }
+}
@@ -16,6 +16,7 @@ import org.reflections.scanners.Scanner;
 import org.reflections.scanners.SubTypesScanner;
 import org.reflections.scanners.TypeAnnotationsScanner;
 import org.reflections.util.ConfigurationBuilder;
+import org.reflections.util.Utils;
 import org.reflections.vfs.Vfs;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -71,6 +72,15 @@ public final class ReflectionsUtil extends AnnotationUtils {
     public static List<Class<? extends MotechDataService>> getMdsInterfaces(Bundle bundle) {
         LOGGER.debug("Looking for MDS interfaces in bundle: {}", bundle.getSymbolicName());
 
+        BundleScanResult scanResult = BundleScans.get(bundle);
+        if (scanResult != null) {
+            List<Class<? extends MotechDataService>> interfaces = new ArrayList<>();
+            for (Class<?> clazz : loadClasses(scanResult.getMdsInterfaces(), new WrappedBundleClassLoader(bundle))) {
+                interfaces.add((Class<? extends MotechDataService>) clazz);
+            }
+            return interfaces;
+        }
+
         Reflections reflections = configureReflection(bundle, new WrappedBundleClassLoader(bundle),
                 new SubTypesScanner());
         Set<Class<? extends MotechDataService>> set = reflections.getSubTypesOf(MotechDataService.class);
@@ -89,6 +99,13 @@ public final class ReflectionsUtil extends AnnotationUtils {
         LOGGER.debug("Scanning bundle: {}", bundle.getSymbolicName());
         LOGGER.debug("Searching for classes with annotations: {}", annotation.getName());
 
+        BundleScanResult scanResult = BundleScans.get(bundle);
+        if (scanResult != null && scanResult.getAnnotatedTypes().containsKey(annotation.getName())) {
+            // the bundle was already scanned, we only have to load the classes from the bundle jar
+            return loadClasses(scanResult.getAnnotatedTypes().get(annotation.getName()),
+                    new PristineBundleClassLoader(bundle));
+        }
+
         Reflections reflections = configureReflection(bundle, new PristineBundleClassLoader(bundle),
                 new TypeAnnotationsScanner(), new SubTypesScanner());
 
@@ -124,6 +141,12 @@ public final class ReflectionsUtil extends AnnotationUtils {
     public static Set<Method> getMethods(Class<? extends Annotation> annotation, Bundle bundle) {
         LOGGER.debug("Searching for methods with annotations: {}", annotation.getName());
 
+        BundleScanResult scanResult = BundleScans.get(bundle);
+        if (scanResult != null && scanResult.getAnnotatedMethods().containsKey(annotation.getName())) {
+            return Utils.getMethodsFromDescriptors(scanResult.getAnnotatedMethods().get(annotation.getName()),
+                    new WrappedBundleClassLoader(bundle));
+        }
+
         Reflections reflections = configureReflection(bundle, new WrappedBundleClassLoader(bundle),
                 new MethodAnnotationsScanner());
         Set<Method> methods = reflections.getMethodsAnnotatedWith(annotation);
@@ -300,7 +323,7 @@ public final class ReflectionsUtil extends AnnotationUtils {
         return annotation;
     }
 
-    private static Reflections configureReflection(Bundle bundle, ClassLoader classLoader, Scanner... scanners) {
+    static Reflections configureReflection(Bundle bundle, ClassLoader classLoader, Scanner... scanners) {
         ConfigurationBuilder configuration = new ConfigurationBuilder();
         configuration.addUrls(resolveLocation(bundle));
         configuration.setScanners(scanners);
@@ -313,6 +336,18 @@ public final class ReflectionsUtil extends AnnotationUtils {
         return new Reflections(configuration);
     }
 
+    private static Set<Class<?>> loadClasses(Iterable<String> classNames, ClassLoader classLoader) {
+        Set<Class<?>> classes = new HashSet<>();
+        for (String className : classNames) {
+            try {
+                classes.add(classLoader.loadClass(className));
+            } catch (ClassNotFoundException e) {
+                LOGGER.error("Could not find class", e);
+            }
+        }
+        return classes;
+    }
+
     private static URL resolveLocation(Bundle bundle) {
         LOGGER.debug(
                 "Resolving the following file location for bundle: {}",
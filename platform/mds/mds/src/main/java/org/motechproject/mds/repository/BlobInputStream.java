@@ -0,0 +1,64 @@
+package org.motechproject.mds.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jdo.datastore.JDOConnection;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Reads the value of a blob column straight from a JDBC result set. Closing the stream closes the result
+ * set and the statement, and returns the connection to the persistence manager. The transaction in which
+ * the value was selected must stay active until then.
+ */
+class BlobInputStream extends FilterInputStream {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlobInputStream.class);
+
+    private final ResultSet resultSet;
+    private final Statement statement;
+    private final JDOConnection connection;
+
+    private boolean closed;
+
+    BlobInputStream(InputStream in, ResultSet resultSet, Statement statement, JDOConnection connection) {
+        super(in);
+        this.resultSet = resultSet;
+        this.statement = statement;
+        this.connection = connection;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        try {
+            super.close();
+        } finally {
+            close(resultSet, statement, connection);
+        }
+    }
+
+    static void close(ResultSet resultSet, Statement statement, JDOConnection connection) {
+        try {
+            if (resultSet != null) {
+                resultSet.close();
+            }
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Unable to close the blob statement", e);
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -1,16 +1,40 @@
 package org.motechproject.mds.repository;
 
+import org.datanucleus.ExecutionContext;
+import org.datanucleus.api.jdo.JDODataStoreCache;
+import org.datanucleus.api.jdo.JDOPersistenceManager;
+import org.datanucleus.store.rdbms.RDBMSStoreManager;
+import org.datanucleus.store.rdbms.mapping.java.JavaTypeMapping;
+import org.datanucleus.store.rdbms.table.DatastoreClass;
+import org.motechproject.mds.dto.CacheStatisticsDto;
+import org.motechproject.mds.dto.QueryPlanCacheStatisticsDto;
 import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.jdo.MdsLevel2Cache;
+import org.motechproject.mds.query.CloseableIterator;
+import org.motechproject.mds.query.KeysetProperty;
 import org.motechproject.mds.query.Property;
 import org.motechproject.mds.query.QueryExecutor;
 import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.query.QueryPlanCache;
 import org.motechproject.mds.query.QueryUtil;
+import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.Order;
 import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.mds.util.TypeHelper;
 import org.springframework.stereotype.Repository;
 
+import javax.jdo.JDODataStoreException;
 import javax.jdo.PersistenceManager;
 import javax.jdo.Query;
+import javax.jdo.datastore.DataStoreCache;
+import javax.jdo.datastore.JDOConnection;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -31,6 +55,8 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
     private Class<T> classType;
     private Integer fetchDepth;
     private Map<String, String> fieldTypeMap;
+    private boolean queryResultsCached;
+    private final QueryPlanCache queryPlanCache = new QueryPlanCache();
 
     protected MotechDataRepository(Class<T> classType) {
         this.classType = classType;
@@ -49,6 +75,15 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         this.fieldTypeMap = fieldTypeMap;
     }
 
+    /**
+     * Sets whether results of queries executed by this repository should be cached in the query results cache.
+     *
+     * @param queryResultsCached true if query results should be cached
+     */
+    public void setQueryResultsCached(boolean queryResultsCached) {
+        this.queryResultsCached = queryResultsCached;
+    }
+
     @Override
     public PersistenceManager getPersistenceManager() {
         PersistenceManager pm = super.getPersistenceManager();
@@ -78,6 +113,35 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         }
     }
 
+    public void evictById(Object objectId) {
+        if (getPersistenceManagerFactory() != null && objectId != null) {
+            getPersistenceManagerFactory().getDataStoreCache().evict(objectId);
+        }
+    }
+
+    public CacheStatisticsDto getCacheStatistics() {
+        if (getPersistenceManagerFactory() != null) {
+            DataStoreCache cache = getPersistenceManagerFactory().getDataStoreCache();
+            if (cache instanceof JDODataStoreCache
+                    && ((JDODataStoreCache) cache).getLevel2Cache() instanceof MdsLevel2Cache) {
+                MdsLevel2Cache level2Cache = (MdsLevel2Cache) ((JDODataStoreCache) cache).getLevel2Cache();
+                return level2Cache.getStatistics(classType.getName());
+            }
+        }
+
+        return new CacheStatisticsDto(classType.getName());
+    }
+
+    /**
+     * Returns the statistics of the cache of query plans used by this repository, collected since the repository
+     * was created.
+     *
+     * @return the query plan cache statistics
+     */
+    public QueryPlanCacheStatisticsDto getQueryPlanCacheStatistics() {
+        return queryPlanCache.getStatistics(classType.getName());
+    }
+
     public T retrieve(Object key) {
         return getPersistenceManager().getObjectById(classType, key);
     }
@@ -93,6 +157,10 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         return getPersistenceManager().makePersistent(object);
     }
 
+    public Collection<T> createAll(Collection<T> objects) {
+        return getPersistenceManager().makePersistentAll(objects);
+    }
+
     public List<T> retrieveAll() {
         return retrieveAll(new String[0], new Object[0], null);
     }
@@ -118,6 +186,8 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
 
     public List<T> retrieveAll(String[] properties, Object[] values, QueryParams queryParams,
                                InstanceSecurityRestriction restriction) {
+        assertKeysetNotSet(queryParams);
+
         Query query = createQuery(properties, values, restriction);
         QueryUtil.setQueryParams(query, queryParams);
 
@@ -127,9 +197,10 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
     }
 
     public List<T> retrieveAll(QueryParams queryParams, InstanceSecurityRestriction restriction) {
-        Query query = createQuery(new String[0], new Object[0], restriction);
+        List<Property> properties = withKeyset(new ArrayList<Property>(), queryParams);
+        Query query = createQuery(properties, restriction);
         QueryUtil.setQueryParams(query, queryParams);
-        Collection collection = (Collection) QueryExecutor.execute(query, restriction);
+        Collection collection = (Collection) QueryExecutor.executeWithArray(query, properties.toArray(), restriction);
 
         return new ArrayList<>(collection);
     }
@@ -143,14 +214,39 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
     }
 
     public List<T> retrieveAll(List<Property> properties, QueryParams queryParams, InstanceSecurityRestriction restriction) {
-        Query query = createQuery(properties, restriction);
+        List<Property> queryProperties = withKeyset(properties, queryParams);
+        Query query = createQuery(queryProperties, restriction);
         QueryUtil.setQueryParams(query, queryParams);
 
-        Collection collection = (Collection) QueryExecutor.executeWithArray(query, properties);
+        Collection collection = (Collection) QueryExecutor.executeWithArray(query, queryProperties);
 
         return new ArrayList<>(collection);
     }
 
+    public CloseableIterator<T> stream(QueryParams queryParams, InstanceSecurityRestriction restriction,
+                                       int fetchSize) {
+        List<Property> properties = withKeyset(new ArrayList<Property>(), queryParams);
+        Query query = createQuery(properties, restriction);
+        QueryUtil.setQueryParams(query, queryParams);
+        QueryUtil.useStreaming(query, fetchSize);
+
+        Collection collection = (Collection) QueryExecutor.executeWithArray(query, properties.toArray(), restriction);
+
+        return new QueryResultIterator<>(query, collection, fetchSize);
+    }
+
+    public CloseableIterator<T> stream(List<Property> properties, QueryParams queryParams,
+                                       InstanceSecurityRestriction restriction, int fetchSize) {
+        List<Property> queryProperties = withKeyset(properties, queryParams);
+        Query query = createQuery(queryProperties, restriction);
+        QueryUtil.setQueryParams(query, queryParams);
+        QueryUtil.useStreaming(query, fetchSize);
+
+        Collection collection = (Collection) QueryExecutor.executeWithArray(query, queryProperties);
+
+        return new QueryResultIterator<>(query, collection, fetchSize);
+    }
+
     public T retrieve(String property, Object value) {
         return retrieve(new String[]{property}, new Object[]{value}, null);
     }
@@ -189,10 +285,22 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         return getPersistenceManager().makePersistent(object);
     }
 
+    public void refresh(T object) {
+        getPersistenceManager().refresh(object);
+    }
+
+    public Collection<T> updateAll(Collection<T> objects) {
+        return getPersistenceManager().makePersistentAll(objects);
+    }
+
     public void delete(T object) {
         getPersistenceManager().deletePersistent(object);
     }
 
+    public void deleteAll(Collection<T> objects) {
+        getPersistenceManager().deletePersistentAll(objects);
+    }
+
     public long delete(String property, Object value) {
         return delete(new String[]{property}, new Object[]{value}, null);
     }
@@ -211,6 +319,79 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         return PropertyUtil.safeGetProperty(attached, field);
     }
 
+    /**
+     * Opens a stream reading the value of the given blob field straight from the database, using JDBC,
+     * so that the value is never held in memory as a whole. The stream must be closed before the
+     * transaction ends.
+     *
+     * @param id the id of the instance
+     * @param field the name of the blob field
+     * @return the stream, or null if the instance does not exist or the field has no value
+     */
+    public InputStream openBlob(Long id, String field) {
+        PersistenceManager pm = getPersistenceManager();
+        DatastoreClass table = getDatastoreClass(pm);
+        String sql = String.format("SELECT %s FROM %s WHERE %s = ?", getBlobColumn(table, field),
+                table.getIdentifier().getFullyQualifiedName(false), getColumn(table, Constants.Util.ID_FIELD_NAME));
+
+        JDOConnection connection = pm.getDataStoreConnection();
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+
+        try {
+            statement = ((Connection) connection.getNativeConnection()).prepareStatement(sql);
+            statement.setLong(1, id);
+            resultSet = statement.executeQuery();
+
+            InputStream stream = resultSet.next() ? resultSet.getBinaryStream(1) : null;
+            if (stream != null) {
+                return new BlobInputStream(stream, resultSet, statement, connection);
+            }
+        } catch (SQLException e) {
+            BlobInputStream.close(resultSet, statement, connection);
+            throw new JDODataStoreException("Unable to read the field " + field + " of " + classType.getName(), e);
+        }
+
+        BlobInputStream.close(resultSet, statement, connection);
+        return null;
+    }
+
+    /**
+     * Writes the value of the given blob field straight to the database, using JDBC, reading it from
+     * the given stream, so that the value is never held in memory as a whole. The second level cache is
+     * not updated, the instance has to be evicted from it once the transaction is committed.
+     *
+     * @param id the id of the instance
+     * @param field the name of the blob field
+     * @param content the new value of the field, or null to clear it
+     * @return true if the instance was updated, false if it does not exist
+     */
+    public boolean writeBlob(Long id, String field, InputStream content) {
+        PersistenceManager pm = getPersistenceManager();
+        DatastoreClass table = getDatastoreClass(pm);
+        String sql = String.format("UPDATE %s SET %s = ? WHERE %s = ?", table.getIdentifier().getFullyQualifiedName(false),
+                getBlobColumn(table, field), getColumn(table, Constants.Util.ID_FIELD_NAME));
+
+        JDOConnection connection = pm.getDataStoreConnection();
+        PreparedStatement statement = null;
+
+        try {
+            statement = ((Connection) connection.getNativeConnection()).prepareStatement(sql);
+            if (content == null) {
+                statement.setNull(1, Types.LONGVARBINARY);
+            } else {
+                statement.setBinaryStream(1, content);
+            }
+            statement.setLong(2, id);
+
+            return statement.executeUpdate() > 0;
+        } catch (SQLException e) {
+            throw new JDODataStoreException("Unable to write the field " + field + " of " + classType.getName(), e);
+        } finally {
+            BlobInputStream.close(null, statement, connection);
+        }
+    }
+
     public long count(InstanceSecurityRestriction restriction) {
         return count(new String[0], new Object[0], restriction);
     }
@@ -229,6 +410,16 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         return new ArrayList<>(collection);
     }
 
+    public CloseableIterator<T> streamFilter(Filters filters, QueryParams queryParams,
+                                             InstanceSecurityRestriction restriction, int fetchSize) {
+        Query query = queryForFilters(filters, queryParams, restriction);
+        QueryUtil.useStreaming(query, fetchSize);
+
+        Collection collection = (Collection) QueryExecutor.executeWithFilters(query, filters, restriction);
+
+        return new QueryResultIterator<>(query, collection, fetchSize);
+    }
+
     public long countForFilters(Filters filters, InstanceSecurityRestriction restriction) {
         Query query = queryForFilters(filters, null, restriction);
         QueryUtil.setCountResult(query);
@@ -243,21 +434,121 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         return (long) QueryExecutor.executeWithArray(query, properties);
     }
 
+    /**
+     * Returns the number of rows in the given table, estimated by the database from its statistics. Reading
+     * the estimate does not require scanning the table, but it can differ from the actual count, especially
+     * for tables which have been changed since their statistics were last updated.
+     *
+     * @param tableName the name of the table of the entity
+     * @return the estimated number of rows, or null if the database has no statistics for the table
+     */
+    public Long estimateCount(String tableName) {
+        PersistenceManager pm = getPersistenceManager();
+
+        // tableName is safe since it comes from the metadata, it is passed as a parameter anyway
+        Query query = usingPsql()
+                ? pm.newQuery(Constants.Util.SQL_QUERY, "SELECT CAST(reltuples AS BIGINT) FROM pg_class WHERE relname = ?")
+                : pm.newQuery(Constants.Util.SQL_QUERY, "SELECT TABLE_ROWS FROM information_schema.TABLES " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND UPPER(TABLE_NAME) = UPPER(?)");
+        query.setUnique(true);
+
+        Number estimate = (Number) query.execute(tableName);
+
+        // PostgreSQL reports 0 or -1 for tables that were never analyzed
+        return estimate == null || estimate.longValue() <= 0 ? null : estimate.longValue();
+    }
+
+    private DatastoreClass getDatastoreClass(PersistenceManager pm) {
+        ExecutionContext ec = ((JDOPersistenceManager) pm).getExecutionContext();
+        RDBMSStoreManager storeManager = (RDBMSStoreManager) ec.getStoreManager();
+
+        return storeManager.getDatastoreClass(classType.getName(), ec.getClassLoaderResolver());
+    }
+
+    private String getBlobColumn(DatastoreClass table, String field) {
+        JavaTypeMapping mapping = table.getMemberMapping(field);
+        if (mapping == null || !Byte[].class.getName().equals(mapping.getType())) {
+            throw new IllegalArgumentException(field + " is not a blob field of " + classType.getName());
+        }
+
+        return getColumn(table, field);
+    }
+
+    private String getColumn(DatastoreClass table, String field) {
+        // identifiers come from the metadata, they are quoted the way the datastore requires
+        return table.getMemberMapping(field).getDatastoreMapping(0).getColumn().getIdentifier().toString();
+    }
+
     private Query createQuery(String[] properties, Object[] values, InstanceSecurityRestriction restriction) {
-        Query query = getPersistenceManager().newQuery(classType);
-        QueryUtil.useFilter(query, properties, values, fieldTypeMap, restriction);
+        Query query = newQuery();
+        QueryUtil.useFilter(query, properties, values, fieldTypeMap, restriction, queryPlanCache);
 
         return query;
     }
 
     private Query createQuery(List<Property> properties, InstanceSecurityRestriction restriction) {
+        Query query = newQuery();
+        QueryUtil.useFilter(query, properties, restriction, queryPlanCache);
+
+        return query;
+    }
+
+    private Query newQuery() {
         Query query = getPersistenceManager().newQuery(classType);
-        QueryUtil.useFilter(query, properties, restriction);
+        if (queryResultsCached) {
+            QueryUtil.useResultsCache(query);
+        }
 
         return query;
     }
 
+    private List<Property> withKeyset(List<Property> properties, QueryParams queryParams) {
+        if (queryParams == null || !queryParams.isKeysetSet()) {
+            return properties;
+        }
+
+        List<Order> orderList = QueryUtil.getKeysetOrderList(queryParams);
+        List<Object> afterValues = queryParams.getAfterValues();
+        if (afterValues.size() != orderList.size() - 1) {
+            throw new IllegalArgumentException(String.format("Unable to select the page after the %s instance " +
+                    "with id %d, expected the values of %d ordered fields, got %d", classType.getName(),
+                    queryParams.getAfterId(), orderList.size() - 1, afterValues.size()));
+        }
+
+        List<Object> values = new ArrayList<>(orderList.size());
+        List<String> types = new ArrayList<>(orderList.size());
+        for (int i = 0; i < orderList.size(); ++i) {
+            // the values may come from a cursor, in which case they are parsed to the types of the fields
+            Object value = i < afterValues.size() ? afterValues.get(i) : queryParams.getAfterId();
+            String type = fieldTypeMap == null ? null : fieldTypeMap.get(orderList.get(i).getField());
+
+            if (type != null) {
+                value = TypeHelper.parse(value, type, classType.getClassLoader());
+            } else if (value != null) {
+                type = value.getClass().getName();
+            }
+
+            values.add(value);
+            types.add(type);
+        }
+
+        List<Property> copy = new ArrayList<>(properties);
+        // PostgreSQL sorts nulls as if they were larger than any other value, MySQL as if they were smaller
+        copy.add(new KeysetProperty(orderList, values, types, usingPsql()));
+
+        return copy;
+    }
+
+    private void assertKeysetNotSet(QueryParams queryParams) {
+        if (queryParams != null && queryParams.isKeysetSet()) {
+            throw new IllegalArgumentException("Keyset pagination is not supported by this query, " +
+                    "pages have to be selected by their number");
+        }
+    }
+
     private Query queryForFilters(Filters filters, QueryParams queryParams, InstanceSecurityRestriction restriction) {
+        assertKeysetNotSet(queryParams);
+
         Query query = createQuery(new String[0], new Object[0], restriction);
         QueryUtil.setQueryParams(query, queryParams);
         QueryUtil.useFilters(query, filters);
@@ -0,0 +1,89 @@
+package org.motechproject.mds.repository;
+
+import org.motechproject.mds.query.CloseableIterator;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the results of a streaming query. Results are read from the cursor in chunks, each
+ * chunk is detached at once and handed out to the caller. Closing the iterator closes the query
+ * results, releasing the cursor. The transaction in which the query was executed must stay active
+ * until then.
+ *
+ * @param <T> the type of returned instances
+ */
+class QueryResultIterator<T> implements CloseableIterator<T> {
+
+    private final Query query;
+    private final PersistenceManager pm;
+    private final Iterator<T> cursor;
+    private final int chunkSize;
+
+    private Iterator<T> chunk;
+    private boolean closed;
+
+    @SuppressWarnings("unchecked")
+    QueryResultIterator(Query query, Collection result, int chunkSize) {
+        this.query = query;
+        this.pm = query.getPersistenceManager();
+        this.cursor = result.iterator();
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (chunk != null && chunk.hasNext()) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+
+        chunk = nextChunk();
+        if (!chunk.hasNext()) {
+            close();
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return chunk.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Instances cannot be removed while streaming");
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            chunk = null;
+            query.closeAll();
+        }
+    }
+
+    private Iterator<T> nextChunk() {
+        List<T> attached = new ArrayList<>(chunkSize);
+        while (attached.size() < chunkSize && cursor.hasNext()) {
+            attached.add(cursor.next());
+        }
+
+        return attached.isEmpty()
+                ? attached.iterator()
+                : pm.detachCopyAll(attached).iterator();
+    }
+}
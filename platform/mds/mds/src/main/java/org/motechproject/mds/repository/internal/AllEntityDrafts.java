@@ -77,6 +77,9 @@ public class AllEntityDrafts extends MotechDataRepository<EntityDraft> {
         draft.setSecurityMembers(new HashSet<>(entity.getSecurityMembers()));
         draft.setReadOnlySecurityMode(entity.getReadOnlySecurityMode());
         draft.setReadOnlySecurityMembers(new HashSet<>(entity.getReadOnlySecurityMembers()));
+        draft.setCachePolicy(entity.getCachePolicy());
+        draft.setCacheTimeToLive(entity.getCacheTimeToLive());
+        draft.setCacheMaxSize(entity.getCacheMaxSize());
 
         draft.getFields().clear();
         for (Field field : entity.getFields()) {
@@ -5,10 +5,12 @@ import org.springframework.stereotype.Component;
 
 import javax.jdo.PersistenceManagerFactory;
 import javax.jdo.metadata.JDOMetadata;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Holds the current JDO metadata for MDS. Allows reloading the metadata
- * and retrieval for modifications.
+ * and retrieval for modifications. The metadata version is increased with every reload, which
+ * allows caches of entity metadata to notice that the schema has changed.
  */
 @Component
 public class MetadataHolder {
@@ -17,6 +19,8 @@ public class MetadataHolder {
 
     private JDOMetadata jdoMetadata;
 
+    private final AtomicLong metadataVersion = new AtomicLong();
+
     public JDOMetadata getJdoMetadata() {
         if (jdoMetadata == null) {
             jdoMetadata = persistenceManagerFactory.newMetadata();
@@ -26,9 +30,14 @@ public class MetadataHolder {
 
     public JDOMetadata reloadMetadata() {
         jdoMetadata = persistenceManagerFactory.newMetadata();
+        metadataVersion.incrementAndGet();
         return jdoMetadata;
     }
 
+    public long getMetadataVersion() {
+        return metadataVersion.get();
+    }
+
     @Autowired
     public void setPersistenceManagerFactory(PersistenceManagerFactory persistenceManagerFactory) {
         this.persistenceManagerFactory = persistenceManagerFactory;
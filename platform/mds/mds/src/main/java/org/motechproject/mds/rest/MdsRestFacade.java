@@ -4,6 +4,8 @@ import org.motechproject.mds.exception.rest.RestLookupExecutionForbiddenExceptio
 import org.motechproject.mds.query.QueryParams;
 
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -27,6 +29,37 @@ public interface MdsRestFacade<T> {
      */
     RestResponse get(QueryParams queryParams, boolean includeBlob);
 
+    /**
+     * Retrieves entity instances for REST. This will only include fields that are visible for REST.
+     * It throws {@link org.motechproject.mds.exception.rest.RestOperationNotSupportedException} if the entity settings
+     * do not permit READ access via REST. The total count in the metadata can be estimated from database statistics,
+     * which does not require counting all instances of large entities.
+     *
+     * @param queryParams query parameters to use retrieving instances
+     * @param includeBlob set to true, if you wish to retrieve value for binary object fields
+     * @param estimateCount set to true, if the total count can be estimated, if the estimate is not available
+     *                      the instances are counted
+     * @return a response that contains metadata and list of instances, in form of a map with field names and their
+     * respective values
+     */
+    RestResponse get(QueryParams queryParams, boolean includeBlob, boolean estimateCount);
+
+    /**
+     * Streams entity instances for REST, writing them to the given output as JSON. The response contains the same
+     * data and metadata as the one returned by {@link #get(QueryParams, boolean, boolean)}, but the instances are
+     * read from the database in chunks and written one by one, before the metadata, so that large pages use
+     * constant memory and the client starts receiving data right away. Values of binary object fields are
+     * retrieved separately for each instance. It throws
+     * {@link org.motechproject.mds.exception.rest.RestOperationNotSupportedException} if the entity settings
+     * do not permit READ access via REST.
+     *
+     * @param queryParams query parameters to use retrieving instances
+     * @param includeBlob set to true, if you wish to retrieve value for binary object fields
+     * @param estimateCount set to true, if the total count can be estimated
+     * @param output the output to write the response to
+     */
+    void stream(QueryParams queryParams, boolean includeBlob, boolean estimateCount, OutputStream output);
+
     /**
      * Retrieves a single instance for REST. This will only include fields that are visible for REST.
      * It throws {@link org.motechproject.mds.exception.rest.RestOperationNotSupportedException} if the entity settings
@@ -84,4 +117,32 @@ public interface MdsRestFacade<T> {
      * @return lookup result, that can be either a single instance or a collection of instances. Response contains also metadata.
      */
     Object executeLookup(String lookupName, Map<String, String> lookupMap, QueryParams queryParams, boolean includeBlob);
+
+    /**
+     * Executes a lookup for REST and streams its result to the given output as JSON, the same way as
+     * {@link #stream(QueryParams, boolean, boolean, OutputStream)} does. Results of lookups returning a single
+     * instance are written as they are returned by {@link #executeLookup(String, Map, QueryParams, boolean)}.
+     *
+     * @param lookupName name of the lookup
+     * @param lookupMap map containing field names and their respective values
+     * @param queryParams query parameters to use retrieving instances
+     * @param includeBlob set to true, if you wish to retrieve value for binary object fields
+     * @param output the output to write the response to
+     */
+    void streamLookup(String lookupName, Map<String, String> lookupMap, QueryParams queryParams, boolean includeBlob,
+                      OutputStream output);
+
+    /**
+     * Executes a lookup for REST for each of the parameter maps from the given body, using a single query for
+     * all of them, instead of one query for each. The body must be a JSON array of objects containing the field
+     * names and their respective values. Only lookups comparing fields of the entity with single values can be
+     * executed this way. Availability of the lookup is checked the same way as by
+     * {@link #executeLookup(String, Map, QueryParams, boolean)}.
+     *
+     * @param lookupName name of the lookup
+     * @param lookupParamsBody JSON array of maps containing field names and their respective values
+     * @param includeBlob set to true, if you wish to retrieve value for binary object fields
+     * @return the results of the lookup for each of the parameter maps, in the order of the maps
+     */
+    List<RestBulkLookupResult> executeBulkLookup(String lookupName, InputStream lookupParamsBody, boolean includeBlob);
 }
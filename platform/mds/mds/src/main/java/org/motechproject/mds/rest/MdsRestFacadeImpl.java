@@ -4,6 +4,7 @@ import org.apache.commons.lang.StringUtils;
 import org.codehaus.jackson.Version;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.module.SimpleModule;
+import org.codehaus.jackson.type.TypeReference;
 import org.motechproject.mds.domain.RelationshipHolder;
 import org.motechproject.mds.dto.DtoHelper;
 import org.motechproject.mds.entityinfo.EntityInfo;
@@ -20,16 +21,20 @@ import org.motechproject.mds.exception.rest.RestLookupNotFoundException;
 import org.motechproject.mds.exception.rest.RestNoLookupResultException;
 import org.motechproject.mds.exception.rest.RestOperationNotSupportedException;
 import org.motechproject.mds.lookup.LookupExecutor;
+import org.motechproject.mds.query.CloseableIterator;
 import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.query.QueryUtil;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.util.BlobDeserializer;
 import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.Order;
 import org.motechproject.mds.util.PropertyUtil;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -50,6 +55,8 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
 
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+    private static final int STREAM_FETCH_SIZE = 100;
+
     private MotechDataService<T> dataService;
     private EntityInfoReader entityInfoReader;
 
@@ -63,6 +70,7 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
 
     private List<String> restFields;
     private List<String> blobFields;
+    private List<RestFieldAccessor> fieldAccessors;
 
     private RestOptionsDto restOptions;
 
@@ -88,11 +96,18 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         readLookups(entity);
         readFieldsExposedByRest(fieldMap);
         readBlobFieldsExposedByRest(fieldMap);
+        createFieldAccessors();
     }
 
     @Override
     @Transactional
     public RestResponse get(QueryParams queryParams, boolean includeBlob) {
+        return get(queryParams, includeBlob, false);
+    }
+
+    @Override
+    @Transactional
+    public RestResponse get(QueryParams queryParams, boolean includeBlob, boolean estimateCount) {
         if (!restOptions.isRead()) {
             throw operationNotSupportedEx("READ");
         }
@@ -103,8 +118,40 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
             }
         }
 
-        return new RestResponse(entityName, entityClass.getName(), moduleName, namespace, dataService.count(), queryParams,
-                RestProjection.createProjectionCollection(values, restFields, blobFields));
+        Long estimatedCount = estimateCount ? dataService.estimateCount() : null;
+        long totalCount = estimatedCount != null ? estimatedCount : dataService.count();
+
+        RestResponse response = new RestResponse(entityName, entityClass.getName(), moduleName, namespace, totalCount,
+                queryParams, RestProjection.createProjectionCollection(values, restFields, blobFields));
+        response.getMetadata().setTotalCountEstimated(estimatedCount != null);
+        response.getMetadata().setNextCursor(nextCursor(values, queryParams));
+
+        return response;
+    }
+
+    @Override
+    public void stream(QueryParams queryParams, boolean includeBlob, boolean estimateCount, OutputStream output) {
+        if (!restOptions.isRead()) {
+            throw operationNotSupportedEx("READ");
+        }
+
+        // not transactional, so that the iterator detaches and releases instances chunk by chunk
+        try (RestStreamWriter<T> writer = new RestStreamWriter<>(output, fieldAccessors, dataService, includeBlob)) {
+            String nextCursor = writeInstances(writer, dataService.streamAll(queryParams, STREAM_FETCH_SIZE),
+                    queryParams);
+
+            Long estimatedCount = estimateCount ? dataService.estimateCount() : null;
+            long totalCount = estimatedCount != null ? estimatedCount : dataService.count();
+
+            RestMetadata metadata = new RestMetadata(entityName, entityClass.getName(), moduleName, namespace,
+                    totalCount, queryParams);
+            metadata.setTotalCountEstimated(estimatedCount != null);
+            metadata.setNextCursor(nextCursor);
+
+            writer.writeMetadata(metadata);
+        } catch (IOException e) {
+            throw new RestInternalException("Unable to write instances of " + entityClass.getName(), e);
+        }
     }
 
     @Override
@@ -188,8 +235,12 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
                         getBlobs(value);
                     }
                 }
-                return new RestResponse(entityName, entityClass.getName(), moduleName, namespace, executor.executeCount(lookupMap),
-                        queryParams, RestProjection.createProjectionCollection((Collection) result, restFields, blobFields));
+                RestResponse response = new RestResponse(entityName, entityClass.getName(), moduleName, namespace,
+                        executor.executeCount(lookupMap), queryParams,
+                        RestProjection.createProjectionCollection((Collection) result, restFields, blobFields));
+                response.getMetadata().setNextCursor(nextCursor((Collection) result, queryParams));
+
+                return response;
             } else {
                 if (result == null) {
                     throw new RestNoLookupResultException("No result for lookup:" + lookupName);
@@ -207,6 +258,125 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         }
     }
 
+    @Override
+    public void streamLookup(String lookupName, Map<String, String> lookupMap, QueryParams queryParams,
+                             boolean includeBlob, OutputStream output) {
+        LookupExecutor executor = lookupExecutors.get(lookupName);
+
+        if (executor == null || executor.isSingleObjectReturn()) {
+            // nothing to stream, the single instance is written as it is
+            Object response = executeLookup(lookupName, lookupMap, queryParams, includeBlob);
+            try {
+                OBJECT_MAPPER.writeValue(output, response);
+            } catch (IOException e) {
+                throw new RestInternalException("Unable to write the result of lookup " + lookupName, e);
+            }
+            return;
+        }
+
+        try (RestStreamWriter<T> writer = new RestStreamWriter<>(output, fieldAccessors, dataService, includeBlob)) {
+            String nextCursor = writeInstances(writer,
+                    (CloseableIterator<T>) executor.executeStream(lookupMap, queryParams, STREAM_FETCH_SIZE),
+                    queryParams);
+
+            RestMetadata metadata = new RestMetadata(entityName, entityClass.getName(), moduleName, namespace,
+                    executor.executeCount(lookupMap), queryParams);
+            metadata.setNextCursor(nextCursor);
+
+            writer.writeMetadata(metadata);
+        } catch (IOException e) {
+            throw new RestInternalException("Unable to write the result of lookup " + lookupName, e);
+        }
+    }
+
+    @Override
+    @Transactional
+    public List<RestBulkLookupResult> executeBulkLookup(String lookupName, InputStream lookupParamsBody,
+                                                        boolean includeBlob) {
+        LookupExecutor executor = lookupExecutors.get(lookupName);
+        if (executor == null) {
+            if (forbiddenLookupMethodNames.contains(lookupName)) {
+                throw new RestLookupExecutionForbiddenException(lookupName);
+            } else {
+                throw new RestLookupNotFoundException(lookupName);
+            }
+        }
+
+        List<Map<String, String>> lookupMaps;
+        try {
+            lookupMaps = OBJECT_MAPPER.readValue(lookupParamsBody, new TypeReference<List<Map<String, String>>>() { });
+        } catch (IOException e) {
+            throw new RestBadBodyFormatException("Unable to parse provided body to a list of lookup parameters", e);
+        }
+
+        List<List> results = executor.executeBulk(lookupMaps);
+
+        List<RestBulkLookupResult> response = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); ++i) {
+            List<T> result = results.get(i);
+            if (includeBlob) {
+                for (T value : result) {
+                    getBlobs(value);
+                }
+            }
+            response.add(new RestBulkLookupResult(lookupMaps.get(i),
+                    RestProjection.createProjectionCollection(result, restFields, blobFields)));
+        }
+
+        return response;
+    }
+
+    private String writeInstances(RestStreamWriter<T> writer, CloseableIterator<T> iterator, QueryParams queryParams)
+            throws IOException {
+        T last = null;
+        int count = 0;
+
+        try {
+            while (iterator.hasNext()) {
+                last = iterator.next();
+                writer.writeInstance(last);
+                ++count;
+            }
+        } finally {
+            iterator.close();
+        }
+
+        return nextCursor(count, last, queryParams);
+    }
+
+    private String nextCursor(Collection values, QueryParams queryParams) {
+        if (values.isEmpty()) {
+            return null;
+        }
+
+        Object last = values instanceof List
+                ? ((List) values).get(values.size() - 1)
+                : new ArrayList<Object>(values).get(values.size() - 1);
+
+        return nextCursor(values.size(), last, queryParams);
+    }
+
+    private String nextCursor(int count, Object last, QueryParams queryParams) {
+        // a full page is not necessarily followed by more instances, the next page may be empty
+        if (count == 0 || !queryParams.isPagingSet() || count < queryParams.getPageSize()) {
+            return null;
+        }
+
+        Object id = PropertyUtil.safeGetProperty(last, Constants.Util.ID_FIELD_NAME);
+        if (!(id instanceof Number)) {
+            return null;
+        }
+
+        // the values of the ordered fields are included, the next page does not depend on the instance anymore
+        List<Order> orderList = QueryUtil.getKeysetOrderList(queryParams);
+        List<Object> values = new ArrayList<>(orderList.size() - 1);
+        for (Order order : orderList.subList(0, orderList.size() - 1)) {
+            values.add(PropertyUtil.safeGetProperty(last, order.getField()));
+        }
+
+        return RestCursor.encode(((Number) id).longValue(), values);
+    }
+
     private void getBlobs(T value) {
         for (String field : blobFields) {
             PropertyUtil.safeSetProperty(value, field, dataService.getDetachedField(value, field));
@@ -287,6 +457,13 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         }
     }
 
+    private void createFieldAccessors() {
+        fieldAccessors = new ArrayList<>(restFields.size());
+        for (String field : restFields) {
+            fieldAccessors.add(new RestFieldAccessor(field, blobFields.contains(field)));
+        }
+    }
+
     private Set<String> fieldsToUpdate() {
         // we don't want to be updating auto generated fields
         Set<String> fields = new HashSet<>(restFields);
@@ -0,0 +1,62 @@
+package org.motechproject.mds.rest;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>RestBulkLookupResult</code> class represents the result of a lookup executed over REST for one of the
+ * parameter maps of a bulk lookup. It contains the lookup parameters and the data matching them.
+ *
+ * @see org.motechproject.mds.rest.MdsRestFacade#executeBulkLookup(String, java.io.InputStream, boolean)
+ */
+public class RestBulkLookupResult {
+
+    private Map<String, String> lookupParams;
+
+    private List<RestProjection> data;
+
+    /**
+     * Default constructor.
+     */
+    public RestBulkLookupResult() {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param lookupParams the lookup parameters
+     * @param data the list of the data matching the parameters
+     */
+    public RestBulkLookupResult(Map<String, String> lookupParams, List<RestProjection> data) {
+        this.lookupParams = lookupParams;
+        this.data = data;
+    }
+
+    /**
+     * @return the lookup parameters
+     */
+    public Map<String, String> getLookupParams() {
+        return lookupParams;
+    }
+
+    /**
+     * @param lookupParams the lookup parameters
+     */
+    public void setLookupParams(Map<String, String> lookupParams) {
+        this.lookupParams = lookupParams;
+    }
+
+    /**
+     * @return the list of the data matching the parameters
+     */
+    public List<RestProjection> getData() {
+        return data;
+    }
+
+    /**
+     * @param data the list of the data matching the parameters
+     */
+    public void setData(List<RestProjection> data) {
+        this.data = data;
+    }
+}
@@ -0,0 +1,134 @@
+package org.motechproject.mds.rest;
+
+import org.apache.commons.lang.StringUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.motechproject.mds.util.TypeHelper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>RestCursor</code> class represents cursors returned in the metadata of REST responses. A cursor
+ * points at the last instance of a page and is used for retrieving the next page using keyset pagination.
+ * It carries the id of that instance and the values of its ordered fields, so the next page can be selected
+ * even if the instance was deleted in the meantime. The values are kept as strings and are parsed to the
+ * types of the fields when the page is retrieved. Cursors are opaque to the clients, they should be passed
+ * back unchanged.
+ *
+ * @see org.motechproject.mds.query.QueryParams#after(Long, List, Integer, List)
+ */
+public final class RestCursor {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    // unlike the default format of LocalDateTime, always includes the milliseconds
+    private static final DateTimeFormatter LOCAL_DATE_TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+
+    private static final String ID = "id";
+    private static final String VALUES = "values";
+
+    private final Long id;
+    private final List<Object> values;
+
+    /**
+     * Creates the cursor.
+     *
+     * @param id the id of the last instance of a page
+     * @param values the values of the ordered fields of that instance, without the id
+     */
+    public RestCursor(Long id, List<?> values) {
+        this.id = id;
+        this.values = new ArrayList<>();
+        if (values != null) {
+            for (Object value : values) {
+                this.values.add(format(value));
+            }
+        }
+    }
+
+    /**
+     * @return the id of the last instance of a page
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * @return the values of the ordered fields of the last instance of a page, as strings
+     */
+    public List<Object> getValues() {
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * Returns the cursor in the form returned to the clients.
+     *
+     * @return the encoded cursor
+     */
+    public String encode() {
+        Map<String, Object> content = new LinkedHashMap<>();
+        content.put(ID, id);
+        content.put(VALUES, values);
+
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(OBJECT_MAPPER.writeValueAsBytes(content));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to encode the cursor of the instance with id " + id, e);
+        }
+    }
+
+    /**
+     * Creates the cursor pointing at the given instance.
+     *
+     * @param id the id of the last instance of a page
+     * @param values the values of the ordered fields of that instance, without the id
+     * @return the encoded cursor
+     */
+    public static String encode(Long id, List<?> values) {
+        return new RestCursor(id, values).encode();
+    }
+
+    /**
+     * Decodes the given cursor.
+     *
+     * @param cursor the cursor created by {@link #encode()}
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public static RestCursor decode(String cursor) {
+        Map content;
+        try {
+            byte[] decoded = Base64.getUrlDecoder().decode(StringUtils.defaultString(cursor));
+            content = OBJECT_MAPPER.readValue(new String(decoded, StandardCharsets.UTF_8), Map.class);
+        } catch (IllegalArgumentException | IOException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+
+        if (content == null || !(content.get(ID) instanceof Number) || !(content.get(VALUES) instanceof List)) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+
+        return new RestCursor(((Number) content.get(ID)).longValue(), (List) content.get(VALUES));
+    }
+
+    private static Object format(Object value) {
+        if (value == null || value instanceof String) {
+            return value;
+        } else if (value instanceof java.time.LocalDateTime) {
+            return LOCAL_DATE_TIME_FORMAT.format((java.time.LocalDateTime) value);
+        } else if (value instanceof Enum) {
+            return ((Enum) value).name();
+        } else {
+            // dates are formatted with their milliseconds and zones, so they are parsed back to the same instants
+            return TypeHelper.format(value);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.motechproject.mds.rest;
+
+import org.apache.commons.beanutils.MethodUtils;
+import org.motechproject.mds.util.PropertyUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Reads the value of a single field exposed over REST. The getter of the field is resolved once per
+ * instance class, instead of being looked up again for every instance written to a response.
+ */
+class RestFieldAccessor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RestFieldAccessor.class);
+
+    private final String name;
+    private final boolean blob;
+
+    private volatile ResolvedGetter resolvedGetter;
+
+    RestFieldAccessor(String name, boolean blob) {
+        this.name = name;
+        this.blob = blob;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    boolean isBlob() {
+        return blob;
+    }
+
+    Object getValue(Object instance) {
+        ResolvedGetter resolved = resolvedGetter;
+        if (resolved == null || resolved.instanceClass != instance.getClass()) {
+            resolved = new ResolvedGetter(instance.getClass(), resolveGetter(instance));
+            resolvedGetter = resolved;
+        }
+
+        if (resolved.getter != null) {
+            try {
+                return resolved.getter.invoke(instance);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                LOGGER.debug("Unable to read {} using its getter, falling back", name, e);
+            }
+        }
+
+        return PropertyUtil.safeGetProperty(instance, name);
+    }
+
+    private Method resolveGetter(Object instance) {
+        try {
+            PropertyDescriptor descriptor = PropertyUtil.getPropertyDescriptor(instance, name);
+            return descriptor == null ? null : MethodUtils.getAccessibleMethod(descriptor.getReadMethod());
+        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException | RuntimeException e) {
+            LOGGER.debug("Unable to resolve the getter for {}", name, e);
+            return null;
+        }
+    }
+
+    private static final class ResolvedGetter {
+        private final Class<?> instanceClass;
+        private final Method getter;
+
+        private ResolvedGetter(Class<?> instanceClass, Method getter) {
+            this.instanceClass = instanceClass;
+            this.getter = getter;
+        }
+    }
+}
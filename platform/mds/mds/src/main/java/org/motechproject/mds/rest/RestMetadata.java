@@ -4,7 +4,8 @@ import org.motechproject.mds.query.QueryParams;
 
 /**
  * The <code>RestResponse</code> class represents metadata of retrieved instances over REST.
- * It contains entity name, entity class name, module name, namespace and pagination information
+ * It contains entity name, entity class name, module name, namespace and pagination information,
+ * including the cursor for retrieving the next page using keyset pagination
  *
  * @see org.motechproject.mds.rest.MdsRestFacade
  * @see org.motechproject.mds.rest.RestProjection
@@ -26,6 +27,10 @@ public class RestMetadata {
 
     private int pageSize;
 
+    private boolean totalCountEstimated;
+
+    private String nextCursor;
+
     /**
      * Default constructor.
      */
@@ -149,4 +154,33 @@ public class RestMetadata {
     public void setPageSize(int pageSize) {
         this.pageSize = pageSize;
     }
+
+    /**
+     * @return true if the total count was estimated from database statistics, false if it is exact
+     */
+    public boolean isTotalCountEstimated() {
+        return totalCountEstimated;
+    }
+
+    /**
+     * @param totalCountEstimated true if the total count was estimated from database statistics
+     */
+    public void setTotalCountEstimated(boolean totalCountEstimated) {
+        this.totalCountEstimated = totalCountEstimated;
+    }
+
+    /**
+     * @return the cursor to pass for retrieving the next page, null if this page is not full, so there are no
+     * more instances
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @param nextCursor the cursor to pass for retrieving the next page
+     */
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
 }
@@ -0,0 +1,115 @@
+package org.motechproject.mds.rest;
+
+import org.apache.commons.codec.binary.Base64OutputStream;
+import org.apache.commons.io.IOUtils;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.PropertyUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes a REST response straight to the output, one instance at a time, instead of building the whole
+ * {@link RestResponse} in memory. The instances are written first, so that the client starts receiving data
+ * right away, and the metadata follows them, since the cursor of the next page is known only after the
+ * last instance. Values of blob fields are streamed from the database for each instance, right before it is
+ * written, so they are never held in memory as a whole.
+ *
+ * @param <T> the entity class
+ */
+class RestStreamWriter<T> implements Closeable {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final JsonGenerator generator;
+    private final List<RestFieldAccessor> fields;
+    private final MotechDataService<T> dataService;
+    private final boolean includeBlob;
+
+    RestStreamWriter(OutputStream output, List<RestFieldAccessor> fields, MotechDataService<T> dataService,
+                     boolean includeBlob) throws IOException {
+        this.generator = OBJECT_MAPPER.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8);
+        // a response interrupted by an error must not look complete, the output is closed by its owner
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.fields = fields;
+        this.dataService = dataService;
+        this.includeBlob = includeBlob;
+
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("data");
+    }
+
+    void writeInstance(T instance) throws IOException {
+        generator.writeStartObject();
+
+        for (RestFieldAccessor field : fields) {
+            generator.writeFieldName(field.getName());
+
+            if (field.isBlob()) {
+                InputStream value = includeBlob ? dataService.openBlob(getId(instance), field.getName()) : null;
+
+                if (value == null) {
+                    generator.writeNull();
+                } else {
+                    writeBlob(value);
+                }
+            } else {
+                generator.writeObject(field.getValue(instance));
+            }
+        }
+
+        generator.writeEndObject();
+    }
+
+    private void writeBlob(InputStream value) throws IOException {
+        // encoded the same way as in RestProjection, that is twice, but copied from the database in chunks
+        generator.writeRawValue("\"");
+        try (InputStream in = value;
+             OutputStream out = new Base64OutputStream(new Base64OutputStream(new RawOutput(), true, 0, null),
+                     true, 0, null)) {
+            IOUtils.copy(in, out);
+        }
+        generator.writeRaw('"');
+    }
+
+    private Long getId(T instance) {
+        return (Long) PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME);
+    }
+
+    void writeMetadata(RestMetadata metadata) throws IOException {
+        generator.writeEndArray();
+        generator.writeObjectField("metadata", metadata);
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+    /**
+     * Passes base64 encoded bytes to the generator as raw content, they do not need escaping.
+     */
+    private class RawOutput extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            generator.writeRaw((char) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            generator.writeRaw(new String(b, off, len, StandardCharsets.US_ASCII));
+        }
+    }
+}
@@ -4,10 +4,12 @@ import org.motechproject.mds.display.DisplayHelper;
 import org.motechproject.mds.dto.BrowsingSettingsDto;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.UIDisplayFieldComparator;
+import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.TypeHelper;
 
 import java.util.Comparator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This is a basic implementation of {@link org.motechproject.mds.service.CsvExportCustomizer}.
@@ -17,9 +19,14 @@ public class DefaultCsvExportCustomizer implements CsvExportCustomizer {
 
     private static final char COLL_JOIN_CHAR = ',';
 
+    // combobox display values are parsed once per field, instead of once per value
+    private final Map<String, Map<String, String>> comboboxDisplayValues = new ConcurrentHashMap<>();
+
     @Override
     public String formatField(FieldDto fieldDto, Object object) {
-        Object displayValue = DisplayHelper.getDisplayValueForField(fieldDto, object);
+        Object displayValue = object != null && fieldDto.getType().isCombobox()
+                ? getDisplayValueForCombobox(fieldDto, object)
+                : DisplayHelper.getDisplayValueForField(fieldDto, object);
 
         if (displayValue == null) {
             displayValue = object;
@@ -33,6 +40,26 @@ public class DefaultCsvExportCustomizer implements CsvExportCustomizer {
         return TypeHelper.format(displayValue, COLL_JOIN_CHAR);
     }
 
+    private Object getDisplayValueForCombobox(FieldDto fieldDto, Object object) {
+        String allowUserSupplied = fieldDto.getSettingsValueAsString(Constants.Settings.ALLOW_USER_SUPPLIED);
+        if (!Constants.Util.FALSE.equalsIgnoreCase(allowUserSupplied)) {
+            return object;
+        }
+
+        String key = fieldDto.getSettingsValueAsString(Constants.Settings.COMBOBOX_VALUES);
+        if (key == null) {
+            return DisplayHelper.getDisplayValueForField(fieldDto, object);
+        }
+
+        Map<String, String> displayValues = comboboxDisplayValues.get(key);
+        if (displayValues == null) {
+            displayValues = DisplayHelper.getComboboxDisplayValues(fieldDto);
+            comboboxDisplayValues.put(key, displayValues);
+        }
+
+        return DisplayHelper.getDisplayValueForCombobox(displayValues, object);
+    }
+
     @Override
     public Comparator<FieldDto> columnOrderComparator(BrowsingSettingsDto browsingSettingsDto) {
         return new UIDisplayFieldComparator(browsingSettingsDto.getDisplayedFields());
@@ -1,11 +1,17 @@
 package org.motechproject.mds.service;
 
 import org.apache.commons.lang.StringUtils;
+import org.joda.time.DateTime;
 import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.mds.domain.EntityType;
+import org.motechproject.mds.dto.CacheSettingsDto;
+import org.motechproject.mds.dto.CacheStatisticsDto;
+import org.motechproject.mds.dto.QueryPlanCacheStatisticsDto;
 import org.motechproject.mds.entityinfo.EntityInfo;
 import org.motechproject.mds.entityinfo.EntityInfoReader;
 import org.motechproject.mds.entityinfo.FieldInfo;
+import org.motechproject.mds.event.CacheEvictionEventBuilder;
+import org.motechproject.mds.event.CrudEventMode;
 import org.motechproject.mds.event.CrudEventType;
 import org.motechproject.mds.exception.audit.HistoryInstanceNotFoundException;
 import org.motechproject.mds.exception.object.SchemaVersionException;
@@ -14,6 +20,10 @@ import org.motechproject.mds.exception.object.ObjectNotFoundException;
 import org.motechproject.mds.exception.object.ObjectUpdateException;
 import org.motechproject.mds.exception.object.SecurityException;
 import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.helper.ClassTableName;
+import org.motechproject.mds.jdo.MdsLevel2Cache;
+import org.motechproject.mds.query.CloseableIterator;
+import org.motechproject.mds.query.InProperty;
 import org.motechproject.mds.query.Property;
 import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
@@ -21,6 +31,7 @@ import org.motechproject.mds.query.SqlQueryExecution;
 import org.motechproject.mds.repository.MotechDataRepository;
 import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.PropertyAccessors;
 import org.motechproject.mds.util.PropertyUtil;
 import org.motechproject.mds.util.SecurityMode;
 import org.motechproject.mds.util.StateManagerUtil;
@@ -34,28 +45,42 @@ import org.springframework.orm.jdo.JdoTransactionManager;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.jdo.JDOHelper;
 import javax.jdo.ObjectState;
 import javax.jdo.Query;
+import java.io.InputStream;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
 import static org.apache.commons.lang.StringUtils.defaultIfBlank;
+import static org.motechproject.mds.event.CrudEventBuilder.buildBulkEventParams;
 import static org.motechproject.mds.event.CrudEventBuilder.buildEventParams;
+import static org.motechproject.mds.event.CrudEventBuilder.createBulkSubject;
 import static org.motechproject.mds.event.CrudEventBuilder.createSubject;
 import static org.motechproject.mds.event.CrudEventType.CREATE;
 import static org.motechproject.mds.event.CrudEventType.DELETE;
 import static org.motechproject.mds.event.CrudEventType.UPDATE;
+import static org.motechproject.mds.util.Constants.MDSEvents.EVICT_ENTITY_CACHE;
 import static org.motechproject.mds.util.Constants.Util.CREATOR_FIELD_NAME;
 import static org.motechproject.mds.util.Constants.Util.MODIFICATION_DATE_FIELD_NAME;
 import static org.motechproject.mds.util.Constants.Util.MODIFIED_BY_FIELD_NAME;
@@ -76,7 +101,11 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
 
     private static final Logger MDS_LOGGER = LoggerFactory.getLogger(DefaultMotechDataService.class);
 
+    private static final int BULK_CHUNK_SIZE = 500;
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Object cacheEvictionKey = new Object();
+    private final Object crudEventKey = new Object();
 
     private MotechDataRepository<T> repository;
     private TrashService trashService;
@@ -92,9 +121,12 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     private boolean allowCreateEvent;
     private boolean allowUpdateEvent;
     private boolean allowDeleteEvent;
+    private CrudEventMode crudEventMode;
+    private boolean cached;
     private String module;
     private String entityName;
     private String namespace;
+    private String tableName;
     private String versionFieldName;
 
     @PostConstruct
@@ -109,9 +141,17 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         allowCreateEvent = entityInfo.isCreateEventFired();
         allowUpdateEvent = entityInfo.isUpdateEventFired();
         allowDeleteEvent = entityInfo.isDeleteEventFired();
+        crudEventMode = entityInfo.getCrudEventMode();
         module = entityInfo.getModule();
         entityName = entityInfo.getEntityName();
         namespace = entityInfo.getNamespace();
+        tableName = ClassTableName.getTableName(entityInfo.getClassName(), module, namespace,
+                entityInfo.getEntity().getTableName(), null);
+
+        CacheSettingsDto cacheSettings = entityInfo.getCacheSettings();
+        cached = cacheSettings.isEnabled();
+        MdsLevel2Cache.registerCacheSettings(repository.getClassType().getName(), cacheSettings);
+        repository.setQueryResultsCached(cacheSettings.isQueryResultsCached());
 
         // we need the field types for handling lookups with null values
         Map<String, String> fieldTypeMap = new HashMap<>();
@@ -124,26 +164,47 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
 
         repository.setFieldTypeMap(fieldTypeMap);
 
+        // the generated accessor lives in the same bundle as the generated service
+        PropertyAccessors.register(repository.getClassType(), getClass().getClassLoader());
+
         debug("{} ready", getClass().getName());
     }
 
+    @PreDestroy
+    public void destroy() {
+        PropertyAccessors.unregister(repository.getClassType());
+    }
+
     @Override
     @Transactional
     public T create(final T object) {
         validateCredentials();
 
-        final T createdInstance = repository.create(object);
+        T createdInstance = repository.create(object);
+        evictCacheOnOtherInstancesAfterCommit();
+        sendEventAfterCommit(createdInstance, CREATE);
 
-        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
-            @Override
-            public void afterCommit() {
-                if (allowCreateEvent) {
-                    sendEvent((Long) getId(createdInstance), CREATE);
+        return createdInstance;
+    }
+
+    @Override
+    public List<T> createAll(Collection<T> objects) {
+        validateCredentials();
+
+        List<T> created = new ArrayList<>();
+        for (final List<T> chunk : chunks(objects)) {
+            created.addAll(doInTransaction(new TransactionCallback<List<T>>() {
+                @Override
+                public List<T> doInTransaction(TransactionStatus status) {
+                    List<T> createdInstances = new ArrayList<>(getRepository().createAll(chunk));
+                    evictCacheOnOtherInstancesAfterCommit();
+                    sendBulkEventAfterCommit(createdInstances, CREATE);
+                    return createdInstances;
                 }
-            }
-        });
+            }));
+        }
 
-        return createdInstance;
+        return created;
     }
 
     @Override
@@ -169,6 +230,17 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return repository.retrieveAll(queryParams, securityRestriction);
     }
 
+    @Override
+    public CloseableIterator<T> streamAll(final QueryParams queryParams, final int fetchSize) {
+        final InstanceSecurityRestriction securityRestriction = validateCredentials();
+        return streamInTransaction(new TransactionCallback<CloseableIterator<T>>() {
+            @Override
+            public CloseableIterator<T> doInTransaction(TransactionStatus status) {
+                return repository.stream(queryParams, securityRestriction, fetchSize);
+            }
+        });
+    }
+
     @Override
     @Transactional
     public T update(final T object) {
@@ -178,19 +250,76 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
             validateCredentials(object);
 
             updateModificationData(object);
-            final T updatedInstance = repository.update(object);
+            T updatedInstance = repository.update(object);
+            evictCacheOnOtherInstancesAfterCommit();
+            sendEventAfterCommit(updatedInstance, UPDATE);
+
+            return updatedInstance;
+        }
+    }
 
-            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+    @Override
+    public List<T> updateAll(Collection<T> objects) {
+        List<T> updated = new ArrayList<>();
+        for (final List<T> chunk : chunks(objects)) {
+            updated.addAll(doInTransaction(new TransactionCallback<List<T>>() {
                 @Override
-                public void afterCommit() {
-                    if (allowUpdateEvent) {
-                        sendEvent((Long) getId(updatedInstance), UPDATE);
-                    }
+                public List<T> doInTransaction(TransactionStatus status) {
+                    return updateChunk(chunk);
                 }
-            });
+            }));
+        }
 
-            return updatedInstance;
+        return updated;
+    }
+
+    private List<T> updateChunk(List<T> chunk) {
+        List<T> persistent = new ArrayList<>();
+        List<T> newObjects = new ArrayList<>();
+        Map<Long, T> transientObjects = new LinkedHashMap<>();
+
+        for (T object : chunk) {
+            validateCredentials(object);
+            if (JDOHelper.getObjectState(object) != ObjectState.TRANSIENT) {
+                updateModificationData(object);
+                persistent.add(object);
+            } else if (getId(object) == null) {
+                // never stored, so created rather than updated
+                newObjects.add(object);
+            } else {
+                transientObjects.put((Long) getId(object), object);
+            }
+        }
+
+        List<T> updatedInstances = new ArrayList<>(repository.updateAll(persistent));
+        evictCacheOnOtherInstancesAfterCommit();
+
+        if (!transientObjects.isEmpty()) {
+            // instances passed as transient are updated from their counterparts in the database, fetched at once
+            for (T fromDbInstance : repository.retrieveAll(transientObjects.keySet())) {
+                T transientObject = transientObjects.remove((Long) getId(fromDbInstance));
+
+                PropertyUtil.copyProperties(fromDbInstance, transientObject, null, null);
+                if (versionFieldName != null) {
+                    StateManagerUtil.setTransactionVersion(fromDbInstance, versionFieldName);
+                }
+                updateModificationData(fromDbInstance);
+
+                updatedInstances.add(fromDbInstance);
+            }
+        }
+
+        sendBulkEventAfterCommit(updatedInstances, UPDATE);
+
+        // the ones missing in the database are created, as in updateFromTransient
+        newObjects.addAll(transientObjects.values());
+        if (!newObjects.isEmpty()) {
+            List<T> createdInstances = new ArrayList<>(repository.createAll(newObjects));
+            sendBulkEventAfterCommit(createdInstances, CREATE);
+            updatedInstances.addAll(createdInstances);
         }
+
+        return updatedInstances;
     }
 
     @Override
@@ -231,15 +360,9 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
             }
 
             updateModificationData(fromDbInstance);
+            evictCacheOnOtherInstancesAfterCommit();
+            sendEventAfterCommit(fromDbInstance, UPDATE);
 
-            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
-                @Override
-                public void afterCommit() {
-                    if (allowUpdateEvent) {
-                        sendEvent((Long) getId(fromDbInstance), UPDATE);
-                    }
-                }
-            });
             result = fromDbInstance;
         }
 
@@ -260,9 +383,9 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
 
         validateCredentials(object);
 
-        Long deletedInstanceId = doInTransaction(new TransactionCallback<Long>() {
+        doInTransaction(new TransactionCallback<Void>() {
             @Override
-            public Long doInTransaction(TransactionStatus status) {
+            public Void doInTransaction(TransactionStatus status) {
                 // independent of trash mode remove object. If trash mode is active then the same object
                 // exists in the trash so this one is unnecessary.
                 // We retrieve the object using the current pm
@@ -270,12 +393,48 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
                 T existing = findById(id);
 
                 repository.delete(existing);
-                return id;
+                evictCacheOnOtherInstancesAfterCommit();
+                publishAfterCommit(DELETE, Collections.singletonList(id), false);
+                return null;
             }
         });
+    }
+
+    @Override
+    public void deleteAll(Collection<T> objects) {
+        for (final List<T> chunk : chunks(objects)) {
+            doInTransaction(new TransactionCallback<Void>() {
+                @Override
+                public Void doInTransaction(TransactionStatus status) {
+                    final List<Long> ids = new ArrayList<>(chunk.size());
+                    for (T object : chunk) {
+                        if (object == null) {
+                            throw new IllegalArgumentException("Unable to delete null object");
+                        }
+                        validateCredentials(object);
+                        ids.add((Long) getId(object));
+                    }
+
+                    // as in delete, the instances are retrieved using the current pm, instances which were never
+                    // stored or are already gone are skipped, so they are not reported in the event either
+                    ids.removeAll(Collections.singleton(null));
+                    List<T> existing = ids.isEmpty() ? new ArrayList<T>() : repository.retrieveAll(ids);
+                    if (trashService.isTrashMode()) {
+                        // a single batch of inserts instead of one insert per deleted instance
+                        trashService.moveToTrash(existing, getSchemaVersion());
+                    }
+                    List<Long> deletedIds = new ArrayList<>(existing.size());
+                    for (T instance : existing) {
+                        deletedIds.add((Long) getId(instance));
+                    }
+
+                    repository.deleteAll(existing);
+                    evictCacheOnOtherInstancesAfterCommit();
 
-        if (allowDeleteEvent) {
-            sendEvent(deletedInstanceId, DELETE);
+                    publishAfterCommit(DELETE, deletedIds, true);
+                    return null;
+                }
+            });
         }
     }
 
@@ -355,12 +514,66 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return repository.count(securityRestriction);
     }
 
+    @Override
+    @Transactional
+    public Long estimateCount() {
+        InstanceSecurityRestriction securityRestriction = validateCredentials();
+        if (securityRestriction != null && !securityRestriction.isEmpty()) {
+            return null;
+        }
+        return repository.estimateCount(tableName);
+    }
+
     @Override
     @Transactional
     public Object getDetachedField(T instance, String fieldName) {
         return repository.getDetachedField(instance, fieldName);
     }
 
+    @Override
+    public InputStream openBlob(Long instanceId, String fieldName) {
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+        definition.setReadOnly(true);
+
+        TransactionStatus status = transactionManager.getTransaction(definition);
+
+        InputStream stream;
+        try {
+            // instance security is checked on the instance, the value itself is read using JDBC
+            stream = findById(instanceId) == null ? null : repository.openBlob(instanceId, fieldName);
+        } catch (RuntimeException e) {
+            transactionManager.rollback(status);
+            throw e;
+        }
+
+        if (stream != null && status.isNewTransaction()) {
+            return new TransactionBoundInputStream(stream, transactionManager, status);
+        } else {
+            // the caller's transaction is not affected by this
+            transactionManager.commit(status);
+            return stream;
+        }
+    }
+
+    @Override
+    @Transactional
+    public void writeBlob(Long instanceId, String fieldName, InputStream content) {
+        T instance = findById(instanceId);
+        if (instance == null) {
+            throw new ObjectNotFoundException(getClassType().getName(), instanceId);
+        }
+
+        repository.writeBlob(instanceId, fieldName, content);
+        if (recordHistory) {
+            // the history record is a copy of the instance, so it must be created with the written value
+            repository.refresh(instance);
+        }
+
+        // the modification data is flushed along with the version, the blob column itself is not dirty
+        update(instance);
+        evictLocalCacheAfterCommit(JDOHelper.getObjectId(instance));
+    }
+
     @Override
     @Transactional
     public List<T> filter(Filters filters, QueryParams queryParams) {
@@ -368,6 +581,17 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return repository.filter(filters, queryParams, securityRestriction);
     }
 
+    @Override
+    public CloseableIterator<T> streamFilter(final Filters filters, final QueryParams queryParams, final int fetchSize) {
+        final InstanceSecurityRestriction securityRestriction = validateCredentials();
+        return streamInTransaction(new TransactionCallback<CloseableIterator<T>>() {
+            @Override
+            public CloseableIterator<T> doInTransaction(TransactionStatus status) {
+                return repository.streamFilter(filters, queryParams, securityRestriction, fetchSize);
+            }
+        });
+    }
+
     @Override
     @Transactional
     public long countForFilters(Filters filters) {
@@ -380,6 +604,7 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     public void deleteAll() {
         InstanceSecurityRestriction securityRestriction = validateCredentials();
         repository.delete(new String[0], new Object[0], securityRestriction);
+        evictCacheOnOtherInstancesAfterCommit();
     }
 
     @Override
@@ -415,6 +640,16 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         repository.evictEntity(withSubclasses);
     }
 
+    @Override
+    public CacheStatisticsDto getCacheStatistics() {
+        return repository.getCacheStatistics();
+    }
+
+    @Override
+    public QueryPlanCacheStatisticsDto getQueryPlanCacheStatistics() {
+        return repository.getQueryPlanCacheStatistics();
+    }
+
     @Override
     @Transactional
     public T findById(Long id) {
@@ -475,6 +710,172 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return repository.retrieveAll(properties, queryParams, securityRestriction);
     }
 
+    /**
+     * Retrieves the instances matching any of the given lookup keys. Instead of one query per key, a single
+     * query with an <code>IN</code> clause on each lookup field is executed for every chunk of keys, see
+     * {@link #getBulkChunkSize()}. With more than one lookup field such a query can also match
+     * combinations of values that were not requested, these instances are left out. The values of the
+     * instances are matched to the keys the way the database compared them, see
+     * {@link #normalizeKeyValue(Object, boolean)}. Used by the generated bulk lookup methods.
+     *
+     * @param fieldNames the names of the lookup fields
+     * @param types the class names of the lookup fields
+     * @param keys the lookup keys, values of the field for a lookup on a single field, otherwise lists of
+     *             values of the fields, in the order of the field names
+     * @return the instances ordered by id, grouped by the keys in the order of the keys; keys without
+     * matching instances are mapped to empty lists
+     */
+    protected Map<Object, List<T>> retrieveGrouped(String[] fieldNames, String[] types, Collection<?> keys) {
+        InstanceSecurityRestriction securityRestriction = validateCredentials();
+        // MySQL compares strings using case-insensitive collations by default, PostgreSQL does not
+        boolean ignoreCase = !repository.usingPsql();
+
+        Map<Object, List<T>> result = new LinkedHashMap<>();
+        // keys that differ only in a way the database ignores share their matching instances
+        Map<Object, List<Object>> keysByNormalizedKey = new HashMap<>();
+
+        for (Object key : keys) {
+            if (fieldNames.length > 1 && !(key instanceof List && ((List) key).size() == fieldNames.length)) {
+                throw new IllegalArgumentException("The key " + key + " must be a list of " + fieldNames.length +
+                        " values, one for each lookup field");
+            }
+            if (!result.containsKey(key)) {
+                result.put(key, new ArrayList<T>());
+
+                Object normalizedKey = normalizeKey(key, fieldNames.length, ignoreCase);
+                if (!keysByNormalizedKey.containsKey(normalizedKey)) {
+                    keysByNormalizedKey.put(normalizedKey, new ArrayList<>());
+                }
+                keysByNormalizedKey.get(normalizedKey).add(key);
+            }
+        }
+
+        List<Object> distinctKeys = new ArrayList<>(result.keySet());
+        int chunkSize = getBulkChunkSize();
+
+        for (int from = 0; from < distinctKeys.size(); from += chunkSize) {
+            Set<Object> batch = new HashSet<>(distinctKeys.subList(from, Math.min(from + chunkSize,
+                    distinctKeys.size())));
+
+            List<Property> properties = new ArrayList<>(fieldNames.length);
+            for (int i = 0; i < fieldNames.length; ++i) {
+                Set<Object> values = new HashSet<>();
+                for (Object key : batch) {
+                    values.add(fieldNames.length == 1 ? key : ((List) key).get(i));
+                }
+                properties.add(new InProperty<>(fieldNames[i], values, types[i]));
+            }
+
+            for (T instance : repository.retrieveAll(properties, QueryParams.ORDER_ID_ASC, securityRestriction)) {
+                Object normalizedKey = normalizeKey(getLookupKey(instance, fieldNames), fieldNames.length,
+                        ignoreCase);
+                List<Object> matchingKeys = keysByNormalizedKey.get(normalizedKey);
+
+                if (matchingKeys != null) {
+                    for (Object key : matchingKeys) {
+                        // keys of other chunks get the instance from the queries of their own chunks
+                        if (batch.contains(key)) {
+                            result.get(key).add(instance);
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private Object getLookupKey(T instance, String[] fieldNames) {
+        if (fieldNames.length == 1) {
+            return PropertyUtil.safeGetProperty(instance, fieldNames[0]);
+        }
+
+        List<Object> key = new ArrayList<>(fieldNames.length);
+        for (String fieldName : fieldNames) {
+            key.add(PropertyUtil.safeGetProperty(instance, fieldName));
+        }
+        return key;
+    }
+
+    private Object normalizeKey(Object key, int fieldCount, boolean ignoreCase) {
+        if (fieldCount == 1) {
+            return normalizeKeyValue(key, ignoreCase);
+        }
+
+        List<Object> normalizedKey = new ArrayList<>(fieldCount);
+        for (Object value : (List) key) {
+            normalizedKey.add(normalizeKeyValue(value, ignoreCase));
+        }
+        return normalizedKey;
+    }
+
+    /**
+     * Normalizes the given value of a lookup key, so that it is equal to the values the database considers
+     * equal to it. Dates are compared as instants, regardless of their zones and classes, decimals regardless
+     * of their scales, and strings regardless of their case, if the database ignores it.
+     *
+     * @param value the value of a lookup field
+     * @param ignoreCase true if the database compares strings case-insensitively
+     * @return the normalized value
+     */
+    private Object normalizeKeyValue(Object value, boolean ignoreCase) {
+        if (value instanceof String) {
+            return ignoreCase ? ((String) value).toLowerCase(Locale.ENGLISH) : value;
+        } else if (value instanceof DateTime) {
+            return ((DateTime) value).getMillis();
+        } else if (value instanceof Date) {
+            // timestamps read from the database are not equal to dates with the same time
+            return ((Date) value).getTime();
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            return decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+        } else {
+            return value;
+        }
+    }
+
+    protected CloseableIterator<T> stream(final List<Property> properties, final QueryParams queryParams,
+                                          final int fetchSize) {
+        final InstanceSecurityRestriction securityRestriction = validateCredentials();
+        return streamInTransaction(new TransactionCallback<CloseableIterator<T>>() {
+            @Override
+            public CloseableIterator<T> doInTransaction(TransactionStatus status) {
+                return repository.stream(properties, queryParams, securityRestriction, fetchSize);
+            }
+        });
+    }
+
+    /**
+     * Executes a streaming query. Outside of a transaction, a new read-only transaction is started and
+     * it lasts until the returned iterator is closed. Within an existing transaction, the query simply
+     * joins it.
+     *
+     * @param callback the callback executing the query
+     * @return the iterator over the query results
+     */
+    protected CloseableIterator<T> streamInTransaction(TransactionCallback<CloseableIterator<T>> callback) {
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+        definition.setReadOnly(true);
+
+        TransactionStatus status = transactionManager.getTransaction(definition);
+
+        CloseableIterator<T> iterator;
+        try {
+            iterator = callback.doInTransaction(status);
+        } catch (RuntimeException e) {
+            transactionManager.rollback(status);
+            throw e;
+        }
+
+        if (status.isNewTransaction()) {
+            return new TransactionBoundIterator<>(iterator, transactionManager, status);
+        } else {
+            // the caller's transaction is not affected by this
+            transactionManager.commit(status);
+            return iterator;
+        }
+    }
+
     protected long count(List<Property> properties) {
         InstanceSecurityRestriction securityRestriction = validateCredentials();
         return repository.count(properties, securityRestriction);
@@ -532,6 +933,142 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return restriction;
     }
 
+    /**
+     * Returns the number of instances processed in a single transaction by the bulk operations:
+     * {@link #createAll(Collection)}, {@link #updateAll(Collection)} and {@link #deleteAll(Collection)}, and the
+     * number of keys looked up by a single query of the bulk lookups.
+     *
+     * @return the size of a chunk
+     */
+    protected int getBulkChunkSize() {
+        return BULK_CHUNK_SIZE;
+    }
+
+    private List<List<T>> chunks(Collection<T> objects) {
+        List<List<T>> chunks = new ArrayList<>();
+        if (objects == null) {
+            return chunks;
+        }
+
+        int chunkSize = getBulkChunkSize();
+        List<T> chunk = new ArrayList<>(Math.min(chunkSize, objects.size()));
+        for (T object : objects) {
+            chunk.add(object);
+            if (chunk.size() >= chunkSize) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Broadcasts a cache eviction event to other MOTECH instances, once the current transaction is committed,
+     * if the entity is cached. The event is broadcast once per transaction, regardless of the number of changes.
+     */
+    private void evictCacheOnOtherInstancesAfterCommit() {
+        if (!cached || TransactionSynchronizationManager.hasResource(cacheEvictionKey)) {
+            return;
+        }
+
+        TransactionSynchronizationManager.bindResource(cacheEvictionKey, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                Map<String, Object> params = CacheEvictionEventBuilder.buildEventParams(getClassType().getName());
+                osgiEventProxy.broadcastEvent(EVICT_ENTITY_CACHE, params, true);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(cacheEvictionKey);
+            }
+        });
+    }
+
+    /**
+     * Evicts the instance with the given object id from the local second level cache, once the current
+     * transaction is committed. Values written using JDBC bypass the cache, evicting the instance any
+     * earlier would let other transactions cache the previous value again before the commit.
+     */
+    private void evictLocalCacheAfterCommit(final Object objectId) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                repository.evictById(objectId);
+            }
+        });
+    }
+
+    private void sendEventAfterCommit(T instance, CrudEventType action) {
+        publishAfterCommit(action, Collections.singletonList(instance), false);
+    }
+
+    private void sendBulkEventAfterCommit(List<T> instances, CrudEventType action) {
+        publishAfterCommit(action, instances, true);
+    }
+
+    /**
+     * Adds the given instances, or their ids, to the CRUD events published once the current transaction is
+     * committed. Nothing is added if events of the given type are disabled for the entity, or if nothing
+     * listens to them. Events of all changes made in the transaction are published together, see
+     * {@link CrudEventBuffer}.
+     *
+     * @param action the type of the change
+     * @param instancesOrIds the changed instances, or ids of the deleted ones
+     * @param bulk true if the changes come from a bulk operation, and should be published as bulk events
+     */
+    private void publishAfterCommit(CrudEventType action, Collection<?> instancesOrIds, boolean bulk) {
+        boolean batched = bulk || crudEventMode == CrudEventMode.BATCHED;
+
+        // events nobody listens to would be dropped by the event module anyway
+        if (instancesOrIds.isEmpty() || !isEventAllowed(action)
+                || !osgiEventProxy.hasListener(getSubject(action, batched))) {
+            return;
+        }
+
+        CrudEventBuffer buffer = (CrudEventBuffer) TransactionSynchronizationManager.getResource(crudEventKey);
+        if (buffer == null) {
+            buffer = new CrudEventBuffer();
+            TransactionSynchronizationManager.bindResource(crudEventKey, buffer);
+            TransactionSynchronizationManager.registerSynchronization(buffer);
+        }
+
+        buffer.add(action, instancesOrIds, batched);
+    }
+
+    private boolean isEventAllowed(CrudEventType action) {
+        switch (action) {
+            case CREATE:
+                return allowCreateEvent;
+            case UPDATE:
+                return allowUpdateEvent;
+            case DELETE:
+                return allowDeleteEvent;
+            default:
+                return false;
+        }
+    }
+
+    private String getSubject(CrudEventType action, boolean batched) {
+        return batched
+                ? createBulkSubject(module, namespace, entityName, action)
+                : createSubject(module, namespace, entityName, action);
+    }
+
+    private void sendBulkEvent(List<Long> ids, CrudEventType action) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String subject = createBulkSubject(module, namespace, entityName, action);
+        Map<String, Object> params = buildBulkEventParams(module, namespace, entityName, getClassType().getName(), ids);
+        osgiEventProxy.sendEvent(subject, params);
+    }
+
     private void sendEvent(Long id, CrudEventType action) {
         String subject = createSubject(module, namespace, entityName, action);
         Map<String, Object> params = buildEventParams(module, namespace, entityName, getClassType().getName(), id);
@@ -592,4 +1129,63 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
     public void setEntityInfoReader(EntityInfoReader entityInfoReader) {
         this.entityInfoReader = entityInfoReader;
     }
+
+    /**
+     * Collects the CRUD events of a transaction and publishes them once it is committed. Each instance is reported
+     * once for each type of change, events of a type are published either individually, or as bulk events with
+     * the ids of up to {@link #getBulkChunkSize()} instances. Ids of new instances are only known after the flush,
+     * so they are read after the commit.
+     */
+    private final class CrudEventBuffer extends TransactionSynchronizationAdapter {
+
+        private final Map<CrudEventType, List<Object>> individual = new EnumMap<>(CrudEventType.class);
+        private final Map<CrudEventType, List<Object>> batched = new EnumMap<>(CrudEventType.class);
+
+        void add(CrudEventType action, Collection<?> instancesOrIds, boolean asBulk) {
+            Map<CrudEventType, List<Object>> events = asBulk ? batched : individual;
+
+            List<Object> pending = events.get(action);
+            if (pending == null) {
+                pending = new ArrayList<>();
+                events.put(action, pending);
+            }
+
+            pending.addAll(instancesOrIds);
+        }
+
+        @Override
+        public void afterCommit() {
+            for (Map.Entry<CrudEventType, List<Object>> entry : individual.entrySet()) {
+                for (Long id : getIds(entry.getValue())) {
+                    sendEvent(id, entry.getKey());
+                }
+            }
+
+            int chunkSize = getBulkChunkSize();
+            for (Map.Entry<CrudEventType, List<Object>> entry : batched.entrySet()) {
+                List<Long> ids = new ArrayList<>(getIds(entry.getValue()));
+                for (int i = 0; i < ids.size(); i += chunkSize) {
+                    sendBulkEvent(ids.subList(i, Math.min(i + chunkSize, ids.size())), entry.getKey());
+                }
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(crudEventKey);
+        }
+
+        private Set<Long> getIds(List<Object> instancesOrIds) {
+            Set<Long> ids = new LinkedHashSet<>(instancesOrIds.size());
+
+            for (Object instanceOrId : instancesOrIds) {
+                Object id = instanceOrId instanceof Long ? instanceOrId : getId((T) instanceOrId);
+                if (id != null) {
+                    ids.add((Long) id);
+                }
+            }
+
+            return ids;
+        }
+    }
 }
@@ -2,6 +2,7 @@ package org.motechproject.mds.service;
 
 import org.motechproject.mds.domain.EntityDraft;
 import org.motechproject.mds.dto.AdvancedSettingsDto;
+import org.motechproject.mds.dto.CacheSettingsDto;
 import org.motechproject.mds.dto.DraftData;
 import org.motechproject.mds.dto.DraftResult;
 import org.motechproject.mds.dto.EntityDto;
@@ -62,6 +63,7 @@ public interface EntityService {
 
     /**
      * Returns an entity of the given id. If an entity with given id does not exist, it will return null.
+     * The result is cached until the entity changes, so it is shared between callers and must not be modified.
      *
      * @param entityId The id of an entity.
      * @return Entity with given id or null.
@@ -70,7 +72,8 @@ public interface EntityService {
 
     /**
      * Returns a map which contains lookup fields. Fields may come from related entities. Map keys represents lookup
-     * fields name which can contains a dot operator(for example relationshipField.id).
+     * fields name which can contains a dot operator(for example relationshipField.id). The field representations
+     * are cached until the entity changes, so they are shared between callers and must not be modified.
      *
      * @param entityId The id of an entity
      * @param lookupName name of a lookup
@@ -103,7 +106,8 @@ public interface EntityService {
     EntityDto getEntityForEdit(Long entityId);
 
     /**
-     * Retrieves entity by the className parameter
+     * Retrieves entity by the className parameter. The result is cached until the entity changes, so it is
+     * shared between callers and must not be modified.
      *
      * @param className the className of an entity
      * @return Entity with the given className
@@ -179,6 +183,8 @@ public interface EntityService {
 
     /**
      * Retrieves a list of all fields for the given entity class name. This will not include any draft fields.
+     * The field representations are cached until the entity changes, so they are shared between callers and
+     * must not be modified.
      *
      * @param className the entity class name
      * @return a list of fields for the entity
@@ -421,6 +427,16 @@ public interface EntityService {
      */
     void updateMaxFetchDepth(Long entityId, Integer maxFetchDepth);
 
+    /**
+     * Updates the cache settings of the given entity. The new settings are used by the level 2 cache once
+     * the entities bundle is regenerated. If entity of the given id does not exist, it throws
+     * {@link org.motechproject.mds.exception.entity.EntityNotFoundException}.
+     *
+     * @param entityId the id of the entity to update
+     * @param cacheSettings the new cache settings
+     */
+    void updateCacheSettings(Long entityId, CacheSettingsDto cacheSettings);
+
     /**
      * Provides ability to point fields that should be non-editable via UI.
      *
@@ -442,7 +458,8 @@ public interface EntityService {
     /**
      * Retrieves lookup representation by entity id and lookup name. If entity of given id does not
      * exists, it throws {@link org.motechproject.mds.exception.entity.EntityNotFoundException}. If there is no
-     * lookup of such name in the entity, it returns {@code null}.
+     * lookup of such name in the entity, it returns {@code null}. The result is cached until the entity changes,
+     * so it is shared between callers and must not be modified.
      *
      * @param entityId id of an entity
      * @param lookupName name of a lookup to retrieve
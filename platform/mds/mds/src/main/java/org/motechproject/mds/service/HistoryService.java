@@ -20,6 +20,16 @@ public interface HistoryService {
      */
     void record(Object instance);
 
+    /**
+     * Registers the changes made on the given instance of entity in the current transaction. This method
+     * should be called before the instance is stored, while its changed fields are still known, so that
+     * {@link #record(Object)} can skip unchanged instances without comparing them with their latest
+     * historical revision.
+     *
+     * @param instance an instance created from the given entity definition.
+     */
+    void registerChanges(Object instance);
+
     /**
      * Returns the historical data for the given instance. This method return historical data only
      * for objects that are not in the MDS trash. For trash instances the return value will be
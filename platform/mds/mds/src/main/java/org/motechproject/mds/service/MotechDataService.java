@@ -1,13 +1,17 @@
 package org.motechproject.mds.service;
 
+import org.motechproject.mds.dto.CacheStatisticsDto;
+import org.motechproject.mds.dto.QueryPlanCacheStatisticsDto;
 import org.motechproject.mds.exception.audit.HistoryInstanceNotFoundException;
 import org.motechproject.mds.exception.audit.TrashInstanceNotFoundException;
 import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.query.CloseableIterator;
 import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.query.SqlQueryExecution;
 import org.springframework.transaction.support.TransactionCallback;
 
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -30,6 +34,17 @@ public interface MotechDataService<T> {
      */
     T create(T object);
 
+    /**
+     * Creates the given instances in MDS. Instances are persisted in chunks, each chunk in its own
+     * transaction (unless called within an existing transaction) with batched inserts. Instead of an event
+     * per instance, a single CRUD event, with the {@code .bulk} subject suffix and the ids of all instances
+     * in the {@code object_ids} parameter, is sent for every chunk.
+     *
+     * @param objects instances to create
+     * @return created instances
+     */
+    List<T> createAll(Collection<T> objects);
+
     /**
      * Retrieves instance from MDS based on the value of the given primary key.
      *
@@ -55,6 +70,21 @@ public interface MotechDataService<T> {
      */
     List<T> retrieveAll(QueryParams queryParams);
 
+    /**
+     * Streams all instances of the {@param <T>} type, that match the provided parameters. Instances
+     * are read from a database cursor, {@code fetchSize} rows at a time, and are detached in chunks of
+     * the same size, so that entities of any size can be processed using constant memory. When called
+     * outside of a transaction, the returned iterator uses its own transaction, bound to the calling
+     * thread until the iterator is closed. Within an existing
+     * transaction, the instances stay in the persistence manager until the transaction ends.
+     * The returned iterator must be closed, unless all of its elements were read.
+     *
+     * @param queryParams query parameters to be used retrieving instances
+     * @param fetchSize the number of instances fetched from the database at once
+     * @return an iterator over the instances matching query parameters
+     */
+    CloseableIterator<T> streamAll(QueryParams queryParams, int fetchSize);
+
     /**
      * Updates the given instance in MDS.
      *
@@ -63,6 +93,17 @@ public interface MotechDataService<T> {
      */
     T update(T object);
 
+    /**
+     * Updates the given instances in MDS. Transient instances are updated in the same way as in
+     * {@link #updateFromTransient(Object)}. Instances are updated in chunks, each chunk in its own
+     * transaction (unless called within an existing transaction), and a single bulk CRUD event is sent
+     * for every chunk, as in {@link #createAll(Collection)}.
+     *
+     * @param objects instances to update
+     * @return updated instances
+     */
+    List<T> updateAll(Collection<T> objects);
+
     /**
      * Updates the given instance in MDS if it exists (checks the presence of the instances id to verify that)
      * or creates a new one if it doesn't.
@@ -99,6 +140,15 @@ public interface MotechDataService<T> {
      */
     void delete(T object);
 
+    /**
+     * Deletes the given instances from MDS. Instances are deleted in chunks, each chunk in its own
+     * transaction (unless called within an existing transaction), and a single bulk CRUD event is sent
+     * for every chunk, as in {@link #createAll(Collection)}.
+     *
+     * @param objects instances to delete
+     */
+    void deleteAll(Collection<T> objects);
+
     /**
      * Deletes instance from MDS, by its id.
      *
@@ -146,6 +196,16 @@ public interface MotechDataService<T> {
      */
     long count();
 
+    /**
+     * Gets the number of instances estimated by the database from its statistics, without counting them.
+     * The estimate is not available if the database has no statistics for the entity, or if access to
+     * the instances is restricted by instance security, since statistics cover all instances.
+     *
+     * @return estimated number of instances, or null if the estimate is not available
+     * @see #count()
+     */
+    Long estimateCount();
+
     /**
      * Makes instance persistent and retrieves field values from that persisted instance.
      *
@@ -155,6 +215,32 @@ public interface MotechDataService<T> {
      */
     Object getDetachedField(T instance, String fieldName);
 
+    /**
+     * Opens a stream reading the value of a blob field of the instance with the given id. The value is read
+     * straight from the database, it is never held in memory as a whole, which makes this the preferred way
+     * of reading large blobs. Outside of a transaction, a new read-only transaction is started and it lasts
+     * until the returned stream is closed. Within an existing transaction, the stream must be closed before
+     * this service is used again.
+     *
+     * @param instanceId id of the instance
+     * @param fieldName name of the blob field
+     * @return the stream with the value of the field, or null if the instance does not exist or the field has
+     * no value
+     */
+    InputStream openBlob(Long instanceId, String fieldName);
+
+    /**
+     * Writes the value of a blob field of the instance with the given id, reading it from the given stream.
+     * The value is written straight to the database, without holding it in memory as a whole. Apart from
+     * that, the instance is updated as usual: its modification data and version are updated, and the update
+     * event is sent. For entities that record history, the history record includes the written value.
+     *
+     * @param instanceId id of the instance
+     * @param fieldName name of the blob field
+     * @param content the new value of the field, or null to clear it
+     */
+    void writeBlob(Long instanceId, String fieldName, InputStream content);
+
     /**
      * Retrieves all instances of type {@param <T>} from MDS, filtered using specified filters
      * and query params.
@@ -165,6 +251,17 @@ public interface MotechDataService<T> {
      */
     List<T> filter(Filters filters, QueryParams queryParams);
 
+    /**
+     * Streams all instances of type {@param <T>} from MDS, filtered using specified filters
+     * and query params. Works the same way as {@link #streamAll(QueryParams, int)}.
+     *
+     * @param filters filters to use filtering instances
+     * @param queryParams query parameters to use filtering instances
+     * @param fetchSize the number of instances fetched from the database at once
+     * @return an iterator over the instances, filtered using specified parameters
+     */
+    CloseableIterator<T> streamFilter(Filters filters, QueryParams queryParams, int fetchSize);
+
     /**
      * Gets a total number of instances, after being filtered by the given filter.
      *
@@ -207,6 +304,23 @@ public interface MotechDataService<T> {
      */
     void evictEntityCache(boolean withSubclasses);
 
+    /**
+     * Returns the level 2 cache statistics of the entity of this data service, that is the number of cached
+     * instances and the hits, misses and evictions counted since the entities bundle was started. The statistics
+     * are empty if caching is not enabled for the entity.
+     *
+     * @return the cache statistics of the entity
+     */
+    CacheStatisticsDto getCacheStatistics();
+
+    /**
+     * Returns the statistics of the query plan cache of the entity of this data service, that is the number of
+     * cached filters of queries and the hits and misses counted since the entities bundle was started.
+     *
+     * @return the query plan cache statistics of the entity
+     */
+    QueryPlanCacheStatisticsDto getQueryPlanCacheStatistics();
+
     /**
      * Retrieves instance of type {@param <T>} and given id from MDS.
      *
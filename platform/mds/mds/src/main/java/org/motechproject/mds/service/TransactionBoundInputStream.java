@@ -0,0 +1,39 @@
+package org.motechproject.mds.service;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Wraps a stream reading a blob value, ending the transaction started for it once the stream is closed.
+ * Since nothing is modified, the transaction is always rolled back. The transaction is bound to the thread
+ * that opened the stream, so the stream must be read and closed by that thread.
+ */
+class TransactionBoundInputStream extends FilterInputStream {
+
+    private final PlatformTransactionManager transactionManager;
+    private final TransactionStatus status;
+
+    TransactionBoundInputStream(InputStream in, PlatformTransactionManager transactionManager,
+                                TransactionStatus status) {
+        super(in);
+        this.transactionManager = transactionManager;
+        this.status = status;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (status.isCompleted()) {
+            return;
+        }
+
+        try {
+            super.close();
+        } finally {
+            transactionManager.rollback(status);
+        }
+    }
+}
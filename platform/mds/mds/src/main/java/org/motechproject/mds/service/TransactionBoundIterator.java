@@ -0,0 +1,58 @@
+package org.motechproject.mds.service;
+
+import org.motechproject.mds.query.CloseableIterator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+/**
+ * Wraps an iterator over streamed instances, ending the transaction started for it once the iterator
+ * is closed or exhausted. Since nothing is modified, the transaction is always rolled back. The transaction
+ * is bound to the thread that started streaming, so the iterator must be used and closed by that thread.
+ *
+ * @param <T> the type of returned instances
+ */
+class TransactionBoundIterator<T> implements CloseableIterator<T> {
+
+    private final CloseableIterator<T> iterator;
+    private final PlatformTransactionManager transactionManager;
+    private final TransactionStatus status;
+
+    TransactionBoundIterator(CloseableIterator<T> iterator, PlatformTransactionManager transactionManager,
+                             TransactionStatus status) {
+        this.iterator = iterator;
+        this.transactionManager = transactionManager;
+        this.status = status;
+    }
+
+    @Override
+    public boolean hasNext() {
+        boolean hasNext = !status.isCompleted() && iterator.hasNext();
+        if (!hasNext) {
+            close();
+        }
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        return iterator.next();
+    }
+
+    @Override
+    public void remove() {
+        iterator.remove();
+    }
+
+    @Override
+    public void close() {
+        if (status.isCompleted()) {
+            return;
+        }
+
+        try {
+            iterator.close();
+        } finally {
+            transactionManager.rollback(status);
+        }
+    }
+}
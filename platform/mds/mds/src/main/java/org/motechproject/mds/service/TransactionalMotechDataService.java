@@ -6,7 +6,9 @@ import org.motechproject.mds.util.InstanceSecurityRestriction;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The main goal of the <code>TransactionalMotechDataService</code> class is to resolve problems
@@ -49,6 +51,17 @@ public abstract class TransactionalMotechDataService<T> extends DefaultMotechDat
         });
     }
 
+    @Override
+    protected Map<Object, List<T>> retrieveGrouped(final String[] fieldNames, final String[] types,
+                                                   final Collection<?> keys) {
+        return doInTransaction(new TransactionCallback<Map<Object, List<T>>>() {
+            @Override
+            public Map<Object, List<T>> doInTransaction(TransactionStatus status) {
+                return TransactionalMotechDataService.super.retrieveGrouped(fieldNames, types, keys);
+            }
+        });
+    }
+
     protected T retrieveUnique(final List<Property> properties, final QueryParams queryParams) {
         return retrieveUnique(properties);
     }
@@ -30,6 +30,18 @@ public interface TrashService {
      */
     void moveToTrash(Object instance, Long schemaVersion);
 
+    /**
+     * Moves the given instances of a single entity to the trash, using a single batch of inserts. The instances
+     * should be deleted afterwards in the same transaction, calls of {@link #moveToTrash(Object, Long)} for
+     * them made while they are deleted are ignored. This method should only be executed, when the
+     * module trash mode is active.
+     *
+     * @param instances instances of a single entity, which are about to be deleted
+     * @param schemaVersion the current version of the schema for the entity
+     * @see #isTrashMode()
+     */
+    void moveToTrash(Collection instances, Long schemaVersion);
+
     /**
      * Return instance with given id from trash.
      *
@@ -55,8 +67,9 @@ public interface TrashService {
     void scheduleEmptyTrashJob();
 
     /**
-     * Cleans the module trash. All instances in trash should be removed permanently and if they
-     * contain any historical data they should also be removed permanently.
+     * Cleans the module trash. Instances moved to trash before the period defined by the time value and
+     * time unit should be removed permanently and if they contain any historical data they should also be
+     * removed permanently. Instances are removed in chunks, each chunk in a separate transaction.
      * <p/>
      * This method should only be executed by the job created in the
      * {@link #scheduleEmptyTrashJob()} method.
@@ -0,0 +1,53 @@
+package org.motechproject.mds.service.impl;
+
+import org.motechproject.mds.event.CacheEvictionEventBuilder;
+import org.motechproject.mds.javassist.MotechClassPool;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.service.ServiceUtil;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import static org.motechproject.mds.util.Constants.MDSEvents.ENTITY_CLASS;
+import static org.motechproject.mds.util.Constants.MDSEvents.ORIGIN_INSTANCE_ID;
+
+/**
+ * Handles cache eviction events, broadcast by other MOTECH instances after they changed instances of a cached
+ * entity. The entity is evicted from the level 2 cache of this instance, together with cached results of its
+ * lookups, so that the changes become visible here. Events broadcast by this instance are ignored, since its
+ * own cache is updated by DataNucleus.
+ */
+@Service
+public class EntityCacheEvictionHandler implements EventHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityCacheEvictionHandler.class);
+
+    private BundleContext bundleContext;
+
+    @Override
+    public void handleEvent(Event event) {
+        if (CacheEvictionEventBuilder.isFromThisInstance(event.getProperty(ORIGIN_INSTANCE_ID))) {
+            return;
+        }
+
+        String entityClassName = (String) event.getProperty(ENTITY_CLASS);
+        String interfaceName = MotechClassPool.getInterfaceName(entityClassName);
+        MotechDataService dataService = ServiceUtil.getServiceForInterfaceName(bundleContext, interfaceName);
+
+        if (dataService == null) {
+            LOGGER.debug("No data service for {}, nothing to evict", entityClassName);
+        } else {
+            LOGGER.debug("Evicting {} from the cache, changed by a different MOTECH instance", entityClassName);
+            dataService.evictEntityCache(false);
+        }
+    }
+
+    @Autowired
+    public void setBundleContext(BundleContext bundleContext) {
+        this.bundleContext = bundleContext;
+    }
+}
@@ -0,0 +1,122 @@
+package org.motechproject.mds.service.impl;
+
+import org.motechproject.mds.repository.internal.MetadataHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the metadata of committed entities, such as entity, lookup and field DTOs, so that reading it
+ * does not require querying the database and rebuilding the DTOs every time. The cache is versioned, every
+ * invalidation starts a new version and values loaded during an older version are not stored, so a value
+ * read from the database before a change cannot end up in the cache after it. The cache is invalidated by
+ * the {@link EntityServiceImpl} when it changes an entity, both at once and after the transaction completes,
+ * and whenever the JDO metadata is reloaded by the {@link MetadataHolder}, which happens when the entities
+ * bundle is regenerated, also after a schema change made by a different MOTECH instance.
+ * Cached DTOs are shared between callers and must not be modified.
+ */
+@Component
+public class EntityMetadataCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityMetadataCache.class);
+
+    private final Map<String, Object> cache = new ConcurrentHashMap<>();
+
+    private MetadataHolder metadataHolder;
+
+    private volatile long version;
+    private volatile long metadataVersion;
+
+    /**
+     * Returns the cached value for the given key. If there is no such value, it is loaded using the given
+     * loader and stored in the cache. Null values are never cached.
+     *
+     * @param key the key of the value, unique across all cached metadata
+     * @param loader the loader used if the value is not cached
+     * @param <T> the type of the value
+     * @return the value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Loader<T> loader) {
+        long loadVersion = currentVersion();
+
+        T value = (T) cache.get(key);
+        if (value == null) {
+            value = loader.load();
+            if (value != null) {
+                put(loadVersion, key, value);
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Invalidates the cache. If called within a transaction, the cache is invalidated again after the
+     * transaction completes, so that values read by other transactions before the changes were committed
+     * are dropped.
+     */
+    public void invalidate() {
+        clear();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    clear();
+                }
+            });
+        }
+    }
+
+    private long currentVersion() {
+        if (metadataHolder != null && metadataHolder.getMetadataVersion() != metadataVersion) {
+            synchronized (this) {
+                long reloadedVersion = metadataHolder.getMetadataVersion();
+                if (reloadedVersion != metadataVersion) {
+                    LOGGER.debug("JDO metadata reloaded, clearing the entity metadata cache");
+                    metadataVersion = reloadedVersion;
+                    clear();
+                }
+            }
+        }
+        return version;
+    }
+
+    private synchronized void put(long loadVersion, String key, Object value) {
+        if (loadVersion == version) {
+            cache.put(key, value);
+        }
+    }
+
+    private synchronized void clear() {
+        version++;
+        cache.clear();
+    }
+
+    @Autowired
+    public void setMetadataHolder(MetadataHolder metadataHolder) {
+        this.metadataHolder = metadataHolder;
+    }
+
+    /**
+     * Loads a value that is not cached.
+     *
+     * @param <T> the type of the value
+     */
+    public interface Loader<T> {
+
+        /**
+         * Loads the value.
+         *
+         * @return the value, or null if it does not exist
+         */
+        T load();
+    }
+}
@@ -23,6 +23,7 @@ import org.motechproject.mds.domain.TypeValidation;
 import org.motechproject.mds.domain.UIDisplayFieldComparator;
 import org.motechproject.mds.domain.UserPreferences;
 import org.motechproject.mds.dto.AdvancedSettingsDto;
+import org.motechproject.mds.dto.CacheSettingsDto;
 import org.motechproject.mds.dto.DraftData;
 import org.motechproject.mds.dto.DraftResult;
 import org.motechproject.mds.dto.EntityDto;
@@ -124,6 +125,7 @@ public class EntityServiceImpl implements EntityService {
     private BundleContext bundleContext;
     private EntityValidator entityValidator;
     private ComboboxDataMigrationHelper comboboxDataMigrationHelper;
+    private EntityMetadataCache metadataCache = new EntityMetadataCache();
 
     @Override
     @Transactional
@@ -137,6 +139,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void incrementVersion(Long entityId) {
+        metadataCache.invalidate();
+
         Entity entity = allEntities.retrieveById(entityId);
         assertEntityExists(entity, entityId);
         entity.incrementVersion();
@@ -145,6 +149,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public EntityDto createEntity(EntityDto entityDto) {
+        metadataCache.invalidate();
+
         String packageName = ClassName.getPackage(entityDto.getClassName());
         boolean fromUI = StringUtils.isEmpty(packageName);
         String username = getUsername();
@@ -403,6 +409,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public List<String> commitChanges(Long entityId, String changesOwner) {
+        metadataCache.invalidate();
+
         List<String> modulesToRefresh = new ArrayList<>();
         EntityDraft draft = getEntityDraft(entityId, changesOwner);
         if (draft.isOutdated()) {
@@ -652,6 +660,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void updateRestOptions(Long entityId, RestOptionsDto restOptionsDto) {
+        metadataCache.invalidate();
+
         Entity entity = allEntities.retrieveById(entityId);
         assertEntityExists(entity, entityId);
 
@@ -661,6 +671,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void updateTracking(Long entityId, TrackingDto trackingDto) {
+        metadataCache.invalidate();
+
         Entity entity = allEntities.retrieveById(entityId);
         assertEntityExists(entity, entityId);
 
@@ -688,6 +700,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void addLookups(Long entityId, Collection<LookupDto> lookups) {
+        metadataCache.invalidate();
+
         Entity entity = allEntities.retrieveById(entityId);
         assertEntityExists(entity, entityId);
 
@@ -753,7 +767,18 @@ public class EntityServiceImpl implements EntityService {
 
     @Override
     @Transactional
-    public Map<String, FieldDto> getLookupFieldsMapping(Long entityId, String lookupName) {
+    public Map<String, FieldDto> getLookupFieldsMapping(final Long entityId, final String lookupName) {
+        Map<String, FieldDto> fieldMap = metadataCache.get("lookupFields:" + entityId + ":" + lookupName,
+                new EntityMetadataCache.Loader<Map<String, FieldDto>>() {
+                    @Override
+                    public Map<String, FieldDto> load() {
+                        return Collections.unmodifiableMap(loadLookupFieldsMapping(entityId, lookupName));
+                    }
+                });
+        return new HashMap<>(fieldMap);
+    }
+
+    private Map<String, FieldDto> loadLookupFieldsMapping(Long entityId, String lookupName) {
         Entity entity = allEntities.retrieveById(entityId);
         assertEntityExists(entity, entityId);
         Lookup lookup = entity.getLookupByName(lookupName);
@@ -776,6 +801,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void deleteEntity(Long entityId) {
+        metadataCache.invalidate();
+
         Entity entity = allEntities.retrieveById(entityId);
 
         assertWritableEntity(entity, entityId);
@@ -858,16 +885,26 @@ public class EntityServiceImpl implements EntityService {
 
     @Override
     @Transactional
-    public EntityDto getEntity(Long entityId) {
-        Entity entity = allEntities.retrieveById(entityId);
-        return (entity == null) ? null : entity.toDto();
+    public EntityDto getEntity(final Long entityId) {
+        return metadataCache.get("entity:" + entityId, new EntityMetadataCache.Loader<EntityDto>() {
+            @Override
+            public EntityDto load() {
+                Entity entity = allEntities.retrieveById(entityId);
+                return (entity == null) ? null : entity.toDto();
+            }
+        });
     }
 
     @Override
     @Transactional
-    public EntityDto getEntityByClassName(String className) {
-        Entity entity = allEntities.retrieveByClassName(className);
-        return (entity == null) ? null : entity.toDto();
+    public EntityDto getEntityByClassName(final String className) {
+        return metadataCache.get("entityByClassName:" + className, new EntityMetadataCache.Loader<EntityDto>() {
+            @Override
+            public EntityDto load() {
+                Entity entity = allEntities.retrieveByClassName(className);
+                return (entity == null) ? null : entity.toDto();
+            }
+        });
     }
 
     @Override
@@ -998,8 +1035,15 @@ public class EntityServiceImpl implements EntityService {
 
     @Override
     @Transactional
-    public List<FieldDto> getEntityFieldsByClassName(String className) {
-        return getEntityFieldsByClassName(className, false);
+    public List<FieldDto> getEntityFieldsByClassName(final String className) {
+        List<FieldDto> fields = metadataCache.get("fieldsByClassName:" + className,
+                new EntityMetadataCache.Loader<List<FieldDto>>() {
+                    @Override
+                    public List<FieldDto> load() {
+                        return Collections.unmodifiableList(getEntityFieldsByClassName(className, false));
+                    }
+                });
+        return new ArrayList<>(fields);
     }
 
     @Override
@@ -1138,6 +1182,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void addFields(Long entityId, Collection<FieldDto> fields) {
+        metadataCache.invalidate();
+
         Entity entity = allEntities.retrieveById(entityId);
 
         assertEntityExists(entity, entityId);
@@ -1235,6 +1281,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void addFilterableFields(EntityDto entityDto, Collection<String> fieldNames) {
+        metadataCache.invalidate();
+
         Entity entity = allEntities.retrieveById(entityDto.getId());
 
         assertEntityExists(entity, entityDto.getId());
@@ -1260,12 +1308,17 @@ public class EntityServiceImpl implements EntityService {
 
     @Override
     @Transactional
-    public LookupDto getLookupByName(Long entityId, String lookupName) {
-        Entity entity = allEntities.retrieveById(entityId);
-        assertEntityExists(entity, entityId);
+    public LookupDto getLookupByName(final Long entityId, final String lookupName) {
+        return metadataCache.get("lookup:" + entityId + ":" + lookupName, new EntityMetadataCache.Loader<LookupDto>() {
+            @Override
+            public LookupDto load() {
+                Entity entity = allEntities.retrieveById(entityId);
+                assertEntityExists(entity, entityId);
 
-        Lookup lookup = entity.getLookupByName(lookupName);
-        return (lookup == null) ? null : lookup.toDto();
+                Lookup lookup = entity.getLookupByName(lookupName);
+                return (lookup == null) ? null : lookup.toDto();
+            }
+        });
     }
 
     @Override
@@ -1290,6 +1343,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void addNonEditableFields(EntityDto entityDto, Map<String, Boolean> nonEditableFields) {
+        metadataCache.invalidate();
+
         Entity entity = allEntities.retrieveById(entityDto.getId());
 
         assertEntityExists(entity, entityDto.getId());
@@ -1313,6 +1368,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void addDisplayedFields(EntityDto entityDto, Map<String, Long> positions) {
+        metadataCache.invalidate();
+
         Entity entity = allEntities.retrieveById(entityDto.getId());
 
         assertEntityExists(entity, entityDto.getId());
@@ -1349,6 +1406,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void updateSecurityOptions(Long entityId, SecurityMode securityMode, Set<String> securityMembers, SecurityMode readOnlySecurityMode, Set<String> readOnlySecurityMembers) {
+        metadataCache.invalidate();
+
         Entity entity = allEntities.retrieveById(entityId);
 
         assertEntityExists(entity, entityId);
@@ -1364,6 +1423,8 @@ public class EntityServiceImpl implements EntityService {
     @Override
     @Transactional
     public void updateMaxFetchDepth(Long entityId, Integer maxFetchDepth) {
+        metadataCache.invalidate();
+
         Entity entity = allEntities.retrieveById(entityId);
         assertEntityExists(entity, entityId);
 
@@ -1372,6 +1433,19 @@ public class EntityServiceImpl implements EntityService {
         allEntities.update(entity);
     }
 
+    @Override
+    @Transactional
+    public void updateCacheSettings(Long entityId, CacheSettingsDto cacheSettings) {
+        metadataCache.invalidate();
+
+        Entity entity = allEntities.retrieveById(entityId);
+        assertEntityExists(entity, entityId);
+
+        entity.updateCacheSettings(cacheSettings);
+
+        allEntities.update(entity);
+    }
+
     private void assertEntityExists(Entity entity, Long entityId) {
         if (entity == null) {
             throw new EntityNotFoundException(entityId);
@@ -1556,4 +1630,9 @@ public class EntityServiceImpl implements EntityService {
     public void setUserPreferencesService(UserPreferencesService userPreferencesService) {
         this.userPreferencesService = userPreferencesService;
     }
+
+    @Autowired
+    public void setMetadataCache(EntityMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
 }
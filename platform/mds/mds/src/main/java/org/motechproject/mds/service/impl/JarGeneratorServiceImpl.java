@@ -337,6 +337,9 @@ public class JarGeneratorServiceImpl implements JarGeneratorService {
                         info.setServiceName(ClassName.getServiceName(className));
                     }
 
+                    // insert the property accessor, the service falls back to reflection without it
+                    addClass(output, MotechClassPool.getAccessorName(className));
+
                     // insert the interface
                     String interfaceName = MotechClassPool.getInterfaceName(className);
                     if (MotechClassPool.isServiceInterfaceRegistered(className)) {
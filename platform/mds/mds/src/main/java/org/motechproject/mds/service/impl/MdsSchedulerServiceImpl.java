@@ -44,6 +44,7 @@ public class MdsSchedulerServiceImpl implements MdsSchedulerService {
 
     private BundleContext bundleContext;
     private Scheduler scheduler;
+    private Scheduler volatileScheduler;
     private WebApplicationContext webApplicationContext;
 
     @Autowired
@@ -77,6 +78,9 @@ public class MdsSchedulerServiceImpl implements MdsSchedulerService {
             if (scheduler == null) {
                 findMotechSchedulerFactoryBean();
             }
+            if (volatileScheduler != null) {
+                volatileScheduler.unscheduleJob(triggerKey(EMPTY_TRASH_JOB, JOB_GROUP_NAME));
+            }
             if (scheduler != null) {
                 scheduler.unscheduleJob(triggerKey(EMPTY_TRASH_JOB, JOB_GROUP_NAME));
             }
@@ -103,7 +107,13 @@ public class MdsSchedulerServiceImpl implements MdsSchedulerService {
             if (scheduler == null) {
                 findMotechSchedulerFactoryBean();
             }
-            if (scheduler != null) {
+            if (volatileScheduler != null) {
+                // the trash job is rescheduled on every start, so it does not need the JDBC job store
+                if (scheduler != null) {
+                    scheduler.unscheduleJob(triggerKey(EMPTY_TRASH_JOB, JOB_GROUP_NAME));
+                }
+                volatileScheduler.scheduleJob(jobDetail, trigger);
+            } else if (scheduler != null) {
                 scheduler.scheduleJob(jobDetail, trigger);
             }
         } catch (SchedulerException e) {
@@ -136,6 +146,13 @@ public class MdsSchedulerServiceImpl implements MdsSchedulerService {
                 Object motechSchedulerFactoryBean = webApplicationContext.getBean("motechSchedulerFactoryBean");
                 Method method = motechSchedulerFactoryBean.getClass().getMethod("getQuartzScheduler");
                 scheduler = (Scheduler) method.invoke(motechSchedulerFactoryBean);
+
+                try {
+                    Method volatileMethod = motechSchedulerFactoryBean.getClass().getMethod("getVolatileQuartzScheduler");
+                    volatileScheduler = (Scheduler) volatileMethod.invoke(motechSchedulerFactoryBean);
+                } catch (NoSuchMethodException e) {
+                    LOGGER.debug("The scheduler does not support volatile jobs", e);
+                }
             }
         } catch (InterruptedException | NoSuchMethodException | IllegalAccessException | InvocationTargetException |
                 InvalidSyntaxException e) {
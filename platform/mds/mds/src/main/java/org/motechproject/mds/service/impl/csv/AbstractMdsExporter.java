@@ -1,6 +1,5 @@
 package org.motechproject.mds.service.impl.csv;
 
-import org.apache.commons.lang.StringUtils;
 import org.motechproject.mds.dto.BrowsingSettingsDto;
 import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.entityinfo.EntityInfo;
@@ -14,9 +13,10 @@ import org.motechproject.mds.service.DefaultCsvExportCustomizer;
 import org.motechproject.mds.service.MDSLookupService;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.service.TableWriter;
-import org.motechproject.mds.util.PropertyUtil;
 import org.osgi.framework.BundleContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -31,9 +31,13 @@ import java.util.TreeSet;
 /**
  * Base class used by classes responsible for exporting MDS Data in a tabular CSV-like form.
  * Using the {@link TableWriter} class, implementing classes can provide their own ouput format.
+ * Instances are read and converted in chunks, each chunk in a separate transaction, so exporting
+ * does not require holding all instances of the entity in memory.
  */
 public abstract class AbstractMdsExporter {
 
+    private static final int EXPORT_CHUNK_SIZE = 1000;
+
     @Autowired
     private BundleContext bundleContext;
 
@@ -51,8 +55,9 @@ public abstract class AbstractMdsExporter {
         return exportData(entityInfo, writer, "", null, null, null, exportCustomizer);
     }
 
+    @SuppressWarnings("unchecked")
     protected long exportData(EntityInfo entityInfo, TableWriter writer, String lookupName, QueryParams params, List<String> headers,
-                           Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer) {
+                           Map<String, Object> lookupFields, final CsvExportCustomizer exportCustomizer) {
         final MotechDataService dataService = DataServiceHelper.getDataService(bundleContext, entityInfo.getClassName());
 
         final Map<String, FieldDto> fieldMap = new HashMap<>();
@@ -64,20 +69,35 @@ public abstract class AbstractMdsExporter {
         String[] orderedHeaders = orderHeaders(entityInfo.getAdvancedSettings().getBrowsing(), headers == null ? fieldsToHeaders(entityInfo.getFieldDtos(), exportCustomizer) : headers.toArray(new String[headers.size()]),
                 entityInfo.getFieldDtos(), exportCustomizer);
 
+        final List<ExportColumn> columns = new ArrayList<>(orderedHeaders.length);
+        for (String header : orderedHeaders) {
+            columns.add(new ExportColumn(header, fieldMap.get(header)));
+        }
+
+        final InstancePager pager = InstancePager.create(dataService, mdsLookupService, entityInfo.getClassName(),
+                lookupName, lookupFields, params, getExportChunkSize());
+
         try {
             writer.writeHeader(orderedHeaders);
 
             long rowsExported = 0;
-            Map<String, String> row = new HashMap<>();
-
-            List<Object> instances = StringUtils.isBlank(lookupName) ? dataService.retrieveAll(params) :
-                    mdsLookupService.findMany(entityInfo.getClassName(), lookupName, lookupFields, params);
 
-            for (Object instance : instances) {
-                buildCsvRow(row, fieldMap, instance, orderedHeaders, exportCustomizer);
-                writer.writeRow(row, orderedHeaders);
-                rowsExported++;
-            }
+            do {
+                // every chunk is read in its own transaction, so that the persistence manager
+                // is cleared of the instances from the previous chunks
+                List<Map<String, String>> rows = (List<Map<String, String>>) dataService.doInTransaction(
+                        new TransactionCallback<List<Map<String, String>>>() {
+                            @Override
+                            public List<Map<String, String>> doInTransaction(TransactionStatus status) {
+                                return buildCsvRows(pager.nextChunk(), columns, exportCustomizer);
+                            }
+                        });
+
+                for (Map<String, String> row : rows) {
+                    writer.writeRow(row, orderedHeaders);
+                }
+                rowsExported += rows.size();
+            } while (!pager.isDone());
 
             return rowsExported;
         } catch (IOException e) {
@@ -85,6 +105,15 @@ public abstract class AbstractMdsExporter {
         }
     }
 
+    /**
+     * Returns the number of instances read from the database at once during export.
+     *
+     * @return the size of a chunk
+     */
+    protected int getExportChunkSize() {
+        return EXPORT_CHUNK_SIZE;
+    }
+
     protected EntityInfo getEntity(long entityId) {
         EntityInfo entityInfo = entityInfoReader.getEntityInfo(entityId);
         if (entityInfo == null) {
@@ -129,17 +158,20 @@ public abstract class AbstractMdsExporter {
         return fieldNames.toArray(new String[fieldNames.size()]);
     }
 
-    private void buildCsvRow(Map<String, String> row, Map<String, FieldDto> fieldMap, Object instance, String[] headers,
-                             CsvExportCustomizer exportCustomizer) {
-        row.clear();
-        for (String fieldName : headers) {
-            FieldDto field = fieldMap.get(fieldName);
-
-            Object value = PropertyUtil.safeGetProperty(instance, field.getBasic().getName());
-            String csvValue = exportCustomizer.formatField(field, value);
+    private List<Map<String, String>> buildCsvRows(List<Object> instances, List<ExportColumn> columns,
+                                                   CsvExportCustomizer exportCustomizer) {
+        List<Map<String, String>> rows = new ArrayList<>(instances.size());
 
-            row.put(fieldName, csvValue);
+        for (Object instance : instances) {
+            Map<String, String> row = new HashMap<>();
+            for (ExportColumn column : columns) {
+                Object value = column.getValue(instance);
+                row.put(column.getHeader(), exportCustomizer.formatField(column.getField(), value));
+            }
+            rows.add(row);
         }
+
+        return rows;
     }
 
     protected BundleContext getBundleContext() {
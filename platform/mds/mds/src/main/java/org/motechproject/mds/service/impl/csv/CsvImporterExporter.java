@@ -1,14 +1,11 @@
 package org.motechproject.mds.service.impl.csv;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
-import org.motechproject.mds.domain.ComboboxHolder;
-import org.motechproject.mds.domain.RelationshipHolder;
 import org.motechproject.mds.dto.CsvImportResults;
-import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.dto.FieldDto;
-import org.motechproject.mds.dto.MetadataDto;
-import org.motechproject.mds.dto.TypeDto;
 import org.motechproject.mds.entityinfo.EntityInfo;
+import org.motechproject.mds.event.CrudEventMode;
 import org.motechproject.mds.exception.csv.CsvImportException;
 import org.motechproject.mds.helper.DataServiceHelper;
 import org.motechproject.mds.query.QueryParams;
@@ -17,38 +14,62 @@ import org.motechproject.mds.service.CsvImportCustomizer;
 import org.motechproject.mds.service.DefaultCsvExportCustomizer;
 import org.motechproject.mds.service.DefaultCsvImportCustomizer;
 import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.service.impl.csv.CsvRowReader.ParsedRow;
 import org.motechproject.mds.service.impl.csv.writer.CsvTableWriter;
 import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.PropertyUtil;
-import org.motechproject.mds.util.TypeHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
 import org.supercsv.io.CsvMapReader;
 import org.supercsv.prefs.CsvPreference;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-
-import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_KEY_TYPE;
-import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_VALUE_TYPE;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Component used for importing CSV records to the database.
  * The reason for separating import logic is keeping the db transaction and sending the MOTECH event at completion separate.
  * This bean lives in the context of the generated MDS entities bundle.
+ * The CSV file is parsed and its values are converted on a reader thread of the exporter, while the rows are
+ * imported in chunks by the calling thread, which holds the transaction of the import.
  */
 public class CsvImporterExporter extends AbstractMdsExporter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvImporterExporter.class);
 
+    private static final int IMPORT_CHUNK_SIZE = 500;
+
+    private final ExecutorService readerExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "mds-csv-import-reader");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Stops the reader threads of imports which are still running.
+     */
+    @PreDestroy
+    public void destroy() {
+        readerExecutor.shutdownNow();
+    }
+
     /**
      * Imports instances of the given entity to the database.
      * @param entityId the ID of the entity for which instances will be imported
@@ -98,7 +119,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param writer the writer that will be used for output
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(final long entityId, final Writer writer) {
         EntityInfo entityInfo = getEntity(entityId);
         try (CsvTableWriter tableWriter = new CsvTableWriter(writer)) {
@@ -112,7 +132,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param writer the writer that will be used for output
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(final String entityClassName, final Writer writer) {
         EntityInfo entityInfo = getEntity(entityClassName);
         try (CsvTableWriter tableWriter = new CsvTableWriter(writer)) {
@@ -127,7 +146,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(final long entityId, final Writer writer, final CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityId);
         try (CsvTableWriter tableWriter = new CsvTableWriter(writer)) {
@@ -142,7 +160,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(final String entityClassName, final Writer writer, final CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityClassName);
         try (CsvTableWriter tableWriter = new CsvTableWriter(writer)) {
@@ -160,7 +177,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param lookupFields the lookupFields used in the lookup
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(long entityId, Writer writer, String lookupName, QueryParams params, List<String> headers,
                           Map<String, Object> lookupFields) {
         return exportCsv(entityId, writer, lookupName, params, headers, lookupFields,
@@ -177,7 +193,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param lookupFields the lookupFields used in the lookup
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(String entityClassName, Writer writer, String lookupName, QueryParams params, List<String> headers,
                           Map<String, Object> lookupFields) {
         return exportCsv(entityClassName, writer, lookupName, params, headers, lookupFields,
@@ -195,7 +210,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(long entityId, Writer writer, String lookupName, QueryParams params, List<String> headers,
                           Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityId);
@@ -216,7 +230,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(String entityClassName, Writer writer, String lookupName, QueryParams params, List<String> headers,
                           Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityClassName);
@@ -234,215 +247,387 @@ public class CsvImporterExporter extends AbstractMdsExporter {
                                        boolean continueOnError) {
         final MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entityInfo.getClassName());
 
-        Map<String, FieldDto> fieldCacheMap = new HashMap<>();
+        CsvMapReader csvMapReader = new CsvMapReader(reader, CsvPreference.STANDARD_PREFERENCE);
+        CsvRowReader rowReader = null;
+        try {
+            final String headers[] = csvMapReader.getHeader(true);
 
-        try (CsvMapReader csvMapReader = new CsvMapReader(reader, CsvPreference.STANDARD_PREFERENCE)) {
+            ChunkImporter importer = new ChunkImporter(entityInfo, headers, dataService, importCustomizer, continueOnError);
 
-            List<Long> newInstanceIDs = new ArrayList<>();
-            List<Long> updatedInstanceIDs = new ArrayList<>();
+            // from now on, the file is read and closed by the row reader only
+            rowReader = new CsvRowReader(csvMapReader, headers, importer.getColumns(), getImportChunkSize());
+            rowReader.start(readerExecutor);
 
-            Map <Integer, String> exceptions = new HashMap<>();
+            List<ParsedRow> chunk;
+            while ((chunk = rowReader.nextChunk()) != null) {
+                importer.importChunk(chunk);
+            }
 
-            Map<String, String> row;
-            int rowNum = 0;
+            return new CsvImportResults(entityInfo.getEntity(), importer.getNewInstanceIDs(),
+                    importer.getUpdatedInstanceIDs(), importer.getExceptions());
+        } catch (IOException e) {
+            throw new CsvImportException("IO Error when importing CSV", e);
+        } finally {
+            if (rowReader == null) {
+                IOUtils.closeQuietly(csvMapReader);
+            } else {
+                rowReader.stop();
+            }
+        }
+    }
 
-            final String headers[] = csvMapReader.getHeader(true);
+    /**
+     * Returns the number of rows imported at once. Existing and related instances of the rows in a chunk are
+     * retrieved using a single query. With the default import customizer, the instances are also created and
+     * updated in bulk, unless the entity publishes an event for every created or updated instance.
+     *
+     * @return the size of a chunk
+     */
+    protected int getImportChunkSize() {
+        return IMPORT_CHUNK_SIZE;
+    }
 
-            while ((row = csvMapReader.read(headers)) != null) {
-                rowNum++;
-                try {
-                    // import a row
-                    RowImportResult rowImportResult = importInstanceFromRow(entityInfo.getEntity(), row, headers, fieldCacheMap, entityInfo.getFieldDtos(), dataService, importCustomizer);
-                    Long id = rowImportResult.getId();
+    /**
+     * Imports the rows of a CSV file, chunk by chunk. Runs on the importing thread, since it is the one bound
+     * to the transaction of the import.
+     */
+    private class ChunkImporter {
+
+        private final Class entityClass;
+        private final String[] headers;
+        private final List<ImportColumn> columns;
+        private final MotechDataService dataService;
+        private final CsvImportCustomizer importCustomizer;
+        private final boolean continueOnError;
+        private final boolean bulk;
+        private final boolean bulkWrite;
+
+        private final List<Long> newInstanceIDs = new ArrayList<>();
+        private final List<Long> updatedInstanceIDs = new ArrayList<>();
+        private final Map<Integer, String> exceptions = new HashMap<>();
+
+        ChunkImporter(EntityInfo entityInfo, String[] headers, MotechDataService dataService,
+                      CsvImportCustomizer importCustomizer, boolean continueOnError) {
+            this.entityClass = dataService.getClassType();
+            this.headers = headers;
+            this.dataService = dataService;
+            this.importCustomizer = importCustomizer;
+            this.continueOnError = continueOnError;
+            // custom customizers, including subclasses of the default one, might find, create or update
+            // instances in their own way, so they are called for every row
+            this.bulk = DefaultCsvImportCustomizer.class.equals(importCustomizer.getClass());
+            // bulk writes publish bulk events only, so the instances are written one by one if listeners, such as
+            // task triggers, expect an event for every instance
+            this.bulkWrite = bulk && (entityInfo.getCrudEventMode() == CrudEventMode.BATCHED
+                    || !(entityInfo.isCreateEventFired() || entityInfo.isUpdateEventFired()));
+
+            columns = new ArrayList<>(headers.length);
+            for (String header : headers) {
+                FieldDto field = importCustomizer.findField(header, entityInfo.getFieldDtos());
+
+                if (field == null) {
+                    LOGGER.warn("No field with name {} in entity {}, however such row exists in CSV. Ignoring.",
+                            header, entityClass.getName());
+                    columns.add(null);
+                } else {
+                    columns.add(new ImportColumn(header, field, entityInfo.getEntity(), entityClass.getClassLoader()));
+                }
+            }
+        }
 
-                    // put its ID in the correct list
-                    if (rowImportResult.isNewInstance()) {
-                        newInstanceIDs.add(id);
-                    } else {
-                        updatedInstanceIDs.add(id);
-                    }
-                } catch (RuntimeException e){
-                    if (continueOnError) {
-                        exceptions.put(rowNum, e.getMessage());
-                    } else {
-                        throw e;
-                    }
+        void importChunk(List<ParsedRow> chunk) {
+            List<RowImport> rows = new ArrayList<>(chunk.size());
+            for (ParsedRow parsedRow : chunk) {
+                if (parsedRow.getError() == null) {
+                    rows.add(new RowImport(parsedRow));
+                } else {
+                    fail(parsedRow, parsedRow.getError());
                 }
             }
 
-            return new CsvImportResults(entityInfo.getEntity(), newInstanceIDs, updatedInstanceIDs, exceptions);
-        } catch (IOException e) {
-            throw new CsvImportException("IO Error when importing CSV", e);
-        }
-    }
+            Map<String, Map<Long, Object>> relatedInstances = retrieveRelatedInstances(rows);
 
-    private RowImportResult importInstanceFromRow(EntityDto entityDto, Map<String, String> row, String[] headers, Map<String, FieldDto> fieldMap, List<FieldDto> fields,
-                                                  MotechDataService dataService, CsvImportCustomizer importCustomizer) {
-        Class entityClass = dataService.getClassType();
+            if (bulk) {
+                findExistingInstances(rows);
+            }
 
-        boolean isNewInstance = true;
-        Object instance;
-        try {
-            instance = importCustomizer.findExistingInstance(row, dataService);
-            if (instance == null) {
-                LOGGER.debug("Creating new {}", entityClass.getName());
-                instance = entityClass.newInstance();
+            Iterator<RowImport> it = rows.iterator();
+            while (it.hasNext()) {
+                RowImport row = it.next();
+                try {
+                    prepareInstance(row, relatedInstances);
+                } catch (RuntimeException e) {
+                    fail(row.getParsedRow(), e);
+                    it.remove();
+                }
+            }
+
+            if (bulkWrite) {
+                writeInBulk(rows);
             } else {
-                isNewInstance = false;
-                LOGGER.debug("Updating {} with id {}", entityClass.getName(), row.get(Constants.Util.ID_FIELD_NAME));
+                writeOneByOne(rows);
             }
-        } catch (InstantiationException | IllegalAccessException e) {
-            throw new CsvImportException("Unable to create instance of " + entityClass.getName(), e);
         }
 
-        for (String fieldName : headers) {
-            FieldDto field = findField(fieldName, fields, fieldMap, importCustomizer);
+        @SuppressWarnings("unchecked")
+        private Map<String, Map<Long, Object>> retrieveRelatedInstances(List<RowImport> rows) {
+            Map<String, Set<Long>> relatedIds = new HashMap<>();
+            for (int i = 0; i < columns.size(); i++) {
+                ImportColumn column = columns.get(i);
+                if (column == null || !column.isRelationship()) {
+                    continue;
+                }
+
+                Set<Long> ids = relatedIds.get(column.getRelatedClass());
+                if (ids == null) {
+                    ids = new HashSet<>();
+                    relatedIds.put(column.getRelatedClass(), ids);
+                }
 
-            if (field == null) {
-                LOGGER.warn("No field with name {} in entity {}, however such row exists in CSV. Ignoring.",
-                        fieldName, entityClass.getName());
-                continue;
+                for (RowImport row : rows) {
+                    Object value = row.getParsedRow().getValue(i);
+                    if (value instanceof Collection) {
+                        ids.addAll((Collection<Long>) value);
+                    } else if (value != null) {
+                        ids.add((Long) value);
+                    }
+                }
             }
 
-            if (row.containsKey(fieldName)) {
-                String csvValue = row.get(fieldName);
+            Map<String, Map<Long, Object>> relatedInstances = new HashMap<>();
+            for (Map.Entry<String, Set<Long>> entry : relatedIds.entrySet()) {
+                Map<Long, Object> instances = new HashMap<>();
+                if (!entry.getValue().isEmpty()) {
+                    MotechDataService relatedDataService = DataServiceHelper.getDataService(getBundleContext(), entry.getKey());
+                    for (Object instance : relatedDataService.findByIds(entry.getValue())) {
+                        instances.put(getId(instance), instance);
+                    }
+                }
+                relatedInstances.put(entry.getKey(), instances);
+            }
 
-                Object parsedValue = parseValue(entityDto, csvValue, field, entityClass.getClassLoader());
+            return relatedInstances;
+        }
 
-                try {
-                    PropertyUtil.setProperty(instance, StringUtils.uncapitalize(field.getBasic().getName()), parsedValue);
-                } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-                    String msg = String.format("Error when processing field: %s, value in CSV file is %s",
-                            fieldName, csvValue);
-                    throw new CsvImportException(msg, e);
+        @SuppressWarnings("unchecked")
+        private void findExistingInstances(List<RowImport> rows) {
+            Set<Long> ids = new HashSet<>();
+
+            Iterator<RowImport> it = rows.iterator();
+            while (it.hasNext()) {
+                RowImport row = it.next();
+                String id = row.getParsedRow().getRow().get(Constants.Util.ID_FIELD_DISPLAY_NAME);
+                if (StringUtils.isNotBlank(id)) {
+                    try {
+                        row.setId(Long.valueOf(id));
+                        ids.add(row.getId());
+                    } catch (NumberFormatException e) {
+                        fail(row.getParsedRow(), e);
+                        it.remove();
+                    }
                 }
             }
-        }
 
-        Object importedInstance;
-        if (isNewInstance) {
-            importedInstance = importCustomizer.doCreate(instance, dataService);
-        } else {
-            importedInstance = importCustomizer.doUpdate(instance, dataService);
+            if (ids.isEmpty()) {
+                return;
+            }
+
+            Map<Long, Object> existingInstances = new HashMap<>();
+            for (Object instance : (List<Object>) dataService.findByIds(ids)) {
+                existingInstances.put(getId(instance), instance);
+            }
+
+            it = rows.iterator();
+            while (it.hasNext()) {
+                RowImport row = it.next();
+                if (row.getId() != null) {
+                    Object instance = existingInstances.get(row.getId());
+                    if (instance == null) {
+                        fail(row.getParsedRow(),
+                                new CsvImportException("Unable to update, no instance with id = " + row.getId()));
+                        it.remove();
+                    } else {
+                        row.setInstance(instance);
+                    }
+                }
+            }
         }
 
-        Long importedId = (Long) PropertyUtil.safeGetProperty(importedInstance, Constants.Util.ID_FIELD_NAME);
+        private void prepareInstance(RowImport row, Map<String, Map<Long, Object>> relatedInstances) {
+            Object instance = bulk
+                    ? row.getInstance()
+                    : importCustomizer.findExistingInstance(row.getParsedRow().getRow(), dataService);
 
-        return new RowImportResult(importedId, isNewInstance);
-    }
+            if (instance == null) {
+                try {
+                    instance = entityClass.newInstance();
+                } catch (InstantiationException | IllegalAccessException e) {
+                    throw new CsvImportException("Unable to create instance of " + entityClass.getName(), e);
+                }
+                row.setNewInstance(true);
+            }
+            row.setInstance(instance);
+
+            Map<String, String> csvRow = row.getParsedRow().getRow();
+            for (int i = 0; i < headers.length; i++) {
+                ImportColumn column = columns.get(i);
+                if (column == null || !csvRow.containsKey(headers[i])) {
+                    continue;
+                }
 
-    private FieldDto findField(String fieldName, List<FieldDto> fields, Map<String, FieldDto> fieldMap, CsvImportCustomizer importCustomizer) {
-        if (!fieldMap.containsKey(fieldName)) {
-            FieldDto field = importCustomizer.findField(fieldName, fields);
-            fieldMap.put(fieldName, field);
+                Object value = row.getParsedRow().getValue(i);
+                if (column.isRelationship()) {
+                    value = resolveRelationship(column, value, relatedInstances.get(column.getRelatedClass()));
+                }
+
+                column.setValue(instance, value, csvRow.get(headers[i]));
+            }
         }
-        return fieldMap.get(fieldName);
-    }
 
-    private Object parseValue(EntityDto entityDto, String csvValue, FieldDto field, ClassLoader entityCl) {
-        final TypeDto type = field.getType();
-
-        Object value;
-        if (type.isCombobox()) {
-            value = parseComboboxValue(entityDto, csvValue, field, entityCl);
-        } else if (type.isRelationship()) {
-            value = parseRelationshipValue(csvValue, field);
-        } else if (type.isMap()) {
-            MetadataDto keyMetadata = field.getMetadata(MAP_KEY_TYPE);
-            MetadataDto valueMetadata = field.getMetadata(MAP_VALUE_TYPE);
-            String mapKeyType = keyMetadata != null ? keyMetadata.getValue() : String.class.getName();
-            String mapValueType = valueMetadata != null ? valueMetadata.getValue() : String.class.getName();
-
-            value = TypeHelper.parseStringToMap(mapKeyType, mapValueType, csvValue);
-        } else {
-            value = TypeHelper.parse(csvValue, type.getTypeClass());
+        @SuppressWarnings("unchecked")
+        private Object resolveRelationship(ImportColumn column, Object ids, Map<Long, Object> relatedInstances) {
+            if (column.isCollectionRelationship()) {
+                Collection<Object> relatedObjects = column.newRelationshipCollection();
+                if (ids != null) {
+                    for (Long id : (Collection<Long>) ids) {
+                        Object relatedObj = getRelatedObject(id, column.getRelatedClass(), relatedInstances);
+                        if (relatedObj != null) {
+                            relatedObjects.add(relatedObj);
+                        }
+                    }
+                }
+                return relatedObjects;
+            } else {
+                return getRelatedObject((Long) ids, column.getRelatedClass(), relatedInstances);
+            }
         }
 
-        // for strings, return a blank if the columns is in the file
-        if (value == null && String.class.equals(type.getTypeClass())) {
-            value = "";
+        private Object getRelatedObject(Long id, String entityClass, Map<Long, Object> relatedInstances) {
+            if (id == null) {
+                return null;
+            }
+
+            Object obj = relatedInstances.get(id);
+
+            if (obj == null) {
+                LOGGER.warn("Unable to find {} instance with id {}. Ignoring, you will have to create this relationship manually",
+                        entityClass, id);
+            }
+
+            return obj;
         }
 
-        return value;
-    }
+        @SuppressWarnings("unchecked")
+        private void writeInBulk(List<RowImport> rows) {
+            List<Object> newInstances = new ArrayList<>();
+            List<Object> existingInstances = new ArrayList<>();
+            for (RowImport row : rows) {
+                if (row.isNewInstance()) {
+                    newInstances.add(row.getInstance());
+                } else {
+                    existingInstances.add(row.getInstance());
+                }
+            }
 
-    private Object parseComboboxValue(EntityDto entityDto, String csvValue, FieldDto field, ClassLoader classLoader) {
-        ComboboxHolder comboboxHolder = new ComboboxHolder(entityDto, field);
-        if (comboboxHolder.isCollection()) {
-            return TypeHelper.parse(csvValue, comboboxHolder.getTypeClassName(),
-                    comboboxHolder.getUnderlyingType(), classLoader);
-        } else {
-            return TypeHelper.parse(csvValue, comboboxHolder.getUnderlyingType(), classLoader);
+            // a failed write marks the transaction of the import for rollback, so it is not possible to carry on
+            // with the next rows, even if the import should continue on errors
+            if (!newInstances.isEmpty()) {
+                for (Object created : (List<Object>) dataService.createAll(newInstances)) {
+                    newInstanceIDs.add(getId(created));
+                }
+            }
+            if (!existingInstances.isEmpty()) {
+                for (Object updated : (List<Object>) dataService.updateAll(existingInstances)) {
+                    updatedInstanceIDs.add(getId(updated));
+                }
+            }
         }
-    }
 
-    private Object parseRelationshipValue(String csvValue, FieldDto field) {
-        RelationshipHolder relationshipHolder = new RelationshipHolder(field);
-        if (relationshipHolder.isManyToMany() || relationshipHolder.isOneToMany()) {
-            List<Long> ids = (List<Long>) TypeHelper.parse(csvValue, List.class.getName(), Long.class.getName());
-
-            Collection<Object> relatedObjects = buildRelationshipCollection(relationshipHolder);
-            if (ids != null) {
-                for (Long id : ids) {
-                    Object relatedObj = getRelatedObject(id, relationshipHolder.getRelatedClass());
-                    if (relatedObj != null) {
-                        relatedObjects.add(relatedObj);
+        private void writeOneByOne(List<RowImport> rows) {
+            for (RowImport row : rows) {
+                try {
+                    if (row.isNewInstance()) {
+                        Object created = importCustomizer.doCreate(row.getInstance(), dataService);
+                        newInstanceIDs.add(getId(created));
+                    } else {
+                        Object updated = importCustomizer.doUpdate(row.getInstance(), dataService);
+                        updatedInstanceIDs.add(getId(updated));
                     }
+                } catch (RuntimeException e) {
+                    fail(row.getParsedRow(), e);
                 }
             }
-            return relatedObjects;
-        } else {
-            Long id = (Long) TypeHelper.parse(csvValue, Long.class);
-            return getRelatedObject(id, relationshipHolder.getRelatedClass());
         }
-    }
 
-    private Collection<Object> buildRelationshipCollection(RelationshipHolder relationshipHolder) {
-        String collectionClassName = relationshipHolder.getCollectionClassName();
-        Class collectionClass = TypeHelper.suggestCollectionImplementation(collectionClassName);
-        if (collectionClass == null) {
-            return new ArrayList<>();
-        } else {
-            try {
-                return (Collection<Object>) collectionClass.newInstance();
-            } catch (InstantiationException | IllegalAccessException e) {
-                throw new CsvImportException("Unable to parse collection type " + relationshipHolder.getCollectionClassName(), e);
+        private void fail(ParsedRow row, RuntimeException e) {
+            if (continueOnError) {
+                exceptions.put(row.getRowNum(), e.getMessage());
+            } else {
+                throw e;
             }
         }
-    }
 
-    private Object getRelatedObject(Long id, String entityClass) {
-        MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entityClass);
-        Object obj = dataService.findById(id);
+        private Long getId(Object instance) {
+            return (Long) PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME);
+        }
+
+        List<ImportColumn> getColumns() {
+            return columns;
+        }
+
+        List<Long> getNewInstanceIDs() {
+            return newInstanceIDs;
+        }
 
-        if (obj == null) {
-            LOGGER.warn("Unable to find {} instance with id {}. Ignoring, you will have to create this relationship manually",
-                    entityClass, id);
+        List<Long> getUpdatedInstanceIDs() {
+            return updatedInstanceIDs;
         }
 
-        return obj;
+        Map<Integer, String> getExceptions() {
+            return exceptions;
+        }
     }
 
     /**
-     * This class represents a result of a single row import.
-     * It contains the ID of the created instance, it also contains information about whether it is a
-     * new instance.
+     * This class represents a single row being imported. It holds the instance to which the values from the row
+     * are written, it also contains information about whether it is a new instance.
      */
-    private class RowImportResult {
-        private final Long id;
-        private final boolean newInstance;
+    private static class RowImport {
+        private final ParsedRow parsedRow;
+        private Long id;
+        private Object instance;
+        private boolean newInstance;
+
+        RowImport(ParsedRow parsedRow) {
+            this.parsedRow = parsedRow;
+        }
 
-        public RowImportResult(Long id, boolean newInstance) {
-            this.id = id;
-            this.newInstance = newInstance;
+        ParsedRow getParsedRow() {
+            return parsedRow;
         }
 
-        public Long getId() {
+        Long getId() {
             return id;
         }
 
-        public boolean isNewInstance() {
+        void setId(Long id) {
+            this.id = id;
+        }
+
+        Object getInstance() {
+            return instance;
+        }
+
+        void setInstance(Object instance) {
+            this.instance = instance;
+        }
+
+        boolean isNewInstance() {
             return newInstance;
         }
+
+        void setNewInstance(boolean newInstance) {
+            this.newInstance = newInstance;
+        }
     }
 }
@@ -0,0 +1,250 @@
+package org.motechproject.mds.service.impl.csv;
+
+import org.apache.commons.io.IOUtils;
+import org.motechproject.mds.exception.csv.CsvImportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.supercsv.io.CsvMapReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and converts the rows of an imported CSV file on a separate thread, so that parsing the file
+ * overlaps with writing the previous rows to the database. Rows are handed over in chunks, through a
+ * bounded queue, so the reader is never more than a few chunks ahead of the importer. Only the conversion
+ * of values takes place on the reader thread, everything that requires the database, which is bound to the
+ * transaction of the importing thread, is left to the importer. Once started, the reader owns the file
+ * and is the only one closing it, so the file is never closed while a read is in progress.
+ */
+class CsvRowReader implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvRowReader.class);
+
+    private static final int QUEUE_CAPACITY = 4;
+    private static final long STOP_TIMEOUT_MS = 5000;
+    private static final List<ParsedRow> END = Collections.emptyList();
+
+    private final CsvMapReader csvMapReader;
+    private final String[] headers;
+    private final List<ImportColumn> columns;
+    private final int chunkSize;
+
+    private final BlockingQueue<List<ParsedRow>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private volatile boolean stopped;
+    private volatile Exception failure;
+    private boolean started;
+    private Thread thread;
+
+    /**
+     * @param csvMapReader the reader of the CSV file, with the header already read
+     * @param headers the headers of the file
+     * @param columns the columns of the import, in the order of headers, null for ignored headers
+     * @param chunkSize the maximum number of rows in a chunk
+     */
+    CsvRowReader(CsvMapReader csvMapReader, String[] headers, List<ImportColumn> columns, int chunkSize) {
+        this.csvMapReader = csvMapReader;
+        this.headers = headers;
+        this.columns = columns;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Starts reading the file on a thread of the given executor.
+     *
+     * @param executor the executor running the reader
+     */
+    void start(ExecutorService executor) {
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
+                Thread.currentThread().setContextClassLoader(classLoader);
+                try {
+                    CsvRowReader.this.run();
+                } finally {
+                    Thread.currentThread().setContextClassLoader(oldClassLoader);
+                }
+            }
+        });
+        started = true;
+    }
+
+    /**
+     * Stops the reader, if it is still running, and waits until it closes the file. Called by the importer
+     * once it is done, also when the import failed. The reader is interrupted, which ends reads of
+     * interruptible sources and waits for space in the queue. A read blocked on a source which ignores
+     * interrupts cannot be ended without the source, so after a while the importer stops waiting, and the
+     * file is closed by the reader once the read returns.
+     */
+    void stop() {
+        stopped = true;
+
+        if (!started) {
+            IOUtils.closeQuietly(csvMapReader);
+            return;
+        }
+
+        synchronized (this) {
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        try {
+            if (!finished.await(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("The CSV reader is blocked reading the file, the file will be closed once the read returns");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the next chunk of rows, waiting for the reader if necessary.
+     *
+     * @return the rows, or null if there are no more rows in the file
+     * @throws CsvImportException if reading the file failed
+     */
+    List<ParsedRow> nextChunk() {
+        List<ParsedRow> chunk;
+        try {
+            chunk = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CsvImportException("Interrupted while waiting for the CSV file to be read", e);
+        }
+
+        if (chunk == END) {
+            if (failure instanceof IOException) {
+                throw new CsvImportException("IO Error when importing CSV", failure);
+            } else if (failure != null) {
+                throw (RuntimeException) failure;
+            }
+            return null;
+        }
+
+        return chunk;
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            thread = Thread.currentThread();
+        }
+
+        try {
+            read();
+        } finally {
+            synchronized (this) {
+                // the thread goes back to the executor, it must not be interrupted by a late stop
+                thread = null;
+                Thread.interrupted();
+            }
+            IOUtils.closeQuietly(csvMapReader);
+            finished.countDown();
+        }
+    }
+
+    private void read() {
+        try {
+            List<ParsedRow> chunk = new ArrayList<>(chunkSize);
+            Map<String, String> row;
+            int rowNum = 0;
+
+            while (!stopped && (row = csvMapReader.read(headers)) != null) {
+                rowNum++;
+                chunk.add(convert(rowNum, row));
+
+                if (chunk.size() >= chunkSize) {
+                    put(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                put(chunk);
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            LOGGER.debug("CSV reader interrupted, import stopped");
+            return;
+        }
+
+        try {
+            put(END);
+        } catch (InterruptedException e) {
+            LOGGER.debug("CSV reader interrupted, import stopped");
+        }
+    }
+
+    private ParsedRow convert(int rowNum, Map<String, String> row) {
+        Object[] values = new Object[headers.length];
+        try {
+            for (int i = 0; i < headers.length; i++) {
+                ImportColumn column = columns.get(i);
+                if (column != null && row.containsKey(headers[i])) {
+                    values[i] = column.convert(row.get(headers[i]));
+                }
+            }
+            return new ParsedRow(rowNum, row, values, null);
+        } catch (RuntimeException e) {
+            return new ParsedRow(rowNum, row, values, e);
+        }
+    }
+
+    private void put(List<ParsedRow> chunk) throws InterruptedException {
+        while (!queue.offer(chunk, 1, TimeUnit.SECONDS)) {
+            if (stopped) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * A single row of the file, with values converted by the columns of the import. If the conversion failed,
+     * the row holds the exception, which is reported by the importer, when it reaches the row.
+     */
+    static class ParsedRow {
+
+        private final int rowNum;
+        private final Map<String, String> row;
+        private final Object[] values;
+        private final RuntimeException error;
+
+        ParsedRow(int rowNum, Map<String, String> row, Object[] values, RuntimeException error) {
+            this.rowNum = rowNum;
+            this.row = row;
+            this.values = values;
+            this.error = error;
+        }
+
+        int getRowNum() {
+            return rowNum;
+        }
+
+        Map<String, String> getRow() {
+            return row;
+        }
+
+        Object getValue(int column) {
+            return values[column];
+        }
+
+        RuntimeException getError() {
+            return error;
+        }
+    }
+}
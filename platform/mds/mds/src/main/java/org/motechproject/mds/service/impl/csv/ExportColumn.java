@@ -0,0 +1,78 @@
+package org.motechproject.mds.service.impl.csv;
+
+import org.apache.commons.beanutils.MethodUtils;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.util.PropertyAccessor;
+import org.motechproject.mds.util.PropertyAccessors;
+import org.motechproject.mds.util.PropertyUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * A single column of an export. The property accessor or the getter used for reading the value of the column
+ * is resolved once, for the first exported instance, instead of being looked up again for every cell.
+ */
+class ExportColumn {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExportColumn.class);
+
+    private final String header;
+    private final FieldDto field;
+
+    private Class<?> instanceClass;
+    private PropertyAccessor accessor;
+    private int accessorIndex = -1;
+    private Method getter;
+
+    ExportColumn(String header, FieldDto field) {
+        this.header = header;
+        this.field = field;
+    }
+
+    String getHeader() {
+        return header;
+    }
+
+    FieldDto getField() {
+        return field;
+    }
+
+    Object getValue(Object instance) {
+        if (instance == null) {
+            return null;
+        }
+
+        if (instance.getClass() != instanceClass) {
+            instanceClass = instance.getClass();
+            accessor = PropertyAccessors.get(instanceClass);
+            accessorIndex = accessor == null ? -1 : accessor.indexOf(field.getBasic().getName());
+            getter = accessorIndex < 0 ? resolveGetter(instance) : null;
+        }
+
+        if (accessorIndex >= 0) {
+            return accessor.get(instance, accessorIndex);
+        } else if (getter != null) {
+            try {
+                return getter.invoke(instance);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                LOGGER.debug("Unable to read {} using its getter, falling back", field.getBasic().getName(), e);
+            }
+        }
+
+        return PropertyUtil.safeGetProperty(instance, field.getBasic().getName());
+    }
+
+    private Method resolveGetter(Object instance) {
+        try {
+            PropertyDescriptor descriptor = PropertyUtil.getPropertyDescriptor(instance, field.getBasic().getName());
+            return descriptor == null ? null : MethodUtils.getAccessibleMethod(descriptor.getReadMethod());
+        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException | RuntimeException e) {
+            LOGGER.debug("Unable to resolve the getter for {}", field.getBasic().getName(), e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.motechproject.mds.service.impl.csv;
+
+import org.apache.commons.beanutils.MethodUtils;
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.domain.ComboboxHolder;
+import org.motechproject.mds.domain.RelationshipHolder;
+import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.dto.MetadataDto;
+import org.motechproject.mds.dto.TypeDto;
+import org.motechproject.mds.exception.csv.CsvImportException;
+import org.motechproject.mds.util.PropertyAccessor;
+import org.motechproject.mds.util.PropertyAccessors;
+import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.mds.util.TypeHelper;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_KEY_TYPE;
+import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_VALUE_TYPE;
+
+/**
+ * A single column of an import. Everything needed for converting the values of the column, such as the
+ * combobox settings or the map key and value types, is resolved once, when the column is created, instead of
+ * for every row. Converting values does not touch the database, so it can be done outside of the importing
+ * thread. Relationship columns are converted to ids only, related instances are retrieved by the importer.
+ */
+class ImportColumn {
+
+    private final String header;
+    private final FieldDto field;
+    private final String propertyName;
+    private final ClassLoader classLoader;
+
+    private final ComboboxHolder comboboxHolder;
+    private final RelationshipHolder relationshipHolder;
+    private final String mapKeyType;
+    private final String mapValueType;
+
+    private Class<?> instanceClass;
+    private PropertyAccessor accessor;
+    private int accessorIndex = -1;
+    private Method setter;
+
+    ImportColumn(String header, FieldDto field, EntityDto entity, ClassLoader classLoader) {
+        this.header = header;
+        this.field = field;
+        this.propertyName = StringUtils.uncapitalize(field.getBasic().getName());
+        this.classLoader = classLoader;
+
+        TypeDto type = field.getType();
+        if (type.isCombobox()) {
+            comboboxHolder = new ComboboxHolder(entity, field);
+            relationshipHolder = null;
+            mapKeyType = null;
+            mapValueType = null;
+        } else if (type.isRelationship()) {
+            comboboxHolder = null;
+            relationshipHolder = new RelationshipHolder(field);
+            mapKeyType = null;
+            mapValueType = null;
+        } else if (type.isMap()) {
+            MetadataDto keyMetadata = field.getMetadata(MAP_KEY_TYPE);
+            MetadataDto valueMetadata = field.getMetadata(MAP_VALUE_TYPE);
+
+            comboboxHolder = null;
+            relationshipHolder = null;
+            mapKeyType = keyMetadata != null ? keyMetadata.getValue() : String.class.getName();
+            mapValueType = valueMetadata != null ? valueMetadata.getValue() : String.class.getName();
+        } else {
+            comboboxHolder = null;
+            relationshipHolder = null;
+            mapKeyType = null;
+            mapValueType = null;
+        }
+    }
+
+    String getHeader() {
+        return header;
+    }
+
+    FieldDto getField() {
+        return field;
+    }
+
+    boolean isRelationship() {
+        return relationshipHolder != null;
+    }
+
+    boolean isCollectionRelationship() {
+        return relationshipHolder != null
+                && (relationshipHolder.isManyToMany() || relationshipHolder.isOneToMany());
+    }
+
+    String getRelatedClass() {
+        return relationshipHolder.getRelatedClass();
+    }
+
+    /**
+     * Converts the value from the CSV file. For relationship columns, the value is converted to the id,
+     * or to the list of ids, of the related instances.
+     *
+     * @param csvValue the value from the CSV file
+     * @return the converted value
+     */
+    Object convert(String csvValue) {
+        Object value;
+        if (comboboxHolder != null) {
+            value = comboboxHolder.isCollection()
+                    ? TypeHelper.parse(csvValue, comboboxHolder.getTypeClassName(), comboboxHolder.getUnderlyingType(), classLoader)
+                    : TypeHelper.parse(csvValue, comboboxHolder.getUnderlyingType(), classLoader);
+        } else if (relationshipHolder != null) {
+            value = isCollectionRelationship()
+                    ? TypeHelper.parse(csvValue, List.class.getName(), Long.class.getName())
+                    : TypeHelper.parse(csvValue, Long.class);
+        } else if (mapKeyType != null) {
+            value = TypeHelper.parseStringToMap(mapKeyType, mapValueType, csvValue);
+        } else {
+            value = TypeHelper.parse(csvValue, field.getType().getTypeClass());
+        }
+
+        // for strings, return a blank if the columns is in the file
+        if (value == null && String.class.equals(field.getType().getTypeClass())) {
+            value = "";
+        }
+
+        return value;
+    }
+
+    /**
+     * Builds the collection for the related instances of a collection relationship column.
+     *
+     * @return the empty collection of the type used by the relationship field
+     */
+    @SuppressWarnings("unchecked")
+    Collection<Object> newRelationshipCollection() {
+        String collectionClassName = relationshipHolder.getCollectionClassName();
+        Class collectionClass = TypeHelper.suggestCollectionImplementation(collectionClassName);
+        if (collectionClass == null) {
+            return new ArrayList<>();
+        } else {
+            try {
+                return (Collection<Object>) collectionClass.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new CsvImportException("Unable to parse collection type " + collectionClassName, e);
+            }
+        }
+    }
+
+    /**
+     * Sets the value of the column on the given instance. The property accessor or the setter is resolved once
+     * per instance class.
+     *
+     * @param instance the imported instance
+     * @param value the converted value
+     * @param csvValue the value from the CSV file, used for error messages
+     */
+    void setValue(Object instance, Object value, String csvValue) {
+        if (instance.getClass() != instanceClass) {
+            instanceClass = instance.getClass();
+            accessor = PropertyAccessors.get(instanceClass);
+            accessorIndex = accessor == null ? -1 : accessor.indexOf(propertyName);
+            setter = accessorIndex < 0 ? resolveSetter(instance) : null;
+        }
+
+        try {
+            if (accessorIndex >= 0) {
+                accessor.set(instance, accessorIndex, value);
+            } else if (setter != null) {
+                setter.invoke(instance, value);
+            } else {
+                PropertyUtil.setProperty(instance, propertyName, value);
+            }
+        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException | IllegalArgumentException |
+                ClassCastException e) {
+            String msg = String.format("Error when processing field: %s, value in CSV file is %s",
+                    header, csvValue);
+            throw new CsvImportException(msg, e);
+        }
+    }
+
+    private Method resolveSetter(Object instance) {
+        try {
+            PropertyDescriptor descriptor = PropertyUtil.getPropertyDescriptor(instance, propertyName);
+            return descriptor == null ? null : MethodUtils.getAccessibleMethod(descriptor.getWriteMethod());
+        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package org.motechproject.mds.service.impl.csv;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.query.CustomOperatorProperty;
+import org.motechproject.mds.query.Property;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.query.QueryExecutor;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.query.QueryUtil;
+import org.motechproject.mds.service.MDSLookupService;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.Order;
+import org.motechproject.mds.util.PropertyUtil;
+
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the instances to export chunk by chunk, so that only a single chunk is held in memory at once.
+ * Exports of a whole entity ordered by id use keyset pagination, meaning that every chunk is retrieved with
+ * a {@code id > lastId} condition, so retrieving a chunk does not get slower towards the end of the table.
+ * Exports using lookups or a different ordering page through the results using offsets instead, with the id
+ * added as the last ordering, so that the order is stable. If the caller requested a single page, it is
+ * retrieved at once.
+ */
+abstract class InstancePager {
+
+    private boolean done;
+
+    /**
+     * Creates the pager suitable for the given export parameters.
+     *
+     * @param dataService the data service of the entity
+     * @param lookupService the lookup service, used for lookups
+     * @param entityClassName the class name of the entity
+     * @param lookupName the name of the lookup, blank for exporting all instances
+     * @param lookupFields the lookup parameters
+     * @param params the query parameters requested for the export, might be null
+     * @param chunkSize the maximum number of instances in a chunk
+     * @return the pager
+     */
+    static InstancePager create(MotechDataService dataService, MDSLookupService lookupService, String entityClassName,
+                                String lookupName, Map<String, Object> lookupFields, QueryParams params, // NO CHECKSTYLE
+                                int chunkSize) {
+        if (params != null && params.isPagingSet()) {
+            return new SinglePagePager(dataService, lookupService, entityClassName, lookupName, lookupFields, params);
+        } else if (StringUtils.isBlank(lookupName) && isOrderedById(params)) {
+            return new KeysetPager(dataService, chunkSize);
+        } else {
+            return new OffsetPager(dataService, lookupService, entityClassName, lookupName, lookupFields, params,
+                    chunkSize);
+        }
+    }
+
+    /**
+     * Returns the next chunk of instances. Must be called within a transaction.
+     *
+     * @return the instances, empty if there are no more of them
+     */
+    List<Object> nextChunk() {
+        if (done) {
+            return Collections.emptyList();
+        }
+
+        List<Object> chunk = retrieveChunk();
+        done = isLastChunk(chunk);
+
+        return chunk;
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    protected abstract List<Object> retrieveChunk();
+
+    protected abstract boolean isLastChunk(List<Object> chunk);
+
+    private static boolean isOrderedById(QueryParams params) {
+        if (params == null || !params.isOrderSet()) {
+            return true;
+        }
+
+        List<Order> orderList = params.getOrderList();
+        Order order = orderList.get(0);
+
+        return orderList.size() == 1 && Constants.Util.ID_FIELD_NAME.equals(order.getField())
+                && order.getDirection() == Order.Direction.ASC;
+    }
+
+    private static List<Object> retrieve(MotechDataService dataService, MDSLookupService lookupService,
+                                         String entityClassName, String lookupName, Map<String, Object> lookupFields,
+                                         QueryParams params) {
+        return StringUtils.isBlank(lookupName)
+                ? dataService.retrieveAll(params)
+                : lookupService.<Object>findMany(entityClassName, lookupName, lookupFields, params);
+    }
+
+    private static class KeysetPager extends InstancePager {
+
+        private final MotechDataService dataService;
+        private final int chunkSize;
+        private Long lastId = Long.MIN_VALUE;
+
+        KeysetPager(MotechDataService dataService, int chunkSize) {
+            this.dataService = dataService;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected List<Object> retrieveChunk() {
+            List<Object> chunk = (List<Object>) dataService.executeQuery(new KeysetQueryExecution(lastId, chunkSize));
+
+            if (!chunk.isEmpty()) {
+                Object last = chunk.get(chunk.size() - 1);
+                lastId = (Long) PropertyUtil.safeGetProperty(last, Constants.Util.ID_FIELD_NAME);
+            }
+
+            return chunk;
+        }
+
+        @Override
+        protected boolean isLastChunk(List<Object> chunk) {
+            return chunk.size() < chunkSize;
+        }
+    }
+
+    private static class OffsetPager extends InstancePager {
+
+        private final MotechDataService dataService;
+        private final MDSLookupService lookupService;
+        private final String entityClassName;
+        private final String lookupName;
+        private final Map<String, Object> lookupFields;
+        private final List<Order> orderList;
+        private final int chunkSize;
+        private int page;
+
+        OffsetPager(MotechDataService dataService, MDSLookupService lookupService, String entityClassName, // NO CHECKSTYLE
+                    String lookupName, Map<String, Object> lookupFields, QueryParams params, int chunkSize) {
+            this.dataService = dataService;
+            this.lookupService = lookupService;
+            this.entityClassName = entityClassName;
+            this.lookupName = lookupName;
+            this.lookupFields = lookupFields;
+            this.chunkSize = chunkSize;
+
+            orderList = new ArrayList<>();
+            if (params != null) {
+                orderList.addAll(params.getOrderList());
+            }
+            if (params == null || !params.containsOrderOnField(Constants.Util.ID_FIELD_NAME)) {
+                orderList.add(new Order(Constants.Util.ID_FIELD_NAME, Order.Direction.ASC));
+            }
+        }
+
+        @Override
+        protected List<Object> retrieveChunk() {
+            page++;
+            QueryParams chunkParams = new QueryParams(page, chunkSize, orderList);
+            return retrieve(dataService, lookupService, entityClassName, lookupName, lookupFields, chunkParams);
+        }
+
+        @Override
+        protected boolean isLastChunk(List<Object> chunk) {
+            return chunk.size() < chunkSize;
+        }
+    }
+
+    private static class SinglePagePager extends InstancePager {
+
+        private final MotechDataService dataService;
+        private final MDSLookupService lookupService;
+        private final String entityClassName;
+        private final String lookupName;
+        private final Map<String, Object> lookupFields;
+        private final QueryParams params;
+
+        SinglePagePager(MotechDataService dataService, MDSLookupService lookupService, String entityClassName,
+                        String lookupName, Map<String, Object> lookupFields, QueryParams params) {
+            this.dataService = dataService;
+            this.lookupService = lookupService;
+            this.entityClassName = entityClassName;
+            this.lookupName = lookupName;
+            this.lookupFields = lookupFields;
+            this.params = params;
+        }
+
+        @Override
+        protected List<Object> retrieveChunk() {
+            return retrieve(dataService, lookupService, entityClassName, lookupName, lookupFields, params);
+        }
+
+        @Override
+        protected boolean isLastChunk(List<Object> chunk) {
+            return true;
+        }
+    }
+
+    private static class KeysetQueryExecution implements QueryExecution<List<Object>> {
+
+        private final Long lastId;
+        private final int chunkSize;
+
+        KeysetQueryExecution(Long lastId, int chunkSize) {
+            this.lastId = lastId;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public List<Object> execute(Query query, InstanceSecurityRestriction restriction) {
+            List<Property> properties = new ArrayList<>();
+            properties.add(new CustomOperatorProperty<>(Constants.Util.ID_FIELD_NAME, lastId, Long.class.getName(), ">"));
+
+            QueryUtil.useFilter(query, properties, restriction);
+            query.setOrdering(Constants.Util.ID_FIELD_NAME + " ascending");
+            query.setRange(0, chunkSize);
+
+            Collection collection = (Collection) QueryExecutor.executeWithArray(query, new Object[]{lastId}, restriction);
+
+            return new ArrayList<Object>(collection);
+        }
+    }
+}
@@ -26,11 +26,15 @@ import java.util.Map;
 
 /**
  * An implementation of the table writer that writes the table data in PDF format.
- * Uses the iText PDF library underneath.
+ * Uses the iText PDF library underneath. Column widths are computed from the first {@value #LAYOUT_SAMPLE_ROWS}
+ * rows, after that complete pages are written as soon as there are enough rows to fill them, so only the rows of
+ * the pages being filled are kept in memory. Values of later rows which are wider than their columns are wrapped.
  */
 public class PdfTableWriter implements TableWriter {
 
     private static final String ROW_NUMBER_HEADER = "No";
+    private static final int LAYOUT_SAMPLE_ROWS = 1000;
+    private static final int FLUSH_ROWS = 200;
     private static final float MARGIN = 36f;
     private static final float PAGE_HEIGHT = PageSize.A4.getWidth() - 2 * MARGIN;
     private static final float PAGE_WIDTH = PageSize.A4.getHeight() - 2 * MARGIN;
@@ -40,6 +44,7 @@ public class PdfTableWriter implements TableWriter {
     private final PdfContentByte pdfCanvas;
     private PdfPTable dataTable;
     private Map<String, Float> columnsWidths;
+    private List<Integer> lastColumnsForPages;
     private int rows = 0;
     private float tableContentOffset;
 
@@ -66,6 +71,13 @@ public class PdfTableWriter implements TableWriter {
         for (String header : headers) {
             writeCell(header, row.get(header));
         }
+
+        if (lastColumnsForPages == null && rows >= LAYOUT_SAMPLE_ROWS) {
+            layoutTable();
+        }
+        if (lastColumnsForPages != null && pendingRows() >= FLUSH_ROWS) {
+            writeTable(false);
+        }
     }
 
     @Override
@@ -83,35 +95,72 @@ public class PdfTableWriter implements TableWriter {
 
     @Override
     public void close() {
+        try {
+            if (lastColumnsForPages == null) {
+                layoutTable();
+            }
+
+            writeTable(true);
+
+            pdfDocument.close();
+        } finally {
+            pdfWriter.close();
+        }
+    }
+
+    private void layoutTable() {
         try {
             float[] relativeWidths = getRelativeWidths();
 
-            List<Integer> lastColumnsForPages = calculateLastColumnsForPages(relativeWidths);
+            lastColumnsForPages = calculateLastColumnsForPages(relativeWidths);
             resizeColumns(relativeWidths, lastColumnsForPages);
             setTableContentOffset(relativeWidths[0]);
 
             dataTable.setWidths(relativeWidths);
             dataTable.setLockedWidth(true);
             dataTable.setTotalWidth(calculateTotalTableWidth(relativeWidths));
-
-            writeTable(lastColumnsForPages);
-
-            pdfDocument.close();
         } catch (DocumentException e) {
             throw new DataExportException("Unable to add a table to the PDF file", e);
-        } finally {
-            pdfWriter.close();
         }
     }
 
-    private void writeTable(List<Integer> lastColumnsForPages) {
+    /**
+     * Writes the pending rows of the table. Unless this is the last write, only pages that are completely filled
+     * are written and the rows of the last page are left for the next write. Written rows are removed from the
+     * table.
+     *
+     * @param last true if no more rows will be added
+     */
+    private void writeTable(boolean last) {
 
         //1 is the index of first non-header row
         int currentRow = 1;
 
-        do {
+        while (tableHasMoreRows(currentRow) && (last || rowsFillPage(currentRow))) {
             currentRow = writePages(lastColumnsForPages, currentRow);
-        } while (tableHasMoreRows(currentRow));
+        }
+
+        for (int i = 1; i < currentRow; i++) {
+            dataTable.deleteRow(1);
+        }
+    }
+
+    private boolean rowsFillPage(int firstRow) {
+        float available = PAGE_HEIGHT - dataTable.getRowHeight(0);
+        float height = 0;
+
+        for (int row = firstRow; row < dataTable.getRows().size(); row++) {
+            height += dataTable.getRowHeight(row);
+            if (height > available) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private int pendingRows() {
+        return dataTable.getRows().size() - 1;
     }
 
     private int writePages(List<Integer> lastColumnsForPages, int firstRow) {
@@ -162,7 +211,10 @@ public class PdfTableWriter implements TableWriter {
         // add as a cell to the table
         PdfPCell cell = new PdfPCell(new Phrase(chunk));
         dataTable.addCell(cell);
-        updateWidthIfNeeded(column, cell);
+        // widths of columns are fixed once the table is laid out
+        if (lastColumnsForPages == null) {
+            updateWidthIfNeeded(column, cell);
+        }
     }
 
     private void writeHeaderCell(String column) {
@@ -10,6 +10,7 @@ import org.osgi.framework.BundleContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.jdo.PersistenceManagerFactory;
@@ -24,6 +25,7 @@ import java.util.Collection;
 public abstract class BasePersistenceService {
 
     private PersistenceManagerFactory persistenceManagerFactory;
+    private PlatformTransactionManager transactionManager;
     private BundleContext bundleContext;
     private ApplicationContext appContext;
 
@@ -91,6 +93,16 @@ public abstract class BasePersistenceService {
         this.persistenceManagerFactory = persistenceManagerFactory;
     }
 
+    protected PlatformTransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    @Autowired
+    @Qualifier("transactionManager")
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionManager = transactionManager;
+    }
+
     @Autowired
     public void setBundleContext(BundleContext bundleContext) {
         this.bundleContext = bundleContext;
@@ -1,5 +1,9 @@
 package org.motechproject.mds.service.impl.history;
 
+import org.apache.commons.lang.ArrayUtils;
+import org.datanucleus.api.jdo.NucleusJDOHelper;
+import org.motechproject.mds.config.HistoryMode;
+import org.motechproject.mds.config.MdsConfig;
 import org.motechproject.mds.domain.EntityType;
 import org.motechproject.mds.service.HistoryTrashClassHelper;
 import org.motechproject.mds.query.Property;
@@ -11,27 +15,45 @@ import org.motechproject.mds.util.Order;
 import org.motechproject.mds.util.PropertyUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PreDestroy;
 import javax.jdo.JDOHelper;
 import javax.jdo.PersistenceManager;
 import javax.jdo.Query;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.motechproject.mds.util.Constants.Config.MDS_HISTORY_MODE;
+import static org.motechproject.mds.util.Constants.Config.MODULE_FILE;
 import static org.motechproject.mds.util.Constants.Util.ID_FIELD_NAME;
+import static org.motechproject.mds.util.Constants.Util.INSTANCE_VERSION_FIELD_NAME;
 
 /**
  * Default implementation of {@link org.motechproject.mds.service.HistoryService} interface.
+ * Changes of instances are detected using the dirty fields tracked by JDO, registered before the instances
+ * are stored, so the latest historical revision has to be loaded and compared with the instance only if
+ * the changes were not registered. Depending on the {@link HistoryMode}, revisions are written either in the
+ * transaction of the changes, or after it commits, by the {@link HistoryWriter}.
  */
 public class HistoryServiceImpl extends BasePersistenceService implements HistoryService {
     private static final Logger LOGGER = LoggerFactory.getLogger(HistoryServiceImpl.class);
 
+    // fields maintained by MDS and DataNucleus, changes of which alone are not recorded
+    private static final String[] UNTRACKED_FIELDS = { ID_FIELD_NAME, INSTANCE_VERSION_FIELD_NAME };
+
     private ThreadLocal<RecordRepository> recordRepositoryTL = new ThreadLocal<>();
     private ThreadLocal<Boolean> txSyncRegisteredTL = new ThreadLocal<>();
 
+    private MdsConfig mdsConfig;
+
+    private HistoryMode historyMode;
+    private HistoryWriter historyWriter;
+
     @Override
     @Transactional
     public void record(Object instance) {
@@ -60,6 +82,31 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         }
     }
 
+    @Override
+    public void registerChanges(Object instance) {
+        if (instance == null || JDOHelper.isNew(instance)
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            // new instances are always recorded, changes outside of transactions are not tracked
+            return;
+        }
+
+        PersistenceManager manager = JDOHelper.getPersistenceManager(instance);
+        String[] dirtyFields = manager == null ? null : NucleusJDOHelper.getDirtyFields(instance, manager);
+
+        if (dirtyFields != null) {
+            boolean changed = false;
+            for (String field : dirtyFields) {
+                if (!ArrayUtils.contains(UNTRACKED_FIELDS, field)) {
+                    changed = true;
+                    break;
+                }
+            }
+
+            registerPreCommitTxSync();
+            getRecordRepository().registerChanges(instance, changed);
+        }
+    }
+
     @Override
     @Transactional
     public List getHistoryForInstance(Object instance, QueryParams queryParams) {
@@ -123,9 +170,15 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         } else if (getRecordRepository().contains(historyClass.getName(), instanceId)) {
             // if it was already recorded in this tx, then we want to update it
             return true;
+        } else if (getRecordRepository().hasChanges(instance) != null) {
+            // changed fields were registered before the instance was stored, no need for db query
+            return getRecordRepository().hasChanges(instance);
         } else {
             // check if there are any changes, this will prevent double history in case of cascading etc.
-            Object latestHistoryRev = getLatestRevision(historyClass, instanceId);
+            Object latestHistoryRev = getPendingRevision(historyClass, instanceId);
+            if (latestHistoryRev == null) {
+                latestHistoryRev = getLatestRevision(historyClass, instanceId);
+            }
             if (latestHistoryRev == null) {
                 // no history, record data (possible in case of changing the record history setting for an entity)
                 return true;
@@ -142,10 +195,15 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
 
         setHistoryProperties(currentHistoryInstance, instance);
 
-        PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+        if (getHistoryMode() == HistoryMode.ASYNC) {
+            // the record will be written by the history writer, once the transaction commits
+            LOGGER.debug("Queue a new history entry for {}", instance.getClass().getName());
+        } else {
+            PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
 
-        LOGGER.debug("Create a new history entry for {}", instance.getClass().getName());
-        manager.makePersistent(currentHistoryInstance);
+            LOGGER.debug("Create a new history entry for {}", instance.getClass().getName());
+            manager.makePersistent(currentHistoryInstance);
+        }
 
         return currentHistoryInstance;
     }
@@ -162,6 +220,14 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
                 HistoryTrashClassHelper.historySchemaVersion(newHistoryObj.getClass()), schemaVersion);
     }
 
+    private Object getPendingRevision(Class<?> historyClass, Long instanceId) {
+        // in the asynchronous mode, revisions newer than the latest one in the database might be waiting
+        // for the history writer
+        return getHistoryMode() == HistoryMode.ASYNC
+                ? getHistoryWriter().getPendingRevision(historyClass, instanceId)
+                : null;
+    }
+
     private Object getLatestRevision(Class<?> historyClass, Long instanceId) {
         Query query = initQuery(historyClass);
         QueryUtil.setQueryParams(query,
@@ -185,6 +251,36 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
         return query;
     }
 
+    private HistoryMode getHistoryMode() {
+        if (historyMode == null) {
+            historyMode = mdsConfig == null
+                    ? HistoryMode.SYNC
+                    : HistoryMode.fromString(mdsConfig.getProperties(MODULE_FILE).getProperty(MDS_HISTORY_MODE));
+            LOGGER.info("Recording history in the {} mode", historyMode);
+        }
+        return historyMode;
+    }
+
+    private synchronized HistoryWriter getHistoryWriter() {
+        if (historyWriter == null) {
+            historyWriter = new HistoryWriter(getPersistenceManagerFactory(),
+                    new TransactionTemplate(getTransactionManager()));
+        }
+        return historyWriter;
+    }
+
+    @PreDestroy
+    public synchronized void destroy() {
+        if (historyWriter != null) {
+            historyWriter.stop();
+        }
+    }
+
+    @Autowired
+    public void setMdsConfig(MdsConfig mdsConfig) {
+        this.mdsConfig = mdsConfig;
+    }
+
     private RecordRepository getRecordRepository() {
         RecordRepository repository = recordRepositoryTL.get();
         if (repository == null) {
@@ -205,8 +301,19 @@ public class HistoryServiceImpl extends BasePersistenceService implements Histor
     /**
      * This TX sync does history related cleanup once a TX completes.
      * It clears the repository of the records we have stored in this TX.
+     * In the asynchronous mode, it also passes the records to the history writer once the TX commits.
      */
     private class HistoryPersistSynchronization extends TransactionSynchronizationAdapter {
+        @Override
+        public void afterCommit() {
+            if (getHistoryMode() == HistoryMode.ASYNC) {
+                List<Object> records = getRecordRepository().getRecords();
+                if (!records.isEmpty()) {
+                    getHistoryWriter().submit(records);
+                }
+            }
+        }
+
         @Override
         public void afterCompletion(int status) {
             getRecordRepository().clear();
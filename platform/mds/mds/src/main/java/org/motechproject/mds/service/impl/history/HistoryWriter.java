@@ -0,0 +1,166 @@
+package org.motechproject.mds.service.impl.history;
+
+import org.motechproject.mds.service.HistoryTrashClassHelper;
+import org.motechproject.mds.util.PropertyUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.jdo.PersistenceManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes historical revisions to the database on a separate thread, used by the {@link HistoryServiceImpl}
+ * in the {@link org.motechproject.mds.config.HistoryMode#ASYNC} mode. Revisions of committed transactions
+ * are queued and written in batches, each batch in its own transaction, so a single insert transaction
+ * covers the revisions of many small transactions. Revisions which could not be written are logged and
+ * dropped, they are never retried. The latest revision of every instance is available through
+ * {@link #getPendingRevision(Class, Long)} until it is written, since it is not in the database until then.
+ */
+class HistoryWriter implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HistoryWriter.class);
+
+    private static final int BATCH_SIZE = 500;
+    private static final long POLL_TIMEOUT_MS = 1000;
+    private static final long STOP_TIMEOUT_MS = 30000;
+
+    private final PersistenceManagerFactory persistenceManagerFactory;
+    private final TransactionTemplate transactionTemplate;
+
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    // the latest revisions, queued or being written, by the history class and the id of the instance
+    private final Map<String, Object> pendingRevisions = new ConcurrentHashMap<>();
+
+    private volatile boolean stopped;
+    private Thread thread;
+
+    /**
+     * @param persistenceManagerFactory the transaction aware factory of persistence managers
+     * @param transactionTemplate the template used for the transactions writing revisions
+     */
+    HistoryWriter(PersistenceManagerFactory persistenceManagerFactory, TransactionTemplate transactionTemplate) {
+        this.persistenceManagerFactory = persistenceManagerFactory;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Queues the given revisions for writing, starting the writer thread if it is not running yet.
+     *
+     * @param records the historical revisions of a committed transaction
+     */
+    synchronized void submit(Collection<Object> records) {
+        if (stopped) {
+            // the history service is being destroyed, no point in queueing
+            write(new ArrayList<>(records));
+            return;
+        }
+
+        for (Object record : records) {
+            pendingRevisions.put(pendingKey(record), record);
+        }
+        queue.addAll(records);
+
+        if (thread == null) {
+            thread = new Thread(this, "mds-history-writer");
+            thread.setDaemon(true);
+            thread.setContextClassLoader(Thread.currentThread().getContextClassLoader());
+            thread.start();
+        }
+    }
+
+    /**
+     * Returns the latest revision of the given instance which was submitted, but was not written yet.
+     *
+     * @param historyClass the history class of the entity
+     * @param instanceId the id of the instance
+     * @return the latest pending revision, or null if all revisions of the instance were written
+     */
+    Object getPendingRevision(Class<?> historyClass, Long instanceId) {
+        return pendingRevisions.get(pendingKey(historyClass, instanceId));
+    }
+
+    /**
+     * Stops the writer thread, waiting until it writes all queued revisions.
+     */
+    void stop() {
+        Thread writerThread;
+        synchronized (this) {
+            stopped = true;
+            writerThread = thread;
+        }
+
+        if (writerThread != null) {
+            try {
+                writerThread.join(STOP_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (!queue.isEmpty()) {
+            LOGGER.error("{} historical revisions were not written before the history writer stopped", queue.size());
+        }
+    }
+
+    @Override
+    public void run() {
+        while (!stopped || !queue.isEmpty()) {
+            try {
+                Object record = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (record == null) {
+                    continue;
+                }
+
+                List<Object> batch = new ArrayList<>(BATCH_SIZE);
+                batch.add(record);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+
+                write(batch);
+            } catch (InterruptedException e) {
+                LOGGER.warn("History writer interrupted, {} historical revisions were not written", queue.size());
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void write(final List<Object> batch) {
+        LOGGER.debug("Writing {} historical revisions", batch.size());
+
+        try {
+            transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    persistenceManagerFactory.getPersistenceManager().makePersistentAll(batch);
+                }
+            });
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to write {} historical revisions", batch.size(), e);
+        } finally {
+            for (Object record : batch) {
+                // unless a newer revision of the instance was submitted in the meantime
+                pendingRevisions.remove(pendingKey(record), record);
+            }
+        }
+    }
+
+    private String pendingKey(Object record) {
+        Class<?> historyClass = record.getClass();
+        Object instanceId = PropertyUtil.safeGetProperty(record, HistoryTrashClassHelper.currentVersion(historyClass));
+        return pendingKey(historyClass, (Long) instanceId);
+    }
+
+    private String pendingKey(Class<?> historyClass, Long instanceId) {
+        return historyClass.getName() + '#' + instanceId;
+    }
+}
@@ -1,12 +1,16 @@
 package org.motechproject.mds.service.impl.history;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * This class is responsible for storing records persisted in history during a single TX.
  * The purpose is updating records in case one record gets multiple store events, which may
- * happen in case of relationship trees.
+ * happen in case of relationship trees. It also keeps track of instances changed in the TX, registered
+ * before they get stored.
  */
 class RecordRepository {
 
@@ -15,6 +19,9 @@ class RecordRepository {
     // the value is the historical record
     private Map<String, Map<Long, Object>> recordMap = new HashMap<>();
 
+    // instances registered before they were stored, the value tells whether any of their fields changed
+    private Map<Object, Boolean> changes = new IdentityHashMap<>();
+
     void store(Long id, Object object) {
         String className = object.getClass().getName();
         getMapForEntityClass(className).put(id, object);
@@ -28,8 +35,26 @@ class RecordRepository {
         return getMapForEntityClass(className).containsKey(id);
     }
 
+    void registerChanges(Object instance, boolean changed) {
+        Boolean previous = changes.get(instance);
+        changes.put(instance, changed || Boolean.TRUE.equals(previous));
+    }
+
+    Boolean hasChanges(Object instance) {
+        return changes.get(instance);
+    }
+
+    List<Object> getRecords() {
+        List<Object> records = new ArrayList<>();
+        for (Map<Long, Object> mapForEntity : recordMap.values()) {
+            records.addAll(mapForEntity.values());
+        }
+        return records;
+    }
+
     void clear() {
         recordMap.clear();
+        changes.clear();
     }
 
     private Map<Long, Object> getMapForEntityClass(String className) {
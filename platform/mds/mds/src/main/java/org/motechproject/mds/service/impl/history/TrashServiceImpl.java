@@ -1,6 +1,7 @@
 package org.motechproject.mds.service.impl.history;
 
 import org.apache.commons.beanutils.MethodUtils;
+import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.mds.config.DeleteMode;
 import org.motechproject.mds.config.SettingsService;
 import org.motechproject.mds.domain.EntityType;
@@ -12,24 +13,42 @@ import org.motechproject.mds.service.HistoryTrashClassHelper;
 import org.motechproject.mds.service.MdsSchedulerService;
 import org.motechproject.mds.service.TrashService;
 import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.PropertyUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.jdo.PersistenceManager;
 import javax.jdo.Query;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Default implementation of {@link org.motechproject.mds.service.TrashService} interface.
+ * Instances deleted in bulk are moved to trash with a single batch of inserts, the trash listener
+ * skips them when they are deleted afterwards. The trash is emptied in chunks, each deleted in its
+ * own transaction, so that emptying a large trash does not require loading all of it at once.
  */
 public class TrashServiceImpl extends BasePersistenceService implements TrashService {
     private static final Logger LOGGER = LoggerFactory.getLogger(TrashServiceImpl.class);
 
+    private static final int EMPTY_TRASH_CHUNK_SIZE = 500;
+
+    // instances already moved to trash in bulk, which are about to be deleted in the current transaction
+    private static final ThreadLocal<Set<Object>> MOVED_TO_TRASH = new ThreadLocal<>();
+
     private MdsSchedulerService mdsSchedulerService;
     private SettingsService settingsService;
 
@@ -41,33 +60,95 @@ public class TrashServiceImpl extends BasePersistenceService implements TrashSer
     @Override
     @Transactional
     public void moveToTrash(Object instance, Long entityVersion) {
-        Class<?> trashClass = HistoryTrashClassHelper.getClass(instance, EntityType.TRASH,
-                getBundleContext());
+        Set<Object> movedToTrash = MOVED_TO_TRASH.get();
+        if (movedToTrash != null && movedToTrash.remove(instance)) {
+            LOGGER.trace("{} was already moved to trash", instance);
+            return;
+        }
 
-        if (null != trashClass) {
-            LOGGER.debug("Moving {} to trash", instance);
+        Class<?> trashClass = getTrashClass(instance);
 
-            // create and save a trash instance
-            LOGGER.debug("Creating trash instance for: {}", instance);
+        LOGGER.debug("Moving {} to trash", instance);
 
-            Object trash = create(trashClass, instance, null);
+        Object trash = createTrashInstance(trashClass, instance, entityVersion);
 
-            LOGGER.debug("Created trash instance for: {}", instance);
+        PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
 
-            try {
-                MethodUtils.invokeMethod(trash, "setSchemaVersion", entityVersion);
-            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-                LOGGER.error("Failed to set schema version of the trash instance.");
-            }
+        manager.makePersistent(trash);
+    }
+
+    @Override
+    @Transactional
+    public void moveToTrash(Collection instances, Long schemaVersion) {
+        if (instances.isEmpty()) {
+            return;
+        }
+
+        Class<?> trashClass = getTrashClass(instances.iterator().next());
+        Set<Object> movedToTrash = getMovedToTrash();
 
-            PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+        LOGGER.debug("Moving {} instances to trash", instances.size());
 
-            manager.makePersistent(trash);
-        } else {
+        List<Object> trashInstances = new ArrayList<>(instances.size());
+        for (Object instance : instances) {
+            trashInstances.add(createTrashInstance(trashClass, instance, schemaVersion));
+            movedToTrash.add(instance);
+        }
+
+        PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+
+        manager.makePersistentAll(trashInstances);
+    }
+
+    private Class<?> getTrashClass(Object instance) {
+        Class<?> trashClass = HistoryTrashClassHelper.getClass(instance, EntityType.TRASH,
+                getBundleContext());
+
+        if (null == trashClass) {
             throw new IllegalStateException(
                     "Not found the trash class for " + instance.getClass().getName()
             );
         }
+
+        return trashClass;
+    }
+
+    private Object createTrashInstance(Class<?> trashClass, Object instance, Long entityVersion) {
+        LOGGER.debug("Creating trash instance for: {}", instance);
+
+        Object trash = create(trashClass, instance, null);
+
+        LOGGER.debug("Created trash instance for: {}", instance);
+
+        try {
+            MethodUtils.invokeMethod(trash, "setSchemaVersion", entityVersion);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            LOGGER.error("Failed to set schema version of the trash instance.");
+        }
+
+        PropertyUtil.safeSetProperty(trash, Constants.Util.TRASH_DATE_FIELD_NAME, DateUtil.now().toDate());
+
+        return trash;
+    }
+
+    private Set<Object> getMovedToTrash() {
+        Set<Object> movedToTrash = MOVED_TO_TRASH.get();
+
+        if (movedToTrash == null) {
+            movedToTrash = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+            MOVED_TO_TRASH.set(movedToTrash);
+
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        MOVED_TO_TRASH.remove();
+                    }
+                });
+            }
+        }
+
+        return movedToTrash;
     }
 
     @Override
@@ -150,19 +231,72 @@ public class TrashServiceImpl extends BasePersistenceService implements TrashSer
     }
 
     @Override
-    @Transactional
     public void emptyTrash(Collection<String> entitiesClassNames) {
-        PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+        Date deletedBefore = getEmptyTrashCutoff();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(getTransactionManager());
+
+        LOGGER.info("Emptying trash of {} entities, removing instances moved to trash before {}",
+                entitiesClassNames.size(), deletedBefore);
+
+        long startTime = System.currentTimeMillis();
+        long total = 0;
 
         for (String className : entitiesClassNames) {
             Class<?> trashClass = HistoryTrashClassHelper.getClass(className, EntityType.TRASH,
                     getBundleContext());
 
-            Query query = manager.newQuery(trashClass);
-            Collection instances = (Collection) query.execute();
+            total += emptyTrash(trashClass, deletedBefore, transactionTemplate);
+        }
+
+        LOGGER.info("Emptied trash, removed {} instances in {} ms", total, System.currentTimeMillis() - startTime);
+    }
 
-            manager.deletePersistentAll(instances);
+    private long emptyTrash(final Class<?> trashClass, final Date deletedBefore,
+                            TransactionTemplate transactionTemplate) {
+        long startTime = System.currentTimeMillis();
+        long total = 0;
+        int deleted;
+
+        do {
+            deleted = transactionTemplate.execute(new TransactionCallback<Integer>() {
+                @Override
+                public Integer doInTransaction(TransactionStatus status) {
+                    PersistenceManager manager = getPersistenceManagerFactory().getPersistenceManager();
+
+                    // instances trashed before the trash date was recorded have no date, they are always removed
+                    Query query = manager.newQuery(trashClass);
+                    query.setFilter(String.format("%1$s == null || %1$s < deletedBefore",
+                            Constants.Util.TRASH_DATE_FIELD_NAME));
+                    query.declareParameters("java.util.Date deletedBefore");
+                    query.setRange(0, EMPTY_TRASH_CHUNK_SIZE);
+
+                    Collection instances = (Collection) query.execute(deletedBefore);
+                    int size = instances.size();
+
+                    manager.deletePersistentAll(instances);
+
+                    return size;
+                }
+            });
+
+            total += deleted;
+            LOGGER.debug("Removed {} instances of {} from trash, {} so far", deleted, trashClass.getName(), total);
+        } while (deleted == EMPTY_TRASH_CHUNK_SIZE);
+
+        if (total > 0) {
+            LOGGER.info("Removed {} instances of {} from trash in {} ms", total, trashClass.getName(),
+                    System.currentTimeMillis() - startTime);
         }
+
+        return total;
+    }
+
+    private Date getEmptyTrashCutoff() {
+        Integer timeValue = settingsService.getTimeValue();
+        Long timeUnit = settingsService.getTimeUnit().inMillis();
+        long retention = null == timeValue ? 0 : timeValue * timeUnit;
+
+        return DateUtil.now().minus(retention).toDate();
     }
 
     @Autowired
@@ -0,0 +1,21 @@
+package org.motechproject.mds.util;
+
+/**
+ * This enum describes how instances of an entity are kept in the level 2 cache of the MDS data store.
+ */
+public enum CachePolicy {
+    /**
+     * Instances of the entity are not cached, every retrieval goes to the database.
+     */
+    OFF,
+    /**
+     * Instances of the entity are cached until they are changed. Results of lookups are also cached. Suitable
+     * for reference data, which is read often and rarely changes.
+     */
+    READ_MOSTLY,
+    /**
+     * Instances of the entity are cached for a limited time only, after which they are retrieved from the
+     * database again. Results of lookups are not cached.
+     */
+    TIME_TO_LIVE
+}
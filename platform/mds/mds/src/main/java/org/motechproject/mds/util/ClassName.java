@@ -130,6 +130,22 @@ public final class ClassName {
         return String.format("%s.%sServiceImpl", packageName, getSimpleName(className));
     }
 
+    /**
+     * Retrieves fully qualified class name of the {@link PropertyAccessor} generated for the entity.
+     *
+     * @param className entity class name
+     * @return fully qualified property accessor name
+     */
+    public static String getAccessorName(String className) {
+        String packageName = getPackage(className);
+        if (StringUtils.isBlank(packageName) || Constants.PackagesGenerated.ENTITY.equals(packageName)) {
+            packageName = Constants.PackagesGenerated.ACCESSOR;
+        } else {
+            packageName += ".mdsaccessorimpl";
+        }
+        return String.format("%s.%sAccessor", packageName, getSimpleName(className));
+    }
+
     /**
      * Returns the Spring bean name for the service class.
      * @param className the name of the service class
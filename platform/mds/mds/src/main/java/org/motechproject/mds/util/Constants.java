@@ -155,6 +155,14 @@ public final class Constants {
          */
         public static final String SERVICE_IMPL = SERVICE + ".impl";
 
+        /**
+         * Constant <code>ACCESSOR</code> presents a package for generated property accessors of entities.
+         *
+         * @see #ENTITY
+         * @see org.motechproject.mds.util.PropertyAccessor
+         */
+        public static final String ACCESSOR = ENTITY + ".accessor";
+
         private PackagesGenerated() {
         }
     }
@@ -231,6 +239,26 @@ public final class Constants {
          */
         public static final String MDS_RESTART_BUNDLE_AFTER_TIMEOUT = "mds.restartBundle.afterTimeout";
 
+        /**
+         * The property that specifies when historical revisions are written to the database. The following
+         * values are valid for this property:
+         * <ul>
+         * <li>sync</li>
+         * <li>async</li>
+         * </ul>
+         *
+         * @see org.motechproject.mds.config.HistoryMode
+         */
+        public static final String MDS_HISTORY_MODE = "mds.history.mode";
+
+        /**
+         * The property that specifies whether the entities bundle should be constructed incrementally. If it is
+         * set to true, the enhanced classes of entities which did not change, together with the entities
+         * they depend on, are reused instead of being built and enhanced again. The enhanced classes are also
+         * kept on disk, so that they can be reused after a restart.
+         */
+        public static final String MDS_INCREMENTAL_CONSTRUCTION = "mds.entities.incremental";
+
         /**
          * Constant <code>EMPTY_TRASH_JOB</code> presents a name of job scheduled by scheduler
          * module.
@@ -443,6 +471,7 @@ public final class Constants {
         public static final String MODIFIED_BY_DISPLAY_FIELD_NAME = "Modified By";
         public static final String MODIFICATION_DATE_DISPLAY_FIELD_NAME = "Modification Date";
         public static final String SCHEMA_VERSION_FIELD_NAME = "schemaVersion";
+        public static final String TRASH_DATE_FIELD_NAME = "trashDate";
         public static final String CURRENT_VERSION = "CurrentVersion";
         public static final String DATANUCLEUS = "datanucleus";
         public static final String VALUE_GENERATOR = "object-value-generator";
@@ -568,6 +597,8 @@ public final class Constants {
         public static final String NAMESPACE = "namespace";
         public static final String ENTITY_CLASS = "entity_class";
         public static final String OBJECT_ID = "object_id";
+        public static final String OBJECT_IDS = "object_ids";
+        public static final String ORIGIN_INSTANCE_ID = "origin_instance_id";
 
         private static final String CSV_IMPORT_PREFIX = "csv-import.";
         public static final String CSV_IMPORT_CREATED_IDS = CSV_IMPORT_PREFIX + "created_ids";
@@ -581,8 +612,10 @@ public final class Constants {
 
         // subject
         public static final String BASE_SUBJECT = "mds.crud.";
+        public static final String BULK_SUBJECT_SUFFIX = ".bulk";
         public static final String CSV_IMPORT_SUCCESS = "csv-import.success";
         public static final String CSV_IMPORT_FAILURE = "csv-import.failure";
+        public static final String EVICT_ENTITY_CACHE = "org_motechproject_mds_evict_entity_cache";
     }
 
     public static final class DisplayNames {
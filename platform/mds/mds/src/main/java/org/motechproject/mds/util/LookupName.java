@@ -41,6 +41,26 @@ public final class LookupName {
         return "count" + StringUtils.capitalize(lookupMethod(lookupNameOrMethodName));
     }
 
+    /**
+     * Builds streaming lookup name. The resulting method name will be in form: <code>streamXxxYyyZzz</code>.
+     *
+     * @param lookupNameOrMethodName name of the lookup or lookup method name
+     * @return streaming lookup method name
+     */
+    public static String lookupStreamMethod(String lookupNameOrMethodName) {
+        return "stream" + StringUtils.capitalize(lookupMethod(lookupNameOrMethodName));
+    }
+
+    /**
+     * Builds bulk lookup name. The resulting method name will be in form: <code>bulkXxxYyyZzz</code>.
+     *
+     * @param lookupNameOrMethodName name of the lookup or lookup method name
+     * @return bulk lookup method name
+     */
+    public static String lookupBulkMethod(String lookupNameOrMethodName) {
+        return "bulk" + StringUtils.capitalize(lookupMethod(lookupNameOrMethodName));
+    }
+
     /**
      * Builds lookup field name which may contain information about the searching by relationship.
      *
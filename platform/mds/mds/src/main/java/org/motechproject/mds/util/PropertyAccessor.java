@@ -0,0 +1,108 @@
+package org.motechproject.mds.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>PropertyAccessor</code> reads and writes properties of instances of a single entity class
+ * without using reflection. An implementation is generated for each entity together with its repository
+ * and service, see {@link org.motechproject.mds.builder.EntityInfrastructureBuilder}. It calls the getters
+ * and setters of the entity directly. Properties are addressed by their index, which should be resolved
+ * once with {@link #indexOf(String)} and then reused for every instance. Only properties with both a public
+ * getter and a public setter are available through the accessor.
+ */
+public abstract class PropertyAccessor {
+
+    private final String[] propertyNames;
+    private final Map<String, Integer> indexes;
+
+    protected PropertyAccessor(String[] propertyNames) {
+        this.propertyNames = propertyNames;
+        this.indexes = new HashMap<>();
+
+        for (int i = 0; i < propertyNames.length; ++i) {
+            indexes.put(propertyNames[i], i);
+        }
+    }
+
+    /**
+     * Returns the names of all properties available through this accessor, in the order of their indexes.
+     *
+     * @return the names of the properties
+     */
+    public List<String> getPropertyNames() {
+        return Collections.unmodifiableList(Arrays.asList(propertyNames));
+    }
+
+    /**
+     * Returns the index of the property with the given name.
+     *
+     * @param propertyName the name of the property
+     * @return the index of the property, or -1 if the property is not available through this accessor
+     */
+    public int indexOf(String propertyName) {
+        Integer index = indexes.get(propertyName);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the value of the property with the given index. Primitive values are boxed.
+     *
+     * @param instance the instance to read from
+     * @param index the index of the property
+     * @return the value of the property
+     * @throws IllegalArgumentException if there is no property with the given index
+     */
+    public abstract Object get(Object instance, int index);
+
+    /**
+     * Sets the value of the property with the given index. Null values are ignored for primitive properties.
+     *
+     * @param instance the instance to write to
+     * @param index the index of the property
+     * @param value the new value of the property
+     * @throws IllegalArgumentException if there is no property with the given index
+     * @throws ClassCastException if the value does not match the type of the property
+     */
+    public abstract void set(Object instance, int index, Object value);
+
+    /**
+     * Copies the value of the property with the given index from one instance to another.
+     *
+     * @param target the instance to write to
+     * @param source the instance to read from
+     * @param index the index of the property
+     */
+    public void copy(Object target, Object source, int index) {
+        set(target, index, get(source, index));
+    }
+
+    /**
+     * Compares the values of the property with the given index of two instances. Null values are greater than
+     * any other value, the same as with the {@link org.apache.commons.collections.comparators.NullComparator}
+     * used for ordering instances in memory.
+     *
+     * @param first the first instance
+     * @param second the second instance
+     * @param index the index of the property
+     * @return a negative number, zero or a positive number if the value of the first instance is lower than,
+     * equal to or greater than the value of the second one
+     * @throws ClassCastException if the values are not comparable
+     */
+    @SuppressWarnings("unchecked")
+    public int compare(Object first, Object second, int index) {
+        Object firstValue = get(first, index);
+        Object secondValue = get(second, index);
+
+        if (firstValue == null) {
+            return secondValue == null ? 0 : 1;
+        } else if (secondValue == null) {
+            return -1;
+        } else {
+            return ((Comparable<Object>) firstValue).compareTo(secondValue);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.motechproject.mds.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The <code>PropertyAccessors</code> keeps the {@link PropertyAccessor} instances of the entities that are
+ * currently available. Accessors are registered by the services of the entities, so that they can be used by
+ * {@link PropertyUtil} and the other code which reads or writes properties of instances. When there is no
+ * accessor for a class, the properties are accessed through reflection.
+ */
+public final class PropertyAccessors {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PropertyAccessors.class);
+
+    private static final Map<Class<?>, PropertyAccessor> ACCESSORS = new ConcurrentHashMap<>();
+
+    private PropertyAccessors() {
+    }
+
+    /**
+     * Loads the accessor generated for the given entity class and registers it.
+     *
+     * @param entityClass the entity class
+     * @param classLoader the class loader which can load the generated accessor
+     * @return the registered accessor, or null if the accessor could not be loaded
+     */
+    public static PropertyAccessor register(Class<?> entityClass, ClassLoader classLoader) {
+        String accessorName = ClassName.getAccessorName(entityClass.getName());
+
+        try {
+            PropertyAccessor accessor = (PropertyAccessor) classLoader.loadClass(accessorName).newInstance();
+            register(entityClass, accessor);
+            return accessor;
+        } catch (ClassNotFoundException e) {
+            LOGGER.debug("No property accessor for {}, reflection will be used", entityClass.getName());
+        } catch (InstantiationException | IllegalAccessException | ClassCastException e) {
+            LOGGER.warn("Unable to create the property accessor for {}, reflection will be used",
+                    entityClass.getName(), e);
+        }
+
+        unregister(entityClass);
+        return null;
+    }
+
+    /**
+     * Registers the given accessor for the given entity class.
+     *
+     * @param entityClass the entity class
+     * @param accessor the accessor of the entity
+     */
+    public static void register(Class<?> entityClass, PropertyAccessor accessor) {
+        ACCESSORS.put(entityClass, accessor);
+    }
+
+    /**
+     * Removes the accessor of the given entity class.
+     *
+     * @param entityClass the entity class
+     */
+    public static void unregister(Class<?> entityClass) {
+        ACCESSORS.remove(entityClass);
+    }
+
+    /**
+     * Returns the accessor registered for the given class. Accessors are registered for exact classes only,
+     * an accessor of a superclass is not returned for its subclasses.
+     *
+     * @param clazz the class of the instances
+     * @return the accessor, or null if there is none
+     */
+    public static PropertyAccessor get(Class<?> clazz) {
+        return ACCESSORS.get(clazz);
+    }
+}
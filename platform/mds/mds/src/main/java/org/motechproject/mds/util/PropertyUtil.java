@@ -23,7 +23,8 @@ import java.util.Set;
 /**
  * The <code>PropertyUtil</code> util class provides the same method like
  * {@link org.apache.commons.beanutils.PropertyUtils} and two additional methods for safe writing
- * and reading property in the given bean.
+ * and reading property in the given bean. Properties of entities are accessed through their generated
+ * {@link PropertyAccessor}, when one is registered in {@link PropertyAccessors}, and through reflection otherwise.
  */
 public final class PropertyUtil extends PropertyUtils {
     private static final Logger LOGGER = LoggerFactory.getLogger(PropertyUtil.class);
@@ -63,13 +64,19 @@ public final class PropertyUtil extends PropertyUtils {
     public static void safeSetProperty(Object bean, String name, Object value) {
         try {
             if (null != bean) {
-                if (isWriteable(bean, name)) {
+                PropertyAccessor accessor = PropertyAccessors.get(bean.getClass());
+                int index = null == accessor ? -1 : accessor.indexOf(name);
+
+                if (index >= 0) {
+                    accessor.set(bean, index, value);
+                } else if (isWriteable(bean, name)) {
                     setProperty(bean, name, value);
                 } else if (Character.isUpperCase(name.charAt(0))) {
                     safeSetProperty(bean, StringUtils.uncapitalize(name), value);
                 }
             }
-        } catch (IllegalArgumentException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+        } catch (IllegalArgumentException | ClassCastException | IllegalAccessException | InvocationTargetException |
+                NoSuchMethodException e) {
             LOGGER.error(
                     "There was a problem with set value {} for property {} in bean: {}",
                     value, name, bean, e);
@@ -81,7 +88,12 @@ public final class PropertyUtil extends PropertyUtils {
 
         try {
             if (null != bean) {
-                if (isReadable(bean, name)) {
+                PropertyAccessor accessor = PropertyAccessors.get(bean.getClass());
+                int index = null == accessor ? -1 : accessor.indexOf(name);
+
+                if (index >= 0) {
+                    value = accessor.get(bean, index);
+                } else if (isReadable(bean, name)) {
                     value = getProperty(bean, name);
                 } else if (Character.isUpperCase(name.charAt(0))) {
                     return safeGetProperty(bean, StringUtils.uncapitalize(name));
@@ -118,6 +130,12 @@ public final class PropertyUtil extends PropertyUtils {
 
     public static void copyProperties(Object target, Object object, ValueConverter converter,
                                       Set<String> fieldsToUpdate) {
+        PropertyAccessor accessor = null == converter ? getCommonAccessor(target, object) : null;
+        if (null != accessor) {
+            copyProperties(accessor, target, object, fieldsToUpdate);
+            return;
+        }
+
         ValueConverter converterToUse = converter == null ? NO_OP_CONVERTER : converter;
 
         Class objectClass = object.getClass();
@@ -149,6 +167,11 @@ public final class PropertyUtil extends PropertyUtils {
     }
 
     public static List<String> findChangedFields(Object newInstance, Object oldInstance, ValueConverter valueConverter) {
+        PropertyAccessor accessor = null == valueConverter ? getCommonAccessor(newInstance, oldInstance) : null;
+        if (null != accessor) {
+            return findChangedFields(accessor, newInstance, oldInstance);
+        }
+
         ValueConverter converterToUse = valueConverter == null ? NO_OP_CONVERTER : valueConverter;
 
         Class objectClass = newInstance.getClass();
@@ -185,29 +208,73 @@ public final class PropertyUtil extends PropertyUtils {
         return changedProperties;
     }
 
-    private static boolean shouldSkipField(PropertyDescriptor descriptor, Class objectClass,
-                                           Set<String> fieldsToUpdate) {
-        if (fieldsToUpdate != null && !fieldsToUpdate.contains(descriptor.getName())) {
-            // if we have a list of fields to update, then skip if this field is not on it
-            return true;
+    private static void copyProperties(PropertyAccessor accessor, Object target, Object object,
+                                       Set<String> fieldsToUpdate) {
+        // both objects are of the same class, so every property is present in the target
+        List<String> propertyNames = accessor.getPropertyNames();
+
+        for (int i = 0; i < propertyNames.size(); ++i) {
+            if (shouldSkipField(propertyNames.get(i), fieldsToUpdate)) {
+                continue;
+            }
+
+            try {
+                accessor.copy(target, object, i);
+            } catch (RuntimeException e) {
+                throw new PropertyCopyException("Unable to copy properties for " + object.getClass().getName(), e);
+            }
         }
+    }
 
-        if (fieldsToUpdate == null && ArrayUtils.contains(Constants.Util.GENERATED_FIELD_NAMES,
-                descriptor.getName())) {
-            // we skip generated fields unless we have fields explicitly provided
-            return true;
+    private static List<String> findChangedFields(PropertyAccessor accessor, Object newInstance,
+                                                  Object oldInstance) {
+        List<String> propertyNames = accessor.getPropertyNames();
+        List<String> changedProperties = new ArrayList<>();
+
+        for (int i = 0; i < propertyNames.size(); ++i) {
+            String fieldName = propertyNames.get(i);
+
+            // skip the id field
+            if (Constants.Util.ID_FIELD_NAME.equals(fieldName)) {
+                continue;
+            }
+
+            try {
+                if (!Objects.equals(accessor.get(newInstance, i), accessor.get(oldInstance, i))) {
+                    changedProperties.add(fieldName);
+                }
+            } catch (RuntimeException e) {
+                throw new PropertyReadException("Unable to compare properties for " +
+                        newInstance.getClass().getName(), e);
+            }
         }
 
-        if (fieldsToUpdate == null && Constants.Util.INSTANCE_VERSION_FIELD_NAME.equals(descriptor.getName())) {
-            // skip the version field
+        return changedProperties;
+    }
+
+    private static PropertyAccessor getCommonAccessor(Object first, Object second) {
+        // target and value can have different classes - for example when copying to history
+        return first.getClass() == second.getClass() ? PropertyAccessors.get(first.getClass()) : null;
+    }
+
+    private static boolean shouldSkipField(PropertyDescriptor descriptor, Class objectClass,
+                                           Set<String> fieldsToUpdate) {
+        return shouldSkipField(descriptor.getName(), fieldsToUpdate) || !readWriteAccessible(objectClass, descriptor);
+    }
+
+    private static boolean shouldSkipField(String fieldName, Set<String> fieldsToUpdate) {
+        if (fieldsToUpdate != null && !fieldsToUpdate.contains(fieldName)) {
+            // if we have a list of fields to update, then skip if this field is not on it
             return true;
         }
 
-        if (!readWriteAccessible(objectClass, descriptor)) {
+        if (fieldsToUpdate == null && ArrayUtils.contains(Constants.Util.GENERATED_FIELD_NAMES, fieldName)) {
+            // we skip generated fields unless we have fields explicitly provided
             return true;
         }
 
-        return false;
+        // skip the version field
+        return fieldsToUpdate == null && Constants.Util.INSTANCE_VERSION_FIELD_NAME.equals(fieldName);
     }
 
     private static boolean readWriteAccessible(Class objectClass, PropertyDescriptor descriptor) {
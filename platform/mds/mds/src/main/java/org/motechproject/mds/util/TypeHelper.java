@@ -21,6 +21,8 @@ import org.motechproject.commons.date.model.Time;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.time.LocalDateTime;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
@@ -271,6 +273,10 @@ public final class TypeHelper {
                 return LocaleUtils.toLocale(str);
             } else if (Byte[].class.isAssignableFrom(toClass)) {
                 return ArrayUtils.toObject(str.getBytes());
+            } else if (BigDecimal.class.isAssignableFrom(toClass)) {
+                return new BigDecimal(str);
+            } else if (BigInteger.class.isAssignableFrom(toClass)) {
+                return new BigInteger(str);
             } else {
                 return MethodUtils.invokeStaticMethod(toClass, "valueOf", str);
             }
@@ -0,0 +1,3 @@
+-- Adds the CRUD event mode of entities
+
+ALTER TABLE "Tracking" ADD "crudEventMode" varchar(255) DEFAULT NULL;
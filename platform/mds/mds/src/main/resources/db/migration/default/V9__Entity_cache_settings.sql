@@ -0,0 +1,5 @@
+-- Adds the cache settings of entities
+
+ALTER TABLE "Entity" ADD "cachePolicy" varchar(255) DEFAULT NULL;
+ALTER TABLE "Entity" ADD "cacheTimeToLive" integer DEFAULT NULL;
+ALTER TABLE "Entity" ADD "cacheMaxSize" integer DEFAULT NULL;
@@ -0,0 +1,3 @@
+-- Adds the CRUD event mode of entities
+
+ALTER TABLE Tracking ADD crudEventMode varchar(255) CHARACTER SET latin1 COLLATE latin1_bin DEFAULT NULL;
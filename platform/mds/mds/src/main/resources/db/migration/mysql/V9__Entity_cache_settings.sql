@@ -0,0 +1,5 @@
+-- Adds the cache settings of entities
+
+ALTER TABLE Entity ADD cachePolicy varchar(255) CHARACTER SET latin1 COLLATE latin1_bin DEFAULT NULL;
+ALTER TABLE Entity ADD cacheTimeToLive int(11) DEFAULT NULL;
+ALTER TABLE Entity ADD cacheMaxSize int(11) DEFAULT NULL;
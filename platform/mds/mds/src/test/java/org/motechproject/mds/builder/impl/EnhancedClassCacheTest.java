@@ -0,0 +1,109 @@
+package org.motechproject.mds.builder.impl;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.motechproject.mds.domain.ClassData;
+import org.motechproject.mds.domain.EntityType;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EnhancedClassCacheTest {
+
+    private static final String ENTITY = "org.motechproject.mds.entity.Patient";
+    private static final String HISTORY = "org.motechproject.mds.entity.history.Patient__History";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "cache");
+    }
+
+    @Test
+    public void shouldReuseClassesOnlyForSameFingerprint() {
+        EnhancedClassCache cache = new EnhancedClassCache(null, null);
+
+        cache.put(ENTITY, "abc", Arrays.asList(new ClassData(ENTITY, new byte[]{1})));
+
+        assertTrue(cache.contains(ENTITY, "abc"));
+        assertFalse(cache.contains(ENTITY, "def"));
+        assertFalse(cache.contains(HISTORY, "abc"));
+    }
+
+    @Test
+    public void shouldLoadClassesWrittenBySameBuild() {
+        EnhancedClassCache cache = new EnhancedClassCache(directory, "1.0/123");
+        cache.put(ENTITY, "abc", Arrays.asList(
+                new ClassData(ENTITY, "module", "ns", new byte[]{1, 2, 3}),
+                new ClassData(HISTORY, "module", null, new byte[]{4, 5}, EntityType.HISTORY)));
+
+        EnhancedClassCache loaded = new EnhancedClassCache(directory, "1.0/123");
+
+        assertTrue(loaded.contains(ENTITY, "abc"));
+
+        ClassData entity = loaded.get(ENTITY, ENTITY);
+        assertEquals("module", entity.getModule());
+        assertEquals("ns", entity.getNamespace());
+        assertEquals(EntityType.STANDARD, entity.getType());
+        assertArrayEquals(new byte[]{1, 2, 3}, entity.getBytecode());
+
+        ClassData history = loaded.get(ENTITY, HISTORY);
+        assertNull(history.getNamespace());
+        assertEquals(EntityType.HISTORY, history.getType());
+        assertArrayEquals(new byte[]{4, 5}, history.getBytecode());
+    }
+
+    @Test
+    public void shouldIgnoreClassesWrittenByAnotherBuild() {
+        new EnhancedClassCache(directory, "1.0/123").put(ENTITY, "abc",
+                Arrays.asList(new ClassData(ENTITY, new byte[]{1})));
+
+        EnhancedClassCache loaded = new EnhancedClassCache(directory, "1.0/456");
+
+        assertFalse(loaded.contains(ENTITY, "abc"));
+        assertFalse(new File(directory, ENTITY + ".classes").exists());
+    }
+
+    @Test
+    public void shouldRemoveClassesOfRemovedEntities() {
+        EnhancedClassCache cache = new EnhancedClassCache(directory, "1.0/123");
+        cache.put(ENTITY, "abc", Arrays.asList(new ClassData(ENTITY, new byte[]{1})));
+
+        cache.retain(Collections.<String>emptyList());
+
+        assertFalse(cache.contains(ENTITY, "abc"));
+        assertFalse(new EnhancedClassCache(directory, "1.0/123").contains(ENTITY, "abc"));
+    }
+
+    @Test
+    public void shouldDeleteOnlyOwnFilesWhenCleared() throws IOException {
+        EnhancedClassCache cache = new EnhancedClassCache(directory, "1.0/123");
+        cache.put(ENTITY, "abc", Arrays.asList(new ClassData(ENTITY, new byte[]{1})));
+
+        File other = new File(directory, "other");
+        assertTrue(other.mkdir());
+        File otherFile = new File(directory, "other.dat");
+        assertTrue(otherFile.createNewFile());
+
+        cache.clear();
+
+        assertFalse(cache.contains(ENTITY, "abc"));
+        assertFalse(new File(directory, ENTITY + ".classes").exists());
+        assertTrue(other.isDirectory());
+        assertTrue(otherFile.exists());
+    }
+}
@@ -20,8 +20,10 @@ import org.motechproject.mds.dto.LookupFieldType;
 import org.motechproject.mds.dto.SchemaHolder;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.repository.MotechDataRepository;
+import org.motechproject.mds.testutil.EntBuilderTestClass;
 import org.motechproject.mds.util.ClassName;
 import org.motechproject.mds.util.MDSClassLoader;
+import org.motechproject.mds.util.PropertyAccessor;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -149,6 +151,66 @@ public class EntityInfrastructureBuilderTest {
         verifyFetchDepthInRepository(mdsClassLoaderImpl.loadClass(SAMPLE_WITH_LOOKUPS_REPOSITORY), -1);
     }
 
+    @Test
+    public void shouldCreatePropertyAccessor() throws Exception {
+        MDSClassLoader mdsClassLoaderImpl = MDSClassLoader.getStandaloneInstance(getClass().getClassLoader());
+
+        EntityDto entity = new EntityDto(EntBuilderTestClass.class.getName());
+        List<ClassData> data = entityInfrastructureBuilder.buildInfrastructure(entity, schemaHolder);
+
+        String accessorName = ClassName.getAccessorName(EntBuilderTestClass.class.getName());
+        assertThat(data, hasItem(Matchers.<ClassData>hasProperty("className", equalTo(accessorName))));
+
+        for (ClassData classData : data) {
+            mdsClassLoaderImpl.safeDefineClass(classData.getClassName(), classData.getBytecode());
+        }
+
+        PropertyAccessor accessor = (PropertyAccessor) mdsClassLoaderImpl.loadClass(accessorName).newInstance();
+        int strIndex = accessor.indexOf("testStr");
+        int boolIndex = accessor.indexOf("testBool");
+
+        assertTrue(strIndex >= 0);
+        assertTrue(boolIndex >= 0);
+        assertEquals(-1, accessor.indexOf("class"));
+
+        EntBuilderTestClass first = new EntBuilderTestClass();
+        EntBuilderTestClass second = new EntBuilderTestClass();
+
+        assertEquals("defValForTestStr", accessor.get(first, strIndex));
+        assertEquals(false, accessor.get(first, boolIndex));
+
+        accessor.set(first, strIndex, "abc");
+        accessor.set(first, boolIndex, true);
+        // null leaves a primitive unchanged
+        accessor.set(first, boolIndex, null);
+
+        assertEquals("abc", first.getTestStr());
+        assertTrue(first.isTestBool());
+
+        accessor.copy(second, first, boolIndex);
+        assertTrue(second.isTestBool());
+
+        assertTrue(accessor.compare(first, second, strIndex) < 0);
+        second.setTestStr(null);
+        assertTrue(accessor.compare(first, second, strIndex) < 0);
+        assertEquals(0, accessor.compare(first, second, boolIndex));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownPropertyIndex() throws Exception {
+        MDSClassLoader mdsClassLoaderImpl = MDSClassLoader.getStandaloneInstance(getClass().getClassLoader());
+
+        EntityDto entity = new EntityDto(EntBuilderTestClass.class.getName());
+        for (ClassData classData : entityInfrastructureBuilder.buildInfrastructure(entity, schemaHolder)) {
+            mdsClassLoaderImpl.safeDefineClass(classData.getClassName(), classData.getBytecode());
+        }
+
+        String accessorName = ClassName.getAccessorName(EntBuilderTestClass.class.getName());
+        PropertyAccessor accessor = (PropertyAccessor) mdsClassLoaderImpl.loadClass(accessorName).newInstance();
+
+        accessor.get(new EntBuilderTestClass(), accessor.getPropertyNames().size());
+    }
+
     private void verifySingleLookup(Class<?> serviceClass) throws NoSuchMethodException {
         Method method = getLookupWithoutParams(serviceClass);
         assertEquals(SampleWithLookups.class, method.getReturnType());
@@ -0,0 +1,137 @@
+package org.motechproject.mds.builder.impl;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.mds.javassist.MotechClassPool;
+import org.motechproject.mds.testutil.AccessorTestClass;
+import org.motechproject.mds.util.ClassName;
+import org.motechproject.mds.util.MDSClassLoader;
+import org.motechproject.mds.util.PropertyAccessor;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PropertyAccessorBuilderTest {
+
+    private PropertyAccessor accessor;
+
+    @Before
+    public void setUp() throws Exception {
+        ClassPool classPool = MotechClassPool.getDefault();
+        String accessorName = ClassName.getAccessorName(AccessorTestClass.class.getName());
+
+        CtClass accessorClass = classPool.getOrNull(accessorName);
+        if (null != accessorClass) {
+            accessorClass.detach();
+        }
+        accessorClass = classPool.makeClass(accessorName, classPool.getCtClass(PropertyAccessor.class.getName()));
+
+        PropertyAccessorBuilder builder = new PropertyAccessorBuilder(
+                classPool.getCtClass(AccessorTestClass.class.getName()), accessorClass);
+
+        accessorClass.addConstructor(builder.buildConstructor());
+        accessorClass.addMethod(builder.buildGetMethod());
+        accessorClass.addMethod(builder.buildSetMethod());
+
+        MDSClassLoader classLoader = MDSClassLoader.getStandaloneInstance(getClass().getClassLoader());
+        classLoader.safeDefineClass(accessorName, accessorClass.toBytecode());
+
+        accessor = (PropertyAccessor) classLoader.loadClass(accessorName).newInstance();
+    }
+
+    @Test
+    public void shouldIncludeOnlyReadWritePropertiesOrderedByName() {
+        // read only, overloaded and mismatched properties are left to reflection
+        assertEquals(asList("count", "ratio", "tags", "testBool", "testStr", "total"), accessor.getPropertyNames());
+        assertEquals(-1, accessor.indexOf("readOnly"));
+        assertEquals(-1, accessor.indexOf("overloaded"));
+        assertEquals(-1, accessor.indexOf("mismatched"));
+        assertEquals(-1, accessor.indexOf("class"));
+    }
+
+    @Test
+    public void shouldGetAndSetProperties() {
+        AccessorTestClass instance = new AccessorTestClass();
+
+        accessor.set(instance, accessor.indexOf("count"), 5);
+        accessor.set(instance, accessor.indexOf("ratio"), 0.5);
+        accessor.set(instance, accessor.indexOf("total"), 7L);
+        accessor.set(instance, accessor.indexOf("tags"), asList("a", "b"));
+        accessor.set(instance, accessor.indexOf("testStr"), "inherited");
+        accessor.set(instance, accessor.indexOf("testBool"), true);
+
+        assertEquals(5, instance.getCount());
+        assertEquals(0.5, instance.getRatio(), 0);
+        assertEquals(Long.valueOf(7), instance.getTotal());
+        assertEquals(asList("a", "b"), instance.getTags());
+        assertEquals("inherited", instance.getTestStr());
+        assertTrue(instance.isTestBool());
+
+        // primitives are boxed
+        assertEquals(5, accessor.get(instance, accessor.indexOf("count")));
+        assertEquals(0.5, accessor.get(instance, accessor.indexOf("ratio")));
+        assertEquals(true, accessor.get(instance, accessor.indexOf("testBool")));
+        assertEquals("inherited", accessor.get(instance, accessor.indexOf("testStr")));
+    }
+
+    @Test
+    public void shouldIgnoreNullsForPrimitivesOnly() {
+        AccessorTestClass instance = new AccessorTestClass();
+        instance.setCount(5);
+        instance.setTotal(7L);
+
+        accessor.set(instance, accessor.indexOf("count"), null);
+        accessor.set(instance, accessor.indexOf("total"), null);
+
+        assertEquals(5, instance.getCount());
+        assertNull(instance.getTotal());
+    }
+
+    @Test
+    public void shouldCopyProperties() {
+        AccessorTestClass source = new AccessorTestClass();
+        AccessorTestClass target = new AccessorTestClass();
+        source.setTestStr("copied");
+        source.setCount(3);
+
+        accessor.copy(target, source, accessor.indexOf("testStr"));
+        accessor.copy(target, source, accessor.indexOf("count"));
+
+        assertEquals("copied", target.getTestStr());
+        assertEquals(3, target.getCount());
+    }
+
+    @Test
+    public void shouldCompareWithNullsLast() {
+        AccessorTestClass first = new AccessorTestClass();
+        AccessorTestClass second = new AccessorTestClass();
+        int totalIndex = accessor.indexOf("total");
+
+        assertEquals(0, accessor.compare(first, second, totalIndex));
+
+        first.setTotal(1L);
+        assertTrue(accessor.compare(first, second, totalIndex) < 0);
+        assertTrue(accessor.compare(second, first, totalIndex) > 0);
+
+        second.setTotal(2L);
+        assertTrue(accessor.compare(first, second, totalIndex) < 0);
+
+        second.setTotal(1L);
+        assertEquals(0, accessor.compare(first, second, totalIndex));
+        assertEquals(0, accessor.compare(first, second, accessor.indexOf("count")));
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void shouldRejectValueOfWrongType() {
+        accessor.set(new AccessorTestClass(), accessor.indexOf("total"), "7");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownIndexWhenSetting() {
+        accessor.set(new AccessorTestClass(), accessor.getPropertyNames().size(), "value");
+    }
+}
@@ -2,9 +2,17 @@ package org.motechproject.mds.event;
 
 import org.junit.Test;
 
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
 import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.motechproject.mds.util.Constants.MDSEvents.BASE_SUBJECT;
+import static org.motechproject.mds.util.Constants.MDSEvents.ENTITY_NAME;
+import static org.motechproject.mds.util.Constants.MDSEvents.OBJECT_ID;
+import static org.motechproject.mds.util.Constants.MDSEvents.OBJECT_IDS;
 import static org.motechproject.mds.event.CrudEventType.CREATE;
 
 public class CrudEventBuilderTest {
@@ -36,4 +44,24 @@ public class CrudEventBuilderTest {
 
         assertThat(subject, equalTo(expected));
     }
+
+    @Test
+    public void shouldReturnValidBulkSubject() {
+        String subject = CrudEventBuilder.createBulkSubject(MODULE, NAMESPACE, ENTITY, CREATE);
+        String expected = BASE_SUBJECT + MODULE + "." + NAMESPACE + "." + ENTITY + "." + CREATE + ".bulk";
+
+        assertThat(subject, equalTo(expected));
+    }
+
+    @Test
+    public void shouldBuildBulkEventParams() {
+        List<Long> ids = asList(1L, 2L, 3L);
+
+        Map<String, Object> params = CrudEventBuilder.buildBulkEventParams(MODULE, NAMESPACE, ENTITY,
+                "org.test.Entity", ids);
+
+        assertThat(params.get(OBJECT_IDS), equalTo((Object) ids));
+        assertThat(params.get(ENTITY_NAME), equalTo((Object) ENTITY));
+        assertFalse(params.containsKey(OBJECT_ID));
+    }
 }
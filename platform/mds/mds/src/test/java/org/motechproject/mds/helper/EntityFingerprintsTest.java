@@ -0,0 +1,93 @@
+package org.motechproject.mds.helper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.mds.domain.OneToOneRelationship;
+import org.motechproject.mds.dto.EntityDto;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.dto.MetadataDto;
+import org.motechproject.mds.dto.SchemaHolder;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.Mockito.when;
+import static org.motechproject.mds.testutil.FieldTestHelper.fieldDto;
+import static org.motechproject.mds.util.Constants.MetadataKeys.RELATED_CLASS;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EntityFingerprintsTest {
+
+    @Mock
+    private SchemaHolder schemaHolder;
+
+    private EntityDto patient;
+    private EntityDto clinic;
+    private EntityDto child;
+    private EntityDto parent;
+
+    private List<EntityDto> entities;
+
+    @Before
+    public void setUp() {
+        patient = new EntityDto("Patient");
+        clinic = new EntityDto("Clinic");
+        parent = new EntityDto("Parent");
+        child = new EntityDto("Child");
+        child.setSuperClass("Parent");
+
+        FieldDto clinicField = fieldDto("clinic", OneToOneRelationship.class);
+        clinicField.addMetadata(new MetadataDto(RELATED_CLASS, "Clinic"));
+
+        when(schemaHolder.getFields(patient)).thenReturn(asList(fieldDto("name", String.class), clinicField));
+        when(schemaHolder.getFields(clinic)).thenReturn(singletonList(fieldDto("name", String.class)));
+        when(schemaHolder.getFields(parent)).thenReturn(singletonList(fieldDto("name", String.class)));
+        when(schemaHolder.getFields(child)).thenReturn(singletonList(fieldDto("age", Integer.class)));
+
+        entities = asList(patient, clinic, parent, child);
+    }
+
+    @Test
+    public void shouldComputeSameFingerprintsForSameSchema() {
+        assertEquals(EntityFingerprints.compute(entities, schemaHolder, null),
+                EntityFingerprints.compute(entities, schemaHolder, null));
+    }
+
+    @Test
+    public void shouldChangeFingerprintsOfDependentEntities() {
+        Map<String, String> before = EntityFingerprints.compute(entities, schemaHolder, null);
+
+        when(schemaHolder.getFields(clinic)).thenReturn(asList(fieldDto("name", String.class),
+                fieldDto("address", String.class)));
+        parent.setMaxFetchDepth(3);
+
+        Map<String, String> after = EntityFingerprints.compute(entities, schemaHolder, null);
+
+        assertNotEquals(before.get("Clinic"), after.get("Clinic"));
+        assertNotEquals(before.get("Patient"), after.get("Patient"));
+        assertNotEquals(before.get("Parent"), after.get("Parent"));
+        assertNotEquals(before.get("Child"), after.get("Child"));
+    }
+
+    @Test
+    public void shouldNotChangeFingerprintsOfEntitiesOutsideOfDependencyClosure() {
+        Map<String, String> before = EntityFingerprints.compute(entities, schemaHolder, null);
+
+        when(schemaHolder.getFields(patient)).thenReturn(singletonList(fieldDto("name", String.class)));
+        child.setRecordHistory(true);
+
+        Map<String, String> after = EntityFingerprints.compute(entities, schemaHolder, null);
+
+        assertNotEquals(before.get("Patient"), after.get("Patient"));
+        assertNotEquals(before.get("Child"), after.get("Child"));
+        assertEquals(before.get("Clinic"), after.get("Clinic"));
+        assertEquals(before.get("Parent"), after.get("Parent"));
+    }
+}
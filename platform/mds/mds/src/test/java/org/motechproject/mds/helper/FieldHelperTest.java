@@ -12,7 +12,9 @@ import org.motechproject.mds.dto.LookupDto;
 import org.motechproject.mds.dto.MetadataDto;
 import org.motechproject.mds.dto.TypeDto;
 import org.motechproject.mds.dto.ValidationCriterionDto;
+import org.motechproject.mds.event.CrudEventMode;
 import org.motechproject.mds.testutil.FieldTestHelper;
+import org.motechproject.mds.util.CachePolicy;
 import org.motechproject.mds.util.Constants;
 
 import java.util.ArrayList;
@@ -61,6 +63,19 @@ public class FieldHelperTest {
         assertTrue(advancedSettingsDto.getIndexes().get(1).isSingleObjectReturn());
     }
 
+    @Test
+    public void shouldSetEnumValuesFromTheirNames() {
+        AdvancedSettingsDto advancedSettingsDto = advancedSettingsDto();
+
+        FieldHelper.setField(advancedSettingsDto, "tracking.crudEventMode", asList("BATCHED"));
+        assertEquals(CrudEventMode.BATCHED, advancedSettingsDto.getTracking().getCrudEventMode());
+
+        FieldHelper.setField(advancedSettingsDto, "cache.policy", asList("TIME_TO_LIVE"));
+        FieldHelper.setField(advancedSettingsDto, "cache.timeToLive", asList(60));
+        assertEquals(CachePolicy.TIME_TO_LIVE, advancedSettingsDto.getCache().getPolicy());
+        assertEquals(Integer.valueOf(60), advancedSettingsDto.getCache().getTimeToLive());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void shouldThrowIllegalArgumentExceptionForWrongPaths() {
         FieldHelper.setField(fieldDto(), "wrong.wrong.wrong", asList("val"));
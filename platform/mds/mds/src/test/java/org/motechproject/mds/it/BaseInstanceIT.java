@@ -6,8 +6,10 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.motechproject.mds.builder.MDSConstructor;
 import org.motechproject.mds.dto.AdvancedSettingsDto;
+import org.motechproject.mds.dto.CacheSettingsDto;
 import org.motechproject.mds.dto.EntityDto;
 import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.dto.LookupDto;
 import org.motechproject.mds.dto.SchemaHolder;
 import org.motechproject.mds.dto.TrackingDto;
 import org.motechproject.mds.entityinfo.EntityInfo;
@@ -173,6 +175,33 @@ public abstract class BaseInstanceIT extends BaseIT {
     }
 
 
+    /**
+     * Returns the lookups of the entity, created together with its fields.
+     *
+     * @return the lookups, none by default
+     */
+    protected List<LookupDto> getEntityLookups() {
+        return new ArrayList<>();
+    }
+
+    /**
+     * Returns the tracking settings the data service of the entity is initialized with.
+     *
+     * @return the tracking settings, by default with all CRUD events published individually
+     */
+    protected TrackingDto getTracking() {
+        return new TrackingDto();
+    }
+
+    /**
+     * Returns the cache settings the data service of the entity is initialized with.
+     *
+     * @return the cache settings, by default with caching turned off
+     */
+    protected CacheSettingsDto getCacheSettings() {
+        return new CacheSettingsDto();
+    }
+
     /**
      * Override this to inject an actual implementation of the osgi event proxy into the instance service.
      *
@@ -225,7 +254,10 @@ public abstract class BaseInstanceIT extends BaseIT {
             private EntityInfo buildEntityInfo() {
                 EntityInfo info = new EntityInfo();
                 info.setEntity(entity);
-                info.setAdvancedSettings(new AdvancedSettingsDto());
+                AdvancedSettingsDto advancedSettings = new AdvancedSettingsDto();
+                advancedSettings.setTracking(getTracking());
+                advancedSettings.setCache(getCacheSettings());
+                info.setAdvancedSettings(advancedSettings);
 
                 List<FieldInfo> fieldInfos = new ArrayList<>();
                 for (FieldDto fieldDto : getEntityFields()) {
@@ -261,6 +293,9 @@ public abstract class BaseInstanceIT extends BaseIT {
         entity = entityService.createEntity(entity);
 
         entityService.addFields(entity, getEntityFields());
+        if (!getEntityLookups().isEmpty()) {
+            entityService.addLookups(entity, getEntityLookups());
+        }
 
         TrackingDto tracking = entityService.getAdvancedSettings(entity.getId(), true).getTracking();
         tracking.setAllowCreateEvent(false);
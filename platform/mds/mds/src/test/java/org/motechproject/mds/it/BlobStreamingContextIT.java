@@ -0,0 +1,164 @@
+package org.motechproject.mds.it;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.ArrayUtils;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.mds.dto.CacheSettingsDto;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.event.CrudEventType;
+import org.motechproject.mds.jdo.MdsLevel2Cache;
+import org.motechproject.mds.util.CachePolicy;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.PropertyUtil;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.motechproject.mds.event.CrudEventBuilder.createSubject;
+import static org.motechproject.mds.testutil.FieldTestHelper.fieldDto;
+
+public class BlobStreamingContextIT extends BaseInstanceIT {
+    private static final String ATTACHMENT = "Attachment";
+    private static final String NAME_FIELD = "name";
+    private static final String CONTENT_FIELD = "content";
+
+    private static final byte[] OLD_CONTENT = "old content".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEW_CONTENT = "new content".getBytes(StandardCharsets.UTF_8);
+
+    @Override
+    protected String getEntityName() {
+        return ATTACHMENT;
+    }
+
+    @Override
+    protected List<FieldDto> getEntityFields() {
+        List<FieldDto> fields = new ArrayList<>();
+        fields.add(fieldDto(NAME_FIELD, String.class.getName()));
+        fields.add(fieldDto(CONTENT_FIELD, Byte[].class.getName()));
+        return fields;
+    }
+
+    @Override
+    protected CacheSettingsDto getCacheSettings() {
+        return new CacheSettingsDto(CachePolicy.READ_MOSTLY, null, null);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+
+        setUpForInstanceTesting();
+
+        when(getOsgiEventProxy().hasListener(anyString())).thenReturn(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        MdsLevel2Cache.registerCacheSettings(getEntityClassName(), null);
+        super.tearDown();
+    }
+
+    @Test
+    public void shouldWriteAndReadBlobUsingStreams() throws Exception {
+        Long id = create(OLD_CONTENT);
+
+        writeBlob(id, NEW_CONTENT);
+
+        assertArrayEquals(NEW_CONTENT, readBlob(id));
+    }
+
+    @Test
+    public void shouldClearBlob() throws Exception {
+        Long id = create(OLD_CONTENT);
+
+        writeBlob(id, null);
+
+        assertNull(getService().openBlob(id, CONTENT_FIELD));
+    }
+
+    @Test
+    public void shouldUpdateInstanceAsUsualWhenWritingBlob() throws Exception {
+        Long id = create(OLD_CONTENT);
+        DateTime before = (DateTime) getField(id, Constants.Util.MODIFICATION_DATE_FIELD_NAME);
+
+        writeBlob(id, NEW_CONTENT);
+
+        DateTime after = (DateTime) getField(id, Constants.Util.MODIFICATION_DATE_FIELD_NAME);
+        assertFalse(after.isBefore(before));
+        verify(getOsgiEventProxy()).sendEvent(eq(createSubject(null, null, ATTACHMENT, CrudEventType.UPDATE)),
+                anyMap());
+    }
+
+    @Test
+    public void shouldNotReturnCachedValueAfterWritingBlob() throws Exception {
+        Long id = create(OLD_CONTENT);
+        // puts the instance in the second level cache
+        assertArrayEquals(OLD_CONTENT, content(id));
+
+        writeBlob(id, NEW_CONTENT);
+
+        assertArrayEquals(NEW_CONTENT, content(id));
+    }
+
+    private Long create(byte[] content) throws Exception {
+        final Object instance = getEntityClass().newInstance();
+        PropertyUtil.safeSetProperty(instance, NAME_FIELD, "attachment");
+        PropertyUtil.safeSetProperty(instance, CONTENT_FIELD, ArrayUtils.toObject(content));
+
+        Object created = getService().doInTransaction(new TransactionCallback() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                return getService().create(instance);
+            }
+        });
+
+        return (Long) PropertyUtil.safeGetProperty(created, Constants.Util.ID_FIELD_NAME);
+    }
+
+    private void writeBlob(final Long id, final byte[] content) {
+        getService().doInTransaction(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                InputStream stream = content == null ? null : new ByteArrayInputStream(content);
+                getService().writeBlob(id, CONTENT_FIELD, stream);
+            }
+        });
+    }
+
+    private byte[] readBlob(Long id) throws IOException {
+        try (InputStream stream = getService().openBlob(id, CONTENT_FIELD)) {
+            return IOUtils.toByteArray(stream);
+        }
+    }
+
+    private Object getField(final Long id, final String fieldName) {
+        return getService().doInTransaction(new TransactionCallback() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                return getService().getDetachedField(getService().findById(id), fieldName);
+            }
+        });
+    }
+
+    private byte[] content(Long id) {
+        return ArrayUtils.toPrimitive((Byte[]) getField(id, CONTENT_FIELD));
+    }
+}
@@ -0,0 +1,163 @@
+package org.motechproject.mds.it;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.dto.LookupDto;
+import org.motechproject.mds.dto.LookupFieldDto;
+import org.motechproject.mds.dto.LookupFieldType;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.LookupName;
+import org.motechproject.mds.util.PropertyUtil;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.motechproject.mds.testutil.FieldTestHelper.fieldDto;
+
+public class BulkLookupContextIT extends BaseInstanceIT {
+    private static final String PARCEL = "Parcel";
+    private static final String CODE_FIELD = "code";
+    private static final String ROUTE_FIELD = "route";
+    private static final String SENT_AT_FIELD = "sentAt";
+
+    private static final String BY_CODE = "By Code";
+    private static final String BY_CODE_AND_ROUTE = "By Code And Route";
+    private static final String BY_SENT_AT = "By Sent At";
+
+    private static final DateTime MORNING = new DateTime(2016, 3, 1, 8, 0, DateTimeZone.UTC);
+    private static final DateTime EVENING = new DateTime(2016, 3, 1, 20, 0, DateTimeZone.UTC);
+
+    private Long first;
+    private Long second;
+    private Long third;
+
+    @Override
+    protected String getEntityName() {
+        return PARCEL;
+    }
+
+    @Override
+    protected List<FieldDto> getEntityFields() {
+        List<FieldDto> fields = new ArrayList<>();
+        fields.add(fieldDto(CODE_FIELD, String.class.getName()));
+        fields.add(fieldDto(ROUTE_FIELD, Integer.class.getName()));
+        fields.add(fieldDto(SENT_AT_FIELD, DateTime.class.getName()));
+        return fields;
+    }
+
+    @Override
+    protected List<LookupDto> getEntityLookups() {
+        List<LookupDto> lookups = new ArrayList<>();
+        lookups.add(lookupDto(BY_CODE, CODE_FIELD));
+        lookups.add(lookupDto(BY_CODE_AND_ROUTE, CODE_FIELD, ROUTE_FIELD));
+        lookups.add(lookupDto(BY_SENT_AT, SENT_AT_FIELD));
+        return lookups;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+
+        setUpForInstanceTesting();
+
+        first = create("a", 1, MORNING);
+        second = create("a", 2, EVENING);
+        third = create("b", 1, MORNING);
+        create("B", 3, EVENING);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void shouldGroupInstancesByKeysInOrderOfKeys() throws Exception {
+        Map<Object, List> result = bulkLookup(BY_CODE, asList("missing", "a"));
+
+        assertEquals(asList("missing", "a"), new ArrayList<>(result.keySet()));
+        assertEquals(new ArrayList<Long>(), ids(result.get("missing")));
+        assertEquals(asList(first, second), ids(result.get("a")));
+    }
+
+    @Test
+    public void shouldLeaveOutCombinationsWhichWereNotRequested() throws Exception {
+        // the query matches all four combinations of the values, (a, 2) and (b, 1) were not requested
+        Map<Object, List> result = bulkLookup(BY_CODE_AND_ROUTE, asList(asList("a", 1), asList("b", 2)));
+
+        assertEquals(asList(first), ids(result.get(asList("a", 1))));
+        assertEquals(new ArrayList<Long>(), ids(result.get(asList("b", 2))));
+    }
+
+    @Test
+    public void shouldMatchDateTimesInOtherZones() throws Exception {
+        DateTime morningElsewhere = MORNING.withZone(DateTimeZone.forOffsetHours(5));
+
+        Map<Object, List> result = bulkLookup(BY_SENT_AT, asList(morningElsewhere));
+
+        assertEquals(asList(first, third), ids(result.get(morningElsewhere)));
+    }
+
+    @Test
+    public void shouldMatchStringsTheWayTheDatabaseComparesThem() throws Exception {
+        Map<Object, List> result = bulkLookup(BY_CODE, asList("b", "B"));
+
+        // whether the case is ignored depends on the collation, the lookup for each key must return the same
+        assertEquals(ids(executeLookup(BY_CODE, "b")), ids(result.get("b")));
+        assertEquals(ids(executeLookup(BY_CODE, "B")), ids(result.get("B")));
+    }
+
+    private Map<Object, List> bulkLookup(String lookupName, Collection<?> keys) throws Exception {
+        Method method = getService().getClass().getMethod(LookupName.lookupBulkMethod(lookupName),
+                Collection.class);
+        return (Map<Object, List>) method.invoke(getService(), keys);
+    }
+
+    private List executeLookup(String lookupName, String code) throws Exception {
+        Method method = getService().getClass().getMethod(LookupName.lookupMethod(lookupName), String.class);
+        return (List) method.invoke(getService(), code);
+    }
+
+    private Long create(String code, Integer route, DateTime sentAt) throws Exception {
+        final Object instance = getEntityClass().newInstance();
+        PropertyUtil.safeSetProperty(instance, CODE_FIELD, code);
+        PropertyUtil.safeSetProperty(instance, ROUTE_FIELD, route);
+        PropertyUtil.safeSetProperty(instance, SENT_AT_FIELD, sentAt);
+
+        Object created = getService().doInTransaction(new TransactionCallback() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                return getService().create(instance);
+            }
+        });
+
+        return (Long) PropertyUtil.safeGetProperty(created, Constants.Util.ID_FIELD_NAME);
+    }
+
+    private LookupDto lookupDto(String lookupName, String... fieldNames) {
+        List<LookupFieldDto> lookupFields = new ArrayList<>();
+        for (String fieldName : fieldNames) {
+            lookupFields.add(new LookupFieldDto(null, fieldName, LookupFieldType.VALUE));
+        }
+        return new LookupDto(lookupName, false, false, lookupFields, true);
+    }
+
+    private List<Long> ids(List instances) {
+        List<Long> ids = new ArrayList<>();
+        for (Object instance : instances) {
+            ids.add((Long) PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,170 @@
+package org.motechproject.mds.it;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.event.CrudEventType;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.PropertyUtil;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.motechproject.mds.event.CrudEventBuilder.createBulkSubject;
+import static org.motechproject.mds.testutil.FieldTestHelper.fieldDto;
+
+public class BulkOperationsContextIT extends BaseInstanceIT {
+    private static final String WIDGET = "Widget";
+    private static final String VALUE_FIELD = "value";
+
+    // the bulk operations process 500 instances per transaction
+    private static final int INSTANCE_COUNT = 1200;
+
+    @Override
+    protected String getEntityName() {
+        return WIDGET;
+    }
+
+    @Override
+    protected List<FieldDto> getEntityFields() {
+        List<FieldDto> fields = new ArrayList<>();
+        fields.add(fieldDto(VALUE_FIELD, String.class.getName()));
+        return fields;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+
+        setUpForInstanceTesting();
+
+        when(getOsgiEventProxy().hasListener(anyString())).thenReturn(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void shouldCreateUpdateAndDeleteInChunks() throws Exception {
+        List<Object> instances = new ArrayList<>();
+        for (int i = 0; i < INSTANCE_COUNT; i++) {
+            instances.add(instance("value" + i));
+        }
+
+        List created = getService().createAll(instances);
+
+        assertEquals(INSTANCE_COUNT, created.size());
+        assertEquals(INSTANCE_COUNT, count());
+        verify(getOsgiEventProxy(), times(3)).sendEvent(eq(subject(CrudEventType.CREATE)), anyMap());
+
+        for (Object instance : created) {
+            PropertyUtil.safeSetProperty(instance, VALUE_FIELD, "updated");
+        }
+        getService().updateAll(created);
+
+        for (Object instance : retrieveAll()) {
+            assertEquals("updated", PropertyUtil.safeGetProperty(instance, VALUE_FIELD));
+        }
+        verify(getOsgiEventProxy(), times(3)).sendEvent(eq(subject(CrudEventType.UPDATE)), anyMap());
+
+        getService().deleteAll(created);
+
+        assertEquals(0, count());
+        verify(getOsgiEventProxy(), times(3)).sendEvent(eq(subject(CrudEventType.DELETE)), anyMap());
+    }
+
+    @Test
+    public void shouldCreateTransientInstancesWithoutIdsWhenUpdating() throws Exception {
+        Object existing = create("existing");
+        PropertyUtil.safeSetProperty(existing, VALUE_FIELD, "updated");
+
+        List updated = getService().updateAll(Arrays.asList(existing, instance("new")));
+
+        assertEquals(2, updated.size());
+        assertNotNull(id(updated.get(1)));
+        assertEquals(2, count());
+
+        assertEquals(Arrays.asList(id(existing)), sentIds(CrudEventType.UPDATE));
+        // once for the existing instance, once for the new one
+        verify(getOsgiEventProxy(), times(2)).sendEvent(eq(subject(CrudEventType.CREATE)), anyMap());
+    }
+
+    @Test
+    public void shouldReportOnlyDeletedInstances() throws Exception {
+        Object existing = create("existing");
+        Object neverStored = instance("neverStored");
+        Object missing = instance("missing");
+        PropertyUtil.safeSetProperty(missing, Constants.Util.ID_FIELD_NAME, Long.MAX_VALUE);
+
+        getService().deleteAll(Arrays.asList(existing, neverStored, missing));
+
+        assertEquals(0, count());
+        assertEquals(Arrays.asList(id(existing)), sentIds(CrudEventType.DELETE));
+    }
+
+    @Test
+    public void shouldNotSendDeleteEventIfNothingWasDeleted() throws Exception {
+        getService().deleteAll(Arrays.asList(instance("neverStored")));
+
+        verify(getOsgiEventProxy(), never()).sendEvent(eq(subject(CrudEventType.DELETE)), anyMap());
+    }
+
+    private Object create(String value) throws Exception {
+        return getService().createAll(Arrays.asList(instance(value))).get(0);
+    }
+
+    private long count() {
+        return (Long) getService().doInTransaction(new TransactionCallback<Long>() {
+            @Override
+            public Long doInTransaction(TransactionStatus status) {
+                return getService().count();
+            }
+        });
+    }
+
+    private List retrieveAll() {
+        return (List) getService().doInTransaction(new TransactionCallback<List>() {
+            @Override
+            public List doInTransaction(TransactionStatus status) {
+                return getService().retrieveAll();
+            }
+        });
+    }
+
+    private Object instance(String value) throws Exception {
+        Object instance = getEntityClass().newInstance();
+        PropertyUtil.safeSetProperty(instance, VALUE_FIELD, value);
+        return instance;
+    }
+
+    private Long id(Object instance) {
+        return (Long) PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME);
+    }
+
+    private List sentIds(CrudEventType action) {
+        ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        verify(getOsgiEventProxy()).sendEvent(eq(subject(action)), captor.capture());
+        return (List) captor.getValue().get(Constants.MDSEvents.OBJECT_IDS);
+    }
+
+    private String subject(CrudEventType action) {
+        return createBulkSubject(null, null, WIDGET, action);
+    }
+}
@@ -0,0 +1,105 @@
+package org.motechproject.mds.it;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.motechproject.mds.dto.CacheSettingsDto;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.event.CacheEvictionEventBuilder;
+import org.motechproject.mds.jdo.MdsLevel2Cache;
+import org.motechproject.mds.util.CachePolicy;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.PropertyUtil;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.motechproject.mds.testutil.FieldTestHelper.fieldDto;
+import static org.motechproject.mds.util.Constants.MDSEvents.EVICT_ENTITY_CACHE;
+
+public class CacheEvictionContextIT extends BaseInstanceIT {
+    private static final String SPROCKET = "Sprocket";
+    private static final String VALUE_FIELD = "value";
+
+    @Override
+    protected String getEntityName() {
+        return SPROCKET;
+    }
+
+    @Override
+    protected List<FieldDto> getEntityFields() {
+        List<FieldDto> fields = new ArrayList<>();
+        fields.add(fieldDto(VALUE_FIELD, String.class.getName()));
+        return fields;
+    }
+
+    @Override
+    protected CacheSettingsDto getCacheSettings() {
+        return new CacheSettingsDto(CachePolicy.READ_MOSTLY, null, null);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+
+        setUpForInstanceTesting();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        MdsLevel2Cache.registerCacheSettings(getEntityClassName(), null);
+        super.tearDown();
+    }
+
+    @Test
+    public void shouldBroadcastEvictionOnceAfterCommit() throws Exception {
+        final Object first = getEntityClass().newInstance();
+        final Object second = getEntityClass().newInstance();
+
+        getService().doInTransaction(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                Object created = getService().create(first);
+                getService().create(second);
+
+                PropertyUtil.safeSetProperty(created, VALUE_FIELD, "updated");
+                getService().update(created);
+
+                // nothing is broadcast before the changes are committed
+                verify(getOsgiEventProxy(), never()).broadcastEvent(eq(EVICT_ENTITY_CACHE), anyMap(), eq(true));
+            }
+        });
+
+        ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        verify(getOsgiEventProxy()).broadcastEvent(eq(EVICT_ENTITY_CACHE), captor.capture(), eq(true));
+
+        Map params = captor.getValue();
+        assertEquals(getEntityClassName(), params.get(Constants.MDSEvents.ENTITY_CLASS));
+        assertTrue(CacheEvictionEventBuilder.isFromThisInstance(params.get(Constants.MDSEvents.ORIGIN_INSTANCE_ID)));
+    }
+
+    @Test
+    public void shouldNotBroadcastEvictionIfTransactionRolledBack() throws Exception {
+        final Object instance = getEntityClass().newInstance();
+
+        getService().doInTransaction(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                getService().create(instance);
+                status.setRollbackOnly();
+            }
+        });
+
+        verify(getOsgiEventProxy(), never()).broadcastEvent(eq(EVICT_ENTITY_CACHE), anyMap(), eq(true));
+    }
+}
@@ -0,0 +1,180 @@
+package org.motechproject.mds.it;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.dto.TrackingDto;
+import org.motechproject.mds.event.CrudEventMode;
+import org.motechproject.mds.event.CrudEventType;
+import org.motechproject.mds.service.DefaultMotechDataService;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.PropertyUtil;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.motechproject.mds.event.CrudEventBuilder.createBulkSubject;
+import static org.motechproject.mds.event.CrudEventBuilder.createSubject;
+import static org.motechproject.mds.testutil.FieldTestHelper.fieldDto;
+
+public class CrudEventsContextIT extends BaseInstanceIT {
+    private static final String GADGET = "Gadget";
+    private static final String VALUE_FIELD = "value";
+
+    // the bulk events carry up to 500 ids
+    private static final int INSTANCE_COUNT = 1200;
+
+    private CrudEventMode crudEventMode = CrudEventMode.INDIVIDUAL;
+
+    @Override
+    protected String getEntityName() {
+        return GADGET;
+    }
+
+    @Override
+    protected List<FieldDto> getEntityFields() {
+        List<FieldDto> fields = new ArrayList<>();
+        fields.add(fieldDto(VALUE_FIELD, String.class.getName()));
+        return fields;
+    }
+
+    @Override
+    protected TrackingDto getTracking() {
+        TrackingDto tracking = new TrackingDto();
+        tracking.setCrudEventMode(crudEventMode);
+        return tracking;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+
+        setUpForInstanceTesting();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void shouldNotSendEventsWithoutListeners() throws Exception {
+        when(getOsgiEventProxy().hasListener(anyString())).thenReturn(false);
+
+        createAndUpdateInTransaction();
+
+        verify(getOsgiEventProxy(), never()).sendEvent(anyString(), anyMap());
+    }
+
+    @Test
+    public void shouldSendOneEventPerInstanceAndActionInTransaction() throws Exception {
+        when(getOsgiEventProxy().hasListener(anyString())).thenReturn(true);
+
+        createAndUpdateInTransaction();
+
+        verify(getOsgiEventProxy(), times(2)).sendEvent(eq(subject(CrudEventType.CREATE)),
+                anyMap());
+        verify(getOsgiEventProxy(), times(1)).sendEvent(eq(subject(CrudEventType.UPDATE)),
+                anyMap());
+    }
+
+    @Test
+    public void shouldSendChunkedBulkEventsForTransactionInBatchedMode() throws Exception {
+        when(getOsgiEventProxy().hasListener(anyString())).thenReturn(true);
+        useCrudEventMode(CrudEventMode.BATCHED);
+
+        final List<Object> instances = new ArrayList<>();
+        for (int i = 0; i < INSTANCE_COUNT; i++) {
+            instances.add(getEntityClass().newInstance());
+        }
+
+        getService().doInTransaction(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                for (Object instance : instances) {
+                    getService().create(instance);
+                }
+            }
+        });
+
+        ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        verify(getOsgiEventProxy(), times(3)).sendEvent(eq(bulkSubject(CrudEventType.CREATE)), captor.capture());
+        verify(getOsgiEventProxy(), never()).sendEvent(eq(subject(CrudEventType.CREATE)), anyMap());
+
+        Set<Object> sentIds = new HashSet<>();
+        List<Integer> chunkSizes = new ArrayList<>();
+        for (Map params : captor.getAllValues()) {
+            List ids = (List) params.get(Constants.MDSEvents.OBJECT_IDS);
+            chunkSizes.add(ids.size());
+            sentIds.addAll(ids);
+        }
+
+        assertEquals(asList(500, 500, 200), chunkSizes);
+        assertEquals(INSTANCE_COUNT, sentIds.size());
+    }
+
+    @Test
+    public void shouldSendSingleBulkEventForCoalescedChangesInBatchedMode() throws Exception {
+        when(getOsgiEventProxy().hasListener(anyString())).thenReturn(true);
+        useCrudEventMode(CrudEventMode.BATCHED);
+
+        createAndUpdateInTransaction();
+
+        verify(getOsgiEventProxy(), times(1)).sendEvent(eq(bulkSubject(CrudEventType.CREATE)), anyMap());
+        verify(getOsgiEventProxy(), times(1)).sendEvent(eq(bulkSubject(CrudEventType.UPDATE)), anyMap());
+        verify(getOsgiEventProxy(), never()).sendEvent(eq(subject(CrudEventType.CREATE)), anyMap());
+        verify(getOsgiEventProxy(), never()).sendEvent(eq(subject(CrudEventType.UPDATE)), anyMap());
+    }
+
+    private void useCrudEventMode(CrudEventMode mode) {
+        crudEventMode = mode;
+        // the data service reads the tracking settings when it is initialized
+        ((DefaultMotechDataService) getService()).init();
+    }
+
+    private void createAndUpdateInTransaction() throws Exception {
+        final Object first = getEntityClass().newInstance();
+        final Object second = getEntityClass().newInstance();
+
+        getService().doInTransaction(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                Object created = getService().create(first);
+                getService().create(second);
+
+                // repeated updates of the same instance result in a single event
+                PropertyUtil.safeSetProperty(created, VALUE_FIELD, "one");
+                getService().update(created);
+                PropertyUtil.safeSetProperty(created, VALUE_FIELD, "two");
+                getService().update(created);
+
+                // nothing is published before the commit
+                verify(getOsgiEventProxy(), never()).sendEvent(anyString(), anyMap());
+            }
+        });
+    }
+
+    private String subject(CrudEventType action) {
+        return createSubject(null, null, GADGET, action);
+    }
+
+    private String bulkSubject(CrudEventType action) {
+        return createBulkSubject(null, null, GADGET, action);
+    }
+}
@@ -0,0 +1,202 @@
+package org.motechproject.mds.it;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.helper.ClassTableName;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.query.QueryUtil;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.Order;
+import org.motechproject.mds.util.PropertyUtil;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.datastore.JDOConnection;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.motechproject.mds.testutil.FieldTestHelper.fieldDto;
+
+public class KeysetPaginationContextIT extends BaseInstanceIT {
+    private static final String GIZMO = "Gizmo";
+    private static final String NAME_FIELD = "name";
+    private static final String RANK_FIELD = "rank";
+
+    private static final int PAGE_SIZE = 2;
+
+    @Override
+    protected String getEntityName() {
+        return GIZMO;
+    }
+
+    @Override
+    protected List<FieldDto> getEntityFields() {
+        List<FieldDto> fields = new ArrayList<>();
+        fields.add(fieldDto(NAME_FIELD, String.class.getName()));
+        fields.add(fieldDto(RANK_FIELD, Integer.class.getName()));
+        return fields;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+
+        setUpForInstanceTesting();
+
+        // duplicated and missing ranks, the nulls have to be placed where the database sorts them
+        create("a", 3);
+        create("b", null);
+        create("c", 1);
+        create("d", 3);
+        create("e", null);
+        create("f", 2);
+        create("g", 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void shouldPageThroughRecordsWithNullValuesAscending() {
+        List<Order> orderList = Arrays.asList(new Order(RANK_FIELD, Order.Direction.ASC));
+
+        assertEquals(names(retrieveAll(orderList)), names(retrieveAllByKeyset(orderList)));
+    }
+
+    @Test
+    public void shouldPageThroughRecordsWithNullValuesDescending() {
+        List<Order> orderList = Arrays.asList(new Order(RANK_FIELD, Order.Direction.DESC),
+                new Order(NAME_FIELD, Order.Direction.DESC));
+
+        assertEquals(names(retrieveAll(orderList)), names(retrieveAllByKeyset(orderList)));
+    }
+
+    @Test
+    public void shouldSelectNextPageIfLastRecordOfPreviousPageWasDeleted() {
+        List<Order> orderList = Arrays.asList(new Order(RANK_FIELD, Order.Direction.ASC));
+        List<String> expected = names(retrieveAll(orderList));
+
+        List firstPage = retrieve(new QueryParams(1, PAGE_SIZE, withId(orderList)));
+        final Object last = firstPage.get(firstPage.size() - 1);
+        QueryParams nextPageParams = after(last, orderList);
+
+        getService().doInTransaction(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                getService().deleteById(id(last));
+            }
+        });
+
+        assertEquals(expected.subList(PAGE_SIZE, 2 * PAGE_SIZE), names(retrieve(nextPageParams)));
+    }
+
+    @Test
+    public void shouldEstimateCountFromStatistics() throws Exception {
+        analyzeTable();
+
+        Long estimate = (Long) getService().doInTransaction(new TransactionCallback<Long>() {
+            @Override
+            public Long doInTransaction(TransactionStatus status) {
+                return getService().estimateCount();
+            }
+        });
+
+        // the statistics are approximate, but they cannot be missing right after the table was analyzed
+        assertNotNull(estimate);
+        assertTrue(estimate > 0);
+    }
+
+    private List retrieveAllByKeyset(List<Order> orderList) {
+        List all = new ArrayList();
+        List page = retrieve(new QueryParams(1, PAGE_SIZE, withId(orderList)));
+
+        while (!page.isEmpty()) {
+            all.addAll(page);
+            page = retrieve(after(page.get(page.size() - 1), orderList));
+        }
+
+        return all;
+    }
+
+    private QueryParams after(Object last, List<Order> orderList) {
+        QueryParams queryParams = new QueryParams(1, PAGE_SIZE, orderList);
+        List<Order> keysetOrderList = QueryUtil.getKeysetOrderList(queryParams);
+
+        List<Object> values = new ArrayList<>();
+        for (Order order : keysetOrderList.subList(0, keysetOrderList.size() - 1)) {
+            values.add(PropertyUtil.safeGetProperty(last, order.getField()));
+        }
+
+        return QueryParams.after(id(last), values, PAGE_SIZE, orderList);
+    }
+
+    private List retrieveAll(List<Order> orderList) {
+        return retrieve(new QueryParams(withId(orderList)));
+    }
+
+    private List<Order> withId(List<Order> orderList) {
+        // the same ordering the keyset pagination uses
+        List<Order> withId = new ArrayList<>(orderList);
+        withId.add(new Order(Constants.Util.ID_FIELD_NAME, Order.Direction.ASC));
+        return withId;
+    }
+
+    private List retrieve(final QueryParams queryParams) {
+        return (List) getService().doInTransaction(new TransactionCallback<List>() {
+            @Override
+            public List doInTransaction(TransactionStatus status) {
+                return getService().retrieveAll(queryParams);
+            }
+        });
+    }
+
+    private void create(String name, Integer rank) throws Exception {
+        final Object instance = getEntityClass().newInstance();
+        PropertyUtil.safeSetProperty(instance, NAME_FIELD, name);
+        PropertyUtil.safeSetProperty(instance, RANK_FIELD, rank);
+
+        getService().doInTransaction(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                getService().create(instance);
+            }
+        });
+    }
+
+    private void analyzeTable() throws Exception {
+        String tableName = ClassTableName.getTableName(getEntityClassName(), null, null, null, null);
+
+        PersistenceManager pm = getDataPersistenceManager();
+        JDOConnection jdoConnection = pm.getDataStoreConnection();
+        try (Statement stmt = ((Connection) jdoConnection.getNativeConnection()).createStatement()) {
+            stmt.execute("ANALYZE TABLE " + tableName);
+        } finally {
+            jdoConnection.close();
+            pm.close();
+        }
+    }
+
+    private List<String> names(List instances) {
+        List<String> names = new ArrayList<>();
+        for (Object instance : instances) {
+            names.add((String) PropertyUtil.safeGetProperty(instance, NAME_FIELD));
+        }
+        return names;
+    }
+
+    private Long id(Object instance) {
+        return (Long) PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME);
+    }
+}
@@ -16,6 +16,8 @@ import org.motechproject.mds.it.service.TypeServiceImplContextIT;
 @Suite.SuiteClasses({FilterContextIT.class, AutoGenerationContextIT.class, AllEntitiesContextIT.class,
         AllEntityDraftsContextIT.class, AllTypeSettingsContextIT.class, AllTypesContextIT.class,
         EntityServiceContextIT.class, TypeServiceImplContextIT.class, JarGeneratorServiceContextIT.class,
-        ComboboxValueRepositoryContextIT.class, AllBundleFailsReportsContextIT.class})
+        ComboboxValueRepositoryContextIT.class, AllBundleFailsReportsContextIT.class, CrudEventsContextIT.class,
+        BulkOperationsContextIT.class, CacheEvictionContextIT.class, KeysetPaginationContextIT.class,
+        BlobStreamingContextIT.class, BulkLookupContextIT.class})
 public class MdsContextIntegrationTests {
 }
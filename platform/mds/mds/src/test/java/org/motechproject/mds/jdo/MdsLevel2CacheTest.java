@@ -0,0 +1,187 @@
+package org.motechproject.mds.jdo;
+
+import org.datanucleus.PersistenceNucleusContext;
+import org.datanucleus.cache.CachedPC;
+import org.joda.time.DateTimeUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.mds.dto.CacheSettingsDto;
+import org.motechproject.mds.dto.CacheStatisticsDto;
+import org.motechproject.mds.testutil.records.Record;
+import org.motechproject.mds.testutil.records.Record2;
+import org.motechproject.mds.util.CachePolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MdsLevel2CacheTest {
+
+    private static final long NOW = 1000000L;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private PersistenceNucleusContext nucleusContext;
+
+    private MdsLevel2Cache cache;
+
+    @Before
+    public void setUp() {
+        DateTimeUtils.setCurrentMillisFixed(NOW);
+        // no size limit for the underlying soft cache
+        when(nucleusContext.getConfiguration().getIntProperty(anyString())).thenReturn(-1);
+        cache = new MdsLevel2Cache(nucleusContext);
+    }
+
+    @After
+    public void tearDown() {
+        MdsLevel2Cache.registerCacheSettings(Record.class.getName(), null);
+        MdsLevel2Cache.registerCacheSettings(Record2.class.getName(), null);
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void shouldNotCacheEntitiesWithoutCachePolicy() {
+        MdsLevel2Cache.registerCacheSettings(Record.class.getName(), new CacheSettingsDto());
+
+        cache.put(1L, cachedPC(Record.class));
+        cache.put(2L, cachedPC(Record2.class));
+
+        assertNull(cache.get(1L));
+        assertNull(cache.get(2L));
+    }
+
+    @Test
+    public void shouldCacheReadMostlyEntitiesAndCountHits() {
+        MdsLevel2Cache.registerCacheSettings(Record.class.getName(),
+                new CacheSettingsDto(CachePolicy.READ_MOSTLY, null, null));
+        CachedPC pc = cachedPC(Record.class);
+
+        cache.put(1L, pc);
+
+        assertSame(pc, cache.get(1L));
+        assertSame(pc, cache.get(1L));
+        assertStatistics(Record.class, 1, 2, 1, 0);
+    }
+
+    @Test
+    public void shouldExpireInstancesAfterTimeToLive() {
+        MdsLevel2Cache.registerCacheSettings(Record.class.getName(),
+                new CacheSettingsDto(CachePolicy.TIME_TO_LIVE, 60, null));
+        CachedPC pc = cachedPC(Record.class);
+
+        cache.put(1L, pc);
+        DateTimeUtils.setCurrentMillisFixed(NOW + 59000);
+        assertSame(pc, cache.get(1L));
+
+        DateTimeUtils.setCurrentMillisFixed(NOW + 61000);
+        assertNull(cache.get(1L));
+        assertStatistics(Record.class, 0, 1, 2, 1);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedInstancesOverMaxSize() {
+        MdsLevel2Cache.registerCacheSettings(Record.class.getName(),
+                new CacheSettingsDto(CachePolicy.READ_MOSTLY, null, 2));
+        CachedPC first = cachedPC(Record.class);
+        CachedPC second = cachedPC(Record.class);
+
+        cache.put(1L, first);
+        cache.put(2L, second);
+        cache.get(1L);
+        cache.put(3L, cachedPC(Record.class));
+
+        assertSame(first, cache.get(1L));
+        assertNull(cache.get(2L));
+        assertEquals(2, cache.getStatistics(Record.class.getName()).getSize());
+        assertEquals(1, cache.getStatistics(Record.class.getName()).getEvictions());
+    }
+
+    @Test
+    public void shouldBoundInstancesOfEntitiesWithoutMaxSize() {
+        MdsLevel2Cache.registerCacheSettings(Record.class.getName(),
+                new CacheSettingsDto(CachePolicy.READ_MOSTLY, null, null));
+        CachedPC pc = cachedPC(Record.class);
+
+        for (long id = 0; id <= MdsLevel2Cache.DEFAULT_MAX_SIZE; id++) {
+            cache.put(id, pc);
+        }
+
+        assertNull(cache.get(0L));
+        assertSame(pc, cache.get(1L));
+        assertEquals(MdsLevel2Cache.DEFAULT_MAX_SIZE, cache.getStatistics(Record.class.getName()).getSize());
+    }
+
+    @Test
+    public void shouldKeepStatisticsOfEvictedEntity() {
+        MdsLevel2Cache.registerCacheSettings(Record.class.getName(),
+                new CacheSettingsDto(CachePolicy.READ_MOSTLY, null, null));
+        cache.put(1L, cachedPC(Record.class));
+        cache.get(1L);
+
+        cache.evict(1L);
+
+        assertNull(cache.get(1L));
+        assertStatistics(Record.class, 0, 1, 1, 0);
+    }
+
+    @Test
+    public void shouldDropInstancesCachedWithPreviousSettings() {
+        MdsLevel2Cache.registerCacheSettings(Record.class.getName(),
+                new CacheSettingsDto(CachePolicy.READ_MOSTLY, null, null));
+        CachedPC pc = cachedPC(Record.class);
+        cache.put(1L, pc);
+
+        // equal settings, registered again when the entities bundle is regenerated
+        MdsLevel2Cache.registerCacheSettings(Record.class.getName(),
+                new CacheSettingsDto(CachePolicy.READ_MOSTLY, null, null));
+        assertSame(pc, cache.get(1L));
+
+        MdsLevel2Cache.registerCacheSettings(Record.class.getName(), null);
+        assertNull(cache.get(1L));
+
+        cache.put(1L, pc);
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    public void shouldEvictAllInstancesOfClass() {
+        MdsLevel2Cache.registerCacheSettings(Record.class.getName(),
+                new CacheSettingsDto(CachePolicy.READ_MOSTLY, null, null));
+        MdsLevel2Cache.registerCacheSettings(Record2.class.getName(),
+                new CacheSettingsDto(CachePolicy.READ_MOSTLY, null, null));
+        CachedPC record2 = cachedPC(Record2.class);
+
+        cache.put(1L, cachedPC(Record.class));
+        cache.put(2L, record2);
+        cache.evictAll(Record.class, false);
+
+        assertNull(cache.get(1L));
+        assertSame(record2, cache.get(2L));
+        assertEquals(0, cache.getStatistics(Record.class.getName()).getSize());
+    }
+
+    private void assertStatistics(Class<?> clazz, int size, long hits, long misses, long evictions) {
+        CacheStatisticsDto statistics = cache.getStatistics(clazz.getName());
+
+        assertEquals(size, statistics.getSize());
+        assertEquals(hits, statistics.getHits());
+        assertEquals(misses, statistics.getMisses());
+        assertEquals(evictions, statistics.getEvictions());
+    }
+
+    @SuppressWarnings("unchecked")
+    private CachedPC cachedPC(Class clazz) {
+        CachedPC pc = mock(CachedPC.class);
+        when(pc.getObjectClass()).thenReturn(clazz);
+        return pc;
+    }
+}
@@ -1,5 +1,6 @@
 package org.motechproject.mds.lookup;
 
+import org.datanucleus.store.query.QueryNotUniqueException;
 import org.junit.Before;
 import org.junit.Test;
 import org.motechproject.mds.dto.DtoHelper;
@@ -7,13 +8,18 @@ import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.LookupDto;
 import org.motechproject.mds.dto.LookupFieldDto;
 import org.motechproject.mds.dto.LookupFieldType;
+import org.motechproject.mds.exception.lookup.LookupExecutorException;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.DefaultMotechDataService;
 import org.motechproject.mds.testutil.FieldTestHelper;
 import org.motechproject.mds.util.LookupName;
 import org.motechproject.mds.util.Order;
 
+import javax.jdo.JDOUserException;
+
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,12 +28,14 @@ import java.util.Objects;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 
 public class LookupExecutorTest {
 
     private static final String LOOKUP_NAME = "MY lookup";
     private static final String LOOKUP_METHOD_NAME_1 = "find";
     private static final String LOOKUP_METHOD_NAME_2 = "findByRelationFields";
+    private static final String LOOKUP_METHOD_NAME_3 = "findUnique";
     private static final String STR_FIELD_NAME = "strField";
     private static final String TEXTAREA_FIELD_NAME = "textAreaField";
     private static final String INT_FIELD_NAME = "intField";
@@ -129,6 +137,54 @@ public class LookupExecutorTest {
         assertEquals(dataService.findByRelationFields(STR_ARG, LONG_ARG, INT_ARG, STR_ARG_2), result);
     }
 
+    @Test
+    public void shouldMapExceptionsThrownByLookups() {
+        LookupDto lookupDto = new LookupDto(LOOKUP_NAME, true, false,
+                asList(new LookupFieldDto(1L, STR_FIELD_NAME, LookupFieldType.VALUE)),
+                false, LOOKUP_METHOD_NAME_3, asList(STR_FIELD_NAME));
+        LookupExecutor lookupExecutor = new LookupExecutor(dataService, lookupDto, getFieldMapping());
+
+        Map<String, Object> lookupMap = new HashMap<>();
+        lookupMap.put(STR_FIELD_NAME, STR_ARG);
+
+        try {
+            lookupExecutor.execute(lookupMap);
+            fail("Expected a lookup executor exception");
+        } catch (LookupExecutorException e) {
+            assertEquals("mds.error.lookupExecNotUniqueError", e.getMessageKey());
+        }
+    }
+
+    @Test
+    public void shouldExecuteBulkLookup() {
+        Map<String, Object> lookupMap = new HashMap<>();
+        lookupMap.put(STR_FIELD_NAME, STR_ARG);
+        lookupMap.put(INT_FIELD_NAME, INT_ARG);
+        lookupMap.put(TEXTAREA_FIELD_NAME, TEXTAREA_ARG);
+
+        Map<String, Object> otherLookupMap = new HashMap<>();
+        otherLookupMap.put(STR_FIELD_NAME, STR_ARG_2);
+        otherLookupMap.put(INT_FIELD_NAME, INT_ARG);
+        otherLookupMap.put(TEXTAREA_FIELD_NAME, TEXTAREA_ARG);
+
+        List<List> result = lookupExecutor1.executeBulk(asList(lookupMap, otherLookupMap));
+
+        assertEquals(2, result.size());
+        assertEquals(dataService.find(STR_ARG, INT_ARG, TEXTAREA_ARG), result.get(0));
+        assertEquals(Collections.emptyList(), result.get(1));
+    }
+
+    @Test(expected = LookupExecutorException.class)
+    public void shouldThrowLookupExecutorExceptionForMissingLookupMethod() {
+        Map<String, Object> lookupMap = new HashMap<>();
+        lookupMap.put(STR_FIELD_NAME, STR_ARG);
+        lookupMap.put(INT_FIELD_NAME, INT_ARG);
+        lookupMap.put(TEXTAREA_FIELD_NAME, TEXTAREA_ARG);
+
+        // the service has no count method for the lookup with related fields
+        lookupExecutor2.executeCount(lookupMap);
+    }
+
     private Map<String, FieldDto> getFieldMapping() {
         Map<String, FieldDto> mapping = new HashMap<>();
         mapping.put(STR_FIELD_NAME, FieldTestHelper.fieldDto(1L, STR_FIELD_NAME, String.class.getName(), "strFieldDisp", null));
@@ -182,6 +238,16 @@ public class LookupExecutorTest {
             return asList(new TestClass(1, "firstRecord", "textArea"));
         }
 
+        public Map<List, List<TestClass>> bulkFind(Collection<List> keys) {
+            Map<List, List<TestClass>> result = new HashMap<>();
+            for (List key : keys) {
+                if (asList(STR_ARG, INT_ARG, TEXTAREA_ARG).equals(key)) {
+                    result.put(key, find(STR_ARG, INT_ARG, TEXTAREA_ARG));
+                }
+            }
+            return result;
+        }
+
         public long countFind(String strField, Integer intField, String textAreaField) {
             assertParams(strField, intField, textAreaField);
             return COUNT;
@@ -211,6 +277,10 @@ public class LookupExecutorTest {
             return asList(new TestClass(2, "second", "textArea"));
         }
 
+        public TestClass findUnique(String strParam) {
+            throw new JDOUserException("Not unique", new QueryNotUniqueException());
+        }
+
         @Override
         public Class<TestClass> getClassType() {
             return TestClass.class;
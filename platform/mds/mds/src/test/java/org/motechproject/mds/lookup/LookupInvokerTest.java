@@ -0,0 +1,157 @@
+package org.motechproject.mds.lookup;
+
+import org.junit.Test;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.dto.LookupDto;
+import org.motechproject.mds.dto.LookupFieldDto;
+import org.motechproject.mds.dto.LookupFieldType;
+import org.motechproject.mds.service.DefaultMotechDataService;
+import org.motechproject.mds.testutil.FieldTestHelper;
+import org.motechproject.mds.testutil.records.Record;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class LookupInvokerTest {
+
+    private static final String STR_FIELD_NAME = "strField";
+    private static final String STR_ARG = "value";
+
+    private static final LookupDto FIND_LOOKUP = lookup("find");
+    private static final LookupDto FAILING_LOOKUP = lookup("findFailing");
+    private static final LookupDto BROKEN_LOOKUP = lookup("findBroken");
+
+    private static final Map<String, FieldDto> FIELDS = Collections.singletonMap(STR_FIELD_NAME,
+            FieldTestHelper.fieldDto(1L, STR_FIELD_NAME, String.class.getName(), "strFieldDisp", null));
+
+    @Test
+    public void shouldReuseInvokerOfUnchangedSchema() {
+        VersionedService service = new VersionedService(1L);
+
+        LookupInvoker invoker = LookupInvoker.getInvoker(service, FIND_LOOKUP, FIELDS);
+
+        assertSame(invoker, LookupInvoker.getInvoker(service, FIND_LOOKUP, FIELDS));
+        assertSame(invoker, LookupInvoker.getInvoker(new VersionedService(1L), FIND_LOOKUP, FIELDS));
+    }
+
+    @Test
+    public void shouldReplaceInvokerAfterSchemaChange() {
+        LookupInvoker invoker = LookupInvoker.getInvoker(new VersionedService(2L), FIND_LOOKUP, FIELDS);
+        LookupInvoker newInvoker = LookupInvoker.getInvoker(new VersionedService(3L), FIND_LOOKUP, FIELDS);
+
+        assertNotSame(invoker, newInvoker);
+        assertSame(newInvoker, LookupInvoker.getInvoker(new VersionedService(3L), FIND_LOOKUP, FIELDS));
+    }
+
+    @Test
+    public void shouldKeepInvokersOfServiceClassesApart() {
+        LookupInvoker invoker = LookupInvoker.getInvoker(new VersionedService(4L), FIND_LOOKUP, FIELDS);
+        LookupInvoker otherInvoker = LookupInvoker.getInvoker(new OtherVersionedService(4L), FIND_LOOKUP, FIELDS);
+
+        assertNotSame(invoker, otherInvoker);
+    }
+
+    @Test
+    public void shouldNotCacheInvokersOfServicesWithoutSchemaVersion() {
+        VersionedService service = new VersionedService(null);
+
+        assertNotSame(LookupInvoker.getInvoker(service, FIND_LOOKUP, FIELDS),
+                LookupInvoker.getInvoker(service, FIND_LOOKUP, FIELDS));
+    }
+
+    @Test
+    public void shouldInvokeLookupWithConvertedArguments() throws Exception {
+        VersionedService service = new VersionedService(5L);
+        LookupInvoker invoker = LookupInvoker.getInvoker(service, FIND_LOOKUP, FIELDS);
+
+        Object[] args = invoker.buildArgs(Collections.singletonMap(STR_FIELD_NAME, STR_ARG), null);
+
+        assertEquals(asList(STR_ARG), invoker.invoke(service, args));
+    }
+
+    @Test
+    public void shouldWrapExceptionsThrownByLookups() throws Exception {
+        VersionedService service = new VersionedService(6L);
+        LookupInvoker invoker = LookupInvoker.getInvoker(service, FAILING_LOOKUP, FIELDS);
+
+        try {
+            invoker.invoke(service, new Object[]{STR_ARG});
+            fail("Expected an invocation target exception");
+        } catch (InvocationTargetException e) {
+            assertEquals(IllegalStateException.class, e.getCause().getClass());
+        }
+    }
+
+    @Test(expected = LookupError.class)
+    public void shouldRethrowErrorsThrownByLookups() throws Exception {
+        VersionedService service = new VersionedService(7L);
+        LookupInvoker invoker = LookupInvoker.getInvoker(service, BROKEN_LOOKUP, FIELDS);
+
+        invoker.invoke(service, new Object[]{STR_ARG});
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void shouldThrowNoSuchMethodExceptionForMissingCountMethod() throws Exception {
+        VersionedService service = new VersionedService(8L);
+        LookupInvoker invoker = LookupInvoker.getInvoker(service, FIND_LOOKUP, FIELDS);
+
+        invoker.invokeCount(service, new Object[]{STR_ARG});
+    }
+
+    private static LookupDto lookup(String methodName) {
+        return new LookupDto(methodName, false, false,
+                asList(new LookupFieldDto(1L, STR_FIELD_NAME, LookupFieldType.VALUE)),
+                false, methodName, asList(STR_FIELD_NAME));
+    }
+
+    public static class VersionedService extends DefaultMotechDataService<Record> {
+
+        private final Long schemaVersion;
+
+        public VersionedService(Long schemaVersion) {
+            this.schemaVersion = schemaVersion;
+        }
+
+        public List<String> find(String strField) {
+            return asList(strField);
+        }
+
+        public List<String> findFailing(String strField) {
+            throw new IllegalStateException("Lookup failed");
+        }
+
+        public List<String> findBroken(String strField) {
+            throw new LookupError();
+        }
+
+        @Override
+        public Long getSchemaVersion() {
+            return schemaVersion;
+        }
+
+        @Override
+        public Class<Record> getClassType() {
+            return Record.class;
+        }
+    }
+
+    public static class OtherVersionedService extends VersionedService {
+
+        public OtherVersionedService(Long schemaVersion) {
+            super(schemaVersion);
+        }
+    }
+
+    private static class LookupError extends Error {
+
+        private static final long serialVersionUID = 4196483574103384829L;
+    }
+}
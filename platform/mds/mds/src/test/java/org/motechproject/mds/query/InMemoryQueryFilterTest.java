@@ -6,7 +6,10 @@ import org.junit.Test;
 import org.motechproject.mds.testutil.records.Record;
 import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.Order;
+import org.motechproject.mds.util.PropertyAccessor;
+import org.motechproject.mds.util.PropertyAccessors;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -119,6 +122,46 @@ public class InMemoryQueryFilterTest {
         assertListByIds(result, asList(1L, 2L, 3L, null, 6L, 5L, 4L));
     }
 
+    @Test
+    public void shouldOrderUsingPropertyAccessor() {
+        CountingAccessor accessor = new CountingAccessor();
+        PropertyAccessors.register(Record.class, accessor);
+
+        try {
+            QueryParams queryParams = new QueryParams(new Order("value", Order.Direction.DESC));
+
+            List<Record> result = InMemoryQueryFilter.filter(testCollection, queryParams);
+
+            assertListByValues(result, asList("zet", "test", "something", "nullRecord", "hmm", "hmm", "aaa"));
+            assertTrue(accessor.reads > 0);
+        } finally {
+            PropertyAccessors.unregister(Record.class);
+        }
+    }
+
+    @Test
+    public void shouldOrderInstancesOfOtherClassesUsingReflection() {
+        CountingAccessor accessor = new CountingAccessor();
+        PropertyAccessors.register(Record.class, accessor);
+
+        try {
+            List<Record> records = new ArrayList<>(testCollection);
+            // an instance of a subclass, the accessor of the entity must not be used for it
+            Record subclassRecord = new Record() { };
+            subclassRecord.setValue("bbb");
+            subclassRecord.setId(7L);
+            records.add(subclassRecord);
+
+            QueryParams queryParams = new QueryParams(new Order("value", Order.Direction.ASC));
+
+            List<Record> result = InMemoryQueryFilter.filter(records, queryParams);
+
+            assertListByValues(result, asList("aaa", "bbb", "hmm", "hmm", "nullRecord", "something", "test", "zet"));
+        } finally {
+            PropertyAccessors.unregister(Record.class);
+        }
+    }
+
     private void assertListByValues(List<Record> result, List<String> values) {
         assertEquals(values, extract(result, on(Record.class).getValue()));
     }
@@ -133,4 +176,25 @@ public class InMemoryQueryFilterTest {
         record.setId(id);
         return record;
     }
+
+    private static class CountingAccessor extends PropertyAccessor {
+
+        private int reads;
+
+        private CountingAccessor() {
+            super(new String[]{"id", "value"});
+        }
+
+        @Override
+        public Object get(Object instance, int index) {
+            Record record = (Record) instance;
+            reads++;
+            return index == 0 ? record.getId() : record.getValue();
+        }
+
+        @Override
+        public void set(Object instance, int index, Object value) {
+            throw new UnsupportedOperationException("Ordering does not change instances");
+        }
+    }
 }
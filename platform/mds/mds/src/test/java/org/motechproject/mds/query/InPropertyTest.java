@@ -0,0 +1,49 @@
+package org.motechproject.mds.query;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class InPropertyTest {
+
+    @Test
+    public void shouldPassValuesAsSingleParameter() {
+        List<Integer> values = asList(1, 2, 3);
+        InProperty<Integer> property = new InProperty<>("number", values, Integer.class.getName());
+
+        assertEquals("param2.contains(number)", property.asFilter(2));
+        assertEquals("java.util.Collection param2", property.asDeclareParameter(2));
+        assertEquals(asList((Object) values), property.unwrap());
+    }
+
+    @Test
+    public void shouldMatchNullValue() {
+        InProperty<String> property = new InProperty<>("name", asList("a", null), String.class.getName());
+
+        assertEquals("(param0.contains(name) || name == null)", property.asFilter(0));
+        assertEquals("java.util.Collection param0", property.asDeclareParameter(0));
+        assertEquals(asList((Object) asList("a")), property.unwrap());
+    }
+
+    @Test
+    public void shouldMatchOnlyNullValue() {
+        InProperty<String> property = new InProperty<>("name", asList((String) null), String.class.getName());
+
+        assertEquals("name == null", property.asFilter(0));
+        assertNull(property.asDeclareParameter(0));
+        assertEquals(Collections.emptyList(), property.unwrap());
+    }
+
+    @Test
+    public void shouldIgnoreEmptyCollection() {
+        InProperty<String> property = new InProperty<>("name", Collections.<String>emptyList(), String.class.getName());
+
+        assertNull(property.asFilter(0));
+        assertNull(property.asDeclareParameter(0));
+    }
+}
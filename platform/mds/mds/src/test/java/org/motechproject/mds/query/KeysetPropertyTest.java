@@ -0,0 +1,90 @@
+package org.motechproject.mds.query;
+
+import org.junit.Test;
+import org.motechproject.mds.util.Order;
+
+import java.util.Collections;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class KeysetPropertyTest {
+
+    @Test
+    public void shouldGenerateFilterForSingleField() {
+        KeysetProperty property = new KeysetProperty(asList(new Order("id", Order.Direction.ASC)),
+                Collections.<Object>singletonList(5L), asList(Long.class.getName()), false);
+
+        assertEquals("((id > param2_0))", property.asFilter(2));
+        assertEquals("java.lang.Long param2_0", property.asDeclareParameter(2));
+        assertEquals(asList(5L), property.unwrap());
+    }
+
+    @Test
+    public void shouldGenerateFilterForMultipleFields() {
+        KeysetProperty property = new KeysetProperty(
+                asList(new Order("name", Order.Direction.DESC), new Order("id", Order.Direction.ASC)),
+                asList((Object) "abc", 7L), asList(String.class.getName(), Long.class.getName()), false);
+
+        assertEquals("((name < param0_0) || (name == param0_0 && id > param0_1))", property.asFilter(0));
+        assertEquals("java.lang.String param0_0, java.lang.Long param0_1", property.asDeclareParameter(0));
+        assertEquals(asList("abc", 7L), property.unwrap());
+    }
+
+    @Test
+    public void shouldIncludeNullsSortedLast() {
+        KeysetProperty property = new KeysetProperty(
+                asList(new Order("name", Order.Direction.ASC), new Order("id", Order.Direction.ASC)),
+                asList((Object) "abc", 7L), asList(String.class.getName(), Long.class.getName()), true);
+
+        assertEquals("(((name > param0_0 || name == null)) || (name == param0_0 && id > param0_1))",
+                property.asFilter(0));
+    }
+
+    @Test
+    public void shouldCompareNullValuesSortedFirst() {
+        KeysetProperty property = new KeysetProperty(
+                asList(new Order("name", Order.Direction.ASC), new Order("id", Order.Direction.ASC)),
+                asList(null, (Object) 7L), asList(String.class.getName(), Long.class.getName()), false);
+
+        assertEquals("((name != null) || (name == null && id > param1_1))", property.asFilter(1));
+        assertEquals("java.lang.Long param1_1", property.asDeclareParameter(1));
+        assertEquals(asList(7L), property.unwrap());
+    }
+
+    @Test
+    public void shouldCompareNullValuesSortedLast() {
+        KeysetProperty property = new KeysetProperty(
+                asList(new Order("name", Order.Direction.ASC), new Order("id", Order.Direction.DESC)),
+                asList(null, (Object) 7L), asList(String.class.getName(), Long.class.getName()), true);
+
+        // no value follows a null, only the records with null names and lower ids remain
+        assertEquals("((name == null && id < param0_1))", property.asFilter(0));
+
+        property = new KeysetProperty(
+                asList(new Order("name", Order.Direction.DESC), new Order("id", Order.Direction.ASC)),
+                asList(null, (Object) 7L), asList(String.class.getName(), Long.class.getName()), true);
+
+        // nulls come first in the descending order
+        assertEquals("((name != null) || (name == null && id > param0_1))", property.asFilter(0));
+    }
+
+    @Test
+    public void shouldHaveDifferentShapesForNullValues() {
+        KeysetProperty withValue = new KeysetProperty(
+                asList(new Order("name", Order.Direction.ASC), new Order("id", Order.Direction.ASC)),
+                asList((Object) "abc", 7L), asList(String.class.getName(), Long.class.getName()), false);
+        KeysetProperty withNull = new KeysetProperty(
+                asList(new Order("name", Order.Direction.ASC), new Order("id", Order.Direction.ASC)),
+                asList(null, (Object) 8L), asList(String.class.getName(), Long.class.getName()), false);
+
+        assertNotEquals(withValue.asShape(), withNull.asShape());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAllowNullUniqueValue() {
+        new KeysetProperty(asList(new Order("name", Order.Direction.ASC), new Order("id", Order.Direction.ASC)),
+                asList((Object) "abc", null), asList(String.class.getName(), Long.class.getName()), false);
+    }
+}
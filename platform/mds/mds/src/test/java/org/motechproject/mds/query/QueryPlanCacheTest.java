@@ -0,0 +1,103 @@
+package org.motechproject.mds.query;
+
+import org.junit.Test;
+import org.motechproject.commons.api.Range;
+import org.motechproject.mds.dto.QueryPlanCacheStatisticsDto;
+
+import javax.jdo.Query;
+import java.util.HashSet;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class QueryPlanCacheTest {
+
+    private static final String STRING_TYPE = String.class.getName();
+    private static final String INTEGER_TYPE = Integer.class.getName();
+
+    private QueryPlanCache planCache = new QueryPlanCache();
+
+    @Test
+    public void shouldReusePlanForPropertiesOfSameShape() {
+        QueryPlan plan = planCache.getPlan(properties("first", 1, 10));
+        QueryPlan otherPlan = planCache.getPlan(properties("second", 5, 20));
+
+        assertSame(plan, otherPlan);
+        assertEquals("name == param0 && age>=param1lb && age<=param1ub", plan.getFilter());
+        assertEquals("java.lang.String param0, java.lang.Integer param1lb, java.lang.Integer param1ub",
+                plan.getParameters());
+        assertStatistics(1, 1, 1);
+    }
+
+    @Test
+    public void shouldNotReusePlanForPropertiesOfOtherShapes() {
+        QueryPlan plan = planCache.getPlan(properties("first", 1, 10));
+        QueryPlan otherPlan = planCache.getPlan(properties("second", 5, null));
+
+        assertNotSame(plan, otherPlan);
+        assertEquals("name == param0 && age>=param1lb", otherPlan.getFilter());
+
+        QueryPlan setPlan = planCache.getPlan(asList((Property) new SetProperty<>("name",
+                new HashSet<>(asList("a", "b")), STRING_TYPE)));
+        QueryPlan otherSetPlan = planCache.getPlan(asList((Property) new SetProperty<>("name",
+                new HashSet<>(asList("a", "b", "c")), STRING_TYPE)));
+
+        assertNotSame(setPlan, otherSetPlan);
+        assertStatistics(4, 0, 4);
+    }
+
+    @Test
+    public void shouldNotCachePlansOfPropertiesWithoutShape() {
+        Property property = new Property<String>("name", "value", STRING_TYPE) {
+            @Override
+            protected CharSequence generateFilter(int idx) {
+                return String.format("name == '%s'", getValue());
+            }
+        };
+
+        planCache.getPlan(asList(property));
+        planCache.getPlan(asList(property));
+
+        assertStatistics(0, 0, 2);
+    }
+
+    @Test
+    public void shouldNotCacheMorePlansThanMaxSize() {
+        planCache = new QueryPlanCache(1);
+
+        planCache.getPlan(properties("first", 1, 10));
+        planCache.getPlan(properties("first", 1, null));
+        planCache.getPlan(properties("first", 1, null));
+
+        assertStatistics(1, 0, 3);
+    }
+
+    @Test
+    public void shouldApplyPlanToQuery() {
+        Query query = mock(Query.class);
+
+        QueryUtil.useFilter(query, properties("first", 1, 10), null, planCache);
+
+        verify(query).setFilter("name == param0 && age>=param1lb && age<=param1ub");
+        verify(query).declareParameters("java.lang.String param0, java.lang.Integer param1lb, java.lang.Integer param1ub");
+    }
+
+    private List<Property> properties(String name, Integer minAge, Integer maxAge) {
+        return asList(new EqualProperty<>("name", name, STRING_TYPE),
+                new RangeProperty<>("age", new Range<>(minAge, maxAge), INTEGER_TYPE));
+    }
+
+    private void assertStatistics(int size, long hits, long misses) {
+        QueryPlanCacheStatisticsDto statistics = planCache.getStatistics("Entity");
+
+        assertEquals("Entity", statistics.getEntityClassName());
+        assertEquals(size, statistics.getSize());
+        assertEquals(hits, statistics.getHits());
+        assertEquals(misses, statistics.getMisses());
+    }
+}
@@ -11,6 +11,7 @@ import org.motechproject.mds.util.SecurityUtil;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import javax.jdo.FetchPlan;
 import javax.jdo.Query;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -21,6 +22,7 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -51,6 +53,43 @@ public class QueryUtilTest {
         verify(query).setOrdering("field ascending");
     }
 
+    @Test
+    public void shouldSetQueryParamsForKeysetPagination() {
+        QueryParams keysetParams = QueryParams.after(40L, 10, asList(new Order("field", Order.Direction.DESC)));
+
+        QueryUtil.setQueryParams(query, keysetParams);
+
+        verify(query).setRange(0, 10);
+        verify(query).setOrdering("field descending, id ascending");
+    }
+
+    @Test
+    public void shouldEndKeysetOrderingWithId() {
+        List<Order> orderList = QueryUtil.getKeysetOrderList(QueryParams.after(40L, 10,
+                asList(new Order("id", Order.Direction.DESC), new Order("field", Order.Direction.ASC))));
+
+        assertEquals(1, orderList.size());
+        assertEquals("id", orderList.get(0).getField());
+        assertEquals(Order.Direction.DESC, orderList.get(0).getDirection());
+    }
+
+    @Test
+    public void shouldPrepareQueryForStreaming() {
+        FetchPlan fetchPlan = mock(FetchPlan.class);
+        when(query.getFetchPlan()).thenReturn(fetchPlan);
+
+        QueryUtil.useStreaming(query, 200);
+
+        verify(fetchPlan).setFetchSize(200);
+        verify(query).addExtension("datanucleus.query.resultCacheType", "none");
+        verify(query).addExtension("datanucleus.rdbms.query.resultSetType", "forward-only");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAllowNonPositiveFetchSize() {
+        QueryUtil.useStreaming(query, 0);
+    }
+
     @Test
     public void shouldCreateFiltersAndParamDeclarationForRanges() {
         DateTime now = DateTime.now();
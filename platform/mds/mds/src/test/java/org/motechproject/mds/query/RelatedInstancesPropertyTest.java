@@ -0,0 +1,59 @@
+package org.motechproject.mds.query;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RelatedInstancesPropertyTest {
+
+    private static final String OWNER_CLASS = "org.motechproject.Owner";
+
+    @Test
+    public void shouldGenerateFilterForCollectionField() {
+        List<Long> added = asList(4L, 5L);
+        List<Long> removed = asList(1L);
+
+        RelatedInstancesProperty property = new RelatedInstancesProperty(OWNER_CLASS, "items", true, 7L,
+                added, removed);
+
+        assertEquals("(((owner.id == param1_0 && owner.items.contains(this)) || param1_1.contains(id)) " +
+                "&& !param1_2.contains(id))", property.asFilter(1));
+        assertEquals("java.lang.Long param1_0, java.util.Collection param1_1, java.util.Collection param1_2",
+                property.asDeclareParameter(1));
+        assertEquals(asList(7L, added, removed), property.unwrap());
+        assertEquals(OWNER_CLASS + " owner", property.getVariableDeclaration());
+    }
+
+    @Test
+    public void shouldGenerateFilterForSingleInstanceField() {
+        RelatedInstancesProperty property = new RelatedInstancesProperty(OWNER_CLASS, "item", false, 7L,
+                Collections.<Long>emptyList(), null);
+
+        assertEquals("((owner.id == param0_0 && owner.item == this))", property.asFilter(0));
+        assertEquals("java.lang.Long param0_0", property.asDeclareParameter(0));
+        assertEquals(asList(7L), property.unwrap());
+    }
+
+    @Test
+    public void shouldGenerateFilterWithoutOwner() {
+        List<Long> added = asList(4L);
+
+        RelatedInstancesProperty property = new RelatedInstancesProperty(OWNER_CLASS, "items", true, null,
+                added, null);
+
+        assertEquals("(param0_0.contains(id))", property.asFilter(0));
+        assertEquals("java.util.Collection param0_0", property.asDeclareParameter(0));
+        assertEquals(asList((Object) added), property.unwrap());
+        assertNull(property.getVariableDeclaration());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequireOwnerOrIncludedIds() {
+        new RelatedInstancesProperty(OWNER_CLASS, "items", true, null, Collections.<Long>emptyList(), null);
+    }
+}
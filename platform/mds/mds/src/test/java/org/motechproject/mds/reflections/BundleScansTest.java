@@ -0,0 +1,99 @@
+package org.motechproject.mds.reflections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.motechproject.mds.annotations.Entity;
+import org.motechproject.mds.reflections.test.ComplicatedService;
+import org.motechproject.mds.reflections.test.TestMDService;
+import org.motechproject.mds.testutil.MockBundle;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Version;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+
+public class BundleScansTest extends MockBundle {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Bundle bundle = spy(new org.eclipse.gemini.blueprint.mock.MockBundle());
+
+    @Before
+    public void setUp() throws MalformedURLException, ClassNotFoundException {
+        setUpMockBundle();
+
+        doReturn("org.motechproject.test").when(bundle).getSymbolicName();
+        doReturn(new Version(1, 0, 0)).when(bundle).getVersion();
+        doReturn(100L).when(bundle).getLastModified();
+
+        BundleScans.setCacheDirectory(folder.getRoot());
+    }
+
+    @After
+    public void tearDown() {
+        BundleScans.clear();
+    }
+
+    @Test
+    public void shouldScanBundleForAllAnnotationsAtOnce() {
+        BundleScanResult result = BundleScans.scan(bundle);
+
+        assertEquals("org.motechproject.test/1.0.0/100", result.getBundleKey());
+        assertTrue(result.getMdsInterfaces().contains(TestMDService.class.getName()));
+        assertTrue(result.getMdsInterfaces().contains(ComplicatedService.class.getName()));
+        assertTrue(result.getAnnotatedTypes().containsKey(Entity.class.getName()));
+        assertTrue(new File(folder.getRoot(), "org.motechproject.test.json").exists());
+    }
+
+    @Test
+    public void shouldReuseResultsWrittenToDisk() {
+        BundleScanResult result = BundleScans.scan(bundle);
+
+        // a restart, the bundle jar is not available anymore, so the results must come from the disk
+        BundleScans.setCacheDirectory(folder.getRoot());
+        doReturn("file:/nonexistent/bundle.jar").when(bundle).getLocation();
+
+        assertEquals(0, BundleScans.scanAll(Collections.singletonList(bundle)));
+        assertEquals(result.getMdsInterfaces(), BundleScans.get(bundle).getMdsInterfaces());
+    }
+
+    @Test
+    public void shouldNotReturnResultsOfChangedBundle() {
+        BundleScans.scan(bundle);
+        assertNotNull(BundleScans.get(bundle));
+
+        doReturn(200L).when(bundle).getLastModified();
+
+        assertNull(BundleScans.get(bundle));
+        assertEquals(1, BundleScans.scanAll(Collections.singletonList(bundle)));
+        assertNotNull(BundleScans.get(bundle));
+    }
+
+    @Override
+    protected Map<String, Class> getMappingsForLoader() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    protected Class getTestClass() {
+        return getClass();
+    }
+
+    @Override
+    protected Bundle getMockBundle() {
+        return bundle;
+    }
+}
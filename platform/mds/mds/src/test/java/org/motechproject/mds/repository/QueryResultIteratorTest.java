@@ -0,0 +1,75 @@
+package org.motechproject.mds.repository;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class QueryResultIteratorTest {
+
+    @Mock
+    private Query query;
+
+    @Mock
+    private PersistenceManager pm;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        when(query.getPersistenceManager()).thenReturn(pm);
+        when(pm.detachCopyAll(anyCollection())).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                List<String> detached = new ArrayList<>();
+                for (Object object : (Collection) invocation.getArguments()[0]) {
+                    detached.add("detached-" + object);
+                }
+                return detached;
+            }
+        });
+    }
+
+    @Test
+    public void shouldDetachInChunks() {
+        QueryResultIterator<String> iterator = new QueryResultIterator<>(query, asList("a", "b", "c"), 2);
+
+        List<String> result = new ArrayList<>();
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+
+        assertEquals(asList("detached-a", "detached-b", "detached-c"), result);
+        verify(pm).detachCopyAll(asList("a", "b"));
+        verify(pm).detachCopyAll(asList("c"));
+        verify(query).closeAll();
+    }
+
+    @Test
+    public void shouldStopAfterClose() {
+        QueryResultIterator<String> iterator = new QueryResultIterator<>(query, asList("a", "b", "c"), 1);
+
+        assertEquals("detached-a", iterator.next());
+        iterator.close();
+        iterator.close();
+
+        assertFalse(iterator.hasNext());
+        verify(pm, times(1)).detachCopyAll(anyCollection());
+        verify(query, times(1)).closeAll();
+    }
+}
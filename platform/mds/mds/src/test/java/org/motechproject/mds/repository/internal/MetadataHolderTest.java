@@ -32,7 +32,9 @@ public class MetadataHolderTest {
 
         // constructs initial metadata, then reloads
         assertEquals(jdoMetadata, metadataHolder.getJdoMetadata());
+        assertEquals(0, metadataHolder.getMetadataVersion());
         assertEquals(jdoMetadata, metadataHolder.reloadMetadata());
+        assertEquals(1, metadataHolder.getMetadataVersion());
         verify(pmf, times(2)).newMetadata();
 
         // retrieves existing metadata
@@ -4,6 +4,7 @@ import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
+import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.junit.Before;
 import org.junit.Test;
@@ -25,6 +26,7 @@ import org.motechproject.mds.exception.rest.RestLookupExecutionForbiddenExceptio
 import org.motechproject.mds.exception.rest.RestLookupNotFoundException;
 import org.motechproject.mds.exception.rest.RestNoLookupResultException;
 import org.motechproject.mds.exception.rest.RestOperationNotSupportedException;
+import org.motechproject.mds.query.CloseableIterator;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.testutil.FieldTestHelper;
@@ -35,9 +37,12 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -51,8 +56,10 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -69,6 +76,7 @@ public class MdsRestFacadeTest {
     private static final String TEST_MODULE = "test_module";
     private static final String ENTITY_NAME = "Record";
     private static final String NAMESPACE = "test_namespace";
+    private static final String BULK_LOOKUP_BODY = "[{\"strField\":\"a\",\"intField\":\"44\"},{\"intField\":\"45\"}]";
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
@@ -201,6 +209,88 @@ public class MdsRestFacadeTest {
         assertEquals(81l, result.getMetadata().getTotalCount());
     }
 
+    @Test
+    public void shouldAppendNextCursorAndEstimatedCount() {
+        setUpCrudAccess(false, true, false, false);
+        when(dataService.estimateCount()).thenReturn(2000000L);
+
+        RestResponse result = mdsRestFacade.get(new QueryParams(1, 1), false, true);
+
+        assertEquals(2000000L, result.getMetadata().getTotalCount());
+        assertTrue(result.getMetadata().isTotalCountEstimated());
+        assertEquals(recordOne.getId(), RestCursor.decode(result.getMetadata().getNextCursor()).getId());
+        verify(dataService, never()).count();
+
+        // the cursor carries the values of the ordered fields
+        result = mdsRestFacade.get(new QueryParams(1, 1, new Order(VALUE_FIELD, Order.Direction.DESC)), false, true);
+
+        RestCursor cursor = RestCursor.decode(result.getMetadata().getNextCursor());
+        assertEquals(recordOne.getId(), cursor.getId());
+        assertEquals(asList((Object) recordOne.getValue()), cursor.getValues());
+
+        // page not full and no statistics
+        when(dataService.estimateCount()).thenReturn(null);
+        when(dataService.count()).thenReturn(1L);
+
+        result = mdsRestFacade.get(QueryParams.after(7L, 20, null), false, true);
+
+        assertEquals(1L, result.getMetadata().getTotalCount());
+        assertFalse(result.getMetadata().isTotalCountEstimated());
+        assertNull(result.getMetadata().getNextCursor());
+    }
+
+    @Test
+    public void shouldStreamInstancesWithBlobField() throws IOException {
+        setUpCrudAccess(false, true, false, false);
+        when(dataService.count()).thenReturn(81L);
+
+        QueryParams queryParams = new QueryParams(1, 1);
+        when(dataService.streamAll(queryParams, 100)).thenReturn(iterator(recordOne));
+        when(dataService.openBlob(recordOne.getId(), BLOB_FIELD))
+                .thenReturn(new ByteArrayInputStream(ArrayUtils.toPrimitive(blobFieldValue)));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        mdsRestFacade.stream(queryParams, true, false, output);
+
+        JsonNode result = objectMapper.readTree(output.toByteArray());
+        JsonNode data = result.get("data");
+
+        assertEquals(1, data.size());
+        assertEquals(3, data.get(0).size());
+        assertEquals(recordOne.getValue(), data.get(0).get(VALUE_FIELD).getTextValue());
+        assertArrayEquals(encodedBlobField, data.get(0).get(BLOB_FIELD).getBinaryValue());
+
+        assertEquals(ENTITY_NAME, result.get("metadata").get("entity").getTextValue());
+        assertEquals(81L, result.get("metadata").get("totalCount").getLongValue());
+        assertEquals(recordOne.getId(), RestCursor.decode(result.get("metadata").get("nextCursor").getTextValue()).getId());
+        verify(dataService, never()).retrieveAll(any(QueryParams.class));
+        // the blob is streamed from the database instead of being loaded as a whole
+        verify(dataService, never()).getDetachedField(any(Record.class), anyString());
+    }
+
+    @Test
+    public void shouldStreamLookupResultWithoutBlobField() throws IOException {
+        setUpCrudAccess(false, true, false, false);
+
+        Map<String, String> lookupMap = asLookupMap("str", "5");
+        QueryParams queryParams = new QueryParams(1, 20);
+        when(dataService.streamSupportedLookup("str", 5, queryParams, 100)).thenReturn(iterator(recordOne));
+        when(dataService.countSupportedLookup("str", 5)).thenReturn(1L);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        mdsRestFacade.streamLookup(SUPPORTED_LOOKUP_NAME, lookupMap, queryParams, false, output);
+
+        JsonNode result = objectMapper.readTree(output.toByteArray());
+
+        assertEquals(1, result.get("data").size());
+        assertEquals(recordOne.getValue(), result.get("data").get(0).get(VALUE_FIELD).getTextValue());
+        assertTrue(result.get("data").get(0).get(BLOB_FIELD).isNull());
+        assertEquals(1L, result.get("metadata").get("totalCount").getLongValue());
+        assertTrue(result.get("metadata").get("nextCursor").isNull());
+        verify(dataService, never()).getDetachedField(any(Record.class), anyString());
+        verify(dataService, never()).openBlob(anyLong(), anyString());
+    }
+
     @Test
     public void shouldAppendMetadataWhenIdParamWasSpecified() {
         setUpCrudAccess(false, true, false, false);
@@ -360,6 +450,46 @@ public class MdsRestFacadeTest {
         assertEquals(81l, result.getMetadata().getTotalCount());
     }
 
+    @Test
+    public void shouldExecuteBulkLookup() throws IOException {
+        Map<List, List<Record>> resultsByKey = new HashMap<>();
+        resultsByKey.put(asList("a", 44), asList(recordOne));
+        when(dataService.bulkSupportedLookup(any(Collection.class))).thenReturn(resultsByKey);
+
+        List<RestBulkLookupResult> results;
+        try (InputStream body = IOUtils.toInputStream(BULK_LOOKUP_BODY)) {
+            results = mdsRestFacade.executeBulkLookup(SUPPORTED_LOOKUP_NAME, body, false);
+        }
+
+        assertEquals(2, results.size());
+        assertEquals("a", results.get(0).getLookupParams().get(STR_FIELD));
+        assertEquals("44", results.get(0).getLookupParams().get(INT_FIELD));
+        assertEquals(1, results.get(0).getData().size());
+        assertEquals(3, results.get(0).getData().get(0).size());
+        assertEquals(recordOne.getValue(), results.get(0).getData().get(0).get(VALUE_FIELD));
+        assertNull(results.get(0).getData().get(0).get(BLOB_FIELD));
+        assertEquals("45", results.get(1).getLookupParams().get(INT_FIELD));
+        assertTrue(results.get(1).getData().isEmpty());
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(dataService).bulkSupportedLookup(captor.capture());
+        assertEquals(asList(asList("a", 44), asList(null, 45)), new ArrayList<>(captor.getValue()));
+    }
+
+    @Test
+    public void shouldExecuteBulkLookupWithBlobField() throws IOException {
+        Map<List, List<Record>> resultsByKey = new HashMap<>();
+        resultsByKey.put(asList("a", 44), asList(recordOne));
+        when(dataService.bulkSupportedLookup(any(Collection.class))).thenReturn(resultsByKey);
+
+        List<RestBulkLookupResult> results;
+        try (InputStream body = IOUtils.toInputStream(BULK_LOOKUP_BODY)) {
+            results = mdsRestFacade.executeBulkLookup(SUPPORTED_LOOKUP_NAME, body, true);
+        }
+
+        assertArrayEquals(encodedBlobField, (byte[]) results.get(0).getData().get(0).get(BLOB_FIELD));
+    }
+
     // bad input exceptions verifications
 
     @Test(expected = RestBadBodyFormatException.class)
@@ -378,6 +508,13 @@ public class MdsRestFacadeTest {
         }
     }
 
+    @Test(expected = RestBadBodyFormatException.class)
+    public void shouldThrowBadBodyFormatExceptionForBulkLookupsWithBadBody() throws IOException {
+        try (InputStream badBodyInput = IOUtils.toInputStream("This is not a list of lookup parameters")) {
+            mdsRestFacade.executeBulkLookup(SUPPORTED_LOOKUP_NAME, badBodyInput, false);
+        }
+    }
+
     // Lookup exceptions
 
     @Test(expected = RestLookupNotFoundException.class)
@@ -390,6 +527,20 @@ public class MdsRestFacadeTest {
         mdsRestFacade.executeLookup(FORBIDDEN_LOOKUP_NAME, asLookupMap("something", "55"), null, false);
     }
 
+    @Test(expected = RestLookupNotFoundException.class)
+    public void shouldThrowLookupNotFoundExceptionForBulkLookup() throws IOException {
+        try (InputStream body = IOUtils.toInputStream(BULK_LOOKUP_BODY)) {
+            mdsRestFacade.executeBulkLookup("nonExistent", body, false);
+        }
+    }
+
+    @Test(expected = RestLookupExecutionForbiddenException.class)
+    public void shouldThrowLookupForbiddenExceptionForBulkLookup() throws IOException {
+        try (InputStream body = IOUtils.toInputStream(BULK_LOOKUP_BODY)) {
+            mdsRestFacade.executeBulkLookup(FORBIDDEN_LOOKUP_NAME, body, false);
+        }
+    }
+
     // Unsupported exceptions verification
 
     @Test(expected = RestOperationNotSupportedException.class)
@@ -456,6 +607,31 @@ public class MdsRestFacadeTest {
         return map;
     }
 
+    private CloseableIterator<Record> iterator(Record... records) {
+        final Iterator<Record> iterator = asList(records).iterator();
+
+        return new CloseableIterator<Record>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Record next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
     private InputStream toInputStream(Record record) throws IOException {
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
             objectMapper.writeValue(baos, record);
@@ -467,5 +643,8 @@ public class MdsRestFacadeTest {
         List<Record> forbiddenLookup(String strField, Integer intField);
         List<Record> supportedLookup(String strField, Integer intField, QueryParams queryParams);
         long countSupportedLookup(String strField, Integer intField);
+        CloseableIterator<Record> streamSupportedLookup(String strField, Integer intField, QueryParams queryParams,
+                                                        int fetchSize);
+        Map<List, List<Record>> bulkSupportedLookup(Collection<List> keys);
     }
 }
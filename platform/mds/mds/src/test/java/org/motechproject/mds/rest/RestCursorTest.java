@@ -0,0 +1,44 @@
+package org.motechproject.mds.rest;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+import org.motechproject.mds.util.TypeHelper;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RestCursorTest {
+
+    @Test
+    public void shouldKeepValuesOfOrderedFields() {
+        DateTime dateTime = new DateTime(2016, 3, 1, 10, 15, 30, 123);
+        Date date = new DateTime(2016, 3, 1, 10, 15, 30, 456).toDate();
+        LocalDateTime localDateTime = LocalDateTime.of(2016, 3, 1, 10, 15, 30, 789000000);
+
+        RestCursor cursor = RestCursor.decode(RestCursor.encode(15L,
+                asList("text", null, 7, new BigDecimal("12.50"), dateTime, date, localDateTime)));
+
+        assertEquals(Long.valueOf(15L), cursor.getId());
+
+        List<Object> values = cursor.getValues();
+        assertEquals("text", values.get(0));
+        assertNull(values.get(1));
+        assertEquals(7, TypeHelper.parse(values.get(2), Integer.class));
+        assertEquals(new BigDecimal("12.50"), TypeHelper.parse(values.get(3), BigDecimal.class));
+        // the instants are kept up to the milliseconds
+        assertEquals(dateTime.getMillis(), ((DateTime) TypeHelper.parse(values.get(4), DateTime.class)).getMillis());
+        assertEquals(date, TypeHelper.parse(values.get(5), Date.class));
+        assertEquals(localDateTime, TypeHelper.parse(values.get(6), LocalDateTime.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotDecodeInvalidCursor() {
+        RestCursor.decode("bm90IGEgY3Vyc29y");
+    }
+}
@@ -0,0 +1,84 @@
+package org.motechproject.mds.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.mds.event.CacheEvictionEventBuilder;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.util.ClassName;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.event.Event;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.motechproject.mds.util.Constants.MDSEvents.ENTITY_CLASS;
+import static org.motechproject.mds.util.Constants.MDSEvents.EVICT_ENTITY_CACHE;
+import static org.motechproject.mds.util.Constants.MDSEvents.ORIGIN_INSTANCE_ID;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EntityCacheEvictionHandlerTest {
+
+    private static final String ENTITY_CLASS_NAME = "org.motechproject.mds.entity.Sample";
+
+    @InjectMocks
+    private EntityCacheEvictionHandler handler = new EntityCacheEvictionHandler();
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private ServiceReference serviceReference;
+
+    @Mock
+    private MotechDataService dataService;
+
+    @Before
+    public void setUp() {
+        when(bundleContext.getServiceReference(ClassName.getInterfaceName(ENTITY_CLASS_NAME)))
+                .thenReturn(serviceReference);
+        when(bundleContext.getService(serviceReference)).thenReturn(dataService);
+    }
+
+    @Test
+    public void shouldEvictEntityChangedByOtherInstance() {
+        Map<String, Object> params = new HashMap<>();
+        params.put(ENTITY_CLASS, ENTITY_CLASS_NAME);
+        params.put(ORIGIN_INSTANCE_ID, UUID.randomUUID());
+
+        handler.handleEvent(new Event(EVICT_ENTITY_CACHE, params));
+
+        verify(dataService).evictEntityCache(false);
+    }
+
+    @Test
+    public void shouldIgnoreEventsOfThisInstance() {
+        Map<String, Object> params = CacheEvictionEventBuilder.buildEventParams(ENTITY_CLASS_NAME);
+
+        handler.handleEvent(new Event(EVICT_ENTITY_CACHE, params));
+
+        verify(bundleContext, never()).getServiceReference(anyString());
+        verify(dataService, never()).evictEntityCache(anyBoolean());
+    }
+
+    @Test
+    public void shouldIgnoreEntitiesWithoutDataService() {
+        Map<String, Object> params = new HashMap<>();
+        params.put(ENTITY_CLASS, "org.motechproject.mds.entity.Missing");
+        params.put(ORIGIN_INSTANCE_ID, UUID.randomUUID());
+
+        handler.handleEvent(new Event(EVICT_ENTITY_CACHE, params));
+
+        verify(dataService, never()).evictEntityCache(anyBoolean());
+    }
+}
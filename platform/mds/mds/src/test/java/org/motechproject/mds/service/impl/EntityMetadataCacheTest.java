@@ -0,0 +1,103 @@
+package org.motechproject.mds.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.mds.repository.internal.MetadataHolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EntityMetadataCacheTest {
+
+    @Mock
+    private MetadataHolder metadataHolder;
+
+    private EntityMetadataCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new EntityMetadataCache();
+        cache.setMetadataHolder(metadataHolder);
+    }
+
+    @Test
+    public void shouldCacheLoadedValues() {
+        CountingLoader loader = new CountingLoader("value");
+
+        assertEquals("value", cache.get("key", loader));
+        assertEquals("value", cache.get("key", loader));
+        assertEquals(1, loader.getCount());
+    }
+
+    @Test
+    public void shouldNotCacheNulls() {
+        CountingLoader loader = new CountingLoader(null);
+
+        assertNull(cache.get("key", loader));
+        assertNull(cache.get("key", loader));
+        assertEquals(2, loader.getCount());
+    }
+
+    @Test
+    public void shouldReloadValuesAfterInvalidation() {
+        CountingLoader loader = new CountingLoader("value");
+
+        cache.get("key", loader);
+        cache.invalidate();
+        cache.get("key", loader);
+
+        assertEquals(2, loader.getCount());
+    }
+
+    @Test
+    public void shouldReloadValuesAfterMetadataReload() {
+        CountingLoader loader = new CountingLoader("value");
+
+        cache.get("key", loader);
+        when(metadataHolder.getMetadataVersion()).thenReturn(1L);
+        cache.get("key", loader);
+        cache.get("key", loader);
+
+        assertEquals(2, loader.getCount());
+    }
+
+    @Test
+    public void shouldNotStoreValuesLoadedBeforeInvalidation() {
+        CountingLoader invalidatingLoader = new CountingLoader("stale") {
+            @Override
+            public String load() {
+                // the entity changes while the value is being loaded
+                cache.invalidate();
+                return super.load();
+            }
+        };
+
+        assertEquals("stale", cache.get("key", invalidatingLoader));
+        assertEquals("fresh", cache.get("key", new CountingLoader("fresh")));
+    }
+
+    private static class CountingLoader implements EntityMetadataCache.Loader<String> {
+
+        private final String value;
+        private int count;
+
+        CountingLoader(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String load() {
+            count++;
+            return value;
+        }
+
+        int getCount() {
+            return count;
+        }
+    }
+}
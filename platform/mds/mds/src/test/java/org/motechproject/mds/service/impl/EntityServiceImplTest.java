@@ -233,6 +233,26 @@ public class EntityServiceImplTest {
         assertEquals(fields, lookup.getFields());
     }
 
+    @Test
+    public void shouldCacheCommittedLookupsUntilEntityChanges() {
+        Lookup lookup = new Lookup("lookupName", true, false, new ArrayList<Field>());
+        doReturn(entity).when(allEntities).retrieveById(1L);
+        doReturn(lookup).when(entity).getLookupByName("lookupName");
+
+        LookupDto first = entityService.getLookupByName(1L, "lookupName");
+        LookupDto second = entityService.getLookupByName(1L, "lookupName");
+
+        assertEquals("lookupName", first.getLookupName());
+        assertEquals(first, second);
+        verify(allEntities).retrieveById(1L);
+
+        entityService.updateMaxFetchDepth(1L, 3);
+        entityService.getLookupByName(1L, "lookupName");
+
+        // once for the update and once more for retrieving the lookup again
+        verify(allEntities, times(3)).retrieveById(1L);
+    }
+
     @Test
     public void shouldUpdateExistingLookup() {
         // given
@@ -18,7 +18,9 @@ import org.motechproject.mds.dto.FieldDto;
 import org.motechproject.mds.dto.UIDisplayFieldComparator;
 import org.motechproject.mds.entityinfo.EntityInfo;
 import org.motechproject.mds.entityinfo.EntityInfoReader;
+import org.motechproject.mds.event.CrudEventMode;
 import org.motechproject.mds.javassist.MotechClassPool;
+import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.CsvImportCustomizer;
 import org.motechproject.mds.service.DefaultCsvExportCustomizer;
@@ -34,6 +36,7 @@ import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -41,7 +44,9 @@ import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
 import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
@@ -121,8 +126,12 @@ public class CsvImporterExporterTest {
         when(bundleContext.getService(relatedServiceRef)).thenReturn(relatedDataService);
         when(relatedDataService.getClassType()).thenReturn(RelatedClass.class);
 
-        when(relatedDataService.findById(0L)).thenReturn(new RelatedClass(0L));
-        when(relatedDataService.findById(1L)).thenReturn(new RelatedClass(1L));
+        when(relatedDataService.findByIds(anyCollection())).thenAnswer(new FindByIdsAnswer<RelatedClass>() {
+            @Override
+            protected RelatedClass instance(Long id) {
+                return new RelatedClass(id);
+            }
+        });
 
         when(entityInfoReader.getEntityInfo(ENTITY_CLASSNAME)).thenReturn(entityInfo);
         when(entityInfoReader.getEntityInfo(ENTITY_ID)).thenReturn(entityInfo);
@@ -137,11 +146,12 @@ public class CsvImporterExporterTest {
         when(csvExportCustomizer.exportDisplayName(any(FieldDto.class))).thenCallRealMethod();
 
         CsvTestHelper.mockRecord2Fields(entityInfo, advancedSettingsDto, browsingSettingsDto);
+        CsvTestHelper.mockTransactions(motechDataService);
     }
 
     @Test
     public void shouldExportAllInstancesAsCsv() {
-        when(motechDataService.retrieveAll(any(QueryParams.class))).thenReturn(testInstances(IdMode.INCLUDE_ID));
+        when(motechDataService.executeQuery(any(QueryExecution.class))).thenReturn(testInstances(IdMode.INCLUDE_ID));
         StringWriter writer = new StringWriter();
 
         long result = csvImporterExporter.exportCsv(ENTITY_ID, writer);
@@ -152,7 +162,7 @@ public class CsvImporterExporterTest {
 
     @Test
     public void shouldUseExportCustomizer() {
-        when(motechDataService.retrieveAll(any(QueryParams.class))).thenReturn(testInstances(IdMode.INCLUDE_ID));
+        when(motechDataService.executeQuery(any(QueryExecution.class))).thenReturn(testInstances(IdMode.INCLUDE_ID));
         StringWriter writer = new StringWriter();
 
         long result = csvImporterExporter.exportCsv(ENTITY_ID, writer, csvExportCustomizer);
@@ -209,20 +219,54 @@ public class CsvImporterExporterTest {
         assertEquals(INSTANCE_COUNT, results.totalNumberOfImportedInstances());
     }
 
+    @Test
+    public void shouldCreateInstancesOneByOneIfEntityPublishesIndividualEvents() {
+        when(entityInfo.isCreateEventFired()).thenReturn(true);
+        when(entityInfo.getCrudEventMode()).thenReturn(CrudEventMode.INDIVIDUAL);
+        when(motechDataService.create(any(Record2.class))).thenAnswer(new CreateAnswer());
+
+        StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.EMPTY_ID_COLUMN));
+        CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID, reader, CONTINUE_ON_ERROR);
+
+        // the create event of every instance is published, related instances are still retrieved at once
+        verify(motechDataService, times(INSTANCE_COUNT)).create(any(Record2.class));
+        verify(motechDataService, never()).createAll(anyCollection());
+        verify(relatedDataService).findByIds(anyCollection());
+        assertEquals(INSTANCE_COUNT, results.newInstanceCount());
+    }
+
+    @Test
+    public void shouldCreateInstancesInBulkIfEntityPublishesBatchedEvents() {
+        when(entityInfo.isCreateEventFired()).thenReturn(true);
+        when(entityInfo.getCrudEventMode()).thenReturn(CrudEventMode.BATCHED);
+        when(motechDataService.createAll(anyCollection())).thenAnswer(new CreateAllAnswer());
+
+        StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.EMPTY_ID_COLUMN));
+        CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID, reader, CONTINUE_ON_ERROR);
+
+        verify(motechDataService).createAll(anyCollection());
+        verify(motechDataService, never()).create(any(Record2.class));
+        assertEquals(INSTANCE_COUNT, results.newInstanceCount());
+    }
+
     @Test
     public void testImportWithInvalidRows() {
         CsvImportResults results;
 
+        when(motechDataService.createAll(anyCollection())).thenAnswer(new CreateAllAnswer());
+
         // This will provide csv import with 3 rows with invalid enum fields
         StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.INVALID));
 
         // First import call with continueOnError flag on
         results = csvImporterExporter.importCsv(ENTITY_ID, reader, true);
 
-        // Check how many times create was called, how many objects were created and how many errors were caught
+        // Check how many objects were created and how many errors were caught
         // Expecting 17 creates and 3 errors since we got 3 invalid rows in a set of 20 passed as import input
-        ArgumentCaptor<Record2> captor = ArgumentCaptor.forClass(Record2.class);
-        verify(motechDataService, times(17)).create(captor.capture());
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(motechDataService).createAll(captor.capture());
+        verify(motechDataService, never()).create(any(Record2.class));
+        assertEquals(17, captor.getValue().size());
         assertNotNull(results);
         assertEquals(17, results.totalNumberOfImportedInstances());
         assertEquals(3, results.getRowErrors().size());
@@ -243,31 +287,41 @@ public class CsvImporterExporterTest {
         StringReader reader = new StringReader(getTestEntityRecordsAsCsv(idMode));
         // if id provided, prepare entities that will be updated
         if (idMode == IdMode.INCLUDE_ID) {
-            when(motechDataService.update(any(Record2.class))).thenAnswer(new Answer<Record2>() {
+            when(motechDataService.updateAll(anyCollection())).thenAnswer(new Answer<List<Record2>>() {
                 @Override
-                public Record2 answer(InvocationOnMock invocation) throws Throwable {
-                    return (Record2) invocation.getArguments()[0];
+                public List<Record2> answer(InvocationOnMock invocation) throws Throwable {
+                    return new ArrayList<>((Collection<Record2>) invocation.getArguments()[0]);
+                }
+            });
+            when(motechDataService.findByIds(anyCollection())).thenAnswer(new FindByIdsAnswer<Record2>() {
+                @Override
+                protected Record2 instance(Long id) {
+                    Record2 record = new Record2();
+                    record.setId(id);
+                    return record;
                 }
             });
-            for (long i = 0; i < INSTANCE_COUNT; i++) {
-                when(motechDataService.findById(i)).thenReturn(new Record2());
-            }
         } else {
-            when(motechDataService.create(any(Record2.class))).thenAnswer(new CreateAnswer());
+            when(motechDataService.createAll(anyCollection())).thenAnswer(new CreateAllAnswer());
         }
 
         CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID, reader, CONTINUE_ON_ERROR);
 
-        ArgumentCaptor<Record2> captor = ArgumentCaptor.forClass(Record2.class);
+        // all rows are written at once and related instances are retrieved using a single query
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
         if (idMode == IdMode.INCLUDE_ID) {
-            verify(motechDataService, times(INSTANCE_COUNT)).update(captor.capture());
+            verify(motechDataService).findByIds(anyCollection());
+            verify(motechDataService).updateAll(captor.capture());
         } else {
-            verify(motechDataService, times(INSTANCE_COUNT)).create(captor.capture());
+            verify(motechDataService).createAll(captor.capture());
         }
+        verify(motechDataService, never()).findById(anyLong());
+        verify(relatedDataService).findByIds(anyCollection());
+        verify(relatedDataService, never()).findById(anyLong());
 
         assertNotNull(results);
         assertEquals(INSTANCE_COUNT, results.totalNumberOfImportedInstances());
-        assertEquals(testInstances(idMode), captor.getAllValues());
+        assertEquals(testInstances(idMode), new ArrayList<>(captor.getValue()));
 
         assertEquals(ENTITY_CLASSNAME, results.getEntityClassName());
         assertEquals(ENTITY_NAME, results.getEntityName());
@@ -288,6 +342,36 @@ public class CsvImporterExporterTest {
         }
     }
 
+    @Test
+    public void shouldReportRowsWithMissingInstancesToUpdate() {
+        // only instances with even ids exist
+        when(motechDataService.findByIds(anyCollection())).thenAnswer(new FindByIdsAnswer<Record2>() {
+            @Override
+            protected Record2 instance(Long id) {
+                if (id % 2 != 0) {
+                    return null;
+                }
+                Record2 record = new Record2();
+                record.setId(id);
+                return record;
+            }
+        });
+        when(motechDataService.updateAll(anyCollection())).thenAnswer(new Answer<List<Record2>>() {
+            @Override
+            public List<Record2> answer(InvocationOnMock invocation) throws Throwable {
+                return new ArrayList<>((Collection<Record2>) invocation.getArguments()[0]);
+            }
+        });
+
+        StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.INCLUDE_ID));
+        CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID, reader, true);
+
+        assertEquals(INSTANCE_COUNT / 2, results.updatedInstanceCount());
+        assertEquals(INSTANCE_COUNT / 2, results.getRowErrors().size());
+        assertEquals("Unable to update, no instance with id = 1", results.getRowErrors().get(2));
+        verify(motechDataService, never()).createAll(anyCollection());
+    }
+
     private List<Record2> testInstances(IdMode idMode) {
         List<Record2> instances = new ArrayList<>();
 
@@ -386,6 +470,39 @@ public class CsvImporterExporterTest {
         return list;
     }
 
+    private class CreateAllAnswer implements Answer<List<Record2>> {
+
+        private long idCounter = 0;
+
+        @Override
+        public List<Record2> answer(InvocationOnMock invocation) throws Throwable {
+            List<Record2> created = new ArrayList<>();
+            for (Object ignored : (Collection) invocation.getArguments()[0]) {
+                Record2 record = new Record2();
+                record.setId(idCounter++);
+                created.add(record);
+            }
+            return created;
+        }
+    }
+
+    private abstract static class FindByIdsAnswer<T> implements Answer<List<T>> {
+
+        @Override
+        public List<T> answer(InvocationOnMock invocation) throws Throwable {
+            List<T> found = new ArrayList<>();
+            for (Object id : (Collection) invocation.getArguments()[0]) {
+                T instance = instance((Long) id);
+                if (instance != null) {
+                    found.add(instance);
+                }
+            }
+            return found;
+        }
+
+        protected abstract T instance(Long id);
+    }
+
     private class CreateAnswer implements Answer<Record2> {
 
         private long idCounter = 0;
@@ -0,0 +1,128 @@
+package org.motechproject.mds.service.impl.csv;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.service.MDSLookupService;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.testutil.records.Record2;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.mds.util.Order;
+
+import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class InstancePagerTest {
+
+    private static final String ENTITY_CLASSNAME = Record2.class.getName();
+
+    @Mock
+    private MotechDataService dataService;
+
+    @Mock
+    private MDSLookupService lookupService;
+
+    @Mock
+    private Query query;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldUseKeysetPaginationForWholeEntity() {
+        when(dataService.executeQuery(any(QueryExecution.class)))
+                .thenReturn(asList(record(1L), record(2L)))
+                .thenReturn(asList(record(3L)));
+
+        InstancePager pager = InstancePager.create(dataService, lookupService, ENTITY_CLASSNAME, null, null,
+                QueryParams.ORDER_ID_ASC, 2);
+
+        assertEquals(2, pager.nextChunk().size());
+        assertFalse(pager.isDone());
+        assertEquals(1, pager.nextChunk().size());
+        assertTrue(pager.isDone());
+        assertTrue(pager.nextChunk().isEmpty());
+
+        ArgumentCaptor<QueryExecution> captor = ArgumentCaptor.forClass(QueryExecution.class);
+        verify(dataService, times(2)).executeQuery(captor.capture());
+
+        // the second chunk starts after the last id of the first one
+        when(query.executeWithArray(2L)).thenReturn(new ArrayList<>());
+        captor.getAllValues().get(1).execute(query, new InstanceSecurityRestriction());
+
+        verify(query).setFilter("id > param0");
+        verify(query).declareParameters("java.lang.Long param0");
+        verify(query).setOrdering("id ascending");
+        verify(query).setRange(0, 2);
+        verify(query).executeWithArray(2L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldPageWithOffsetsForLookups() {
+        when(lookupService.findMany(eq(ENTITY_CLASSNAME), eq("lookup"), anyMap(), any(QueryParams.class)))
+                .thenReturn(asList(record(5L), record(4L)))
+                .thenReturn(Collections.emptyList());
+
+        QueryParams params = new QueryParams(new Order("value", Order.Direction.DESC));
+        InstancePager pager = InstancePager.create(dataService, lookupService, ENTITY_CLASSNAME, "lookup",
+                Collections.<String, Object>emptyMap(), params, 2);
+
+        assertEquals(2, pager.nextChunk().size());
+        assertTrue(pager.nextChunk().isEmpty());
+        assertTrue(pager.isDone());
+
+        ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
+        verify(lookupService, times(2)).findMany(eq(ENTITY_CLASSNAME), eq("lookup"), anyMap(), captor.capture());
+
+        assertEquals(Integer.valueOf(1), captor.getAllValues().get(0).getPage());
+        assertEquals(Integer.valueOf(2), captor.getAllValues().get(1).getPage());
+
+        // the id is added as the last ordering, so that the order of pages is stable
+        List<Order> orderList = captor.getAllValues().get(1).getOrderList();
+        assertEquals(Integer.valueOf(2), captor.getAllValues().get(1).getPageSize());
+        assertEquals(2, orderList.size());
+        assertEquals("value", orderList.get(0).getField());
+        assertEquals("id", orderList.get(1).getField());
+        assertEquals(Order.Direction.ASC, orderList.get(1).getDirection());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldRetrieveRequestedPageOnly() {
+        QueryParams params = new QueryParams(3, 10);
+        when(dataService.retrieveAll(params)).thenReturn(asList(record(1L)));
+
+        InstancePager pager = InstancePager.create(dataService, lookupService, ENTITY_CLASSNAME, "", null, params, 2);
+
+        assertEquals(1, pager.nextChunk().size());
+        assertTrue(pager.isDone());
+        verify(dataService).retrieveAll(params);
+    }
+
+    private Record2 record(Long id) {
+        Record2 record = new Record2();
+        record.setId(id);
+        return record;
+    }
+}
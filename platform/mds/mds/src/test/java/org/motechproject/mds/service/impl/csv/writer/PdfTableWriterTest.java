@@ -0,0 +1,74 @@
+package org.motechproject.mds.service.impl.csv.writer;
+
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.parser.PdfTextExtractor;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+public class PdfTableWriterTest {
+
+    private static final String[] HEADERS = {"id", "name", "description"};
+
+    @Test
+    public void shouldWritePagesBeforeAllRowsAreAdded() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PdfTableWriter writer = new PdfTableWriter(out);
+
+        writeRows(writer, 3000);
+        int writtenBeforeClose = out.size();
+        writer.close();
+
+        // only the last pages and the document trailer are left for the close
+        assertTrue(writtenBeforeClose > out.size() / 2);
+
+        String text = extractText(out.toByteArray());
+        assertTrue(text.contains("name0"));
+        assertTrue(text.contains("name1500"));
+        assertTrue(text.contains("name2999"));
+    }
+
+    @Test
+    public void shouldWriteSmallTablesOnClose() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PdfTableWriter writer = new PdfTableWriter(out);
+
+        writeRows(writer, 10);
+        writer.close();
+
+        String text = extractText(out.toByteArray());
+        assertTrue(text.contains("description"));
+        assertTrue(text.contains("name0"));
+        assertTrue(text.contains("name9"));
+    }
+
+    private void writeRows(PdfTableWriter writer, int count) throws IOException {
+        writer.writeHeader(HEADERS);
+
+        Map<String, String> row = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            row.put("id", String.valueOf(i));
+            row.put("name", "name" + i);
+            row.put("description", "A description of the instance number " + i);
+            writer.writeRow(row, HEADERS);
+        }
+    }
+
+    private String extractText(byte[] pdf) throws IOException {
+        PdfReader reader = new PdfReader(pdf);
+        try {
+            StringBuilder text = new StringBuilder();
+            for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+                text.append(PdfTextExtractor.getTextFromPage(reader, page)).append('\n');
+            }
+            return text.toString();
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.motechproject.mds.service.impl.history;
 
+import org.datanucleus.api.jdo.NucleusJDOHelper;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -28,6 +29,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import org.springframework.context.ApplicationContext;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.jdo.JDOHelper;
 import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 import javax.jdo.Query;
@@ -35,15 +37,21 @@ import java.util.Arrays;
 import java.util.Date;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.motechproject.mds.util.Constants.Util.ID_FIELD_NAME;
+import static org.motechproject.mds.util.Constants.Util.INSTANCE_VERSION_FIELD_NAME;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({MDSClassLoader.class, TransactionSynchronizationManager.class})
+@PrepareForTest({MDSClassLoader.class, TransactionSynchronizationManager.class, JDOHelper.class,
+        NucleusJDOHelper.class})
 public class HistoryServiceTest {
 
     @Mock
@@ -115,6 +123,33 @@ public class HistoryServiceTest {
         verifyZeroInteractions(manager);
     }
 
+    @Test
+    public void shouldSkipRecordingIfOnlyUntrackedFieldsAreDirty() throws Exception {
+        Record instance = new Record();
+        registerDirtyFields(instance, ID_FIELD_NAME, INSTANCE_VERSION_FIELD_NAME);
+
+        historyService.registerChanges(instance);
+        historyService.record(instance);
+
+        // the dirty fields tell that nothing changed, so the latest revision is not even loaded
+        verify(manager, never()).newQuery(Record__History.class);
+        verify(manager, never()).makePersistent(any());
+    }
+
+    @Test
+    public void shouldRecordDirtyInstanceWithoutLoadingLatestRevision() throws Exception {
+        Record instance = new Record();
+        registerDirtyFields(instance, "value");
+        mockSchemaVersion();
+
+        historyService.registerChanges(instance);
+        historyService.record(instance);
+
+        verify(manager, never()).newQuery(Record__History.class);
+        verify(manager).makePersistent(recordHistoryCaptor.capture());
+        assertEquals(instance.getValue(), recordHistoryCaptor.getValue().getValue());
+    }
+
     @Test
     public void shouldCreateNewRecord() throws Exception {
         Entity entity = mock(Entity.class);
@@ -149,10 +184,7 @@ public class HistoryServiceTest {
 
         doReturn(null).when(query).execute(anyLong());
 
-        final String serviceName = ClassName.getServiceName(Record.class.getName());
-        doReturn(true).when(applicationContext).containsBean(serviceName);
-        doReturn(dataService).when(applicationContext).getBean(serviceName);
-        doReturn(4L).when(dataService).getSchemaVersion();
+        mockSchemaVersion();
 
         Record instance = new Record();
         historyService.record(instance);
@@ -166,4 +198,21 @@ public class HistoryServiceTest {
         assertEquals(instance.getValue(), history.getValue());
         assertEquals(instance.getDate(), history.getDate());
     }
+
+    private void registerDirtyFields(Object instance, String... dirtyFields) {
+        PowerMockito.mockStatic(JDOHelper.class);
+        PowerMockito.mockStatic(NucleusJDOHelper.class);
+
+        when(TransactionSynchronizationManager.isSynchronizationActive()).thenReturn(true);
+        when(JDOHelper.isNew(instance)).thenReturn(false);
+        when(JDOHelper.getPersistenceManager(instance)).thenReturn(manager);
+        when(NucleusJDOHelper.getDirtyFields(instance, manager)).thenReturn(dirtyFields);
+    }
+
+    private void mockSchemaVersion() {
+        final String serviceName = ClassName.getServiceName(Record.class.getName());
+        doReturn(true).when(applicationContext).containsBean(serviceName);
+        doReturn(dataService).when(applicationContext).getBean(serviceName);
+        doReturn(4L).when(dataService).getSchemaVersion();
+    }
 }
@@ -0,0 +1,131 @@
+package org.motechproject.mds.service.impl.history;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.motechproject.mds.testutil.records.history.Record__History;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HistoryWriterTest {
+
+    @Mock
+    private PersistenceManagerFactory persistenceManagerFactory;
+
+    @Mock
+    private PersistenceManager persistenceManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    private HistoryWriter historyWriter;
+
+    @Before
+    public void setUp() {
+        when(persistenceManagerFactory.getPersistenceManager()).thenReturn(persistenceManager);
+        when(transactionManager.getTransaction(any(TransactionDefinition.class))).thenReturn(transactionStatus);
+
+        historyWriter = new HistoryWriter(persistenceManagerFactory, new TransactionTemplate(transactionManager));
+    }
+
+    @Test
+    public void shouldWriteSubmittedRecordsBeforeStopping() {
+        Record__History first = new Record__History();
+        Record__History second = new Record__History();
+        Record__History third = new Record__History();
+
+        historyWriter.submit(Arrays.<Object>asList(first, second));
+        historyWriter.submit(Arrays.<Object>asList(third));
+        historyWriter.stop();
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(persistenceManager, atLeastOnce()).makePersistentAll(captor.capture());
+
+        List<Object> written = new ArrayList<>();
+        for (Collection batch : captor.getAllValues()) {
+            written.addAll(batch);
+        }
+        assertEquals(Arrays.<Object>asList(first, second, third), written);
+        verify(transactionManager, atLeastOnce()).commit(transactionStatus);
+    }
+
+    @Test
+    public void shouldReturnLatestRevisionUntilItIsWritten() throws InterruptedException {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch written = new CountDownLatch(1);
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws InterruptedException {
+                writing.countDown();
+                written.await();
+                return null;
+            }
+        }).when(persistenceManager).makePersistentAll(anyCollection());
+
+        Record__History first = revision(1L);
+        Record__History second = revision(1L);
+
+        historyWriter.submit(Arrays.<Object>asList(first, second, revision(2L)));
+        writing.await();
+
+        // the revisions are being written, so they are not in the database yet
+        assertSame(second, historyWriter.getPendingRevision(Record__History.class, 1L));
+        assertNull(historyWriter.getPendingRevision(Record__History.class, 3L));
+
+        written.countDown();
+        historyWriter.stop();
+
+        assertNull(historyWriter.getPendingRevision(Record__History.class, 1L));
+        assertNull(historyWriter.getPendingRevision(Record__History.class, 2L));
+    }
+
+    @Test
+    public void shouldRollbackAndContinueIfWritingFails() {
+        doThrow(new IllegalStateException("Write failed")).doReturn(null)
+                .when(persistenceManager).makePersistentAll(anyCollection());
+
+        historyWriter.submit(Arrays.<Object>asList(new Record__History()));
+        historyWriter.stop();
+        historyWriter.submit(Arrays.<Object>asList(new Record__History()));
+
+        verify(persistenceManager, times(2)).makePersistentAll(anyCollection());
+        verify(transactionManager).rollback(transactionStatus);
+    }
+
+    private Record__History revision(Long instanceId) {
+        Record__History revision = new Record__History();
+        revision.setRecord__HistoryCurrentVersion(instanceId);
+        return revision;
+    }
+}
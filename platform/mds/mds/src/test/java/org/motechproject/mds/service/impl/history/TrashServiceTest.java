@@ -26,20 +26,29 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.wiring.BundleWiring;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
 
 import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 import javax.jdo.Query;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.motechproject.testing.utils.TimeFaker.fakeNow;
 import static org.motechproject.testing.utils.TimeFaker.stopFakingTime;
@@ -81,6 +90,12 @@ public class TrashServiceTest {
     @Mock
     Entity entity;
 
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
     @Captor
     private ArgumentCaptor<Record__Trash> trashCaptor;
 
@@ -95,12 +110,14 @@ public class TrashServiceTest {
         ((TrashServiceImpl) trashService).setMdsSchedulerService(schedulerService);
         ((TrashServiceImpl) trashService).setPersistenceManagerFactory(factory);
         ((TrashServiceImpl) trashService).setBundleContext(bundleContext);
+        ((TrashServiceImpl) trashService).setTransactionManager(transactionManager);
 
         doReturn(manager).when(factory).getPersistenceManager();
         doReturn(query).when(manager).newQuery(Record.class);
         doReturn(bundle).when(bundleContext).getBundle();
         doReturn(bundleWiring).when(bundle).adapt(BundleWiring.class);
         doReturn(classLoader).when(bundleWiring).getClassLoader();
+        doReturn(transactionStatus).when(transactionManager).getTransaction(any(TransactionDefinition.class));
     }
 
     @Test
@@ -138,6 +155,25 @@ public class TrashServiceTest {
         assertEquals(instance.getValue(), trash.getValue());
     }
 
+    @Test
+    public void shouldMoveObjectsToTrashInBulk() throws Exception {
+        doReturn(Record__Trash.class).when(classLoader).loadClass(Record__Trash.class.getName());
+
+        Record first = new Record();
+        Record second = new Record();
+        trashService.moveToTrash(Arrays.asList(first, second), 1L);
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(manager).makePersistentAll(captor.capture());
+        assertEquals(2, captor.getValue().size());
+
+        // the instances are being deleted, moving them to trash again is ignored
+        trashService.moveToTrash(first, 1L);
+        trashService.moveToTrash(second, 1L);
+
+        verify(manager, never()).makePersistent(any());
+    }
+
     @Test
     public void shouldFindTrashEntityById() throws Exception {
         doReturn(Record__Trash.class).when(classLoader).loadClass("org.test.history.TestEntity__Trash");
@@ -178,6 +214,36 @@ public class TrashServiceTest {
         assertEquals(captor.getValue(), trash.getValue());
     }
 
+    @Test
+    public void shouldEmptyTrashInChunks() throws Exception {
+        doReturn(Record__Trash.class).when(classLoader).loadClass("org.test.history.TestEntity__Trash");
+        doReturn(query).when(manager).newQuery(Record__Trash.class);
+        doReturn(2).when(settingsService).getTimeValue();
+        doReturn(TimeUnit.HOURS).when(settingsService).getTimeUnit();
+
+        List<Record__Trash> fullChunk = new ArrayList<>();
+        for (int i = 0; i < 500; ++i) {
+            fullChunk.add(new Record__Trash());
+        }
+        List<Record__Trash> lastChunk = Arrays.asList(new Record__Trash(), new Record__Trash());
+
+        DateTime now = DateTime.now();
+        fakeNow(now);
+
+        try {
+            doReturn(fullChunk).doReturn(lastChunk).when(query).execute(now.minusHours(2).toDate());
+
+            trashService.emptyTrash(Arrays.asList("org.test.TestEntity"));
+
+            verify(query, times(2)).setRange(0, 500);
+            verify(manager).deletePersistentAll(fullChunk);
+            verify(manager).deletePersistentAll(lastChunk);
+            verify(transactionManager, times(2)).commit(transactionStatus);
+        } finally {
+            stopFakingTime();
+        }
+    }
+
     @Test
     public void shouldNotScheduleJobIfNotTrashMode() throws Exception {
         doReturn(DeleteMode.DELETE).when(settingsService).getDeleteMode();
@@ -0,0 +1,74 @@
+package org.motechproject.mds.testutil;
+
+import java.util.List;
+
+/**
+ * Class used in the property accessor builder test. Only the properties with a public getter and a public
+ * setter of the same type are expected in the accessor, inherited ones included.
+ */
+public class AccessorTestClass extends EntBuilderTestClass {
+
+    private int count;
+    private double ratio;
+    private Long total;
+    private List<String> tags;
+    private String readOnly = "readOnly";
+    private String overloaded;
+    private String mismatched;
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public double getRatio() {
+        return ratio;
+    }
+
+    public void setRatio(double ratio) {
+        this.ratio = ratio;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    public void setTotal(Long total) {
+        this.total = total;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+
+    public String getReadOnly() {
+        return readOnly;
+    }
+
+    public String getOverloaded() {
+        return overloaded;
+    }
+
+    public void setOverloaded(String overloaded) {
+        this.overloaded = overloaded;
+    }
+
+    public void setOverloaded(Integer overloaded) {
+        this.overloaded = String.valueOf(overloaded);
+    }
+
+    public String getMismatched() {
+        return mismatched;
+    }
+
+    public void setMismatched(Integer mismatched) {
+        this.mismatched = String.valueOf(mismatched);
+    }
+}
@@ -24,6 +24,20 @@ public class LookupNameTest {
         assertEquals("countSample", LookupName.lookupCountMethod("sample"));
     }
 
+    @Test
+    public void shouldCreateStreamLookupMethodNames() {
+        assertEquals("streamSampleLookupMethod", LookupName.lookupStreamMethod("Sample lookup Method"));
+        assertEquals("streamSampleLookupMethod", LookupName.lookupStreamMethod("sampleLookupMethod"));
+        assertEquals("streamSample", LookupName.lookupStreamMethod("sample"));
+    }
+
+    @Test
+    public void shouldCreateBulkLookupMethodNames() {
+        assertEquals("bulkSampleLookupMethod", LookupName.lookupBulkMethod("Sample lookup Method"));
+        assertEquals("bulkSampleLookupMethod", LookupName.lookupBulkMethod("sampleLookupMethod"));
+        assertEquals("bulkSample", LookupName.lookupBulkMethod("sample"));
+    }
+
     @Test
     public void shouldReturnRelatedName() {
         assertEquals("id", LookupName.getRelatedFieldName("fieldName.id"));
@@ -0,0 +1,79 @@
+package org.motechproject.mds.util;
+
+import org.junit.After;
+import org.junit.Test;
+import org.motechproject.mds.testutil.records.Record;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PropertyAccessorsTest {
+
+    private static final String ACCESSOR_NAME = ClassName.getAccessorName(Record.class.getName());
+
+    @After
+    public void tearDown() {
+        PropertyAccessors.unregister(Record.class);
+    }
+
+    @Test
+    public void shouldRegisterAccessorLoadedByClassLoader() throws Exception {
+        ClassLoader classLoader = mock(ClassLoader.class);
+        doReturn(RecordAccessor.class).when(classLoader).loadClass(ACCESSOR_NAME);
+
+        PropertyAccessor accessor = PropertyAccessors.register(Record.class, classLoader);
+
+        assertTrue(accessor instanceof RecordAccessor);
+        assertSame(accessor, PropertyAccessors.get(Record.class));
+    }
+
+    @Test
+    public void shouldUnregisterAccessorIfItIsMissing() throws Exception {
+        PropertyAccessors.register(Record.class, new RecordAccessor());
+
+        ClassLoader classLoader = mock(ClassLoader.class);
+        when(classLoader.loadClass(ACCESSOR_NAME)).thenThrow(new ClassNotFoundException(ACCESSOR_NAME));
+
+        assertNull(PropertyAccessors.register(Record.class, classLoader));
+        assertNull(PropertyAccessors.get(Record.class));
+    }
+
+    @Test
+    public void shouldNotRegisterClassWhichIsNotAccessor() throws Exception {
+        ClassLoader classLoader = mock(ClassLoader.class);
+        doReturn(Record.class).when(classLoader).loadClass(ACCESSOR_NAME);
+
+        assertNull(PropertyAccessors.register(Record.class, classLoader));
+        assertNull(PropertyAccessors.get(Record.class));
+    }
+
+    @Test
+    public void shouldReturnAccessorForExactClassOnly() {
+        PropertyAccessors.register(Record.class, new RecordAccessor());
+
+        assertEquals(RecordAccessor.class, PropertyAccessors.get(Record.class).getClass());
+        assertNull(PropertyAccessors.get(new Record() { }.getClass()));
+    }
+
+    public static class RecordAccessor extends PropertyAccessor {
+
+        public RecordAccessor() {
+            super(new String[]{"value"});
+        }
+
+        @Override
+        public Object get(Object instance, int index) {
+            return ((Record) instance).getValue();
+        }
+
+        @Override
+        public void set(Object instance, int index, Object value) {
+            ((Record) instance).setValue((String) value);
+        }
+    }
+}
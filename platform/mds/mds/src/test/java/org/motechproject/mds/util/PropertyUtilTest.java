@@ -74,6 +74,65 @@ public class PropertyUtilTest {
     }
 
 
+    @Test
+    public void shouldCopyObjectValuesUsingAccessor() {
+        TestClassAccessor accessor = new TestClassAccessor();
+        PropertyAccessors.register(TestClass.class, accessor);
+
+        try {
+            TestClass fromDb = new TestClass(7, "fromDb", "accessible", 5L);
+            TestClass transientObj = new TestClass(8, "transient", "changed", 6L);
+
+            PropertyUtil.copyProperties(fromDb, transientObj);
+
+            assertEquals(8, fromDb.publicInt);
+            assertEquals("changed", fromDb.accessibleString);
+            assertEquals("fromDb", fromDb.privateStr);
+            // no change since we ignore generated fields
+            assertEquals(Long.valueOf(5), fromDb.id);
+            assertEquals(2, accessor.writes);
+        } finally {
+            PropertyAccessors.unregister(TestClass.class);
+        }
+    }
+
+    @Test
+    public void shouldFindChangedFieldsUsingAccessor() {
+        TestClassAccessor accessor = new TestClassAccessor();
+        PropertyAccessors.register(TestClass.class, accessor);
+
+        try {
+            TestClass oldInstance = new TestClass(7, "old", "accessible", 5L);
+            TestClass newInstance = new TestClass(8, "new", "accessible", 6L);
+
+            assertEquals(asList("publicInt"), PropertyUtil.findChangedFields(newInstance, oldInstance));
+            assertTrue(accessor.reads > 0);
+        } finally {
+            PropertyAccessors.unregister(TestClass.class);
+        }
+    }
+
+    @Test
+    public void shouldGetAndSetPropertiesUsingAccessor() {
+        TestClassAccessor accessor = new TestClassAccessor();
+        PropertyAccessors.register(TestClass.class, accessor);
+
+        try {
+            TestClass instance = new TestClass(7, "private", "accessible", 5L);
+
+            PropertyUtil.safeSetProperty(instance, "publicInt", 9);
+            // a value of a wrong type is logged and ignored, the same as with reflection
+            PropertyUtil.safeSetProperty(instance, "accessibleString", 9);
+
+            assertEquals(9, PropertyUtil.safeGetProperty(instance, "publicInt"));
+            assertEquals("accessible", PropertyUtil.safeGetProperty(instance, "accessibleString"));
+            assertEquals(2, accessor.reads);
+            assertEquals(1, accessor.writes);
+        } finally {
+            PropertyAccessors.unregister(TestClass.class);
+        }
+    }
+
     private class TestClass {
 
         private Long id;
@@ -116,6 +175,53 @@ public class PropertyUtilTest {
         }
     }
 
+    private class TestClassAccessor extends PropertyAccessor {
+
+        private int reads;
+        private int writes;
+
+        private TestClassAccessor() {
+            super(new String[]{"accessibleString", "id", "publicInt"});
+        }
+
+        @Override
+        public Object get(Object instance, int index) {
+            TestClass bean = (TestClass) instance;
+            reads++;
+
+            switch (index) {
+                case 0:
+                    return bean.getAccessibleString();
+                case 1:
+                    return bean.getId();
+                case 2:
+                    return bean.getPublicInt();
+                default:
+                    throw new IllegalArgumentException("No property with index " + index);
+            }
+        }
+
+        @Override
+        public void set(Object instance, int index, Object value) {
+            TestClass bean = (TestClass) instance;
+
+            switch (index) {
+                case 0:
+                    bean.setAccessibleString((String) value);
+                    break;
+                case 1:
+                    bean.setId((Long) value);
+                    break;
+                case 2:
+                    bean.setPublicInt((Integer) value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("No property with index " + index);
+            }
+            writes++;
+        }
+    }
+
     public static class TestClassWithCollections {
         private Set set;
         private List list;
@@ -8,6 +8,8 @@ import org.motechproject.commons.api.Range;
 import org.motechproject.commons.date.model.Time;
 import org.motechproject.commons.date.util.DateUtil;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
 import java.util.Arrays;
@@ -64,6 +66,9 @@ public class TypeHelperTest {
 
         assertEquals(true, TypeHelper.parse("true", Boolean.class));
 
+        assertEquals(new BigDecimal("12.50"), TypeHelper.parse("12.50", BigDecimal.class));
+        assertEquals(new BigInteger("12345678901234567890"), TypeHelper.parse("12345678901234567890", BigInteger.class));
+
         assertEquals(ld, TypeHelper.parse(ld, LocalDate.class));
         assertEquals(ld, TypeHelper.parse(ld.toString(), LocalDate.class));
         assertEquals(ld2, TypeHelper.parse("2000-08-22", LocalDate.class));
@@ -133,7 +133,7 @@ public class PlatformActivator implements BundleActivator {
         } else {
             EventAdmin eventAdmin = bundleContext.getService(ref);
 
-            OsgiEventProxy osgiEventProxy = new OsgiEventProxyImpl(eventAdmin);
+            OsgiEventProxy osgiEventProxy = new OsgiEventProxyImpl(eventAdmin, bundleContext);
             platformStatusManager.setOsgiEventProxy(osgiEventProxy);
             bundleContext.registerService(OsgiEventProxy.class, osgiEventProxy, null);
         }
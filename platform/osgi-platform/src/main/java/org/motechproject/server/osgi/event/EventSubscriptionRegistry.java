@@ -0,0 +1,17 @@
+package org.motechproject.server.osgi.event;
+
+/**
+ * Tells whether Motech events with a given subject have any listeners. The event module registers
+ * its listener registry under this interface, so that modules sending events through the {@link OsgiEventProxy}
+ * can skip building events nobody listens to, without having a dependency on the event module.
+ */
+public interface EventSubscriptionRegistry {
+
+    /**
+     * Returns {@code true} if the event with the subject has any listeners.
+     *
+     * @param subject the subject of the event
+     * @return {@code true} if the subject has any listeners; {@code false} otherwise
+     */
+    boolean hasListener(String subject);
+}
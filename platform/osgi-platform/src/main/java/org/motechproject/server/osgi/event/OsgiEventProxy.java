@@ -52,4 +52,14 @@ public interface OsgiEventProxy {
      * @param proxyHandledEventInOSGi if true, the event will be also sent as an OSGi event upon being received by the event system
      */
     void broadcastEvent(String subject, Map<String, Object> parameters, boolean proxyHandledEventInOSGi);
+
+    /**
+     * Checks whether Motech events with the given subject have any listeners, using the
+     * {@link EventSubscriptionRegistry} registered by the event module. Events sent through the queue which have
+     * no listeners are dropped by the event module, so callers can skip sending them. If the registry is not
+     * available, it is assumed that the event has listeners.
+     * @param subject the subject of the event
+     * @return true if the event might have listeners, false if it has none
+     */
+    boolean hasListener(String subject);
 }
@@ -1,24 +1,34 @@
 package org.motechproject.server.osgi.event.impl;
 
+import org.motechproject.server.osgi.event.EventSubscriptionRegistry;
 import org.motechproject.server.osgi.event.OsgiEventProxy;
+import org.osgi.framework.BundleContext;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
+import org.osgi.util.tracker.ServiceTracker;
 
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * The implementation of {@link OsgiEventProxy}. Uses the {@link EventAdmin}
- * to send OSGi events.
+ * to send OSGi events and tracks the {@link EventSubscriptionRegistry} to check for listeners.
  */
 public class OsgiEventProxyImpl implements OsgiEventProxy {
 
     private EventAdmin eventAdmin;
+    private ServiceTracker<EventSubscriptionRegistry, EventSubscriptionRegistry> subscriptionRegistryTracker;
 
     public OsgiEventProxyImpl(EventAdmin eventAdmin) {
         this.eventAdmin = eventAdmin;
     }
 
+    public OsgiEventProxyImpl(EventAdmin eventAdmin, BundleContext bundleContext) {
+        this(eventAdmin);
+        this.subscriptionRegistryTracker = new ServiceTracker<>(bundleContext, EventSubscriptionRegistry.class, null);
+        this.subscriptionRegistryTracker.open();
+    }
+
     @Override
     public void sendEvent(String subject) {
         sendEvent(subject, new HashMap<String, Object>());
@@ -41,6 +51,15 @@ public class OsgiEventProxyImpl implements OsgiEventProxy {
         eventAdmin.postEvent(event);
     }
 
+    @Override
+    public boolean hasListener(String subject) {
+        EventSubscriptionRegistry registry = subscriptionRegistryTracker == null
+                ? null
+                : subscriptionRegistryTracker.getService();
+
+        return registry == null || registry.hasListener(subject);
+    }
+
     private Event buildEvent(String subject, Map<String, Object> parameters, boolean proxyOnReceivingEnd, boolean broadcast) {
         Map<String, Object> properties = new HashMap<>();
 
@@ -15,6 +15,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.verify;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -59,6 +60,11 @@ public class OsgiEventProxyTest {
     }
 
 
+    @Test
+    public void shouldAssumeListenersWithoutSubscriptionRegistry() {
+        assertTrue(osgiEventProxy.hasListener(SUBJECT));
+    }
+
     private Map<String, Object> buildParams() {
         Map<String, Object> params = new HashMap<>();
 
@@ -4,9 +4,12 @@ import org.motechproject.config.domain.LoginMode;
 import org.motechproject.security.domain.MotechUser;
 import org.motechproject.security.exception.EmailExistsException;
 import org.motechproject.security.mds.MotechUsersDataService;
+import org.motechproject.security.service.authentication.AuthenticationCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.Iterator;
 import java.util.List;
@@ -16,11 +19,13 @@ import static org.apache.commons.lang.StringUtils.isNotBlank;
 
 /**
  * Implementation of DAO interface that utilizes a MDS back-end for storage.
- * Class responsible for handling MotechUsers.
+ * Class responsible for handling MotechUsers. Cached authentications of updated or removed users are evicted,
+ * so that changes of their passwords or statuses take effect immediately.
  */
 @Repository
 public class MotechUsersDao {
     private MotechUsersDataService dataService;
+    private AuthenticationCache authenticationCache;
 
     /**
      * Gets MotechUser with given name
@@ -109,6 +114,7 @@ public class MotechUsersDao {
         }
 
         dataService.update(motechUser);
+        evictCachedAuthentication(motechUser.getUserName());
     }
 
     /**
@@ -119,6 +125,7 @@ public class MotechUsersDao {
     @Transactional
     public void remove(MotechUser motechUser) {
         dataService.delete(motechUser);
+        evictCachedAuthentication(motechUser.getUserName());
     }
 
     /**
@@ -165,8 +172,27 @@ public class MotechUsersDao {
         return users;
     }
 
+    private void evictCachedAuthentication(final String userName) {
+        authenticationCache.evict(userName);
+
+        // authentications running before the commit still see the old user
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    authenticationCache.evict(userName);
+                }
+            });
+        }
+    }
+
     @Autowired
     public void setDataService(MotechUsersDataService dataService) {
         this.dataService = dataService;
     }
+
+    @Autowired
+    public void setAuthenticationCache(AuthenticationCache authenticationCache) {
+        this.authenticationCache = authenticationCache;
+    }
 }
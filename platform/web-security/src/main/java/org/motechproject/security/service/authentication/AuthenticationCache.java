@@ -0,0 +1,208 @@
+package org.motechproject.security.service.authentication;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the results of successful username and password authentications for a short time, so that clients
+ * authenticating every request with HTTP basic authentication do not cause a user lookup and a password hash
+ * check each time. A result is returned only for the same username and a password with the same digest. The
+ * digests are keyed with a random secret generated for every cache instance, so the passwords cannot be
+ * recovered from them. The number of cached results is bounded, new results are not cached once the bound is
+ * reached and no expired result can be removed.
+ * <p>
+ * Results have to be evicted whenever the user, the roles or the permissions they were built from change,
+ * see {@link org.motechproject.security.service.UserContextService} and
+ * {@link org.motechproject.security.repository.MotechUsersDao}.
+ */
+@Component
+public class AuthenticationCache {
+
+    public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(5);
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private static final String DIGEST_ALGORITHM = "HmacSHA256";
+    private static final int SECRET_LENGTH = 32;
+
+    private final ConcurrentMap<String, CachedAuthentication> authentications = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final SecretKeySpec secret;
+    private final long timeToLive;
+    private final int maxSize;
+
+    public AuthenticationCache() {
+        this(DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_SIZE);
+    }
+
+    public AuthenticationCache(long timeToLive, int maxSize) {
+        this.timeToLive = timeToLive;
+        this.maxSize = maxSize;
+
+        byte[] secretBytes = new byte[SECRET_LENGTH];
+        new SecureRandom().nextBytes(secretBytes);
+        this.secret = new SecretKeySpec(secretBytes, DIGEST_ALGORITHM);
+    }
+
+    /**
+     * Returns the cached result of the authentication of the user with the given password.
+     *
+     * @param username the name of the user
+     * @param password the password given by the user
+     * @return the cached result, or null if there is no result that is still valid for the given password
+     */
+    public Authentication get(String username, String password) {
+        String key = getKey(username);
+        CachedAuthentication cached = authentications.get(key);
+
+        if (cached == null) {
+            return null;
+        } else if (cached.isExpired(System.currentTimeMillis())) {
+            authentications.remove(key, cached);
+            return null;
+        }
+
+        return MessageDigest.isEqual(cached.getDigest(), digest(username, password)) ? cached.getResult() : null;
+    }
+
+    /**
+     * Caches the result of a successful authentication of the user with the given password. The result is not
+     * cached if any results were evicted since the given version was read, since the authentication could have
+     * used data that is no longer valid.
+     *
+     * @param username the name of the user
+     * @param password the password given by the user
+     * @param result the result of the authentication
+     * @param readVersion the version of this cache read before the authentication started
+     * @see #getVersion()
+     */
+    public void put(String username, String password, Authentication result, long readVersion) {
+        put(username, password, result, readVersion, Long.MAX_VALUE);
+    }
+
+    /**
+     * Caches the result of a successful authentication of the user with the given password, for no longer than
+     * until the given time. Used for results that stop being valid at a known time, such as results of users
+     * whose passwords expire.
+     *
+     * @param username the name of the user
+     * @param password the password given by the user
+     * @param result the result of the authentication
+     * @param readVersion the version of this cache read before the authentication started
+     * @param validUntil the time in milliseconds after which the result must not be returned
+     * @see #put(String, String, Authentication, long)
+     */
+    public void put(String username, String password, Authentication result, long readVersion, long validUntil) {
+        long now = System.currentTimeMillis();
+        if (validUntil <= now) {
+            return;
+        }
+
+        if (authentications.size() >= maxSize) {
+            removeExpired();
+        }
+
+        if (authentications.size() < maxSize) {
+            CachedAuthentication cached = new CachedAuthentication(digest(username, password), result,
+                    Math.min(now + timeToLive, validUntil));
+            authentications.put(getKey(username), cached);
+
+            // an eviction could have happened in the meantime
+            if (version.get() != readVersion) {
+                authentications.remove(getKey(username), cached);
+            }
+        }
+    }
+
+    /**
+     * Returns the version of this cache, which changes with every eviction.
+     *
+     * @return the current version of this cache
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Evicts the cached result of the authentication of the given user.
+     *
+     * @param username the name of the user
+     */
+    public void evict(String username) {
+        version.incrementAndGet();
+        authentications.remove(getKey(username));
+    }
+
+    /**
+     * Evicts the results of all authentications.
+     */
+    public void evictAll() {
+        version.incrementAndGet();
+        authentications.clear();
+    }
+
+    private void removeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, CachedAuthentication>> iterator = authentications.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private String getKey(String username) {
+        // user names are not case sensitive, see MotechUsersDao#findByUserName
+        return username.toLowerCase();
+    }
+
+    private byte[] digest(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(DIGEST_ALGORITHM);
+            mac.init(secret);
+            mac.update(getKey(username).getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to compute the digest of the password", e);
+        }
+    }
+
+    private static final class CachedAuthentication {
+
+        private final byte[] digest;
+        private final Authentication result;
+        private final long expirationTime;
+
+        private CachedAuthentication(byte[] digest, Authentication result, long expirationTime) {
+            this.digest = digest;
+            this.result = result;
+            this.expirationTime = expirationTime;
+        }
+
+        private byte[] getDigest() {
+            return digest;
+        }
+
+        private Authentication getResult() {
+            return result;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expirationTime;
+        }
+    }
+}
@@ -15,6 +15,7 @@ import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.LockedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.authentication.dao.AbstractUserDetailsAuthenticationProvider;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
@@ -22,7 +23,9 @@ import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Extends Spring's @AbstractUserDetailsAuthenticationProvider to provide implementation for the API retrieve user
- * and additional checks on password.
+ * and additional checks on password. Results of successful authentications are kept in the
+ * {@link AuthenticationCache} for a short time, so that clients sending their credentials with every request
+ * do not cause a user lookup and a password check each time.
  */
 @Component
 public class MotechAuthenticationProvider extends AbstractUserDetailsAuthenticationProvider {
@@ -35,14 +38,51 @@ public class MotechAuthenticationProvider extends AbstractUserDetailsAuthenticat
     private MotechPasswordEncoder passwordEncoder;
     private AuthoritiesService authoritiesService;
     private SettingService settingService;
+    private AuthenticationCache authenticationCache;
 
     @Autowired
     public MotechAuthenticationProvider(MotechUsersDao motechUsersDao, MotechPasswordEncoder motechPasswordEncoder,
-                                        AuthoritiesService authoritiesService, SettingService settingService) {
+                                        AuthoritiesService authoritiesService, SettingService settingService,
+                                        AuthenticationCache authenticationCache) {
         this.motechUsersDao = motechUsersDao;
         this.passwordEncoder = motechPasswordEncoder;
         this.authoritiesService = authoritiesService;
         this.settingService = settingService;
+        this.authenticationCache = authenticationCache;
+    }
+
+    /**
+     * Authenticates the user using the cached result of a previous authentication with the same credentials, if
+     * there is one. Otherwise authenticates the user as usual and caches the result.
+     *
+     * @param authentication data used for authentication
+     * @return the authenticated token
+     */
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        Object credentials = authentication.getCredentials();
+
+        if (!(authentication instanceof UsernamePasswordAuthenticationToken) || authentication.getPrincipal() == null
+                || !(credentials instanceof String) || StringUtils.isEmpty((String) credentials)) {
+            return super.authenticate(authentication);
+        }
+
+        String username = authentication.getName();
+        String password = (String) credentials;
+
+        Authentication cached = authenticationCache.get(username, password);
+        if (cached != null) {
+            UserDetails user = (UserDetails) cached.getPrincipal();
+            ((UsernamePasswordAuthenticationToken) authentication).setDetails(cached.getDetails());
+            return createSuccessAuthentication(user, authentication, user);
+        }
+
+        long cacheVersion = authenticationCache.getVersion();
+        Authentication result = super.authenticate(authentication);
+        // a cached result must not outlive the password, retrieveUser has to mark the user once it expires
+        authenticationCache.put(username, password, result, cacheVersion, getPasswordExpirationTime(username));
+
+        return result;
     }
 
     /**
@@ -90,4 +130,18 @@ public class MotechAuthenticationProvider extends AbstractUserDetailsAuthenticat
         }
     }
 
+    private long getPasswordExpirationTime(String username) {
+        int daysToChangePassword = settingService.getNumberOfDaysToChangePassword();
+        if (daysToChangePassword <= 0) {
+            return Long.MAX_VALUE;
+        }
+
+        MotechUser user = motechUsersDao.findByUserName(username);
+        if (user == null || user.getSafeLastPasswordChange() == null) {
+            // the expiration of the password is not known, the result is not cached
+            return 0;
+        }
+
+        return user.getSafeLastPasswordChange().plusDays(daysToChangePassword).getMillis();
+    }
 }
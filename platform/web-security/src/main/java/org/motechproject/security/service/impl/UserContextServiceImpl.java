@@ -5,6 +5,7 @@ import org.motechproject.security.helper.SessionHandler;
 import org.motechproject.security.repository.MotechUsersDao;
 import org.motechproject.security.service.AuthoritiesService;
 import org.motechproject.security.service.UserContextService;
+import org.motechproject.security.service.authentication.AuthenticationCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +17,8 @@ import org.springframework.security.core.userdetails.User;
 import org.springframework.security.openid.OpenIDAuthenticationToken;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.servlet.http.HttpSession;
 import java.util.Collection;
@@ -24,7 +27,8 @@ import java.util.Collection;
  * Implementation of the {@link org.motechproject.security.service.UserContextService}
  * APIs to refresh user contexts for users in session. The purpose of this class is making sure that invoking/revoking
  * roles from users will have real-time effect, meaning they won't have to log out for the privilege changes to take
- * effect.
+ * effect. Cached authentications of the affected users are evicted as well, so that the changes also apply to
+ * clients authenticating each request.
  */
 @Service
 public class UserContextServiceImpl implements UserContextService {
@@ -33,10 +37,13 @@ public class UserContextServiceImpl implements UserContextService {
     private SessionHandler sessionHandler;
     private MotechUsersDao motechUsersDao;
     private AuthoritiesService authoritiesService;
+    private AuthenticationCache authenticationCache;
 
     @Override
     @Transactional
     public void refreshAllUsersContextIfActive() {
+        evictAllCachedAuthentications();
+
         Collection<HttpSession> sessions = sessionHandler.getAllSessions();
         MotechUser user;
 
@@ -69,6 +76,7 @@ public class UserContextServiceImpl implements UserContextService {
     @Transactional
     public void refreshUserContextIfActive(String userName) {
         LOGGER.info("Refreshing context for user: {}", userName);
+        authenticationCache.evict(userName);
 
         MotechUser user = motechUsersDao.findByUserName(userName);
         Collection<HttpSession> sessions = sessionHandler.getAllSessions();
@@ -93,6 +101,8 @@ public class UserContextServiceImpl implements UserContextService {
     @Override
     public void logoutUser(String userName) {
         LOGGER.info("Logging out user: {}", userName);
+        authenticationCache.evict(userName);
+
         Collection<HttpSession> sessions = sessionHandler.getAllSessions();
 
         for (HttpSession session : sessions) {
@@ -108,6 +118,20 @@ public class UserContextServiceImpl implements UserContextService {
         }
     }
 
+    private void evictAllCachedAuthentications() {
+        authenticationCache.evictAll();
+
+        // authentications running before the commit still see the old roles and permissions
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    authenticationCache.evictAll();
+                }
+            });
+        }
+    }
+
     private AbstractAuthenticationToken getToken(Authentication authentication, MotechUser user) {
         AbstractAuthenticationToken token = null;
         if (authentication instanceof UsernamePasswordAuthenticationToken) {
@@ -137,4 +161,9 @@ public class UserContextServiceImpl implements UserContextService {
     public void setAuthoritiesService(AuthoritiesService authoritiesService) {
         this.authoritiesService = authoritiesService;
     }
+
+    @Autowired
+    public void setAuthenticationCache(AuthenticationCache authenticationCache) {
+        this.authenticationCache = authenticationCache;
+    }
 }
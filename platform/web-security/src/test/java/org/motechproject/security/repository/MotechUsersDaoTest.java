@@ -8,12 +8,14 @@ import org.mockito.MockitoAnnotations;
 import org.motechproject.security.domain.MotechUser;
 import org.motechproject.security.exception.EmailExistsException;
 import org.motechproject.security.mds.MotechUsersDataService;
+import org.motechproject.security.service.authentication.AuthenticationCache;
 
 import java.util.Locale;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -22,6 +24,9 @@ public class MotechUsersDaoTest {
     @Mock
     private MotechUsersDataService usersDataService;
 
+    @Mock
+    private AuthenticationCache authenticationCache;
+
     @InjectMocks
     private MotechUsersDao motechUsersDao = new MotechUsersDao();
 
@@ -77,6 +82,18 @@ public class MotechUsersDaoTest {
         }
     }
 
+    @Test
+    public void shouldEvictCachedAuthenticationOfUpdatedUser() {
+        MotechUser motechUser = new MotechUser("testuser", "testpassword", "test@test.com", "id", asList("ADMIN"), "", Locale.ENGLISH);
+
+        motechUsersDao.update(motechUser);
+        motechUsersDao.remove(motechUser);
+
+        verify(usersDataService).update(motechUser);
+        verify(usersDataService).delete(motechUser);
+        verify(authenticationCache, times(2)).evict("testuser");
+    }
+
     @Test
     public void findByUseridShouldReturnNullIfuserNameIsNull() {
         assertNull(null, motechUsersDao.findByUserName(null));
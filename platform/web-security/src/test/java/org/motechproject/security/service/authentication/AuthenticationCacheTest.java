@@ -0,0 +1,79 @@
+package org.motechproject.security.service.authentication;
+
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AuthenticationCacheTest {
+
+    private Authentication result = new UsernamePasswordAuthenticationToken("bob", "password");
+
+    @Test
+    public void shouldReturnResultForSameCredentials() {
+        AuthenticationCache cache = new AuthenticationCache();
+        cache.put("bob", "password", result, cache.getVersion());
+
+        assertSame(result, cache.get("bob", "password"));
+        assertSame(result, cache.get("BOB", "password"));
+        assertNull(cache.get("bob", "Password"));
+        assertNull(cache.get("alice", "password"));
+    }
+
+    @Test
+    public void shouldEvictResults() {
+        AuthenticationCache cache = new AuthenticationCache();
+        cache.put("bob", "password", result, cache.getVersion());
+        cache.put("alice", "password", result, cache.getVersion());
+
+        cache.evict("Bob");
+
+        assertNull(cache.get("bob", "password"));
+        assertSame(result, cache.get("alice", "password"));
+
+        cache.evictAll();
+
+        assertNull(cache.get("alice", "password"));
+    }
+
+    @Test
+    public void shouldNotCacheResultReadBeforeEviction() {
+        AuthenticationCache cache = new AuthenticationCache();
+        long version = cache.getVersion();
+
+        cache.evict("bob");
+        cache.put("bob", "password", result, version);
+
+        assertNull(cache.get("bob", "password"));
+    }
+
+    @Test
+    public void shouldNotReturnResultsAfterTheirValidity() {
+        AuthenticationCache cache = new AuthenticationCache();
+        cache.put("bob", "password", result, cache.getVersion(), System.currentTimeMillis() - 1);
+        cache.put("alice", "password", result, cache.getVersion(), System.currentTimeMillis() + 60000);
+
+        assertNull(cache.get("bob", "password"));
+        assertSame(result, cache.get("alice", "password"));
+    }
+
+    @Test
+    public void shouldNotReturnExpiredResults() {
+        AuthenticationCache cache = new AuthenticationCache(0, AuthenticationCache.DEFAULT_MAX_SIZE);
+        cache.put("bob", "password", result, cache.getVersion());
+
+        assertNull(cache.get("bob", "password"));
+    }
+
+    @Test
+    public void shouldNotExceedMaxSize() {
+        AuthenticationCache cache = new AuthenticationCache(AuthenticationCache.DEFAULT_TIME_TO_LIVE, 1);
+        cache.put("bob", "password", result, cache.getVersion());
+        cache.put("alice", "password", result, cache.getVersion());
+
+        assertSame(result, cache.get("bob", "password"));
+        assertNull(cache.get("alice", "password"));
+    }
+}
@@ -14,8 +14,11 @@ import org.motechproject.security.domain.MotechUserProfile;
 import org.motechproject.security.domain.UserStatus;
 import org.motechproject.security.repository.MotechUsersDao;
 import org.motechproject.security.service.AuthoritiesService;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.CredentialsExpiredException;
 import org.springframework.security.authentication.LockedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UserDetails;
 
@@ -26,6 +29,7 @@ import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -44,6 +48,8 @@ public class MotechAuthenticationProviderTest {
     @Mock
     SettingService settingService;
 
+    private AuthenticationCache authenticationCache;
+
     private MotechAuthenticationProvider authenticationProvider;
 
     ArgumentCaptor<MotechUser> userCaptor = ArgumentCaptor.forClass(MotechUser.class);
@@ -51,7 +57,9 @@ public class MotechAuthenticationProviderTest {
     @Before
     public void setup() {
         initMocks(this);
-        authenticationProvider = new MotechAuthenticationProvider(motechUsersDao, passwordEncoder, authoritiesService, settingService);
+        authenticationCache = new AuthenticationCache();
+        authenticationProvider = new MotechAuthenticationProvider(motechUsersDao, passwordEncoder, authoritiesService,
+                settingService, authenticationCache);
     }
 
     @Test
@@ -138,4 +146,69 @@ public class MotechAuthenticationProviderTest {
         Assert.assertEquals((Integer) 0, capturedUser.getFailureLoginCounter());
         Assert.assertEquals(UserStatus.MUST_CHANGE_PASSWORD, capturedUser.getUserStatus());
     }
+
+    @Test
+    public void shouldAuthenticateUsingCachedResult() {
+        MotechUser motechUser = new MotechUser("bob", "encodedPassword", "entity_1", "", asList("some_role"), "", Locale.ENGLISH);
+        when(motechUsersDao.findByUserName("bob")).thenReturn(motechUser);
+        when(passwordEncoder.isPasswordValid("encodedPassword", "password")).thenReturn(true);
+
+        Authentication first = authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("bob", "password"));
+        Authentication second = authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("bob", "password"));
+
+        assertTrue(first.isAuthenticated());
+        assertTrue(second.isAuthenticated());
+        assertEquals("bob", second.getName());
+        assertEquals(motechUser.getUserName(), ((MotechUserProfile) second.getDetails()).getUserName());
+        verify(motechUsersDao, times(1)).findByUserName("bob");
+        verify(passwordEncoder, times(1)).isPasswordValid("encodedPassword", "password");
+    }
+
+    @Test
+    public void shouldNotUseCachedResultForOtherPassword() {
+        MotechUser motechUser = new MotechUser("bob", "encodedPassword", "entity_1", "", asList("some_role"), "", Locale.ENGLISH);
+        when(motechUsersDao.findByUserName("bob")).thenReturn(motechUser);
+        when(passwordEncoder.isPasswordValid("encodedPassword", "password")).thenReturn(true);
+
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("bob", "password"));
+
+        try {
+            authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("bob", "wrong"));
+            Assert.fail("Authenticated with a wrong password");
+        } catch (BadCredentialsException e) {
+            verify(motechUsersDao, times(2)).findByUserName("bob");
+        }
+    }
+
+    @Test(expected = LockedException.class)
+    public void shouldNotUseCachedResultOfEvictedUser() {
+        MotechUser motechUser = new MotechUser("bob", "encodedPassword", "entity_1", "", asList("some_role"), "", Locale.ENGLISH);
+        when(motechUsersDao.findByUserName("bob")).thenReturn(motechUser);
+        when(passwordEncoder.isPasswordValid("encodedPassword", "password")).thenReturn(true);
+
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("bob", "password"));
+
+        motechUser.setUserStatus(UserStatus.BLOCKED);
+        authenticationCache.evict("bob");
+
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("bob", "password"));
+    }
+
+    @Test(expected = CredentialsExpiredException.class)
+    public void shouldNotUseCachedResultAfterPasswordExpired() throws InterruptedException {
+        MotechUser motechUser = new MotechUser("bob", "encodedPassword", "entity_1", "", asList("some_role"), "", Locale.ENGLISH);
+        motechUser.setUserStatus(UserStatus.ACTIVE);
+        // the password expires a second after the first authentication
+        motechUser.setLastPasswordChange(DateTime.now().minusDays(2).plusSeconds(1));
+        when(motechUsersDao.findByUserName("bob")).thenReturn(motechUser);
+        when(passwordEncoder.isPasswordValid("encodedPassword", "password")).thenReturn(true);
+        when(settingService.getNumberOfDaysToChangePassword()).thenReturn(2);
+
+        assertTrue(authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("bob", "password"))
+                .isAuthenticated());
+
+        Thread.sleep(1500);
+
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("bob", "password"));
+    }
 }
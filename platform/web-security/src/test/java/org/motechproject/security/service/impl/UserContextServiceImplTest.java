@@ -0,0 +1,74 @@
+package org.motechproject.security.service.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.motechproject.security.helper.SessionHandler;
+import org.motechproject.security.repository.MotechUsersDao;
+import org.motechproject.security.service.AuthoritiesService;
+import org.motechproject.security.service.authentication.AuthenticationCache;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.servlet.http.HttpSession;
+import java.util.ArrayList;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UserContextServiceImplTest {
+
+    @Mock
+    private SessionHandler sessionHandler;
+
+    @Mock
+    private MotechUsersDao motechUsersDao;
+
+    @Mock
+    private AuthoritiesService authoritiesService;
+
+    @Mock
+    private AuthenticationCache authenticationCache;
+
+    @InjectMocks
+    private UserContextServiceImpl userContextService = new UserContextServiceImpl();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(sessionHandler.getAllSessions()).thenReturn(new ArrayList<HttpSession>());
+    }
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void shouldEvictAllCachedAuthenticationsAgainAfterTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        userContextService.refreshAllUsersContextIfActive();
+
+        verify(authenticationCache).evictAll();
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+
+        verify(authenticationCache, times(2)).evictAll();
+    }
+
+    @Test
+    public void shouldEvictAllCachedAuthenticationsWithoutTransaction() {
+        userContextService.refreshAllUsersContextIfActive();
+
+        verify(authenticationCache).evictAll();
+    }
+}